@@ -0,0 +1,30 @@
+// Admin tools run by the maintainers with a service account, never shipped with the app
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+// The geohashes and the paths must match the ones the app queries, so the app's encoder
+// and constants are compiled in
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/unimib/workingspot/admin/**", "com/unimib/workingspot/util/spatial/GeoHash.java",
+                    "com/unimib/workingspot/util/constants/WorkPlacesConstants.java")
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.firebase.admin)
+    compileOnly(libs.androidx.annotation)
+}
+
+application {
+    mainClass.set("com.unimib.workingspot.admin.GeohashBackfill")
+}
@@ -0,0 +1,137 @@
+package com.unimib.workingspot.admin;
+
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_ROOT_LOCATION;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_GEOHASH_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_UPDATED_AT_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_GEOHASH_PRECISION;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import com.unimib.workingspot.util.spatial.GeoHash;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fills once the geohash and the time of the last change of the workplaces stored in the
+ * Realtime Database before the app wrote them. The app only writes them when it creates a
+ * workplace, and the database rules do not let it change a stored one, so the workplaces without
+ * them are neither found by the area queries nor by the incremental fetches until this runs.
+ * <p>
+ * It runs with the service account of the project, from the credentials file named by the
+ * GOOGLE_APPLICATION_CREDENTIALS environment variable:
+ * <pre>./gradlew :admin:run --args="https://&lt;project&gt;.firebaseio.com [--dry-run]"</pre>
+ * The workplaces are read a page at a time, ordered by key, and each page is written with a
+ * single multi-path update, so the tool can be stopped and run again.
+ */
+public final class GeohashBackfill {
+
+    // Number of workplaces read, and at most written, by a single request
+    private static final int PAGE_SIZE = 500;
+    private static final String DRY_RUN = "--dry-run";
+
+    /**
+     * Private constructor, the class only has static methods
+     */
+    private GeohashBackfill() {}
+
+    /**
+     * Runs the backfill
+     * @param args The URL of the Realtime Database, followed by --dry-run to only count the
+     *             workplaces that would be written
+     * @throws Exception If the credentials cannot be read or a request fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: GeohashBackfill <database URL> [" + DRY_RUN + "]");
+            System.exit(2);
+        }
+        boolean dryRun = args.length > 1 && DRY_RUN.equals(args[1]);
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.getApplicationDefault())
+                .setDatabaseUrl(args[0])
+                .build());
+        DatabaseReference workPlacesRef = FirebaseDatabase.getInstance().getReference(FIREBASE_WORKPLACES_ROOT_LOCATION);
+
+        int read = 0;
+        int written = 0;
+        String lastKey = null;
+        while (true) {
+            // The page starts with the last workplace of the previous one, which is skipped
+            Query page = lastKey == null
+                    ? workPlacesRef.orderByKey().limitToFirst(PAGE_SIZE)
+                    : workPlacesRef.orderByKey().startAt(lastKey).limitToFirst(PAGE_SIZE + 1);
+            DataSnapshot snapshot = read(page);
+            Map<String, Object> updates = new HashMap<>();
+            int children = 0;
+            for (DataSnapshot child : snapshot.getChildren()) {
+                if (child.getKey().equals(lastKey))
+                    continue;
+                children++;
+                lastKey = child.getKey();
+                addMissingChildren(child, updates);
+            }
+            if (children == 0)
+                break;
+            read += children;
+            if (!updates.isEmpty()) {
+                // Two paths, the geohash and the time of the last change, for each workplace
+                written += updates.size() / 2;
+                if (!dryRun)
+                    workPlacesRef.updateChildrenAsync(updates).get();
+            }
+        }
+        System.out.println((dryRun ? "Would write " : "Wrote ") + written + " of " + read + " workplaces");
+        System.exit(0);
+    }
+
+    /**
+     * Adds the geohash of a workplace without it to a multi-path update, with the server time
+     * as its last change, so that the incremental fetches of the app read it again
+     * @param workPlace The stored workplace
+     * @param updates The multi-path update, relative to the workplaces node
+     */
+    private static void addMissingChildren(DataSnapshot workPlace, Map<String, Object> updates) {
+        Object latitude = workPlace.child("latitude").getValue();
+        Object longitude = workPlace.child("longitude").getValue();
+        boolean hasGeohash = workPlace.hasChild(FIREBASE_WORKPLACE_GEOHASH_FIELD);
+        boolean hasUpdatedAt = workPlace.hasChild(FIREBASE_WORKPLACE_UPDATED_AT_FIELD);
+        if ((hasGeohash && hasUpdatedAt) || !(latitude instanceof Number) || !(longitude instanceof Number))
+            return;
+        String key = workPlace.getKey();
+        updates.put(key + "/" + FIREBASE_WORKPLACE_GEOHASH_FIELD, GeoHash.encode(
+                ((Number) latitude).doubleValue(), ((Number) longitude).doubleValue(), WORKPLACE_GEOHASH_PRECISION));
+        updates.put(key + "/" + FIREBASE_WORKPLACE_UPDATED_AT_FIELD, ServerValue.TIMESTAMP);
+    }
+
+    /**
+     * Reads a query once, waiting for its result
+     * @param query The query to read
+     * @return The children matched by the query
+     * @throws Exception If the read was cancelled, for example by the rules
+     */
+    private static DataSnapshot read(Query query) throws Exception {
+        CompletableFuture<DataSnapshot> result = new CompletableFuture<>();
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                result.complete(snapshot);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                result.completeExceptionally(error.toException());
+            }
+        });
+        return result.get();
+    }
+}
@@ -18,6 +18,13 @@ android {
         versionCode = 1
         versionName = "1.0"
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Exports the Room schemas, which the migrations are written against
+        javaCompileOptions {
+            annotationProcessorOptions {
+                arguments += mapOf("room.schemaLocation" to "$projectDir/schemas")
+            }
+        }
     }
 
     buildTypes {
@@ -34,6 +41,15 @@ android {
         sourceCompatibility = JavaVersion.VERSION_17
         targetCompatibility = JavaVersion.VERSION_17
     }
+
+    // The migration tests read the exported Room schemas as assets and run on Robolectric
+    sourceSets {
+        getByName("test").assets.srcDirs("$projectDir/schemas")
+    }
+
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+    }
 }
 
 dependencies {
@@ -75,6 +91,7 @@ dependencies {
     // Room DB
     implementation(libs.room.runtime)
     implementation(libs.room.common)
+    implementation(libs.room.paging)
     implementation(libs.play.services.auth)
     annotationProcessor(libs.room.compiler)
 
@@ -84,6 +101,14 @@ dependencies {
     implementation(libs.gson)
     implementation(libs.cronet.embedded)
 
+    // Paging
+    implementation(libs.paging.runtime)
+    implementation(libs.paging.guava)
+
+    // Images
+    implementation(libs.glide)
+    annotationProcessor(libs.glide.compiler)
+
     // Commons
     implementation(libs.commons.validator)
 
@@ -93,6 +118,68 @@ dependencies {
 
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.ext.junit)
+    testImplementation(libs.test.core)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.room.testing)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
-}
\ No newline at end of file
+}
+
+// Catalogue snapshot: a debug build installed on a connected device, with every workplace synced,
+// exports its database, which is then copied to the assets, see WorkPlaceSnapshotExportReceiver
+val workPlaceSnapshotAction = "com.unimib.workingspot.EXPORT_WORKPLACE_SNAPSHOT"
+val workPlaceSnapshotDevicePath = "/sdcard/Android/data/com.unimib.workingspot/files/workplaces_snapshot.db"
+
+val exportWorkPlaceSnapshot by tasks.registering(Exec::class) {
+    group = "workplaces"
+    description = "Exports the workplace database of the debug build running on the connected device"
+    commandLine("adb", "shell", "am", "broadcast", "-a", workPlaceSnapshotAction,
+        "-n", "com.unimib.workingspot/.database.work_place.WorkPlaceSnapshotExportReceiver")
+}
+
+tasks.register<Exec>("pullWorkPlaceSnapshot") {
+    group = "workplaces"
+    description = "Exports the workplace database of the connected device and copies it to the assets"
+    dependsOn(exportWorkPlaceSnapshot)
+    doFirst { file("$projectDir/src/main/assets/database").mkdirs() }
+    commandLine("adb", "pull", workPlaceSnapshotDevicePath,
+        "$projectDir/src/main/assets/database/workplaces_snapshot.db")
+}
+
+// Room schemas: the schema of the current version is exported by every build, the schemas of the
+// previous versions are exported by compiling the last commit at each version in a worktree
+val roomSchemaCommits = mapOf(
+    10 to "6d3d75f0e77c098d415d1427260530881156276a",
+    11 to "72d2cd3e4d9dba28072fa4f0a810870fdf002acf",
+    12 to "c3f519384663046643b07317fd554a7cb97251d1",
+    13 to "1293ed39da6b5c159775726ee606f5ecf876fc9f",
+    14 to "16343872918a043c38f3e3cb50a65275af30c4e7",
+    15 to "750e2ba96ef18f6b463ced7f8201ab59cf0389da",
+    16 to "901c93b1c7e78ec995aa1fcb2e90235a69abbe4e"
+)
+
+val regenerateRoomSchemas by tasks.registering {
+    group = "workplaces"
+    description = "Exports the Room schemas of every version of the workplace database"
+    dependsOn("compileDebugJavaWithJavac")
+}
+
+roomSchemaCommits.forEach { (version, commit) ->
+    val worktree = layout.buildDirectory.dir("room-schemas/$version").get().asFile
+    val exportRoomSchema = tasks.register<Exec>("exportRoomSchema$version") {
+        group = "workplaces"
+        description = "Exports the Room schema of version $version of the workplace database"
+        workingDir = rootDir
+        commandLine("sh", "-c", """
+            git worktree add --force --detach "$worktree" $commit || exit 1
+            cp local.properties "$worktree/" 2>/dev/null
+            (cd "$worktree" && ./gradlew -q -I "$rootDir/gradle/room-schemas.init.gradle.kts" \
+                -ProomSchemaLocation="$projectDir/schemas" :app:compileDebugJavaWithJavac)
+            status=${'$'}?
+            git worktree remove --force "$worktree"
+            exit ${'$'}status
+        """.trimIndent())
+    }
+    regenerateRoomSchemas { dependsOn(exportRoomSchema) }
+}
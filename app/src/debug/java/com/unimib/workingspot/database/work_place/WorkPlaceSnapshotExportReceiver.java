@@ -0,0 +1,82 @@
+package com.unimib.workingspot.database.work_place;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.util.Log;
+
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.util.constants.WorkPlacesConstants;
+
+import java.io.File;
+
+/**
+ * Exports the workplace database of a debug build as the catalogue snapshot packaged in the
+ * assets, see {@link WorkPlacesConstants#WORKPLACES_DB_SNAPSHOT_ASSET}. The database is copied
+ * with {@code VACUUM INTO}, which writes a compact, consistent copy while the app keeps running,
+ * then the saved state and the pending changes of the signed-in user are removed from the copy.
+ * The {@link CatalogueVersion} of the synced workplaces is copied with them, with the export
+ * time as the time they were read in full: the live sync keeps them up to date until then.
+ * <p>
+ * The export is started by the exportWorkPlaceSnapshot Gradle task, and the snapshot is copied
+ * to the assets by the pullWorkPlaceSnapshot task; the app should have synced every workplace,
+ * with no known position, before it is run.
+ */
+public class WorkPlaceSnapshotExportReceiver extends BroadcastReceiver {
+
+    private static final String TAG = WorkPlaceSnapshotExportReceiver.class.getSimpleName();
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        PendingResult result = goAsync();
+        Context applicationContext = context.getApplicationContext();
+        // The database cannot be opened on the main thread
+        new Thread(() -> {
+            try {
+                File snapshot = export(applicationContext);
+                result.setResultCode(Activity.RESULT_OK);
+                result.setResultData(snapshot.getPath());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Catalogue snapshot not exported", e);
+                result.setResultCode(Activity.RESULT_CANCELED);
+                result.setResultData(e.getMessage());
+            } finally {
+                result.finish();
+            }
+        }).start();
+    }
+
+    /**
+     * Copies the workplace database to the external files directory of the app
+     * @param context The application context
+     * @return The exported snapshot
+     */
+    private static File export(Context context) {
+        // VACUUM INTO needs SQLite 3.27, shipped since Android 11
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R)
+            throw new IllegalStateException("The snapshot can only be exported on Android 11 or later");
+
+        WorkPlaceRoomDatabase database = WorkPlaceRoomDatabase.getDatabase(context);
+        CatalogueVersion catalogueVersion = database.workPlaceDAO().getCatalogueVersion();
+        if (catalogueVersion == null || catalogueVersion.getUpdatedAt() == 0)
+            Log.w(TAG, "The workplaces were not read in full from the remote database: the first " +
+                    "fetch of the seeded installs reads every workplace");
+
+        File snapshot = new File(context.getExternalFilesDir(null), WorkPlacesConstants.WORKPLACES_DB_SNAPSHOT_EXPORT_NAME);
+        // VACUUM INTO fails if the file exists
+        if (snapshot.exists() && !snapshot.delete())
+            throw new IllegalStateException("Previous snapshot not deleted: " + snapshot);
+        database.getOpenHelper().getWritableDatabase().execSQL("VACUUM INTO ?", new Object[] {snapshot.getPath()});
+
+        try (SQLiteDatabase copy = SQLiteDatabase.openDatabase(snapshot.getPath(), null, SQLiteDatabase.OPEN_READWRITE)) {
+            copy.execSQL("UPDATE WorkPlace SET saved = 0");
+            copy.execSQL("DELETE FROM PendingSavedChange");
+            copy.execSQL("UPDATE CatalogueVersion SET fetchedAt = ?", new Object[] {System.currentTimeMillis()});
+        }
+        Log.i(TAG, "Catalogue snapshot exported to " + snapshot);
+        return snapshot;
+    }
+}
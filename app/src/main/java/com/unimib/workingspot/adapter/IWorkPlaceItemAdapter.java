@@ -0,0 +1,32 @@
+package com.unimib.workingspot.adapter;
+
+import androidx.annotation.Nullable;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+/**
+ * Interface implemented by the adapters that display workplace cards, so that the workplace
+ * lists can be handled in the same way whether they are fully loaded or paged.
+ */
+public interface IWorkPlaceItemAdapter {
+
+    /**
+     * Returns the WorkPlace displayed at a given position, without triggering any load
+     * @param position The position of the item within the adapter's data set
+     * @return the WorkPlace at the given position, or null if it is not loaded yet
+     */
+    @Nullable
+    WorkPlace getWorkPlace(int position);
+
+    /**
+     * Returns the number of items displayed by the adapter, placeholders included
+     * @return the number of items
+     */
+    int getItemCount();
+
+    /**
+     * Shows or hides the favourite button of every card
+     * @param favouriteButtonEnabled If the favourite button should be showed or not
+     */
+    void setFavouriteButtonEnabled(boolean favouriteButtonEnabled);
+}
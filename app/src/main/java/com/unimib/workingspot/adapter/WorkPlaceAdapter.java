@@ -3,13 +3,16 @@ package com.unimib.workingspot.adapter;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.unimib.workingspot.R;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlacePhoto;
 import com.unimib.workingspot.util.bitmap.BitMapManager;
 
-import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,14 +20,27 @@ import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
- * RecyclerView.Adapter implementation that binds WorkPlace data to a card layout.
- * Each card displays the workplace's name, address, image (decoded from a base64 string)
- * and a favourite checkbox
+ * ListAdapter implementation that binds WorkPlace data to a card layout.
+ * Each card displays the workplace's name, address, image (loaded through Glide from its base64
+ * string) and a favourite checkbox.
+ * New lists are diffed on a background thread and only the changed cards are rebound: a card
+ * whose favourite state or photo changed is rebound partially through a payload.
+ * Since the lists are diffed, submitted workplaces must not be mutated afterwards: a modified
+ * copy has to be submitted instead.
  */
-public class WorkPlaceAdapter extends RecyclerView.Adapter<WorkPlaceAdapter.ViewHolder> {
+public class WorkPlaceAdapter extends ListAdapter<WorkPlace, WorkPlaceAdapter.ViewHolder>
+        implements IWorkPlaceItemAdapter {
+
+    // Payload used to rebind only the favourite button of a card
+    public static final String PAYLOAD_FAVOURITE = "favourite";
+    // Payload used to rebind only the photo of a card
+    public static final String PAYLOAD_PHOTO = "photo";
 
     /**
      * Interface for handling user interaction with each workplace item
@@ -42,52 +58,97 @@ public class WorkPlaceAdapter extends RecyclerView.Adapter<WorkPlaceAdapter.View
          */
         void onFavouriteButtonPressed(int position);
     }
+
+    /**
+     * Compares workplaces by their Firebase key, and their displayed content field by field.
+     * Shared with {@link WorkPlacePagingAdapter}
+     */
+    static final DiffUtil.ItemCallback<WorkPlace> DIFF_CALLBACK = new DiffUtil.ItemCallback<>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull WorkPlace oldItem, @NonNull WorkPlace newItem) {
+            return oldItem.getFirebaseKey().equals(newItem.getFirebaseKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull WorkPlace oldItem, @NonNull WorkPlace newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getAddress(), newItem.getAddress())
+                    && oldItem.isSaved() == newItem.isSaved()
+                    && samePhoto(oldItem, newItem);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull WorkPlace oldItem, @NonNull WorkPlace newItem) {
+            // Name or address changed: the whole card has to be rebound
+            if (!Objects.equals(oldItem.getName(), newItem.getName())
+                    || !Objects.equals(oldItem.getAddress(), newItem.getAddress()))
+                return null;
+            if (!samePhoto(oldItem, newItem))
+                return oldItem.isSaved() == newItem.isSaved() ? PAYLOAD_PHOTO : null;
+            return PAYLOAD_FAVOURITE;
+        }
+
+        private boolean samePhoto(WorkPlace oldItem, WorkPlace newItem) {
+            // The photo models compare the cache keys, without comparing the whole encodings
+            return Objects.equals(WorkPlacePhoto.fromWorkPlace(oldItem), WorkPlacePhoto.fromWorkPlace(newItem))
+                    && Objects.equals(oldItem.getBlurHash(), newItem.getBlurHash());
+        }
+    };
+
     private final int layout; // Resource ID for the card layout
-    private final List<WorkPlace> workPlaceList; // The list of WorkPlaces to display
     private Context context; // Context the view is running in
     private final OnItemClickListener onItemClickListener; // Listener for the item events
     private final BitMapManager bitMapManager;
-    private final boolean favouriteButtonEnabled;
+    private boolean favouriteButtonEnabled;
+    // Stable IDs assigned to the Firebase keys, so that the IDs never collide
+    private final Map<String, Long> stableIds;
 
 
     /**
      * Constructor for the WorkPlaceAdapter class
      * @param layout the resource ID for the card layout
-     * @param workPlaceList The list of WorkPlaces object to display
      * @param favouriteButtonEnabled If the favourite button should be showed or not
      * @param onItemClickListener The listener for handling click events
      */
-    public WorkPlaceAdapter(int layout, List<WorkPlace> workPlaceList,
-                            boolean favouriteButtonEnabled,
+    public WorkPlaceAdapter(int layout, boolean favouriteButtonEnabled,
                             OnItemClickListener onItemClickListener) {
+        super(DIFF_CALLBACK);
         this.layout = layout;
-        this.workPlaceList = workPlaceList;
         this.onItemClickListener = onItemClickListener;
         this.bitMapManager = new BitMapManager();
         this.favouriteButtonEnabled = favouriteButtonEnabled;
+        this.stableIds = new HashMap<>();
+        setHasStableIds(true);
     }
 
     /**
-     * ViewHolder class that holds references to the UI components of a single card
+     * ViewHolder class that holds references to the UI components of a single card.
+     * It is shared by the workplace adapters, which delegate the binding to it
      */
-    public class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener  {
+    public static class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener  {
         private final TextView textViewWorkPlaceName;
         private final TextView textViewWorkPlaceAddress;
         private final CheckBox favouriteButton;
         private final ImageView imageViewWorkPlace;
+        private final OnItemClickListener onItemClickListener;
+        private WorkPlace workPlace; // The WorkPlace currently bound to the card
 
 
         /**
          * Constructor for the ViewHolder class
          * @param view The view for the individual card
+         * @param onItemClickListener The listener for handling click events
          */
-        public ViewHolder(View view) {
+        public ViewHolder(View view, OnItemClickListener onItemClickListener) {
             super(view);
+            this.onItemClickListener = onItemClickListener;
             textViewWorkPlaceName = itemView.findViewById(R.id.name);
             textViewWorkPlaceAddress = itemView.findViewById(R.id.address);
             favouriteButton = itemView.findViewById(R.id.favouriteButton);
             imageViewWorkPlace = itemView.findViewById(R.id.card_image);
             view.setOnClickListener(this);
+            favouriteButton.setOnClickListener(this);
         }
 
         /**
@@ -96,11 +157,67 @@ public class WorkPlaceAdapter extends RecyclerView.Adapter<WorkPlaceAdapter.View
          */
         @Override
         public void onClick(View v) {
+            int position = getBindingAdapterPosition();
+            if(position == RecyclerView.NO_POSITION || workPlace == null)
+                return; // The card is being removed, or is a placeholder
             if(v.getId() == R.id.favouriteButton)
-                onItemClickListener.onFavouriteButtonPressed(getBindingAdapterPosition());
+                onItemClickListener.onFavouriteButtonPressed(position);
             else
-                onItemClickListener
-                        .onWorkPlaceItemClick(workPlaceList.get(getBindingAdapterPosition()));
+                onItemClickListener.onWorkPlaceItemClick(workPlace);
+        }
+
+        /**
+         * Binds a WorkPlace to the whole card
+         * @param workPlace The WorkPlace to display
+         * @param favouriteButtonEnabled If the favourite button should be showed or not
+         * @param bitMapManager The manager used to load the photo
+         */
+        void bind(WorkPlace workPlace, boolean favouriteButtonEnabled, BitMapManager bitMapManager) {
+            this.workPlace = workPlace;
+            // Set the name and address to be displayed on the card
+            textViewWorkPlaceName.setText(workPlace.getName());
+            textViewWorkPlaceAddress.setText(workPlace.getAddress());
+            bindFavouriteButton(workPlace, favouriteButtonEnabled);
+            bindPhoto(workPlace, bitMapManager);
+        }
+
+        /**
+         * Binds the favourite button of the card
+         * @param workPlace The WorkPlace displayed by the card
+         * @param favouriteButtonEnabled If the favourite button should be showed or not
+         */
+        void bindFavouriteButton(WorkPlace workPlace, boolean favouriteButtonEnabled) {
+            this.workPlace = workPlace;
+            // Sets the visibility of the favourite button
+            if(favouriteButtonEnabled) {
+                favouriteButton.setVisibility(View.VISIBLE);
+                favouriteButton.setChecked(workPlace.isSaved());
+            } else {
+                favouriteButton.setVisibility(View.GONE);
+            }
+        }
+
+        /**
+         * Binds the photo of the card
+         * @param workPlace The WorkPlace displayed by the card
+         * @param bitMapManager The manager used to load the photo
+         */
+        void bindPhoto(WorkPlace workPlace, BitMapManager bitMapManager) {
+            this.workPlace = workPlace;
+            // Load the photo through Glide, which decodes it off the main thread and caches it
+            bitMapManager.loadWorkPlacePhoto(imageViewWorkPlace, workPlace, R.drawable.no_image);
+        }
+
+        /**
+         * Empties the card, used for the placeholders of items that are not loaded yet
+         * @param bitMapManager The manager used to cancel the photo request
+         */
+        void clear(BitMapManager bitMapManager) {
+            this.workPlace = null;
+            textViewWorkPlaceName.setText(null);
+            textViewWorkPlaceAddress.setText(null);
+            favouriteButton.setVisibility(View.INVISIBLE);
+            bitMapManager.clearWorkPlacePhoto(imageViewWorkPlace);
         }
 
         /**
@@ -153,7 +270,7 @@ public class WorkPlaceAdapter extends RecyclerView.Adapter<WorkPlaceAdapter.View
         View view = LayoutInflater.from(this.context)
                 .inflate(layout, parent, false);
 
-        return new ViewHolder(view);
+        return new ViewHolder(view, onItemClickListener);
     }
 
     /**
@@ -164,31 +281,75 @@ public class WorkPlaceAdapter extends RecyclerView.Adapter<WorkPlaceAdapter.View
      */
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        // Set the name and address to be displayed on the card
-        holder.getTextViewWorkPlaceName().setText(workPlaceList.get(position).getName());
-        holder.getTextViewWorkPlaceAddress().setText(workPlaceList.get(position).getAddress());
-
-        // Sets the visibility of the favourite button
-        if(favouriteButtonEnabled) {
-            holder.getFavouriteButton().setChecked(workPlaceList.get(position).isSaved());
-            // Set the listener for when the favourite button is pressed
-            holder.getFavouriteButton().setOnClickListener(view ->
-                    onItemClickListener.onFavouriteButtonPressed(position));
-        } else {
-            holder.getFavouriteButton().setVisibility(View.GONE);
-        }
-        // Decode the base64 string to an image and display it
-        Bitmap bitmap = bitMapManager.decodeBitmap(workPlaceList.get(position).getB64PhotoEncoding());
-        holder.getImageViewWorkPlace().setImageBitmap(bitmap);
+        holder.bind(getItem(position), favouriteButtonEnabled, bitMapManager);
+    }
+
+    /**
+     * Rebinds only the parts of the card described by the payloads, or the whole card when
+     * there are none
+     * @param holder   The ViewHolder which should be updated
+     * @param position The position of the item within the adapter's data set
+     * @param payloads The payloads of the partial changes, empty for a full bind
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if(payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        WorkPlace workPlace = getItem(position);
+        if(payloads.contains(PAYLOAD_FAVOURITE))
+            holder.bindFavouriteButton(workPlace, favouriteButtonEnabled);
+        if(payloads.contains(PAYLOAD_PHOTO))
+            holder.bindPhoto(workPlace, bitMapManager);
+    }
+
+    /**
+     * Cancels the pending photo request of a recycled card, so that its bitmap can be reused
+     * @param holder The ViewHolder for the view being recycled
+     */
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        bitMapManager.clearWorkPlacePhoto(holder.getImageViewWorkPlace());
+    }
+
+    /**
+     * Returns a stable ID for the WorkPlace at a given position, derived from its Firebase key
+     * @param position Adapter position to query
+     * @return the stable ID of the item
+     */
+    @Override
+    public long getItemId(int position) {
+        String firebaseKey = getItem(position).getFirebaseKey();
+        Long id = stableIds.get(firebaseKey);
+        if(id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(firebaseKey, id);
+        }
+        return id;
+    }
+
+    /**
+     * Shows or hides the favourite button of every card, rebinding only the button
+     * @param favouriteButtonEnabled If the favourite button should be showed or not
+     */
+    @Override
+    public void setFavouriteButtonEnabled(boolean favouriteButtonEnabled) {
+        if(this.favouriteButtonEnabled == favouriteButtonEnabled)
+            return;
+        this.favouriteButtonEnabled = favouriteButtonEnabled;
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_FAVOURITE);
     }
 
     /**
-     * Returns the number of WorkPlaces in the list
-     * @return the number of items in the adapter's list
+     * Returns the WorkPlace displayed at a given position
+     * @param position The position of the item within the adapter's data set
+     * @return the WorkPlace at the given position
      */
     @Override
-    public int getItemCount() {
-        return workPlaceList.size();
+    public WorkPlace getWorkPlace(int position) {
+        return getItem(position);
     }
 
 }
@@ -0,0 +1,126 @@
+package com.unimib.workingspot.adapter;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.PagingDataAdapter;
+
+import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.util.bitmap.BitMapManager;
+
+import java.util.List;
+
+/**
+ * PagingDataAdapter implementation that binds paged WorkPlace data to a card layout.
+ * It displays the same cards as {@link WorkPlaceAdapter}, but only the loaded pages are kept in
+ * memory: the items that are not loaded yet are shown as empty placeholder cards.
+ */
+public class WorkPlacePagingAdapter extends PagingDataAdapter<WorkPlace, WorkPlaceAdapter.ViewHolder>
+        implements IWorkPlaceItemAdapter {
+
+    private final int layout; // Resource ID for the card layout
+    private final WorkPlaceAdapter.OnItemClickListener onItemClickListener; // Listener for the item events
+    private final BitMapManager bitMapManager;
+    private boolean favouriteButtonEnabled;
+
+    /**
+     * Constructor for the WorkPlacePagingAdapter class
+     * @param layout the resource ID for the card layout
+     * @param favouriteButtonEnabled If the favourite button should be showed or not
+     * @param onItemClickListener The listener for handling click events
+     */
+    public WorkPlacePagingAdapter(int layout, boolean favouriteButtonEnabled,
+                                  WorkPlaceAdapter.OnItemClickListener onItemClickListener) {
+        super(WorkPlaceAdapter.DIFF_CALLBACK);
+        this.layout = layout;
+        this.onItemClickListener = onItemClickListener;
+        this.bitMapManager = new BitMapManager();
+        this.favouriteButtonEnabled = favouriteButtonEnabled;
+    }
+
+    /**
+     * Inflates the card layout and returns a new ViewHolder
+     * @param parent   The ViewGroup into which the new View will be added after it is bound to
+     *                 an adapter position.
+     * @param viewType The view type of the new View.
+     * @return a new ViewHolder for the card
+     */
+    @NonNull
+    @Override
+    public WorkPlaceAdapter.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(layout, parent, false);
+        return new WorkPlaceAdapter.ViewHolder(view, onItemClickListener);
+    }
+
+    /**
+     * Binds the WorkPlace at the given position, or an empty card if it is not loaded yet.
+     * Binding a placeholder makes the paged list load the page that contains it
+     * @param holder   The ViewHolder which should be updated
+     * @param position The position of the item within the adapter's data set
+     */
+    @Override
+    public void onBindViewHolder(@NonNull WorkPlaceAdapter.ViewHolder holder, int position) {
+        WorkPlace workPlace = getItem(position);
+        if(workPlace == null)
+            holder.clear(bitMapManager);
+        else
+            holder.bind(workPlace, favouriteButtonEnabled, bitMapManager);
+    }
+
+    /**
+     * Rebinds only the parts of the card described by the payloads, or the whole card when
+     * there are none
+     * @param holder   The ViewHolder which should be updated
+     * @param position The position of the item within the adapter's data set
+     * @param payloads The payloads of the partial changes, empty for a full bind
+     */
+    @Override
+    public void onBindViewHolder(@NonNull WorkPlaceAdapter.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        WorkPlace workPlace = getItem(position);
+        if(payloads.isEmpty() || workPlace == null) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        if(payloads.contains(WorkPlaceAdapter.PAYLOAD_FAVOURITE))
+            holder.bindFavouriteButton(workPlace, favouriteButtonEnabled);
+        if(payloads.contains(WorkPlaceAdapter.PAYLOAD_PHOTO))
+            holder.bindPhoto(workPlace, bitMapManager);
+    }
+
+    /**
+     * Cancels the pending photo request of a recycled card, so that its bitmap can be reused
+     * @param holder The ViewHolder for the view being recycled
+     */
+    @Override
+    public void onViewRecycled(@NonNull WorkPlaceAdapter.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        bitMapManager.clearWorkPlacePhoto(holder.getImageViewWorkPlace());
+    }
+
+    /**
+     * Returns the WorkPlace displayed at a given position, without loading its page
+     * @param position The position of the item within the adapter's data set
+     * @return the WorkPlace at the given position, or null for a placeholder
+     */
+    @Nullable
+    @Override
+    public WorkPlace getWorkPlace(int position) {
+        return peek(position);
+    }
+
+    /**
+     * Shows or hides the favourite button of every card, rebinding only the button
+     * @param favouriteButtonEnabled If the favourite button should be showed or not
+     */
+    @Override
+    public void setFavouriteButtonEnabled(boolean favouriteButtonEnabled) {
+        if(this.favouriteButtonEnabled == favouriteButtonEnabled)
+            return;
+        this.favouriteButtonEnabled = favouriteButtonEnabled;
+        notifyItemRangeChanged(0, getItemCount(), WorkPlaceAdapter.PAYLOAD_FAVOURITE);
+    }
+}
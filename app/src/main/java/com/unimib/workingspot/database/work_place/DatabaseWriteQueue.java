@@ -0,0 +1,142 @@
+package com.unimib.workingspot.database.work_place;
+
+import androidx.room.RoomDatabase;
+
+import com.unimib.workingspot.util.executor.ExecutorMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Serial queue for the writes to a Room database.
+ * SQLite lets a single connection write at a time, so the writes run one after the other on a
+ * single thread instead of contending for the lock. The writes queued while another batch is
+ * running are committed together in one transaction, which also notifies the observers of the
+ * written tables once.
+ * If a batch fails, its writes are run again one by one, so that a failing write does not make
+ * the others fail.
+ */
+public class DatabaseWriteQueue {
+
+    private final RoomDatabase database;
+    private final int maxBatchSize;
+    private final ExecutorMetrics metrics;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final ConcurrentLinkedQueue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A queued write, with the callbacks to notify once it is committed or has failed
+     */
+    private static class PendingWrite {
+        final Runnable write;
+        final Runnable onCommitted;
+        final Consumer<Exception> onFailure;
+        final long queuedAt;
+
+        PendingWrite(Runnable write, Runnable onCommitted, Consumer<Exception> onFailure) {
+            this.write = write;
+            this.onCommitted = onCommitted;
+            this.onFailure = onFailure;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Constructor for the DatabaseWriteQueue class
+     * @param database The database the writes are run on
+     * @param maxBatchSize The maximum number of writes committed in a single transaction
+     * @param metrics The metrics in which the writes are recorded
+     */
+    public DatabaseWriteQueue(RoomDatabase database, int maxBatchSize, ExecutorMetrics metrics) {
+        this.database = database;
+        this.maxBatchSize = maxBatchSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues a write. The callbacks are called on the writer thread, after the transaction that
+     * contains the write has been committed or rolled back
+     * @param write The write to run, which must throw to make its transaction fail
+     * @param onCommitted Called once the write has been committed
+     * @param onFailure Called with the error if the write failed
+     */
+    public void enqueue(Runnable write, Runnable onCommitted, Consumer<Exception> onFailure) {
+        pendingWrites.add(new PendingWrite(write, onCommitted, onFailure));
+        metrics.onQueued();
+        writer.execute(this::runBatch);
+    }
+
+    /**
+     * Runs the writes queued so far in one transaction. A batch may find the queue empty, when
+     * its writes have already been committed by the previous one
+     */
+    private void runBatch() {
+        List<PendingWrite> batch = new ArrayList<>();
+        PendingWrite pendingWrite;
+        while (batch.size() < maxBatchSize && (pendingWrite = pendingWrites.poll()) != null) {
+            metrics.onDequeued();
+            batch.add(pendingWrite);
+        }
+        if (batch.isEmpty())
+            return;
+
+        long startedAt = System.nanoTime();
+        try {
+            database.runInTransaction(() -> {
+                for (PendingWrite write : batch)
+                    write.write.run();
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                complete(batch.get(0), startedAt, e);
+            } else {
+                // Finds out which writes failed, each in its own transaction
+                for (PendingWrite write : batch)
+                    runAlone(write);
+            }
+            return;
+        }
+        for (PendingWrite write : batch)
+            complete(write, startedAt, null);
+    }
+
+    /**
+     * Runs a single write in its own transaction
+     * @param pendingWrite The write to run
+     */
+    private void runAlone(PendingWrite pendingWrite) {
+        long startedAt = System.nanoTime();
+        try {
+            database.runInTransaction(pendingWrite.write);
+        } catch (RuntimeException e) {
+            complete(pendingWrite, startedAt, e);
+            return;
+        }
+        complete(pendingWrite, startedAt, null);
+    }
+
+    /**
+     * Records the latencies of a write and notifies its callbacks
+     * @param pendingWrite The completed write
+     * @param startedAt The time its transaction started, as given by {@link System#nanoTime()}
+     * @param exception The error that made the write fail, or null if it was committed
+     */
+    private void complete(PendingWrite pendingWrite, long startedAt, Exception exception) {
+        metrics.onCompleted(startedAt - pendingWrite.queuedAt, System.nanoTime() - startedAt);
+        if (exception == null)
+            pendingWrite.onCommitted.run();
+        else
+            pendingWrite.onFailure.accept(exception);
+    }
+
+    /**
+     * @return The metrics of the writes run by this queue
+     */
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,114 @@
+package com.unimib.workingspot.database.work_place;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.unimib.workingspot.model.PendingSavedChange;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the outbox of the {@link PendingSavedChange changes of the saved
+ * workplaces} not yet written to the remote database. The saved state of the
+ * {@link com.unimib.workingspot.model.WorkPlace WorkPlace} table already reflects the pending
+ * changes, which are only kept to be replayed.
+ */
+@Dao
+public interface PendingSavedChangeDAO {
+
+    /**
+     * Retrieves the pending changes of a user, in the order they were made.
+     * @param uid The unique identifier of the user.
+     * @return The pending changes of the user.
+     */
+    @Query("SELECT * FROM PendingSavedChange WHERE uid = :uid ORDER BY changedAt")
+    List<PendingSavedChange> getAll(String uid);
+
+    /**
+     * Retrieves the pending change of a work place made by a user.
+     * @param uid The unique identifier of the user.
+     * @param firebaseKey The Firebase key of the work place.
+     * @return The pending change, or null if there is none.
+     */
+    @Query("SELECT * FROM PendingSavedChange WHERE uid = :uid AND firebaseKey = :firebaseKey")
+    PendingSavedChange get(String uid, String firebaseKey);
+
+    /**
+     * Inserts a pending change, replacing the previous change of the same work place and user.
+     * @param change The pending change.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(PendingSavedChange change);
+
+    /**
+     * Deletes a pending change.
+     * @param change The pending change.
+     */
+    @Delete
+    void delete(PendingSavedChange change);
+
+    /**
+     * Deletes the pending changes of a user.
+     * @param uid The unique identifier of the user.
+     */
+    @Query("DELETE FROM PendingSavedChange WHERE uid = :uid")
+    void deleteAll(String uid);
+
+    /**
+     * Applies the pending changes of a user on top of the saved state of the work places, after
+     * it has been reconciled with the keys saved remotely, which do not contain them yet.
+     * The score of the work places is cleared, to be computed again with their new state.
+     * @param uid The unique identifier of the user.
+     */
+    @Query("UPDATE WorkPlace SET saved = (SELECT p.saved FROM PendingSavedChange p " +
+            "WHERE p.uid = :uid AND p.firebaseKey = WorkPlace.firebaseKey), score = NULL " +
+            "WHERE firebaseKey IN (SELECT firebaseKey FROM PendingSavedChange WHERE uid = :uid)")
+    void applyPendingChanges(String uid);
+
+    /**
+     * Records a change of the saved state of a work place, collapsing it with the pending change
+     * of the same work place: the latest state replaces the previous one, and a work place toggled
+     * back to its remote state has nothing left to write.
+     * @param change The change made by the user.
+     */
+    @Transaction
+    default void queue(PendingSavedChange change) {
+        PendingSavedChange pending = get(change.getUid(), change.getFirebaseKey());
+        // Without a pending change, the user toggled the remote state
+        boolean syncedSaved = pending != null ? pending.isSyncedSaved() : !change.isSaved();
+        if (change.isSaved() == syncedSaved) {
+            if (pending != null)
+                delete(pending);
+        } else {
+            change.setSyncedSaved(syncedSaved);
+            insert(change);
+        }
+    }
+
+    /**
+     * Removes the changes written to the remote database. The changes made while they were being
+     * written are kept, with the written state as their remote state; a change dropped because
+     * it was toggled back in the meantime is recorded again, since the remote state it went back
+     * to has just been overwritten.
+     * @param writtenChanges The changes written to the remote database.
+     */
+    @Transaction
+    default void complete(List<PendingSavedChange> writtenChanges) {
+        for (PendingSavedChange written : writtenChanges) {
+            PendingSavedChange pending = get(written.getUid(), written.getFirebaseKey());
+            if (pending == null) {
+                insert(new PendingSavedChange(written.getFirebaseKey(), written.getUid(),
+                        !written.isSaved(), written.isSaved(), written.getChangedAt()));
+            } else if (pending.isSaved() == written.isSaved()) {
+                delete(pending);
+            } else {
+                pending.setSyncedSaved(written.isSaved());
+                insert(pending);
+            }
+        }
+    }
+}
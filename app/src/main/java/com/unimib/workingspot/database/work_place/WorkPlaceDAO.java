@@ -1,34 +1,202 @@
 package com.unimib.workingspot.database.work_place;
 
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_DATABASE_MAX_BOUND_KEYS;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.RoomWarnings;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import com.unimib.workingspot.model.CatalogueVersion;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.util.spatial.GeoArea;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 /**
  * Data Access Object (DAO) for accessing {@link WorkPlace} data from the Room database.
+ * The list queries only read the summary columns: the Base64 photo, which is by far the largest
+ * column, is left null and is read separately with {@link #getPhoto(String)} when it is shown.
+ * The observable queries return a {@link LiveData} that Room refreshes whenever the table is
+ * written, so the callers do not need to read the table again after a write.
  */
 @Dao
 public interface WorkPlaceDAO {
 
     /**
-     * Retrieves all work places from the database.
-     * @return A list of all {@link WorkPlace} entries.
+     * The columns read by the list queries, every column except the Base64 photo
+     */
+    String SUMMARY_COLUMNS = "firebaseKey, name, address, latitude, longitude, outside, saved, blurHash, contentHash, " +
+            "unitX, unitY, unitZ";
+
+    /**
+     * The condition of the search queries: the work place is in the full-text index results
+     */
+    String SEARCH_CONDITION = "rowid IN (SELECT docid FROM WorkPlaceFts WHERE WorkPlaceFts MATCH :match)";
+
+    /**
+     * The ranking of the search queries
+     */
+    String SEARCH_ORDER = "CASE WHEN name LIKE :namePrefix ESCAPE '\\' THEN 0 " +
+            "WHEN rowid IN (SELECT docid FROM WorkPlaceFts WHERE WorkPlaceFts MATCH :nameMatch) THEN 1 " +
+            "ELSE 2 END, name COLLATE NOCASE, firebaseKey";
+
+    /**
+     * Observes all work places in the database, without their photos.
+     * @return A {@link LiveData} holding all {@link WorkPlace} entries, with a null Base64 photo.
+     */
+    @SuppressWarnings(RoomWarnings.QUERY_MISMATCH)
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM WorkPlace")
+    LiveData<List<WorkPlace>> observeAllSummaries();
+
+    /**
+     * Observes a single work place, without its photo.
+     * @param firebaseKey The Firebase key of the work place.
+     * @return A {@link LiveData} holding the {@link WorkPlace}, or null if it is not stored.
+     */
+    @SuppressWarnings(RoomWarnings.QUERY_MISMATCH)
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM WorkPlace WHERE firebaseKey = :firebaseKey")
+    LiveData<WorkPlace> observeWorkPlace(String firebaseKey);
+
+    /**
+     * Retrieves the Base64 photo of a single work place.
+     * @param firebaseKey The Firebase key of the work place.
+     * @return The Base64 encoding of the photo, or null if the work place has no photo.
+     */
+    @Query("SELECT b64PhotoEncoding FROM WorkPlace WHERE firebaseKey = :firebaseKey")
+    String getPhoto(String firebaseKey);
+
+    /**
+     * Retrieves a page of work places in the order of their stored score.
+     * @param query The keyset query built by {@link com.unimib.workingspot.database.work_place.ranking.RankedWorkPlacePagingSource},
+     *              which reads the summary columns and the score.
+     * @return The {@link WorkPlace} entries of the page.
      */
-    @Query("SELECT * FROM WorkPlace")
-    List<WorkPlace> getAll();
+    @RawQuery
+    List<WorkPlace> getRankedPage(SupportSQLiteQuery query);
 
     /**
-     * Retrieves all saved work places from the database.
+     * Counts the work places on one side of a position of the ranked list.
+     * @param query The count query built by {@link com.unimib.workingspot.database.work_place.ranking.RankedWorkPlacePagingSource}.
+     * @return The number of work places.
+     */
+    @RawQuery
+    int countRanked(SupportSQLiteQuery query);
+
+    /**
+     * Retrieves the stored score of a single work place.
+     * @param firebaseKey The Firebase key of the work place.
+     * @return The score, or null if the work place is not stored or has no score yet.
+     */
+    @Query("SELECT score FROM WorkPlace WHERE firebaseKey = :firebaseKey")
+    Double getScore(String firebaseKey);
+
+    /**
+     * Searches the work places by name and address, page by page, ranking first the ones whose
+     * name starts with the typed text, then the ones whose name contains the typed words,
+     * then the ones matched by their address only.
+     * The arguments are built by {@link WorkPlaceFtsQuery}.
+     * @param match The FTS expression over the name and the address.
+     * @param nameMatch The FTS expression over the name only.
+     * @param namePrefix The LIKE pattern of the names starting with the typed text.
+     * @param includeOutside Whether outdoor work places should be included.
+     * @return A {@link PagingSource} loading the matching {@link WorkPlace} entries a page at a time.
+     */
+    @SuppressWarnings(RoomWarnings.QUERY_MISMATCH)
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM WorkPlace WHERE " + SEARCH_CONDITION +
+            " AND (:includeOutside OR outside = 0) ORDER BY " + SEARCH_ORDER)
+    PagingSource<Integer, WorkPlace> searchPaged(String match, String nameMatch, String namePrefix,
+                                                 boolean includeOutside);
+
+    /**
+     * Observes the saved work places whose name or address match the typed text, ranked as in
+     * {@link #searchPaged(String, String, String, boolean)}.
+     * @param match The FTS expression over the name and the address.
+     * @param nameMatch The FTS expression over the name only.
+     * @param namePrefix The LIKE pattern of the names starting with the typed text.
+     * @return A {@link LiveData} holding the matching saved {@link WorkPlace} entries.
+     */
+    @SuppressWarnings(RoomWarnings.QUERY_MISMATCH)
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM WorkPlace WHERE " + SEARCH_CONDITION +
+            " AND saved = 1 ORDER BY " + SEARCH_ORDER)
+    LiveData<List<WorkPlace>> searchSavedWorkPlaces(String match, String nameMatch, String namePrefix);
+
+    /**
+     * Observes the saved work places in the database, without their photos.
      * A saved workplace is defined by the field {@code saved = 1}.
-     * @return A list of saved {@link WorkPlace} entries.
+     * @return A {@link LiveData} holding the saved {@link WorkPlace} entries, with a null Base64 photo.
+     */
+    @SuppressWarnings(RoomWarnings.QUERY_MISMATCH)
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM WorkPlace WHERE saved = 1")
+    LiveData<List<WorkPlace>> observeSavedWorkPlaces();
+
+
+    /**
+     * Sets the saved state of a single work place, without rewriting the other columns.
+     * Its score is cleared, to be computed again with the new state.
+     * @param firebaseKey The Firebase key of the work place.
+     * @param saved The new saved state.
+     */
+    @Query("UPDATE WorkPlace SET saved = :saved, score = NULL WHERE firebaseKey = :firebaseKey")
+    void setSaved(String firebaseKey, boolean saved);
+
+    /**
+     * Retrieves the keys of the saved work places.
+     * @return The Firebase keys of the work places with {@code saved = 1}.
      */
-    @Query("SELECT * FROM WorkPlace WHERE saved = 1")
-    List<WorkPlace> getSavedWorkPlaces();
+    @Query("SELECT firebaseKey FROM WorkPlace WHERE saved = 1")
+    List<String> getSavedKeys();
+
+    /**
+     * Sets the saved state of the work places with the given keys, clearing their score.
+     * @param firebaseKeys The Firebase keys of the work places.
+     * @param saved The new saved state.
+     */
+    @Query("UPDATE WorkPlace SET saved = :saved, score = NULL WHERE firebaseKey IN (:firebaseKeys)")
+    void setSavedByKeys(List<String> firebaseKeys, boolean saved);
+
+    /**
+     * Reconciles the saved state of every work place with the keys saved by the user:
+     * the listed work places are marked as saved, all the others as not saved.
+     * Only the rows whose state changes are written, so the full-text index is not rebuilt,
+     * and the keys are bound in chunks, below the limit of variables of a statement.
+     * @param savedKeys The Firebase keys of the saved work places.
+     */
+    @Transaction
+    default void setSavedKeys(List<String> savedKeys) {
+        Set<String> keysToSave = new HashSet<>(savedKeys);
+        List<String> keysToUnsave = new ArrayList<>();
+        for (String savedKey : getSavedKeys()) {
+            // The keys already saved are left as they are
+            if (!keysToSave.remove(savedKey))
+                keysToUnsave.add(savedKey);
+        }
+        setSavedInChunks(keysToUnsave, false);
+        setSavedInChunks(new ArrayList<>(keysToSave), true);
+    }
+
+    /**
+     * Sets the saved state of the work places with the given keys, a chunk of keys at a time.
+     * @param firebaseKeys The Firebase keys of the work places.
+     * @param saved The new saved state.
+     */
+    default void setSavedInChunks(List<String> firebaseKeys, boolean saved) {
+        for (int i = 0; i < firebaseKeys.size(); i += WORKPLACE_DATABASE_MAX_BOUND_KEYS)
+            setSavedByKeys(firebaseKeys.subList(i,
+                    Math.min(i + WORKPLACE_DATABASE_MAX_BOUND_KEYS, firebaseKeys.size())), saved);
+    }
 
     /**
      * Inserts one or more work places into the database.
@@ -47,16 +215,151 @@ public interface WorkPlaceDAO {
     void insertAll(List<WorkPlace> workPlaceList);
 
     /**
-     * Updates an existing work place in the database.
-     * @param workPlace The {@link WorkPlace} object to update.
+     * Updates existing work places in the database.
+     * @param workPlaceList A list of {@link WorkPlace} objects to update.
      */
     @Update
-    void updateWorkPlace(WorkPlace workPlace);
+    void updateAll(List<WorkPlace> workPlaceList);
+
+    /**
+     * Retrieves the key, the content hash, the saved state and the position of every stored work place.
+     * @return The sync state of all {@link WorkPlace} entries.
+     */
+    @Query("SELECT firebaseKey, contentHash, saved, latitude, longitude FROM WorkPlace")
+    List<WorkPlaceSyncState> getSyncStates();
+
+    /**
+     * Retrieves the sync state of the stored work places with the given keys.
+     * @param firebaseKeys The Firebase keys of the work places.
+     * @return The sync state of the stored {@link WorkPlace} entries among the given ones.
+     */
+    @Query("SELECT firebaseKey, contentHash, saved, latitude, longitude FROM WorkPlace " +
+            "WHERE firebaseKey IN (:firebaseKeys)")
+    List<WorkPlaceSyncState> getSyncStates(List<String> firebaseKeys);
+
+    /**
+     * Deletes the work places with the given keys.
+     * @param firebaseKeys The Firebase keys of the work places to delete.
+     */
+    @Query("DELETE FROM WorkPlace WHERE firebaseKey IN (:firebaseKeys)")
+    void deleteByKeys(List<String> firebaseKeys);
+
+    /**
+     * Retrieves the version of the stored work places.
+     * @return The {@link CatalogueVersion}, or null if the work places were never read in full.
+     */
+    @Query("SELECT * FROM CatalogueVersion LIMIT 1")
+    CatalogueVersion getCatalogueVersion();
+
+    /**
+     * Stores the version of the stored work places, replacing the previous one.
+     * @param catalogueVersion The {@link CatalogueVersion} of the synced work places.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void setCatalogueVersion(CatalogueVersion catalogueVersion);
+
+    /**
+     * Replaces the stored work places with the ones fetched from the remote database, writing
+     * only the rows that changed: new work places are inserted, the ones whose content hash
+     * differs are updated keeping their saved state, and the ones no longer in the remote
+     * database are deleted. The whole operation is a single transaction, so the observers are
+     * notified once, and not at all if nothing changed.
+     * @param workPlaceList The work places fetched from the remote database.
+     */
+    default void syncWorkPlaces(List<WorkPlace> workPlaceList) {
+        syncWorkPlacesIn(workPlaceList, null);
+    }
+
+    /**
+     * Replaces the stored work places of an area with the ones fetched from the remote database,
+     * like {@link #syncWorkPlaces(List)}, except that only the stored work places inside the
+     * area are deleted when they are missing from the fetched ones.
+     * @param workPlaceList The work places fetched from the remote database, all inside the area.
+     * @param area The area the work places were fetched from, or null for the whole database.
+     */
+    @Transaction
+    default void syncWorkPlacesIn(List<WorkPlace> workPlaceList, @Nullable GeoArea area) {
+        Map<String, WorkPlaceSyncState> storedStates = new HashMap<>();
+        for (WorkPlaceSyncState state : getSyncStates())
+            storedStates.put(state.firebaseKey, state);
+        writeChangedWorkPlaces(workPlaceList, storedStates);
+
+        // The stored work places left in the area are no longer in the remote database
+        List<String> removedKeys = new ArrayList<>();
+        for (WorkPlaceSyncState state : storedStates.values())
+            if (area == null || area.contains(state.latitude, state.longitude))
+                removedKeys.add(state.firebaseKey);
+        for (int i = 0; i < removedKeys.size(); i += WORKPLACE_DATABASE_MAX_BOUND_KEYS)
+            deleteByKeys(removedKeys.subList(i,
+                    Math.min(i + WORKPLACE_DATABASE_MAX_BOUND_KEYS, removedKeys.size())));
+    }
+
+    /**
+     * Writes the work places changed in the remote database since a previous sync, inserting
+     * the new ones and updating the ones whose content hash differs. Unlike
+     * {@link #syncWorkPlaces(List)}, no stored work place is deleted, and only the sync state of
+     * the given work places is read.
+     * @param workPlaceList The work places changed in the remote database.
+     */
+    @Transaction
+    default void updateWorkPlaces(List<WorkPlace> workPlaceList) {
+        List<String> keys = new ArrayList<>(workPlaceList.size());
+        for (WorkPlace workPlace : workPlaceList)
+            keys.add(workPlace.getFirebaseKey());
+        Map<String, WorkPlaceSyncState> storedStates = new HashMap<>();
+        for (int i = 0; i < keys.size(); i += WORKPLACE_DATABASE_MAX_BOUND_KEYS)
+            for (WorkPlaceSyncState state : getSyncStates(keys.subList(i,
+                    Math.min(i + WORKPLACE_DATABASE_MAX_BOUND_KEYS, keys.size()))))
+                storedStates.put(state.firebaseKey, state);
+        writeChangedWorkPlaces(workPlaceList, storedStates);
+    }
+
+    /**
+     * Applies the changes of single work places received from the remote database: the changed
+     * ones are written like {@link #updateWorkPlaces(List)}, the removed ones are deleted.
+     * @param changedWorkPlaces The work places added or changed in the remote database.
+     * @param removedKeys The Firebase keys of the work places removed from the remote database.
+     */
+    @Transaction
+    default void applyWorkPlaceChanges(List<WorkPlace> changedWorkPlaces, List<String> removedKeys) {
+        if (!changedWorkPlaces.isEmpty())
+            updateWorkPlaces(changedWorkPlaces);
+        for (int i = 0; i < removedKeys.size(); i += WORKPLACE_DATABASE_MAX_BOUND_KEYS)
+            deleteByKeys(removedKeys.subList(i,
+                    Math.min(i + WORKPLACE_DATABASE_MAX_BOUND_KEYS, removedKeys.size())));
+    }
 
     /**
-     * Deletes all entries from the {@link WorkPlace} table.
+     * Inserts the fetched work places that are not stored and updates the ones whose content
+     * hash differs, keeping their saved state. The written rows are left without a score, which
+     * is computed for the current ranking before the transaction is committed, see
+     * {@link com.unimib.workingspot.database.work_place.ranking.WorkPlaceRanking}.
+     * The sync state of every fetched work place is
+     * removed from the given map, so that the states left belong to the stored work places
+     * missing from the fetched ones.
+     * @param workPlaceList The work places fetched from the remote database.
+     * @param storedStates The sync states of the stored work places, by key.
      */
-    @Query("DELETE from WorkPlace")
-    void deleteEverything();
+    default void writeChangedWorkPlaces(List<WorkPlace> workPlaceList,
+                                        Map<String, WorkPlaceSyncState> storedStates) {
+        List<WorkPlace> insertedWorkPlaces = new ArrayList<>();
+        List<WorkPlace> updatedWorkPlaces = new ArrayList<>();
+        for (WorkPlace workPlace : workPlaceList) {
+            workPlace.setContentHash(workPlace.computeContentHash());
+            workPlace.updateUnitVector();
+            workPlace.setScore(null);
+            WorkPlaceSyncState storedState = storedStates.remove(workPlace.getFirebaseKey());
+            if (storedState == null) {
+                insertedWorkPlaces.add(workPlace);
+            } else if (storedState.contentHash != workPlace.getContentHash()) {
+                workPlace.setSaved(storedState.saved);
+                updatedWorkPlaces.add(workPlace);
+            }
+        }
+        if (!insertedWorkPlaces.isEmpty())
+            insertAll(insertedWorkPlaces);
+        if (!updatedWorkPlaces.isEmpty())
+            updateAll(updatedWorkPlaces);
+    }
 
 }
@@ -0,0 +1,73 @@
+package com.unimib.workingspot.database.work_place;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Builds the arguments of the full-text search queries of {@link WorkPlaceDAO} from the text
+ * typed by the user. The text is split into words, and every word matches as a prefix, so the
+ * results are updated while the user is still typing a word. The words only contain letters and
+ * digits, so the typed text can never be read as FTS syntax.
+ */
+public final class WorkPlaceFtsQuery {
+
+    private final String match;
+    private final String nameMatch;
+    private final String namePrefix;
+
+    /**
+     * Private constructor, use {@link #parse(String)} to create a query
+     */
+    private WorkPlaceFtsQuery(String match, String nameMatch, String namePrefix) {
+        this.match = match;
+        this.nameMatch = nameMatch;
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * Parses the text typed by the user
+     * @param text The typed text
+     * @return The query, or null if the text contains no word to search
+     */
+    @Nullable
+    public static WorkPlaceFtsQuery parse(@Nullable String text) {
+        if (text == null)
+            return null;
+        StringBuilder match = new StringBuilder();
+        StringBuilder nameMatch = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            if (match.length() > 0) {
+                match.append(' ');
+                nameMatch.append(' ');
+            }
+            match.append(word).append('*');
+            nameMatch.append("name:").append(word).append('*');
+        }
+        if (match.length() == 0)
+            return null;
+        String namePrefix = text.trim()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        return new WorkPlaceFtsQuery(match.toString(), nameMatch.toString(), namePrefix);
+    }
+
+    /**
+     * @return The FTS expression matching the workplaces whose name or address contains a word
+     * starting with every typed word
+     */
+    public String getMatch() { return match; }
+
+    /**
+     * @return The FTS expression matching the workplaces whose name alone contains every typed word
+     */
+    public String getNameMatch() { return nameMatch; }
+
+    /**
+     * @return The LIKE pattern matching the workplaces whose name starts with the typed text
+     */
+    public String getNamePrefix() { return namePrefix; }
+}
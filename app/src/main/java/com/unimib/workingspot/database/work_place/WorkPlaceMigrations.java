@@ -0,0 +1,145 @@
+package com.unimib.workingspot.database.work_place;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+/**
+ * Migrations of the {@link WorkPlaceRoomDatabase} schema. Each version only adds columns or indexes to the
+ * workplace table, so the stored workplaces, their photos and their saved state are kept
+ * across app updates instead of being downloaded again.
+ * The exported schema of every version is stored in the schemas directory of the app module.
+ */
+public final class WorkPlaceMigrations {
+
+    /**
+     * Private constructor, this class only holds the migrations
+     */
+    private WorkPlaceMigrations() {}
+
+    /**
+     * Version 11 adds the BlurHash of the workplace photo
+     */
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE WorkPlace ADD COLUMN blurHash TEXT");
+        }
+    };
+
+    /**
+     * Version 12 adds the content hash used by the sync. The existing rows get a hash of 0,
+     * so the next sync rewrites them once with their computed hash
+     */
+    public static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE WorkPlace ADD COLUMN contentHash INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Version 13 adds the full-text index of the workplace names and addresses, with the
+     * triggers Room uses to keep it in sync, and fills it with the stored workplaces
+     */
+    public static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `WorkPlaceFts` USING FTS4(" +
+                    "`name` TEXT, `address` TEXT, tokenize=unicode61, content=`WorkPlace`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_WorkPlaceFts_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON `WorkPlace` BEGIN DELETE FROM `WorkPlaceFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_WorkPlaceFts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `WorkPlace` BEGIN DELETE FROM `WorkPlaceFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_WorkPlaceFts_AFTER_UPDATE " +
+                    "AFTER UPDATE ON `WorkPlace` BEGIN INSERT INTO `WorkPlaceFts`(`docid`, `name`, `address`) " +
+                    "VALUES (NEW.`rowid`, NEW.`name`, NEW.`address`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_WorkPlaceFts_AFTER_INSERT " +
+                    "AFTER INSERT ON `WorkPlace` BEGIN INSERT INTO `WorkPlaceFts`(`docid`, `name`, `address`) " +
+                    "VALUES (NEW.`rowid`, NEW.`name`, NEW.`address`); END");
+            database.execSQL("INSERT INTO `WorkPlaceFts`(`WorkPlaceFts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Version 14 adds the unit vector of the workplace position used to rank by distance.
+     * SQLite has no trigonometric functions on Android, so the vectors of the stored workplaces
+     * are computed here, one prepared update per row
+     */
+    public static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE WorkPlace ADD COLUMN unitX REAL NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE WorkPlace ADD COLUMN unitY REAL NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE WorkPlace ADD COLUMN unitZ REAL NOT NULL DEFAULT 0");
+
+            SupportSQLiteStatement update = database.compileStatement(
+                    "UPDATE WorkPlace SET unitX = ?, unitY = ?, unitZ = ? WHERE rowid = ?");
+            try (Cursor cursor = database.query("SELECT rowid, latitude, longitude FROM WorkPlace")) {
+                while (cursor.moveToNext()) {
+                    double[] unitVector = WorkPlace.unitVector(cursor.getDouble(1), cursor.getDouble(2));
+                    update.bindDouble(1, unitVector[0]);
+                    update.bindDouble(2, unitVector[1]);
+                    update.bindDouble(3, unitVector[2]);
+                    update.bindLong(4, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            }
+        }
+    };
+
+    /**
+     * Version 15 adds the outbox of the changes of the saved workplaces made while offline
+     */
+    public static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `PendingSavedChange` (`firebaseKey` TEXT NOT NULL, " +
+                    "`uid` TEXT NOT NULL, `saved` INTEGER NOT NULL, `syncedSaved` INTEGER NOT NULL, " +
+                    "`changedAt` INTEGER NOT NULL, PRIMARY KEY(`uid`, `firebaseKey`))");
+        }
+    };
+
+    /**
+     * Version 16 adds the version of the stored catalogue, from which the first fetch resumes
+     */
+    public static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `CatalogueVersion` (`id` INTEGER NOT NULL, " +
+                    "`updatedAt` INTEGER NOT NULL, `fetchedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+        }
+    };
+
+    /**
+     * Version 17 adds the ranking score of the workplaces, with the index the ranked list is
+     * paged by. The stored rows are left without a score, which the local data source computes
+     * once the database is open
+     */
+    public static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE WorkPlace ADD COLUMN score REAL");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_WorkPlace_score_firebaseKey` " +
+                    "ON `WorkPlace` (`score`, `firebaseKey`)");
+        }
+    };
+
+    /**
+     * All the migrations, in order of version
+     */
+    public static final Migration[] ALL = {
+            MIGRATION_10_11,
+            MIGRATION_11_12,
+            MIGRATION_12_13,
+            MIGRATION_13_14,
+            MIGRATION_14_15,
+            MIGRATION_15_16,
+            MIGRATION_16_17
+    };
+}
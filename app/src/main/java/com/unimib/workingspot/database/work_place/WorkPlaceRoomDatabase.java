@@ -2,17 +2,26 @@ package com.unimib.workingspot.database.work_place;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceFts;
 import com.unimib.workingspot.util.constants.WorkPlacesConstants;
+import com.unimib.workingspot.util.executor.ExecutorMetrics;
+import com.unimib.workingspot.util.executor.MeteredExecutor;
 
-import java.util.concurrent.ExecutorService;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.Executors;
 
-@Database(entities = {WorkPlace.class}, version = WorkPlacesConstants.WORKPLACE_DATABASE_VERSION)
+@Database(entities = {WorkPlace.class, WorkPlaceFts.class, PendingSavedChange.class, CatalogueVersion.class}, version = WorkPlacesConstants.WORKPLACE_DATABASE_VERSION,
+        exportSchema = true)
 public abstract class WorkPlaceRoomDatabase extends RoomDatabase {
 
     /**
@@ -23,20 +32,43 @@ public abstract class WorkPlaceRoomDatabase extends RoomDatabase {
      */
     public abstract WorkPlaceDAO workPlaceDAO();
 
+    /**
+     * Abstract method to retrieve the DAO for the changes of the saved workplaces not yet
+     * written to the remote database.
+     *
+     * @return The PendingSavedChangeDAO instance for database operations.
+     */
+    public abstract PendingSavedChangeDAO pendingSavedChangeDAO();
+
     private static volatile WorkPlaceRoomDatabase INSTANCE;
 
     /**
-     * ExecutorService for background database operations.
-     * It uses a fixed thread pool based on the number of available processors in the system.
-     * This ensures that database operations are performed asynchronously and do not block
-     * the main thread.
+     * Queue of the writes to the database, run one after the other on a single thread.
+     * Created together with the database instance.
+     */
+    private static DatabaseWriteQueue writeQueue;
+
+    /**
+     * Executor for the queries run by Room: observable queries and paging sources.
+     * The database is opened in write-ahead logging mode, so these reads run in parallel with
+     * each other and with the writes; the pool is bounded because SQLite keeps a limited
+     * number of read connections.
      */
-    public static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private static final MeteredExecutor databaseReadExecutor = new MeteredExecutor(
+            Executors.newFixedThreadPool(Math.min(WorkPlacesConstants.WORKPLACE_DATABASE_READ_THREADS,
+                    Runtime.getRuntime().availableProcessors())),
+            new ExecutorMetrics("WorkPlace database reads",
+                    WorkPlacesConstants.WORKPLACE_DATABASE_METRICS_LOG_INTERVAL));
 
     /**
      * Returns the singleton instance of the database.
      * This method ensures that the database instance is created only once and is thread-safe.
+     * The schema is upgraded with {@link WorkPlaceMigrations}; only the databases older than the
+     * first migrated version, or newer than the app, are recreated empty.
+     * On the first launch, the database is seeded with the catalogue snapshot packaged in the
+     * assets, if any, so that the workplaces are shown before the first sync completes. No
+     * snapshot is packaged by default: it is generated from a synced debug build, see
+     * {@link WorkPlacesConstants#WORKPLACES_DB_SNAPSHOT_ASSET}.
      *
      * @param context The application context used to build the database.
      * @return The singleton instance of the WorkPlaceRoomDatabase.
@@ -45,14 +77,73 @@ public abstract class WorkPlaceRoomDatabase extends RoomDatabase {
         if (INSTANCE == null) {
             synchronized (WorkPlaceRoomDatabase.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    WorkPlaceRoomDatabase.class, WorkPlacesConstants.WORKPLACES_DB_NAME)
-                            .fallbackToDestructiveMigration(true)
+                    Builder<WorkPlaceRoomDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
+                            WorkPlaceRoomDatabase.class, WorkPlacesConstants.WORKPLACES_DB_NAME);
+                    if (hasSnapshot(context))
+                        builder.createFromAsset(WorkPlacesConstants.WORKPLACES_DB_SNAPSHOT_ASSET, snapshotCallback);
+                    INSTANCE = builder
+                            .addMigrations(WorkPlaceMigrations.ALL)
+                            .fallbackToDestructiveMigrationFrom(true, 1, 2, 3, 4, 5, 6, 7, 8, 9)
+                            .fallbackToDestructiveMigrationOnDowngrade(true)
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .setQueryExecutor(databaseReadExecutor)
                             .build();
+                    writeQueue = new DatabaseWriteQueue(INSTANCE,
+                            WorkPlacesConstants.WORKPLACE_DATABASE_MAX_WRITE_BATCH,
+                            new ExecutorMetrics("WorkPlace database writes",
+                                    WorkPlacesConstants.WORKPLACE_DATABASE_METRICS_LOG_INTERVAL));
                 }
             }
         }
         return INSTANCE;
     }
 
+    /**
+     * Checks whether a catalogue snapshot is packaged in the assets of the app.
+     *
+     * @param context The context used to access the assets.
+     * @return true if the snapshot is available, false otherwise.
+     */
+    private static boolean hasSnapshot(Context context) {
+        try (InputStream ignored = context.getAssets().open(WorkPlacesConstants.WORKPLACES_DB_SNAPSHOT_ASSET)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Prepares the snapshot copied from the assets before it is used. The snapshot is a copy of
+     * a synced database, so the saved state of the workplaces is cleared: the saved workplaces
+     * of the user are marked once they are fetched. The content hashes of the snapshot are
+     * kept, so the first sync only writes the workplaces changed since it was taken.
+     * The {@link CatalogueVersion} of the snapshot is kept as well, with the time the snapshot
+     * was exported: while it is recent, the first fetch only reads the workplaces changed after
+     * the snapshot, otherwise it reads all of them and removes the ones deleted since.
+     */
+    private static final PrepackagedDatabaseCallback snapshotCallback = new PrepackagedDatabaseCallback() {
+        @Override
+        public void onOpenPrepackagedDatabase(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE WorkPlace SET saved = 0");
+        }
+    };
+
+    /**
+     * Returns the queue of the writes to the database.
+     *
+     * @return The write queue of the database.
+     */
+    public DatabaseWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Returns the metrics of the queries run by Room on the read executor.
+     *
+     * @return The metrics of the reads.
+     */
+    public ExecutorMetrics getReadMetrics() {
+        return databaseReadExecutor.getMetrics();
+    }
+
 }
@@ -0,0 +1,14 @@
+package com.unimib.workingspot.database.work_place;
+
+/**
+ * The columns of a stored workplace read by a sync: its key, the hash of its remote fields,
+ * its local-only saved flag and its position, to tell whether it is inside a synced area.
+ */
+public class WorkPlaceSyncState {
+
+    public String firebaseKey;
+    public long contentHash;
+    public boolean saved;
+    public double latitude;
+    public double longitude;
+}
@@ -0,0 +1,67 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_DISTANCE_SCALE_KM;
+
+import androidx.annotation.NonNull;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+/**
+ * Scores the workplaces by their distance from an origin: a workplace at the origin scores 1,
+ * one at {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_RANKING_DISTANCE_SCALE_KM}
+ * scores 0.5, and the score keeps decreasing with the square of the distance.
+ * The distance is the chord between the unit vectors of the origin and of the workplace, which
+ * are precomputed when the workplace is stored (see {@link WorkPlace#updateUnitVector()}), so
+ * every row only costs a dot product and the ranking is correct at any latitude.
+ */
+public class DistanceScoreTerm implements ScoreTerm {
+
+    // Mean radius (in kilometers) of the Earth
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final double[] origin;
+    private final double squaredScale;
+
+    /**
+     * Constructor for the DistanceScoreTerm class
+     * @param latitude The latitude of the origin
+     * @param longitude The longitude of the origin
+     */
+    public DistanceScoreTerm(double latitude, double longitude) {
+        this.origin = WorkPlace.unitVector(latitude, longitude);
+        // The scale as a chord of the unit sphere, the same unit as the distances
+        double scale = WORKPLACE_RANKING_DISTANCE_SCALE_KM / EARTH_RADIUS_KM;
+        this.squaredScale = scale * scale;
+    }
+
+    /**
+     * @return The squared scale divided by the sum of itself and the squared chord, which is
+     * 2 minus twice the dot product of the unit vectors
+     */
+    @NonNull
+    @Override
+    public String getExpression() {
+        return "? / (? + 2 - 2 * (unitX * ? + unitY * ? + unitZ * ?))";
+    }
+
+    /**
+     * @return The squared scale and the unit vector of the origin
+     */
+    @NonNull
+    @Override
+    public Object[] getArguments() {
+        return new Object[] { squaredScale, squaredScale, origin[0], origin[1], origin[2] };
+    }
+
+    /**
+     * Builds the condition matching the workplaces within a distance from the origin, used to
+     * score again only the workplaces close to the user after a small move
+     * @param radiusMeters The great-circle distance from the origin, in meters
+     * @return A condition over the unit vector columns, without placeholders
+     */
+    @NonNull
+    public String getWithinCondition(double radiusMeters) {
+        double minDot = Math.cos(Math.min(Math.PI, radiusMeters / (EARTH_RADIUS_KM * 1000)));
+        return "unitX * " + origin[0] + " + unitY * " + origin[1] + " + unitZ * " + origin[2] + " >= " + minDot;
+    }
+}
@@ -0,0 +1,207 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import static com.unimib.workingspot.database.work_place.WorkPlaceDAO.SUMMARY_COLUMNS;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+import androidx.room.InvalidationTracker;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.unimib.workingspot.database.work_place.WorkPlaceDAO;
+import com.unimib.workingspot.database.work_place.WorkPlaceRoomDatabase;
+import com.unimib.workingspot.model.WorkPlace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kotlin.Unit;
+
+/**
+ * Pages the workplaces in the order of their stored score, highest first, with the ties ordered
+ * by key. Every page is read with a keyset condition on the score and the key of the last loaded
+ * workplace, so SQLite seeks the index on the two columns instead of reading and skipping the
+ * rows before the page, as an offset does.
+ * A reload starts from the workplace the user was looking at, read again with its new score, and
+ * loads the window around it. The source invalidates itself when the workplace table changes,
+ * for example when the scores are written for a new location or weather.
+ */
+public class RankedWorkPlacePagingSource extends ListenableFuturePagingSource<WorkPlaceRankKey, WorkPlace> {
+
+    // The score of the workplaces is read as well, it is the key of the pages
+    private static final String SELECT = "SELECT " + SUMMARY_COLUMNS + ", score FROM WorkPlace WHERE (? OR outside = 0)";
+    private static final String COUNT = "SELECT COUNT(*) FROM WorkPlace WHERE (? OR outside = 0)";
+    // Keyset conditions, in the descending order of the list
+    private static final String AFTER = " AND (score, firebaseKey) < (?, ?)";
+    private static final String FROM = " AND (score, firebaseKey) <= (?, ?)";
+    private static final String BEFORE = " AND (score, firebaseKey) > (?, ?)";
+    private static final String DESCENDING = " ORDER BY score DESC, firebaseKey DESC LIMIT ?";
+    private static final String ASCENDING = " ORDER BY score, firebaseKey LIMIT ?";
+
+    private final WorkPlaceRoomDatabase database;
+    private final WorkPlaceDAO workPlaceDAO;
+    private final boolean includeOutside;
+
+    // Invalidates the source when the workplace table changes, registered by the first load
+    private final InvalidationTracker.Observer observer;
+    private final AtomicBoolean observing = new AtomicBoolean();
+
+    /**
+     * Constructor for the RankedWorkPlacePagingSource class
+     * @param database The database the workplaces are read from, on its query executor
+     * @param includeOutside Whether outdoor workplaces should be included
+     */
+    public RankedWorkPlacePagingSource(WorkPlaceRoomDatabase database, boolean includeOutside) {
+        this.database = database;
+        this.workPlaceDAO = database.workPlaceDAO();
+        this.includeOutside = includeOutside;
+        this.observer = new InvalidationTracker.Observer("WorkPlace") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidate();
+            }
+        };
+        registerInvalidatedCallback(() -> {
+            if (observing.get())
+                database.getInvalidationTracker().removeObserver(observer);
+            return Unit.INSTANCE;
+        });
+    }
+
+    /**
+     * Loads a page on the query executor of the database
+     * @param params The key and the size of the page
+     * @return The page, or the error that made the read fail
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<WorkPlaceRankKey, WorkPlace>> loadFuture(
+            @NonNull LoadParams<WorkPlaceRankKey> params) {
+        return FluentFuture.from(Futures.submit(() -> load(params), database.getQueryExecutor()))
+                .catching(RuntimeException.class, LoadResult.Error::new, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Loads a page: the workplaces after the key when appending, the ones before it when
+     * prepending, the window around it when reloading
+     * @param params The key and the size of the page
+     * @return The page
+     */
+    private LoadResult<WorkPlaceRankKey, WorkPlace> load(LoadParams<WorkPlaceRankKey> params) {
+        // The tracker syncs its triggers on the calling thread, so it is observed from here
+        if (observing.compareAndSet(false, true))
+            database.getInvalidationTracker().addObserver(observer);
+        if (getInvalid())
+            return new LoadResult.Invalid<>();
+
+        WorkPlaceRankKey key = params.getKey();
+        int loadSize = params.getLoadSize();
+        if (params instanceof LoadParams.Append) {
+            List<WorkPlace> page = readPage(AFTER, DESCENDING, key, loadSize);
+            return new LoadResult.Page<>(page, firstKey(page), page.size() < loadSize ? null : lastKey(page));
+        }
+        if (params instanceof LoadParams.Prepend) {
+            List<WorkPlace> page = readPage(BEFORE, ASCENDING, key, loadSize);
+            Collections.reverse(page);
+            return new LoadResult.Page<>(page, page.size() < loadSize ? null : firstKey(page), lastKey(page));
+        }
+        return key != null ? reload(key, loadSize) : loadFirst(loadSize);
+    }
+
+    /**
+     * Loads the first page of the list
+     * @param loadSize The number of workplaces to load
+     * @return The page, with the number of workplaces after it
+     */
+    private LoadResult<WorkPlaceRankKey, WorkPlace> loadFirst(int loadSize) {
+        List<WorkPlace> page = workPlaceDAO.getRankedPage(new SimpleSQLiteQuery(SELECT + DESCENDING,
+                new Object[] { includeOutside ? 1 : 0, loadSize }));
+        int itemsAfter = Math.max(0, workPlaceDAO.countRanked(new SimpleSQLiteQuery(COUNT,
+                new Object[] { includeOutside ? 1 : 0 })) - page.size());
+        return new LoadResult.Page<>(page, null, itemsAfter > 0 ? lastKey(page) : null, 0, itemsAfter);
+    }
+
+    /**
+     * Loads the window around a workplace, half of it before the workplace
+     * @param key The position of the workplace the user was looking at
+     * @param loadSize The number of workplaces to load
+     * @return The page, with the number of workplaces before and after it
+     */
+    private LoadResult<WorkPlaceRankKey, WorkPlace> reload(WorkPlaceRankKey key, int loadSize) {
+        // The workplace keeps its place on screen at its new position, unless it was removed
+        Double score = workPlaceDAO.getScore(key.getFirebaseKey());
+        WorkPlaceRankKey anchor = score != null ? new WorkPlaceRankKey(score, key.getFirebaseKey()) : key;
+
+        List<WorkPlace> page = readPage(BEFORE, ASCENDING, anchor, loadSize / 2);
+        Collections.reverse(page);
+        int itemsBefore = Math.max(0, count(BEFORE, anchor) - page.size());
+        List<WorkPlace> pageAfter = readPage(FROM, DESCENDING, anchor, loadSize - page.size());
+        int itemsAfter = Math.max(0, count(FROM, anchor) - pageAfter.size());
+        page.addAll(pageAfter);
+        return new LoadResult.Page<>(page, itemsBefore > 0 ? firstKey(page) : null,
+                itemsAfter > 0 ? lastKey(page) : null, itemsBefore, itemsAfter);
+    }
+
+    /**
+     * Reads the workplaces on one side of a position
+     * @param keyset The keyset condition of the side
+     * @param order The order clause, away from the position
+     * @param key The position
+     * @param limit The maximum number of workplaces to read
+     * @return The workplaces, in the given order
+     */
+    private List<WorkPlace> readPage(String keyset, String order, WorkPlaceRankKey key, int limit) {
+        return new ArrayList<>(workPlaceDAO.getRankedPage(new SimpleSQLiteQuery(SELECT + keyset + order,
+                new Object[] { includeOutside ? 1 : 0, key.getScore(), key.getFirebaseKey(), limit })));
+    }
+
+    /**
+     * Counts the workplaces on one side of a position, along the index
+     * @param keyset The keyset condition of the side
+     * @param key The position
+     * @return The number of workplaces
+     */
+    private int count(String keyset, WorkPlaceRankKey key) {
+        return workPlaceDAO.countRanked(new SimpleSQLiteQuery(COUNT + keyset,
+                new Object[] { includeOutside ? 1 : 0, key.getScore(), key.getFirebaseKey() }));
+    }
+
+    /**
+     * @return The position of the first workplace of a page, or null if the page is empty
+     */
+    @Nullable
+    private static WorkPlaceRankKey firstKey(List<WorkPlace> page) {
+        return page.isEmpty() ? null : WorkPlaceRankKey.of(page.get(0));
+    }
+
+    /**
+     * @return The position of the last workplace of a page, or null if the page is empty
+     */
+    @Nullable
+    private static WorkPlaceRankKey lastKey(List<WorkPlace> page) {
+        return page.isEmpty() ? null : WorkPlaceRankKey.of(page.get(page.size() - 1));
+    }
+
+    /**
+     * Gets the position the list is reloaded from: the workplace closest to the last displayed one
+     * @param state The current state of the paged list
+     * @return The position of the workplace, or null to reload from the top
+     */
+    @Nullable
+    @Override
+    public WorkPlaceRankKey getRefreshKey(@NonNull PagingState<WorkPlaceRankKey, WorkPlace> state) {
+        Integer anchorPosition = state.getAnchorPosition();
+        if (anchorPosition == null)
+            return null;
+        WorkPlace workPlace = state.closestItemToPosition(anchorPosition);
+        return workPlace != null ? WorkPlaceRankKey.of(workPlace) : null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Scores 1 the workplaces saved by the user, and 0 the other ones.
+ */
+public class SavedScoreTerm implements ScoreTerm {
+
+    /**
+     * @return The saved flag, stored as 0 or 1
+     */
+    @NonNull
+    @Override
+    public String getExpression() {
+        return "saved";
+    }
+
+    /**
+     * @return No arguments
+     */
+    @NonNull
+    @Override
+    public Object[] getArguments() {
+        return new Object[0];
+    }
+}
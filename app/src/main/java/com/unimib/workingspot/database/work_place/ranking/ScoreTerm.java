@@ -0,0 +1,27 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A criterion of the workplace ranking. Every term scores a workplace between 0 and 1 with an
+ * SQL expression over the columns of the WorkPlace table, so that SQLite computes and stores the
+ * scores of all the workplaces in one statement.
+ * New criteria are added to the ranking by implementing this interface, see {@link WorkPlaceRanking}.
+ */
+public interface ScoreTerm {
+
+    /**
+     * Gets the SQL expression of the score
+     * @return An expression over the WorkPlace columns, between 0 and 1, with a {@code ?}
+     * placeholder for each argument
+     */
+    @NonNull
+    String getExpression();
+
+    /**
+     * Gets the arguments bound to the placeholders of the expression
+     * @return The arguments, in the order of their placeholders
+     */
+    @NonNull
+    Object[] getArguments();
+}
@@ -0,0 +1,42 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_INDOOR_WEATHER_SCORE;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Scores the workplaces according to the current weather: outdoor workplaces score how suitable
+ * the weather is to work outside, indoor workplaces have a fixed score, so they are ranked above
+ * the outdoor ones when the weather is bad and below them when it is good.
+ */
+public class WeatherScoreTerm implements ScoreTerm {
+
+    private final double outdoorSuitability;
+
+    /**
+     * Constructor for the WeatherScoreTerm class
+     * @param outdoorSuitability How suitable the weather is to work outside, between 0 and 1,
+     *                           see {@link com.unimib.workingspot.model.weather.Weather#getOutdoorSuitability()}
+     */
+    public WeatherScoreTerm(double outdoorSuitability) {
+        this.outdoorSuitability = outdoorSuitability;
+    }
+
+    /**
+     * @return The outdoor suitability for outdoor workplaces, the indoor score otherwise
+     */
+    @NonNull
+    @Override
+    public String getExpression() {
+        return "CASE WHEN outside = 1 THEN ? ELSE ? END";
+    }
+
+    /**
+     * @return The outdoor suitability and the indoor score
+     */
+    @NonNull
+    @Override
+    public Object[] getArguments() {
+        return new Object[] { outdoorSuitability, WORKPLACE_RANKING_INDOOR_WEATHER_SCORE };
+    }
+}
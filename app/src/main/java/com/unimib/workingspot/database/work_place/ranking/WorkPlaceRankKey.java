@@ -0,0 +1,51 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+/**
+ * Position of a workplace in the ranked list: its stored score and its key, which orders the
+ * workplaces with the same score. It is the key of the pages of {@link RankedWorkPlacePagingSource}.
+ * Instances are immutable.
+ */
+public final class WorkPlaceRankKey {
+
+    private final double score;
+    private final String firebaseKey;
+
+    /**
+     * Constructor for the WorkPlaceRankKey class
+     * @param score The stored score of the workplace
+     * @param firebaseKey The Firebase key of the workplace
+     */
+    public WorkPlaceRankKey(double score, @NonNull String firebaseKey) {
+        this.score = score;
+        this.firebaseKey = firebaseKey;
+    }
+
+    /**
+     * Gets the position of a workplace read from the ranked list
+     * @param workPlace The workplace, read with its score
+     * @return The position of the workplace, or null if it has no score yet
+     */
+    @Nullable
+    public static WorkPlaceRankKey of(@NonNull WorkPlace workPlace) {
+        Double score = workPlace.getScore();
+        return score != null ? new WorkPlaceRankKey(score, workPlace.getFirebaseKey()) : null;
+    }
+
+    /**
+     * Gets the stored score of the workplace
+     * @return The score
+     */
+    public double getScore() { return score; }
+
+    /**
+     * Gets the Firebase key of the workplace
+     * @return The key
+     */
+    @NonNull
+    public String getFirebaseKey() { return firebaseKey; }
+}
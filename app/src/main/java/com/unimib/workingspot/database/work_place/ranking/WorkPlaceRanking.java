@@ -0,0 +1,80 @@
+package com.unimib.workingspot.database.work_place.ranking;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ranks the workplaces by the weighted sum of the scores of its {@link ScoreTerm}s.
+ * The sum is stored in the score column of the workplaces by a single statement, run on the
+ * write queue of the database, and the ranked list is paged along the index on the score and the
+ * key by {@link RankedWorkPlacePagingSource}, so loading a page never scores or sorts the table.
+ * When one input changes, for example the weather, only the rows whose score depends on it are
+ * written again, and the paged list reloads the window around the displayed workplaces.
+ * Instances are immutable, {@link #with(ScoreTerm, double)} returns a modified copy.
+ */
+public final class WorkPlaceRanking {
+
+    private final List<ScoreTerm> terms;
+    private final List<Double> weights;
+
+    /**
+     * Creates an empty ranking, which scores every workplace 0
+     */
+    public WorkPlaceRanking() {
+        this(Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Private constructor, used by {@link #with(ScoreTerm, double)}
+     */
+    private WorkPlaceRanking(List<ScoreTerm> terms, List<Double> weights) {
+        this.terms = terms;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns a copy of this ranking with one more term
+     * @param term The term to add
+     * @param weight The weight of the term in the total score
+     * @return The modified ranking
+     */
+    public WorkPlaceRanking with(@NonNull ScoreTerm term, double weight) {
+        List<ScoreTerm> newTerms = new ArrayList<>(terms);
+        List<Double> newWeights = new ArrayList<>(weights);
+        newTerms.add(term);
+        newWeights.add(weight);
+        return new WorkPlaceRanking(Collections.unmodifiableList(newTerms),
+                Collections.unmodifiableList(newWeights));
+    }
+
+    /**
+     * Builds the statement that stores the score of the workplaces matching a condition
+     * @param condition A condition over the WorkPlace columns, without placeholders, or null
+     *                  to score every workplace
+     * @return The update statement, to run on the write queue of the database
+     */
+    @NonNull
+    public SupportSQLiteQuery toScoreUpdate(@Nullable String condition) {
+        StringBuilder sql = new StringBuilder("UPDATE WorkPlace SET score = ");
+        List<Object> arguments = new ArrayList<>();
+        if (terms.isEmpty())
+            sql.append('0');
+        for (int i = 0; i < terms.size(); i++) {
+            ScoreTerm term = terms.get(i);
+            if (i > 0)
+                sql.append(" + ");
+            sql.append("? * (").append(term.getExpression()).append(')');
+            arguments.add(weights.get(i));
+            Collections.addAll(arguments, term.getArguments());
+        }
+        if (condition != null)
+            sql.append(" WHERE ").append(condition);
+        return new SimpleSQLiteQuery(sql.toString(), arguments.toArray());
+    }
+}
@@ -0,0 +1,71 @@
+package com.unimib.workingspot.model;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * This class represents the version of the workplace catalogue stored in the local database:
+ * the server time of the most recent remote change it contains, and when it was last read in full.
+ * It is stored in a single row, written together with the synced workplaces, and is copied with
+ * them into the catalogue snapshot, so that the first fetch of a seeded install only reads the
+ * workplaces changed after the snapshot.
+ */
+@Entity
+public class CatalogueVersion {
+
+    // The catalogue has a single version
+    @PrimaryKey
+    private int id;
+
+    // Server time (in milliseconds) of the most recent remote change read, 0 if it is not known
+    private long updatedAt;
+
+    // Time (in milliseconds) the catalogue was last read in full
+    private long fetchedAt;
+
+    /**
+     * Constructor for the CatalogueVersion class
+     * @param updatedAt The server time of the most recent remote change read, 0 if it is not known
+     * @param fetchedAt The time the catalogue was last read in full, in milliseconds
+     */
+    public CatalogueVersion(long updatedAt, long fetchedAt) {
+        this.updatedAt = updatedAt;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Gets the identifier of the row holding the version
+     * @return the row identifier
+     */
+    public int getId() { return id; }
+
+    /**
+     * Sets the identifier of the row holding the version
+     * @param id the row identifier
+     */
+    public void setId(int id) { this.id = id; }
+
+    /**
+     * Gets the server time of the most recent remote change read
+     * @return the time, in milliseconds, or 0 if it is not known
+     */
+    public long getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Sets the server time of the most recent remote change read
+     * @param updatedAt the time, in milliseconds, or 0 if it is not known
+     */
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    /**
+     * Gets the time the catalogue was last read in full
+     * @return the time, in milliseconds
+     */
+    public long getFetchedAt() { return fetchedAt; }
+
+    /**
+     * Sets the time the catalogue was last read in full
+     * @param fetchedAt the time, in milliseconds
+     */
+    public void setFetchedAt(long fetchedAt) { this.fetchedAt = fetchedAt; }
+}
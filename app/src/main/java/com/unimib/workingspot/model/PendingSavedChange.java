@@ -0,0 +1,111 @@
+package com.unimib.workingspot.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * This class represents a change of the saved state of a workplace made by a user and not yet
+ * written to the remote database. The changes are stored in the local database, so that they
+ * survive the app being closed while offline, and are replayed together once the device is online.
+ * There is a single change per workplace and user: toggling a workplace again replaces its
+ * change, and toggling it back to its remote state drops it.
+ */
+@Entity(primaryKeys = {"uid", "firebaseKey"})
+public class PendingSavedChange {
+
+    // The Firebase key of the changed workplace
+    @NonNull
+    private String firebaseKey;
+
+    // The unique identifier of the user who changed the workplace
+    @NonNull
+    private String uid;
+
+    // The saved state to write to the remote database
+    private boolean saved;
+
+    // The saved state of the workplace in the remote database, before the first pending change
+    private boolean syncedSaved;
+
+    // Time of the last change; the changes are replayed in the order they were made
+    private long changedAt;
+
+    /**
+     * Constructor for the PendingSavedChange class
+     * @param firebaseKey The Firebase key of the changed workplace
+     * @param uid The unique identifier of the user who changed the workplace
+     * @param saved The saved state to write to the remote database
+     * @param syncedSaved The saved state of the workplace in the remote database
+     * @param changedAt The time of the change, in milliseconds
+     */
+    public PendingSavedChange(@NonNull String firebaseKey, @NonNull String uid, boolean saved,
+                              boolean syncedSaved, long changedAt) {
+        this.firebaseKey = firebaseKey;
+        this.uid = uid;
+        this.saved = saved;
+        this.syncedSaved = syncedSaved;
+        this.changedAt = changedAt;
+    }
+
+    /**
+     * Gets the Firebase key of the changed workplace
+     * @return the Firebase key
+     */
+    @NonNull
+    public String getFirebaseKey() { return firebaseKey; }
+
+    /**
+     * Sets the Firebase key of the changed workplace
+     * @param firebaseKey the Firebase key
+     */
+    public void setFirebaseKey(@NonNull String firebaseKey) { this.firebaseKey = firebaseKey; }
+
+    /**
+     * Gets the unique identifier of the user who changed the workplace
+     * @return the user identifier
+     */
+    @NonNull
+    public String getUid() { return uid; }
+
+    /**
+     * Sets the unique identifier of the user who changed the workplace
+     * @param uid the user identifier
+     */
+    public void setUid(@NonNull String uid) { this.uid = uid; }
+
+    /**
+     * Checks whether the workplace is saved after the change
+     * @return true if the workplace is saved
+     */
+    public boolean isSaved() { return saved; }
+
+    /**
+     * Sets whether the workplace is saved after the change
+     * @param saved true if the workplace is saved
+     */
+    public void setSaved(boolean saved) { this.saved = saved; }
+
+    /**
+     * Checks whether the workplace is saved in the remote database
+     * @return true if the workplace is saved remotely
+     */
+    public boolean isSyncedSaved() { return syncedSaved; }
+
+    /**
+     * Sets whether the workplace is saved in the remote database
+     * @param syncedSaved true if the workplace is saved remotely
+     */
+    public void setSyncedSaved(boolean syncedSaved) { this.syncedSaved = syncedSaved; }
+
+    /**
+     * Gets the time of the last change
+     * @return the time, in milliseconds
+     */
+    public long getChangedAt() { return changedAt; }
+
+    /**
+     * Sets the time of the last change
+     * @param changedAt the time, in milliseconds
+     */
+    public void setChangedAt(long changedAt) { this.changedAt = changedAt; }
+}
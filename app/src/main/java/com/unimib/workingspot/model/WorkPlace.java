@@ -2,20 +2,28 @@ package com.unimib.workingspot.model;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import com.google.firebase.database.Exclude;
 
+import java.util.Objects;
+
 /**
  * This class represent a workplace entity with various attributes related to a specific location
  *  such as its name, address, geographic coordinates, and whether it is inside or outside.
  *  The class is designed to be used with Firebase and Room
  */
-@Entity
+@Entity(indices = {@Index(value = {"score", "firebaseKey"})})
 public class WorkPlace {
 
+    // Parameters of the 64 bit FNV-1a function used for the content hash
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     // The unique identifier for the workplace
     @PrimaryKey
     @NonNull
@@ -36,6 +44,44 @@ public class WorkPlace {
     // Base 64 encoding of the workplace photo; saved as a string
     private String b64PhotoEncoding;
 
+    // BlurHash of the workplace photo, shown as a placeholder while the photo is loading
+    private String blurHash;
+
+    // Geohash of the workplace position, used by the remote area queries
+    // The @Ignore annotation keeps it out of the local database, which has the unit vector
+    @Ignore
+    private String geohash;
+
+    // Server time of the last remote change of the workplace, read from Firebase to resume the
+    // fetches; written by the remote sources, and kept out of the local database
+    @Ignore
+    private long updatedAt;
+
+    // Hash of the fields stored in Firebase, used to find the rows changed by a sync
+    // The @Exclude annotation prevents it from being serialized by Firebase
+    @Exclude
+    @ColumnInfo(defaultValue = "0")
+    private long contentHash;
+
+    // Position of the workplace as a unit vector from the center of the Earth, computed once from
+    // its coordinates when it is stored, so the distance from an origin is a dot product
+    // The @Exclude annotation prevents them from being serialized by Firebase
+    @Exclude
+    @ColumnInfo(defaultValue = "0")
+    private double unitX;
+    @Exclude
+    @ColumnInfo(defaultValue = "0")
+    private double unitY;
+    @Exclude
+    @ColumnInfo(defaultValue = "0")
+    private double unitZ;
+
+    // Ranking score of the workplace for the current location and weather, stored so that the
+    // ranked list is paged by the index on the score and the key; null until it is computed
+    // The @Exclude annotation prevents it from being serialized by Firebase
+    @Exclude
+    private Double score;
+
     /**
      * Default no-argument constructor
      */
@@ -59,6 +105,31 @@ public class WorkPlace {
         this.outside = outside;
     }
 
+    /**
+     * Copy constructor, used to hand a modified workplace to the UI without mutating the
+     * instance it is already displaying.
+     * @param other - the workplace to copy
+     */
+    @Ignore
+    public WorkPlace(@NonNull WorkPlace other) {
+        this.firebaseKey = other.firebaseKey;
+        this.name = other.name;
+        this.address = other.address;
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+        this.outside = other.outside;
+        this.saved = other.saved;
+        this.b64PhotoEncoding = other.b64PhotoEncoding;
+        this.blurHash = other.blurHash;
+        this.geohash = other.geohash;
+        this.updatedAt = other.updatedAt;
+        this.contentHash = other.contentHash;
+        this.unitX = other.unitX;
+        this.unitY = other.unitY;
+        this.unitZ = other.unitZ;
+        this.score = other.score;
+    }
+
     /**
      * Gets the unique Firebase key of the workplace.
      * @return the Firebase key
@@ -175,9 +246,200 @@ public class WorkPlace {
      */
     public void setB64PhotoEncoding(String b64PhotoEncoding) { this.b64PhotoEncoding = b64PhotoEncoding; }
 
+    /**
+     * Gets the BlurHash of the workplace photo.
+     * @return the BlurHash string, or null if it was not computed
+     */
+    public String getBlurHash() { return blurHash; }
+
+    /**
+     * Sets the BlurHash of the workplace photo.
+     *
+     * @param blurHash - the BlurHash string to set.
+     */
+    public void setBlurHash(String blurHash) { this.blurHash = blurHash; }
+
+    /**
+     * Gets the geohash of the workplace position.
+     * @return the geohash, or null if it was not computed or the workplace was read locally
+     */
+    public String getGeohash() { return geohash; }
+
+    /**
+     * Sets the geohash of the workplace position.
+     *
+     * @param geohash - the geohash to set.
+     */
+    public void setGeohash(String geohash) { this.geohash = geohash; }
+
+    /**
+     * Gets the server time of the last remote change of the workplace.
+     * @return the time in milliseconds, or 0 if it is not known
+     */
+    @Exclude // Written as a server timestamp by the remote sources, not from this value.
+    public long getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Sets the server time of the last remote change of the workplace.
+     * @param updatedAt - the time in milliseconds.
+     */
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    /**
+     * Gets the hash of the fields stored in Firebase, as computed when the workplace was stored
+     * in the local database.
+     * @return the content hash, or 0 if it was not computed
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public long getContentHash() { return contentHash; }
+
+    /**
+     * Sets the hash of the fields stored in Firebase.
+     *
+     * @param contentHash - the content hash to set.
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public void setContentHash(long contentHash) { this.contentHash = contentHash; }
+
+    /**
+     * Gets the x component of the unit vector of the workplace position.
+     * @return the x component, or 0 if it was not computed
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public double getUnitX() { return unitX; }
+
+    /**
+     * Sets the x component of the unit vector of the workplace position.
+     * @param unitX - the x component to set.
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public void setUnitX(double unitX) { this.unitX = unitX; }
+
+    /**
+     * Gets the y component of the unit vector of the workplace position.
+     * @return the y component, or 0 if it was not computed
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public double getUnitY() { return unitY; }
+
+    /**
+     * Sets the y component of the unit vector of the workplace position.
+     * @param unitY - the y component to set.
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public void setUnitY(double unitY) { this.unitY = unitY; }
+
+    /**
+     * Gets the z component of the unit vector of the workplace position.
+     * @return the z component, or 0 if it was not computed
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public double getUnitZ() { return unitZ; }
+
+    /**
+     * Sets the z component of the unit vector of the workplace position.
+     * @param unitZ - the z component to set.
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public void setUnitZ(double unitZ) { this.unitZ = unitZ; }
+
+    /**
+     * Gets the ranking score of the workplace, computed by the local database.
+     * @return the score, or null if it was not computed
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public Double getScore() { return score; }
+
+    /**
+     * Sets the ranking score of the workplace.
+     * @param score - the score to set, or null to have it computed when the workplace is stored.
+     */
+    @Exclude // Excludes this method from Firebase serialization.
+    public void setScore(Double score) { this.score = score; }
+
+    /**
+     * Computes the unit vector of the workplace position from its latitude and longitude.
+     * Called before the workplace is stored in the local database.
+     */
+    public void updateUnitVector() {
+        double[] unitVector = unitVector(latitude, longitude);
+        unitX = unitVector[0];
+        unitY = unitVector[1];
+        unitZ = unitVector[2];
+    }
+
+    /**
+     * Computes the unit vector from the center of the Earth to a position. The dot product of
+     * the unit vectors of two positions is the cosine of the angle between them, which decreases
+     * as their great-circle distance increases
+     * @param latitude - the latitude of the position, in degrees
+     * @param longitude - the longitude of the position, in degrees
+     * @return the x, y and z components of the unit vector
+     */
+    public static double[] unitVector(double latitude, double longitude) {
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        return new double[] {
+                cosLatitude * Math.cos(longitudeRadians),
+                cosLatitude * Math.sin(longitudeRadians),
+                Math.sin(latitudeRadians)
+        };
+    }
+
+    /**
+     * Computes the hash of the fields stored in Firebase, using the 64 bit FNV-1a function.
+     * The local-only fields, the saved flag and the content hash itself, are not part of it.
+     * @return the content hash of the workplace
+     */
+    public long computeContentHash() {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, firebaseKey);
+        hash = hash(hash, name);
+        hash = hash(hash, address);
+        hash = hash(hash, Double.doubleToLongBits(latitude));
+        hash = hash(hash, Double.doubleToLongBits(longitude));
+        hash = hash(hash, outside ? 1 : 0);
+        hash = hash(hash, b64PhotoEncoding);
+        hash = hash(hash, blurHash);
+        return hash;
+    }
+
+    /**
+     * Adds a string to a FNV-1a hash. A null string and the end of a string hash to different
+     * values, so that adjacent fields cannot be confused
+     * @param hash - the hash so far
+     * @param value - the string to add, or null
+     * @return the updated hash
+     */
+    private static long hash(long hash, @Nullable String value) {
+        if (value == null)
+            return hash(hash, -1L);
+        for (int i = 0; i < value.length(); i++)
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        return hash(hash, value.length());
+    }
+
+    /**
+     * Adds the bytes of a long to a FNV-1a hash
+     * @param hash - the hash so far
+     * @param value - the value to add
+     * @return the updated hash
+     */
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
     /**
      * Compares this workplace to another object.
-     * Two workplaces are considered equal if they have the same latitude and longitude
+     * Two workplaces are considered equal if they have the same Firebase key, which identifies
+     * the workplace both in Firebase and in the local database. Two workplaces at the same
+     * position are different places: the workplaces close to a new one are found with the
+     * {@link com.unimib.workingspot.util.spatial.WorkPlaceKdTree k-d tree} instead
      * @param obj - the object to compare with.
      * @return true if the objects are the same workplace, false otherwise.
      */
@@ -187,7 +449,15 @@ public class WorkPlace {
             return true;
         if(!(obj instanceof WorkPlace workPlace))
             return false;
-        return workPlace.getLatitude() == this.getLatitude() &&
-                workPlace.getLongitude() == this.getLongitude();
+        return Objects.equals(workPlace.firebaseKey, this.firebaseKey);
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}
+     * @return the hash code of the Firebase key
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(firebaseKey);
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.unimib.workingspot.model;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index of the names and addresses of the workplaces.
+ * The table takes its content from the {@link WorkPlace} table, and Room keeps it in sync with
+ * triggers on every insert, update and delete. The unicode61 tokenizer folds the case and the
+ * accents, so that searching "caffe" also finds "Caffè".
+ */
+@Fts4(contentEntity = WorkPlace.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity
+public class WorkPlaceFts {
+
+    // The indexed name of the workplace
+    private String name;
+
+    // The indexed address of the workplace
+    private String address;
+
+    /**
+     * Gets the indexed name of the workplace
+     * @return the workplace name
+     */
+    public String getName() { return name; }
+
+    /**
+     * Sets the indexed name of the workplace
+     * @param name the workplace name
+     */
+    public void setName(String name) { this.name = name; }
+
+    /**
+     * Gets the indexed address of the workplace
+     * @return the workplace address
+     */
+    public String getAddress() { return address; }
+
+    /**
+     * Sets the indexed address of the workplace
+     * @param address the workplace address
+     */
+    public void setAddress(String address) { this.address = address; }
+}
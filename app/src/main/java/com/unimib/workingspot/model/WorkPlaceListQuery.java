@@ -0,0 +1,178 @@
+package com.unimib.workingspot.model;
+
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * This class describes how the list of workplaces should be loaded from the local database:
+ * whether outdoor workplaces are included, the inputs of their ranking, that is the distance
+ * from an origin and how suitable the weather is to work outside, and the text searched in their
+ * names and addresses, if any. Search results are ordered by relevance.
+ * Instances are immutable, the "with" methods return a modified copy.
+ */
+public class WorkPlaceListQuery {
+
+    private final boolean includeOutside;
+    private final boolean hasOrigin;
+    private final double latitude;
+    private final double longitude;
+    private final boolean hasOutdoorSuitability;
+    private final double outdoorSuitability;
+    private final String searchText;
+
+    /**
+     * Constructor for the WorkPlaceListQuery class
+     * @param includeOutside - true if outdoor workplaces should be included
+     * @param hasOrigin - true if the list is ranked by distance from the origin
+     * @param latitude - the latitude of the origin
+     * @param longitude - the longitude of the origin
+     * @param hasOutdoorSuitability - true if the list is ranked by the weather
+     * @param outdoorSuitability - how suitable the weather is to work outside, between 0 and 1
+     * @param searchText - the text searched in the names and addresses, or null
+     */
+    private WorkPlaceListQuery(boolean includeOutside, boolean hasOrigin, double latitude, double longitude,
+                               boolean hasOutdoorSuitability, double outdoorSuitability,
+                               @Nullable String searchText) {
+        this.includeOutside = includeOutside;
+        this.hasOrigin = hasOrigin;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.hasOutdoorSuitability = hasOutdoorSuitability;
+        this.outdoorSuitability = outdoorSuitability;
+        this.searchText = searchText;
+    }
+
+    /**
+     * Creates a query for every workplace, ranked by the saved state until the location of the
+     * user or the weather is set
+     * @return the query
+     */
+    public static WorkPlaceListQuery savedFirst() {
+        return new WorkPlaceListQuery(true, false, 0, 0, false, 0, null);
+    }
+
+    /**
+     * Returns a copy of this query that includes or excludes the outdoor workplaces
+     * @param includeOutside - true if outdoor workplaces should be included
+     * @return the modified query
+     */
+    public WorkPlaceListQuery withIncludeOutside(boolean includeOutside) {
+        return new WorkPlaceListQuery(includeOutside, hasOrigin, latitude, longitude,
+                hasOutdoorSuitability, outdoorSuitability, searchText);
+    }
+
+    /**
+     * Returns a copy of this query ranked by the distance from the given origin
+     * @param latitude - the latitude of the origin
+     * @param longitude - the longitude of the origin
+     * @return the modified query
+     */
+    public WorkPlaceListQuery withOrigin(double latitude, double longitude) {
+        return new WorkPlaceListQuery(includeOutside, true, latitude, longitude,
+                hasOutdoorSuitability, outdoorSuitability, searchText);
+    }
+
+    /**
+     * Returns a copy of this query ranked by how suitable the weather is to work outside
+     * @param outdoorSuitability - the suitability, between 0 and 1
+     * @return the modified query
+     */
+    public WorkPlaceListQuery withOutdoorSuitability(double outdoorSuitability) {
+        return new WorkPlaceListQuery(includeOutside, hasOrigin, latitude, longitude,
+                true, outdoorSuitability, searchText);
+    }
+
+    /**
+     * Returns a copy of this query that searches the given text in the names and addresses
+     * @param searchText - the text to search, or null or empty to list every workplace
+     * @return the modified query
+     */
+    public WorkPlaceListQuery withSearchText(@Nullable String searchText) {
+        String text = searchText == null || searchText.trim().isEmpty() ? null : searchText.trim();
+        return new WorkPlaceListQuery(includeOutside, hasOrigin, latitude, longitude,
+                hasOutdoorSuitability, outdoorSuitability, text);
+    }
+
+    /**
+     * Checks whether outdoor workplaces are included
+     * @return true if outdoor workplaces are included
+     */
+    public boolean isIncludeOutside() { return includeOutside; }
+
+    /**
+     * Checks whether the list is ranked by distance from an origin
+     * @return true if the list is ranked by distance
+     */
+    public boolean hasOrigin() { return hasOrigin; }
+
+    /**
+     * Gets the latitude of the origin
+     * @return the latitude of the origin
+     */
+    public double getLatitude() { return latitude; }
+
+    /**
+     * Gets the longitude of the origin
+     * @return the longitude of the origin
+     */
+    public double getLongitude() { return longitude; }
+
+    /**
+     * Checks whether the list is ranked by the weather
+     * @return true if the list is ranked by the weather
+     */
+    public boolean hasOutdoorSuitability() { return hasOutdoorSuitability; }
+
+    /**
+     * Gets how suitable the weather is to work outside
+     * @return the suitability, between 0 and 1
+     */
+    public double getOutdoorSuitability() { return outdoorSuitability; }
+
+    /**
+     * Gets the text searched in the names and addresses
+     * @return the searched text, or null if every workplace is listed
+     */
+    @Nullable
+    public String getSearchText() { return searchText; }
+
+    /**
+     * Checks whether this query loads the same workplaces as another one, possibly ranked
+     * in a different order
+     * @param query - the query to compare with
+     * @return true if both queries have the same filter and searched text
+     */
+    public boolean hasSameFilter(WorkPlaceListQuery query) {
+        return includeOutside == query.includeOutside && Objects.equals(searchText, query.searchText);
+    }
+
+    /**
+     * Compares this query to another object
+     * @param obj - the object to compare with.
+     * @return true if the queries load the same list, false otherwise.
+     */
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if(obj == this)
+            return true;
+        if(!(obj instanceof WorkPlaceListQuery query))
+            return false;
+        return includeOutside == query.includeOutside && hasOrigin == query.hasOrigin
+                && Double.compare(latitude, query.latitude) == 0
+                && Double.compare(longitude, query.longitude) == 0
+                && hasOutdoorSuitability == query.hasOutdoorSuitability
+                && Double.compare(outdoorSuitability, query.outdoorSuitability) == 0
+                && Objects.equals(searchText, query.searchText);
+    }
+
+    /**
+     * Computes the hash code of this query, consistent with {@link #equals(Object)}
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(includeOutside, hasOrigin, latitude, longitude,
+                hasOutdoorSuitability, outdoorSuitability, searchText);
+    }
+}
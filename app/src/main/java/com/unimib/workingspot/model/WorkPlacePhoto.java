@@ -0,0 +1,173 @@
+package com.unimib.workingspot.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * This class represents the photo of a {@link WorkPlace} as a model that can be loaded by Glide.
+ * A photo can come from four different sources: the Base64 encoding held by the workplace,
+ * the Base64 encoding stored in the local database, a file on the local storage or a remote URL.
+ * Two photos are considered equal if they share the same source and cache key, so that Glide can
+ * reuse the decoded bitmaps across different requests.
+ */
+public final class WorkPlacePhoto {
+
+    /**
+     * The possible sources of a workplace photo
+     */
+    public enum Source {
+        /** The photo is stored as a Base64 string */
+        BASE64,
+        /** The photo is stored in the local database, and is read by the key of its workplace */
+        DATABASE,
+        /** The photo is stored in a file on the device */
+        FILE,
+        /** The photo is available at a remote URL */
+        REMOTE
+    }
+
+    private final Source source;
+    private final String cacheKey;
+    private final String b64PhotoEncoding;
+    private final File file;
+    private final String url;
+    private final String firebaseKey;
+
+    /**
+     * Private constructor, use the static factory methods to create a new photo
+     */
+    private WorkPlacePhoto(Source source, String cacheKey, String b64PhotoEncoding, File file,
+                           String url, String firebaseKey) {
+        this.source = source;
+        this.cacheKey = cacheKey;
+        this.b64PhotoEncoding = b64PhotoEncoding;
+        this.file = file;
+        this.url = url;
+        this.firebaseKey = firebaseKey;
+    }
+
+    /**
+     * Creates the photo of a workplace.
+     * If the workplace holds its Base64 encoding, the cache key is built from the Firebase key of
+     * the workplace and the hash of the encoding, so that a new photo for the same workplace
+     * invalidates the cached one. Workplaces read from the local database without their photo
+     * load it from the database by their Firebase key.
+     * @param workPlace The workplace whose photo should be loaded
+     * @return The photo of the workplace, or null if the workplace has no photo nor key
+     */
+    @Nullable
+    public static WorkPlacePhoto fromWorkPlace(@NonNull WorkPlace workPlace) {
+        String encoding = workPlace.getB64PhotoEncoding();
+        if (encoding != null && !encoding.isEmpty())
+            return fromBase64(workPlace.getFirebaseKey(), encoding);
+        if (workPlace.getFirebaseKey() != null)
+            return fromDatabase(workPlace.getFirebaseKey(), workPlace.getContentHash());
+        return null;
+    }
+
+    /**
+     * Creates a photo stored in the local database
+     * The cache key includes the content hash of the workplace, so that a photo changed by a sync
+     * invalidates the cached one.
+     * @param firebaseKey The Firebase key of the workplace the photo belongs to
+     * @param contentHash The content hash of the workplace
+     * @return The photo
+     */
+    public static WorkPlacePhoto fromDatabase(@NonNull String firebaseKey, long contentHash) {
+        return new WorkPlacePhoto(Source.DATABASE, "db#" + firebaseKey + "#" + Long.toHexString(contentHash),
+                null, null, null, firebaseKey);
+    }
+
+    /**
+     * Creates a photo from a Base64 encoding
+     * @param key An identifier of the photo (e.g. the Firebase key of its workplace); may be null
+     * @param b64PhotoEncoding The Base64 encoding of the photo
+     * @return The photo
+     */
+    public static WorkPlacePhoto fromBase64(@Nullable String key, @NonNull String b64PhotoEncoding) {
+        String cacheKey = key + "#" + b64PhotoEncoding.length() + "#" + b64PhotoEncoding.hashCode();
+        return new WorkPlacePhoto(Source.BASE64, cacheKey, b64PhotoEncoding, null, null, null);
+    }
+
+    /**
+     * Creates a photo from a file on the local storage
+     * @param file The file containing the photo
+     * @return The photo
+     */
+    public static WorkPlacePhoto fromFile(@NonNull File file) {
+        String cacheKey = file.getAbsolutePath() + "#" + file.lastModified();
+        return new WorkPlacePhoto(Source.FILE, cacheKey, null, file, null, null);
+    }
+
+    /**
+     * Creates a photo from a remote URL
+     * @param url The URL of the photo
+     * @return The photo
+     */
+    public static WorkPlacePhoto fromUrl(@NonNull String url) {
+        return new WorkPlacePhoto(Source.REMOTE, url, null, null, url, null);
+    }
+
+    /**
+     * Gets the source of the photo
+     * @return The source of the photo
+     */
+    public Source getSource() { return source; }
+
+    /**
+     * Gets the key used by Glide to cache the photo
+     * @return The cache key
+     */
+    public String getCacheKey() { return cacheKey; }
+
+    /**
+     * Gets the Base64 encoding of the photo
+     * @return The Base64 encoding, or null if the source is not {@link Source#BASE64}
+     */
+    public String getB64PhotoEncoding() { return b64PhotoEncoding; }
+
+    /**
+     * Gets the file containing the photo
+     * @return The file, or null if the source is not {@link Source#FILE}
+     */
+    public File getFile() { return file; }
+
+    /**
+     * Gets the URL of the photo
+     * @return The URL, or null if the source is not {@link Source#REMOTE}
+     */
+    public String getUrl() { return url; }
+
+    /**
+     * Gets the Firebase key of the workplace whose photo is stored in the local database
+     * @return The Firebase key, or null if the source is not {@link Source#DATABASE}
+     */
+    public String getFirebaseKey() { return firebaseKey; }
+
+    /**
+     * Compares this photo to another object.
+     * Two photos are considered equal if they have the same source and cache key
+     * @param obj - the object to compare with.
+     * @return true if the objects are the same photo, false otherwise.
+     */
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (obj == this)
+            return true;
+        if (!(obj instanceof WorkPlacePhoto photo))
+            return false;
+        return photo.source == this.source && photo.cacheKey.equals(this.cacheKey);
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}
+     * @return The hash code of the photo
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, cacheKey);
+    }
+}
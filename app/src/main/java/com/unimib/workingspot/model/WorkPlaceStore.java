@@ -0,0 +1,118 @@
+package com.unimib.workingspot.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Identity map of the workplaces shown by the app, keyed by their Firebase key.
+ * Every workplace read from the local database goes through {@link #canonicalize(WorkPlace)}:
+ * if the store already holds the same workplace with the same content, that instance is returned,
+ * so the lists of the different screens share their workplaces instead of holding a copy each.
+ * A changed workplace, for example one saved by the user or with a new photo, replaces the stored
+ * one, and every list read after the change gets the new instance.
+ * The canonical instances are shared, so they must not be modified: a screen that changes a
+ * workplace works on a copy, see {@link WorkPlace#WorkPlace(WorkPlace)}.
+ * The workplaces are weakly referenced, the store only keeps the ones still used by a screen.
+ */
+public class WorkPlaceStore {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final ReferenceQueue<WorkPlace> releasedWorkPlaces = new ReferenceQueue<>();
+
+    /**
+     * Gets the canonical instance of a workplace
+     * @param workPlace - the workplace read from the local database
+     * @return the stored instance if it has the same content, otherwise the given workplace,
+     * which becomes the stored one
+     */
+    @NonNull
+    public synchronized WorkPlace canonicalize(@NonNull WorkPlace workPlace) {
+        removeReleasedEntries();
+        String key = workPlace.getFirebaseKey();
+        if (key == null)
+            return workPlace;
+        Entry entry = entries.get(key);
+        WorkPlace stored = entry != null ? entry.get() : null;
+        if (stored != null && hasSameContent(stored, workPlace))
+            return stored;
+        entries.put(key, new Entry(key, workPlace, releasedWorkPlaces));
+        return workPlace;
+    }
+
+    /**
+     * Replaces the workplaces of a list with their canonical instances
+     * @param workPlaces - the workplaces read from the local database, replaced in place
+     * @return the same list
+     */
+    @NonNull
+    public List<WorkPlace> canonicalizeAll(@NonNull List<WorkPlace> workPlaces) {
+        for (int i = 0; i < workPlaces.size(); i++)
+            workPlaces.set(i, canonicalize(workPlaces.get(i)));
+        return workPlaces;
+    }
+
+    /**
+     * Gets the stored instance of a workplace
+     * @param firebaseKey - the Firebase key of the workplace
+     * @return the stored workplace, or null if no screen uses it
+     */
+    @Nullable
+    public synchronized WorkPlace get(@NonNull String firebaseKey) {
+        removeReleasedEntries();
+        Entry entry = entries.get(firebaseKey);
+        return entry != null ? entry.get() : null;
+    }
+
+    /**
+     * Compares the content of two versions of the same workplace. The content hash covers the
+     * fields stored in Firebase; the workplaces stored before it was computed are compared field
+     * by field
+     */
+    private static boolean hasSameContent(WorkPlace stored, WorkPlace workPlace) {
+        if (stored.isSaved() != workPlace.isSaved()
+                || stored.getContentHash() != workPlace.getContentHash()
+                || !Objects.equals(stored.getB64PhotoEncoding(), workPlace.getB64PhotoEncoding()))
+            return false;
+        if (stored.getContentHash() != 0)
+            return true;
+        return Objects.equals(stored.getName(), workPlace.getName())
+                && Objects.equals(stored.getAddress(), workPlace.getAddress())
+                && stored.getLatitude() == workPlace.getLatitude()
+                && stored.getLongitude() == workPlace.getLongitude()
+                && stored.isOutside() == workPlace.isOutside()
+                && Objects.equals(stored.getBlurHash(), workPlace.getBlurHash());
+    }
+
+    /**
+     * Removes the entries of the workplaces no longer used by any screen
+     */
+    private void removeReleasedEntries() {
+        Reference<? extends WorkPlace> reference;
+        while ((reference = releasedWorkPlaces.poll()) != null) {
+            Entry entry = (Entry) reference;
+            // The key may already point to a newer instance
+            if (entries.get(entry.key) == entry)
+                entries.remove(entry.key);
+        }
+    }
+
+    /**
+     * Weak reference to a stored workplace, remembering its key once the workplace is released
+     */
+    private static final class Entry extends WeakReference<WorkPlace> {
+        private final String key;
+
+        private Entry(String key, WorkPlace workPlace, ReferenceQueue<WorkPlace> queue) {
+            super(workPlace, queue);
+            this.key = key;
+        }
+    }
+}
@@ -5,6 +5,13 @@ import com.google.gson.annotations.SerializedName;
 
 import static com.unimib.workingspot.util.constants.Constants.PIPE_REGEX;
 import static com.unimib.workingspot.util.constants.WeatherConstants.DAY_FLAG_SERIALIZED_NAME;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_CLEAR_MAX_CODE;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_CLOUDY_MAX_CODE;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_CLOUDY_SUITABILITY;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_OUTDOOR_COMFORT_MAX_TEMPERATURE;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_OUTDOOR_COMFORT_MIN_TEMPERATURE;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_OUTDOOR_MAX_TEMPERATURE;
+import static com.unimib.workingspot.util.constants.WeatherConstants.WEATHER_OUTDOOR_MIN_TEMPERATURE;
 import static com.unimib.workingspot.util.constants.WeatherConstants.TEMPERATURE_CELSIUS_SERIALIZED_NAME;
 import static com.unimib.workingspot.util.constants.Constants.PIPE;
 
@@ -89,6 +96,29 @@ public class Weather {
         this.condition = condition;
     }
 
+    /**
+     * Computes how suitable the weather is to work outside, from the sky condition and the
+     * temperature. A clear sky counts fully, a cloudy one half, rain, snow and fog not at all;
+     * the temperature counts fully within the comfort range and fades out linearly outside of it.
+     * @return The suitability, between 0 and 1
+     */
+    public double getOutdoorSuitability() {
+        int code = getWeatherCondition().getCode();
+        double sky;
+        if (code <= WEATHER_CLEAR_MAX_CODE)
+            sky = 1;
+        else if (code <= WEATHER_CLOUDY_MAX_CODE)
+            sky = WEATHER_CLOUDY_SUITABILITY;
+        else
+            sky = 0;
+
+        double warmth = (temperature - WEATHER_OUTDOOR_MIN_TEMPERATURE)
+                / (WEATHER_OUTDOOR_COMFORT_MIN_TEMPERATURE - WEATHER_OUTDOOR_MIN_TEMPERATURE);
+        double coolness = (WEATHER_OUTDOOR_MAX_TEMPERATURE - temperature)
+                / (WEATHER_OUTDOOR_MAX_TEMPERATURE - WEATHER_OUTDOOR_COMFORT_MAX_TEMPERATURE);
+        return sky * Math.max(0, Math.min(1, Math.min(warmth, coolness)));
+    }
+
     /**
      * Returns a string representation of the weather object in the format:
      * "code|condition|temperature|isDay"
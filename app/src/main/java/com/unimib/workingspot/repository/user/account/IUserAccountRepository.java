@@ -42,7 +42,7 @@ public interface IUserAccountRepository extends IUserResponseCallback {
     void getLoggedUser();
 
     /**
-     * Logs out the current user.
+     * Logs out the current user, dropping the changes of their saved workplaces not yet written.
      */
     void logout();
 
@@ -18,6 +18,7 @@ import com.unimib.workingspot.model.User;
 import com.unimib.workingspot.source.user.abstracts.BaseUserAccountRemoteDataSource;
 import com.unimib.workingspot.source.user.abstracts.BaseUserLocalDataSource;
 import com.unimib.workingspot.source.user.abstracts.BaseUserRemoteDataSource;
+import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceLocalDataSource;
 import com.unimib.workingspot.util.user_managing_utils.account.InitializationState;
 import java.util.concurrent.Executors;
 
@@ -44,6 +45,7 @@ import java.util.concurrent.Executors;
  *   <li>{@link BaseUserLocalDataSource} for local cache and preferences</li>
  *   <li>{@link BaseUserRemoteDataSource} for Firebase remote operations</li>
  *   <li>{@link BaseUserAccountRemoteDataSource} for Firebase account-specific updates</li>
+ *   <li>{@link BaseWorkPlaceLocalDataSource} for the saved workplace changes of the user, dropped on logout</li>
  * </ul>
  * </p>
  */
@@ -57,6 +59,7 @@ public class UserAccountRepository implements IUserAccountRepository, UserAccoun
     private final BaseUserRemoteDataSource userRemoteDataSource;
 
     private final BaseUserAccountRemoteDataSource userAccountRemoteDataSource;
+    private final BaseWorkPlaceLocalDataSource workPlaceLocalDataSource;
     private InitializationState initializationState;
 
     /**
@@ -64,10 +67,12 @@ public class UserAccountRepository implements IUserAccountRepository, UserAccoun
      * @param userLocalDataSource local data source for user data
      * @param userRemoteDataSource remote data source for user data
      * @param userAccountRemoteDataSource remote account-specific data source
+     * @param workPlaceLocalDataSource local data source of the workplaces
      */
     public UserAccountRepository(BaseUserLocalDataSource userLocalDataSource,
                                  BaseUserRemoteDataSource userRemoteDataSource,
-                                 BaseUserAccountRemoteDataSource userAccountRemoteDataSource){
+                                 BaseUserAccountRemoteDataSource userAccountRemoteDataSource,
+                                 BaseWorkPlaceLocalDataSource workPlaceLocalDataSource){
         resourceUpdateLiveData = new MutableLiveData<>();
         resourceLocalLiveData = new MutableLiveData<>();
         resourceRemoteLiveData = new MutableLiveData<>();
@@ -75,6 +80,7 @@ public class UserAccountRepository implements IUserAccountRepository, UserAccoun
         this.userLocalDataSource = userLocalDataSource;
         this.userRemoteDataSource = userRemoteDataSource;
         this.userAccountRemoteDataSource = userAccountRemoteDataSource;
+        this.workPlaceLocalDataSource = workPlaceLocalDataSource;
         this.userLocalDataSource.setUserCallback(this);
         this.userRemoteDataSource.setUserResponseCallback(this);
         this.userAccountRemoteDataSource.setUserCallback(this);
@@ -130,6 +136,10 @@ public class UserAccountRepository implements IUserAccountRepository, UserAccoun
     }
     /** {@inheritDoc} */
     public void logout(){
+        // The saved workplace changes not yet written cannot be written once the user is logged out
+        String UID = userAccountRemoteDataSource.getLoggedUserId();
+        if (UID != null)
+            workPlaceLocalDataSource.clearPendingSavedChanges(UID);
         userLocalDataSource.clearCache();
         userLocalDataSource.deleteCacheResource(USER);
         userAccountRemoteDataSource.logout();
@@ -1,9 +1,16 @@
 package com.unimib.workingspot.repository.work_place;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.PagingData;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.unimib.workingspot.model.Result;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceListQuery;
+import com.unimib.workingspot.util.spatial.WorkPlaceColumns;
+
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * This interface defines a generic interface for interacting with a WorkPlaceRepository.
@@ -17,12 +24,82 @@ public interface IWorkPlaceRepository {
     void fetchWorkPlaces();
 
     /**
-     * Provides LiveData containing the result of workplace retrieval.
+     * Provides LiveData containing the result of workplace retrieval. The workplaces are read
+     * from the local database and posted again whenever they change.
      *
      * @return {@link LiveData} with workplace retrieval result.
      */
     LiveData<Result> getWorkPlaceLiveData();
 
+    /**
+     * Provides LiveData containing a single workplace read from the local database,
+     * updated whenever the workplace changes.
+     *
+     * @param firebaseKey The Firebase key of the workplace
+     * @return {@link LiveData} with the workplace, or null if it is not stored.
+     */
+    LiveData<WorkPlace> getWorkPlaceLiveData(String firebaseKey);
+
+    /**
+     * Provides a columnar snapshot of the workplaces stored in the local database, with its
+     * k-d tree, rebuilt on a background thread whenever they change. The Map screen uses it for
+     * the markers in view and the workplaces near a new one; the Home list is filtered and
+     * ranked by the local database instead.
+     *
+     * @return {@link LiveData} with the latest snapshot.
+     */
+    LiveData<WorkPlaceColumns> getWorkPlaceColumnsLiveData();
+
+    /**
+     * Provides the workplaces page by page, read from the local database and synced with the
+     * remote source when needed. The search results are ordered by relevance, the other
+     * workplaces by the scores stored with {@link #rankWorkPlaces(WorkPlaceListQuery)}.
+     * The filter of the query is the same for the whole list.
+     *
+     * @param query Supplier of the query describing the filter and the ordering of the workplaces
+     * @return {@link LiveData} with the paged workplaces.
+     */
+    LiveData<PagingData<WorkPlace>> getPagedWorkPlaces(Supplier<WorkPlaceListQuery> query);
+
+    /**
+     * Stores the scores of the workplaces for the ranking inputs of a query, in the background.
+     * Once they are written, the paged workplaces are reloaded around the items displayed.
+     *
+     * @param query The query holding the location of the user and the weather.
+     */
+    void rankWorkPlaces(WorkPlaceListQuery query);
+
+    /**
+     * Syncs the local workplaces with the remote source: the ones within
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_SYNC_RADIUS_METERS}
+     * of the origin of the paged workplaces, or all of them if it is not known yet.
+     * If a sync is already running, no new sync is started.
+     *
+     * @return A future that completes when the local database has been updated,
+     * or fails with the sync error.
+     */
+    ListenableFuture<Void> syncWorkPlaces();
+
+    /**
+     * Starts applying the remote changes of the workplaces to the local database as they happen,
+     * if the remote source supports it. While it runs, {@link #syncWorkPlaces()} does nothing.
+     * Must be called on the main thread.
+     */
+    void startLiveSync();
+
+    /**
+     * Stops applying the remote changes of the workplaces as they happen.
+     * Must be called on the main thread.
+     */
+    void stopLiveSync();
+
+    /**
+     * Gets the time of the last successful sync of the local workplaces.
+     *
+     * @return The time of the last sync in milliseconds, or 0 if they were never synced.
+     */
+    long getLastSyncTime();
+
     /**
      * Fetches a list of saved workplaces for a specific user, identified by the given UID
      *
@@ -46,14 +123,25 @@ public interface IWorkPlaceRepository {
 
 
     /**
-     * Provides LiveData containing the result of retrieving saved workplaces.
+     * Provides LiveData containing the result of retrieving saved workplaces. The saved
+     * workplaces are read from the local database and posted again whenever they change.
      *
      * @return {@link LiveData} with saved workplace retrieval result.
      */
     LiveData<Result> getSavedWorkPlaceLiveData();
 
     /**
-     * Saves a workplace for a user
+     * Searches the saved workplaces by name and address in the local database, ranking the
+     * best matches first.
+     *
+     * @param searchText The text to search, or an empty text for every saved workplace
+     * @return {@link LiveData} with the matching saved workplaces, updated whenever they change.
+     */
+    LiveData<List<WorkPlace>> searchSavedWorkPlaces(String searchText);
+
+    /**
+     * Saves a workplace for a user. The workplace is saved in the local database at once, and
+     * the change is written to the remote database once the device is online.
      *
      * @param UID       The unique identifier of the user
      * @param workPlace The {@link WorkPlace} to be saved
@@ -68,7 +156,9 @@ public interface IWorkPlaceRepository {
     LiveData<Result> getSaveResultWorkPlaceLiveData();
 
     /**
-     * Removes a previously saved workplace for a user
+     * Removes a previously saved workplace for a user. The workplace is removed from the saved
+     * ones in the local database at once, and the change is written to the remote database
+     * once the device is online.
      *
      * @param UID       The unique identifier of the user
      * @param workPlace The {@link WorkPlace} to be removed
@@ -82,4 +172,12 @@ public interface IWorkPlaceRepository {
      */
     LiveData<Result> getRemoveResultWorkPlaceLiveData();
 
+    /**
+     * Tells whether the device is online. The changes of the saved workplaces made while it
+     * was offline are written to the remote database, all together, as soon as it is online.
+     *
+     * @param online true if the device is online
+     */
+    void setOnline(boolean online);
+
 }
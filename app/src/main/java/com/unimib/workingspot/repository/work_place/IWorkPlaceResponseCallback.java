@@ -1,6 +1,10 @@
 package com.unimib.workingspot.repository.work_place;
 
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.util.spatial.GeoArea;
+
 import java.util.List;
 
 /**
@@ -14,31 +18,50 @@ public interface IWorkPlaceResponseCallback {
      * @param workPlaceList the list of workplaces fetched from the remote data source
      */
     void onSuccessFetchWorkPlacesFromRemote(List<WorkPlace> workPlaceList);
-    /**
-     * Callback for when when workplaces are successfully fetched from the local data source
-     * @param workPlaceList the list of workplaces fetched from the local data source
-     */
-    void onSuccessFetchWorkPlacesFromLocal(List<WorkPlace> workPlaceList);
     /**
      * Callback for when fetching workplaces from the remote data source fails
      * @param exception The exception detailing the error that occurred
      */
     void onFailureFetchWorkPlaceFromRemote(Exception exception);
+    /**
+     * Callback for when the workplaces of an area are successfully fetched from the remote data source
+     * @param workPlaceList the list of workplaces inside the area
+     * @param area the area the workplaces were fetched from
+     */
+    void onSuccessFetchWorkPlacesInFromRemote(List<WorkPlace> workPlaceList, GeoArea area);
+    /**
+     * Callback for when the workplaces changed since the previous fetch are successfully fetched
+     * from the remote data source
+     * @param workPlaceList the list of changed workplaces, possibly empty
+     */
+    void onSuccessFetchUpdatedWorkPlacesFromRemote(List<WorkPlace> workPlaceList);
+    /**
+     * Callback for when the live sync receives changes of single workplaces from the remote data source
+     * @param changedWorkPlaces the workplaces added or changed
+     * @param removedKeys the keys of the workplaces removed
+     */
+    void onSuccessFetchWorkPlaceChangesFromRemote(List<WorkPlace> changedWorkPlaces, List<String> removedKeys);
+    /**
+     * Callback for when the version of the stored workplaces is read from the local data source
+     * @param catalogueVersion the version of the stored workplaces, or null if they were never read in full
+     */
+    void onSuccessFetchCatalogueVersionFromLocal(CatalogueVersion catalogueVersion);
+    /**
+     * Callback for when reading the version of the stored workplaces from the local data source fails
+     * @param exception The exception detailing the error that occurred
+     */
+    void onFailureFetchCatalogueVersionFromLocal(Exception exception);
     /**
      * Callback for when the saved workplace keys are successfully fetched from the remote data source
+     * @param UID The unique identifier of the user whose keys were fetched
      * @param savedKeys The list of saved workplace keys fetched from the remote data source
      */
-    void onSuccessFetchSavedKeysFromRemote(List<String> savedKeys);
+    void onSuccessFetchSavedKeysFromRemote(String UID, List<String> savedKeys);
     /**
      * Callback for when fetching saved workplace keys from the remote data source fails.
      * @param exception The exception detailing the error that occurred
      */
     void onFailureFetchSavedKeysFromRemote(Exception exception);
-    /**
-     * Callback for when saved workplaces are successfully fetched from the local data source
-     * @param workPlaceList The list of saved workplaces fetched from the local data source
-     */
-    void onSuccessFetchSavedFromLocal(List<WorkPlace> workPlaceList);
     /**
      * Callback for when a workplace is successfully fetched from the Google Places API
      * @param workPlace The workplace fetched from the external source.
@@ -56,11 +79,6 @@ public interface IWorkPlaceResponseCallback {
      */
     void onSuccessCreateFromLocal(WorkPlace workPlace);
     // -------------------------------- Save callbacks -------------------------------------------//
-    /**
-     * Callback when a workplace is successfully saved in the remote data source
-     * @param workPlace The workplace that was successfully saved in the remote data source
-     */
-    void onSuccessSaveFromRemote(WorkPlace workPlace);
     /**
      * Called when a workplace is successfully saved in the local data source
      * @param workPlace The workplace that was successfully saved in the local data source
@@ -71,24 +89,35 @@ public interface IWorkPlaceResponseCallback {
      * @param workPlaceList The list of workplaces that was successfully saved in the local data source
      */
     void onSuccessSaveFromLocal(List<WorkPlace> workPlaceList);
-
-    /**
-     * Called when all saved workplaces have been successfully marked as saved in the local data source.
-     * This callback indicates that the local update process is complete and the updated list
-     * of saved workplaces can now be safely retrieved or used.
-     */
-    void onSetSavedCompleted();
     // -------------------------------- Delete callbacks -----------------------------------------//
-    /**
-     * Called when a saved workplace is successfully deleted from the remote data source
-     * @param workPlace The workplace that was successfully deleted from the remote data source
-     */
-    void onSuccessDeleteSavedFromRemote(WorkPlace workPlace);
     /**
      * Called when a saved workplace is successfully deleted from the local data source
      * @param workPlace The workplace that was successfully deleted from the local data source
      */
     void onSuccessDeleteSavedFromLocal(WorkPlace workPlace);
+    // -------------------------------- Outbox callbacks -----------------------------------------//
+    /**
+     * Called when the changes of the saved workplaces not yet written remotely are read from
+     * the local data source
+     * @param pendingChanges The pending changes, empty if there are none
+     */
+    void onSuccessFetchPendingSavedChangesFromLocal(List<PendingSavedChange> pendingChanges);
+    /**
+     * Called when the changes of the saved workplaces are written to the remote data source
+     * @param writtenChanges The changes written to the remote data source
+     */
+    void onSuccessWriteSavedChangesFromRemote(List<PendingSavedChange> writtenChanges);
+    /**
+     * Called when the changes of the saved workplaces could not be read from the local data
+     * source, written to the remote one or removed once written; they are kept in the local
+     * data source until the next write
+     * @param exception The exception detailing the error that occurred
+     */
+    void onFailureWriteSavedChanges(Exception exception);
+    /**
+     * Called when the written changes of the saved workplaces are removed from the local data source
+     */
+    void onSuccessCompleteSavedChangesFromLocal();
     // -------------------------------- Generic failures callbacks -------------------------------//
     /**
      * Called when an error occurs in a remote operation
@@ -0,0 +1,72 @@
+package com.unimib.workingspot.repository.work_place;
+
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_SYNC_INTERVAL;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.paging.ExperimentalPagingApi;
+import androidx.paging.LoadType;
+import androidx.paging.ListenableFutureRemoteMediator;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.unimib.workingspot.model.WorkPlace;
+
+/**
+ * Boundary callback of the paged workplace list. The list is always read from the local Room
+ * database; this mediator syncs the database with Firebase when the list is first loaded and
+ * the last sync is older than {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_SYNC_INTERVAL},
+ * or when the user refreshes the list. The sync replaces the local catalogue in one go,
+ * so there is nothing to load when the list reaches its ends.
+ * @param <Key> The type of the keys of the pages, which the mediator does not read
+ */
+@OptIn(markerClass = ExperimentalPagingApi.class)
+public class WorkPlaceRemoteMediator<Key> extends ListenableFutureRemoteMediator<Key, WorkPlace> {
+
+    private final IWorkPlaceRepository workPlaceRepository;
+
+    /**
+     * Constructor for the WorkPlaceRemoteMediator class
+     * @param workPlaceRepository The repository that syncs the local database with Firebase
+     */
+    public WorkPlaceRemoteMediator(IWorkPlaceRepository workPlaceRepository) {
+        this.workPlaceRepository = workPlaceRepository;
+    }
+
+    /**
+     * Decides whether the local database has to be synced before the first page is shown.
+     * The local workplaces are shown in any case, the sync only refreshes them.
+     * @return the action to take when the list is first loaded
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<InitializeAction> initializeFuture() {
+        long elapsed = System.currentTimeMillis() - workPlaceRepository.getLastSyncTime();
+        return Futures.immediateFuture(elapsed > WORKPLACE_SYNC_INTERVAL
+                ? InitializeAction.LAUNCH_INITIAL_REFRESH
+                : InitializeAction.SKIP_INITIAL_REFRESH);
+    }
+
+    /**
+     * Syncs the local database when the list is refreshed. Room invalidates the paging source
+     * once the synced workplaces are written, so the new data is loaded automatically.
+     * @param loadType The type of load: refresh, or a boundary of the list being reached
+     * @param state The current state of the paged list
+     * @return the result of the sync
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<MediatorResult> loadFuture(@NonNull LoadType loadType,
+                                                       @NonNull PagingState<Key, WorkPlace> state) {
+        if (loadType != LoadType.REFRESH)
+            return Futures.immediateFuture(new MediatorResult.Success(true));
+
+        return FluentFuture.from(workPlaceRepository.syncWorkPlaces())
+                .<MediatorResult>transform(ignored -> new MediatorResult.Success(true),
+                        MoreExecutors.directExecutor())
+                .catching(Exception.class, MediatorResult.Error::new, MoreExecutors.directExecutor());
+    }
+}
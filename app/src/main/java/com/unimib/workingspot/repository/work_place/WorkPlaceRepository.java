@@ -1,15 +1,51 @@
 package com.unimib.workingspot.repository.work_place;
 
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_DATABASE_METRICS_LOG_INTERVAL;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_LIVE_SYNC_ENABLED;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PAGE_MAX_SIZE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PAGE_PREFETCH_DISTANCE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PAGE_SIZE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_SYNC_RADIUS_METERS;
+
+import android.util.Log;
+
+import androidx.annotation.OptIn;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.ExperimentalPagingApi;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingDataTransforms;
+import androidx.paging.PagingLiveData;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.unimib.workingspot.database.work_place.ranking.WorkPlaceRankKey;
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.Result;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceListQuery;
+import com.unimib.workingspot.model.WorkPlaceStore;
 import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceGoogleRemoteDataSource;
 import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceLocalDataSource;
 import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceRemoteFirebaseDataSource;
+import com.unimib.workingspot.util.executor.ExecutorMetrics;
+import com.unimib.workingspot.util.executor.MeteredExecutor;
+import com.unimib.workingspot.util.spatial.GeoArea;
+import com.unimib.workingspot.util.spatial.WorkPlaceColumns;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * This class is responsible for managing the retrieval of the workplaces. It first attempts to fetch
@@ -18,18 +54,53 @@ import java.util.List;
  * WorkPlace data sources (local and remote) */
 public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPlaceRepository {
 
+    private static final String TAG = WorkPlaceRepository.class.getSimpleName();
+
     // Data sources for fetching workplace data
     private final BaseWorkPlaceRemoteFirebaseDataSource workPlaceRemoteDataSource;
     private final BaseWorkPlaceLocalDataSource workPlaceLocalDataSource;
     private final BaseWorkPlaceGoogleRemoteDataSource workPlaceGoogleRemoteDataSource;
 
+    // LiveData objects observed from the local database
+    private final LiveData<List<WorkPlace>> localWorkPlacesLiveData;
+    private final LiveData<List<WorkPlace>> localSavedWorkPlacesLiveData;
+
     // LiveData objects to post the workplaces data or errors
-    private final MutableLiveData<Result> workPlacesMutableLiveData;
-    private final MutableLiveData<Result> savedWorkPlacesMutableLiveData;
+    private final MediatorLiveData<Result> workPlacesMutableLiveData;
+    private final MediatorLiveData<Result> savedWorkPlacesMutableLiveData;
     private final MutableLiveData<Result> saveResultMutableLiveData;
     private final MutableLiveData<Result> createWorkPlaceMutableLiveData;
     private final MutableLiveData<Result> deleteResultMutableLiveData;
 
+    // Canonical instances of the workplaces shown by the screens
+    private final WorkPlaceStore workPlaceStore = new WorkPlaceStore();
+
+    // Columnar snapshot of the local workplaces, rebuilt on its own thread when they change
+    private final MediatorLiveData<WorkPlaceColumns> workPlaceColumnsLiveData;
+    private final Executor workPlaceColumnsExecutor;
+    // Last workplaces posted by the local database, the only ones worth indexing
+    private final AtomicReference<List<WorkPlace>> pendingColumnsWorkPlaces = new AtomicReference<>();
+    // Last snapshot built, only read on the snapshot executor
+    private WorkPlaceColumns lastWorkPlaceColumns;
+
+    // Query of the last paged workplaces provided
+    private volatile Supplier<WorkPlaceListQuery> pagedWorkPlacesQuery;
+
+    // Sync of the local workplaces in progress, null if none is running
+    private SettableFuture<Void> pendingSync;
+    // Time of the last successful sync of the local workplaces
+    private long lastSyncTime;
+    // Whether the remote source resumes from the version of the stored workplaces, read before the first sync
+    private boolean catalogueVersionRestored;
+
+    // Whether the device is online, so that the pending changes of the saved workplaces can be written
+    private volatile boolean online;
+    // The signed-in user, the only one whose pending changes can be written
+    private String savedChangesUID;
+    // Whether the pending changes are being written, and whether they changed in the meantime
+    private boolean savedChangesWriteRunning;
+    private boolean savedChangesWriteRequested;
+
     /**
      * Constructor for initializing the WorkPlaceRepository with the remote and local data sources
      * @param workPlaceRemoteDataSource  Data source for fetching weather from the remote database
@@ -39,8 +110,8 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
                                BaseWorkPlaceLocalDataSource workPlaceLocalDataSource,
                                BaseWorkPlaceGoogleRemoteDataSource workPlaceGoogleRemoteDataSource) {
         // Create live data
-        this.workPlacesMutableLiveData = new MutableLiveData<>();
-        this.savedWorkPlacesMutableLiveData = new MutableLiveData<>();
+        this.workPlacesMutableLiveData = new MediatorLiveData<>();
+        this.savedWorkPlacesMutableLiveData = new MediatorLiveData<>();
         this.deleteResultMutableLiveData = new MutableLiveData<>();
         this.createWorkPlaceMutableLiveData = new MutableLiveData<>();
         this.saveResultMutableLiveData = new MutableLiveData<>();
@@ -53,11 +124,43 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
         workPlaceRemoteDataSource.setCallback(this);
         workPlaceLocalDataSource.setCallback(this);
         workPlaceGoogleRemoteDataSource.setCallback(this);
+
+        // The workplaces are read from the local database, which notifies every write:
+        // the remote operations only have to update it
+        this.localWorkPlacesLiveData = workPlaceLocalDataSource.observeWorkPlaces();
+        this.localSavedWorkPlacesLiveData = workPlaceLocalDataSource.observeSavedWorkPlaces();
+        workPlacesMutableLiveData.addSource(localWorkPlacesLiveData, workPlaces ->
+                workPlacesMutableLiveData.setValue(toCanonicalResult(workPlaces)));
+        savedWorkPlacesMutableLiveData.addSource(localSavedWorkPlacesLiveData, workPlaces ->
+                savedWorkPlacesMutableLiveData.setValue(toCanonicalResult(workPlaces)));
+
+        // The snapshot is only built while it is observed
+        this.workPlaceColumnsExecutor = new MeteredExecutor(Executors.newSingleThreadExecutor(),
+                new ExecutorMetrics("WorkPlace snapshot builds", WORKPLACE_DATABASE_METRICS_LOG_INTERVAL));
+        this.workPlaceColumnsLiveData = new MediatorLiveData<>();
+        workPlaceColumnsLiveData.addSource(localWorkPlacesLiveData, this::rebuildWorkPlaceColumns);
+    }
+    /**
+     * Builds the columnar snapshot of the given workplaces on the snapshot executor. If the
+     * local database posts newer workplaces before the build starts, only the newest ones are
+     * built, and nothing is built if they are the same as the last snapshot
+     * @param workPlaces The workplaces posted by the local database
+     */
+    private void rebuildWorkPlaceColumns(List<WorkPlace> workPlaces) {
+        if (pendingColumnsWorkPlaces.getAndSet(workPlaces) != null)
+            return;
+        workPlaceColumnsExecutor.execute(() -> {
+            List<WorkPlace> latest = pendingColumnsWorkPlaces.getAndSet(null);
+            if (latest == null || (lastWorkPlaceColumns != null && lastWorkPlaceColumns.hasSameRows(latest)))
+                return;
+            lastWorkPlaceColumns = new WorkPlaceColumns(latest, workPlaceStore);
+            workPlaceColumnsLiveData.postValue(lastWorkPlaceColumns);
+        });
     }
     /** {@inheritDoc} */
     @Override
     public void fetchWorkPlaces() {
-        workPlaceRemoteDataSource.fetchWorkPlaces();
+        syncWorkPlaces();
     }
     /** {@inheritDoc} */
     @Override
@@ -66,8 +169,106 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
     }
     /** {@inheritDoc} */
     @Override
+    public LiveData<WorkPlace> getWorkPlaceLiveData(String firebaseKey) {
+        return Transformations.map(workPlaceLocalDataSource.observeWorkPlace(firebaseKey),
+                workPlace -> workPlace != null ? workPlaceStore.canonicalize(workPlace) : null);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public LiveData<WorkPlaceColumns> getWorkPlaceColumnsLiveData() {
+        return workPlaceColumnsLiveData;
+    }
+    /** {@inheritDoc} */
+    @Override
+    @OptIn(markerClass = ExperimentalPagingApi.class)
+    public LiveData<PagingData<WorkPlace>> getPagedWorkPlaces(Supplier<WorkPlaceListQuery> query) {
+        // Placeholders keep the scrollbar stable, and pages far from the visible ones are dropped
+        PagingConfig pagingConfig = new PagingConfig(WORKPLACE_PAGE_SIZE, WORKPLACE_PAGE_PREFETCH_DISTANCE,
+                true, WORKPLACE_PAGE_SIZE * 2, WORKPLACE_PAGE_MAX_SIZE);
+        pagedWorkPlacesQuery = query;
+        // The paging sources invalidate themselves when the workplaces or their scores are written
+        WorkPlaceListQuery listQuery = query.get();
+        LiveData<PagingData<WorkPlace>> pagedWorkPlaces;
+        if (workPlaceLocalDataSource.isSearched(listQuery))
+            pagedWorkPlaces = PagingLiveData.getLiveData(new Pager<Integer, WorkPlace>(pagingConfig, null,
+                    new WorkPlaceRemoteMediator<>(this),
+                    () -> workPlaceLocalDataSource.searchPagedWorkPlaces(listQuery)));
+        else
+            pagedWorkPlaces = PagingLiveData.getLiveData(new Pager<WorkPlaceRankKey, WorkPlace>(pagingConfig, null,
+                    new WorkPlaceRemoteMediator<>(this),
+                    () -> workPlaceLocalDataSource.getRankedWorkPlaces(listQuery.isIncludeOutside())));
+        // The loaded pages share their workplaces with the other screens
+        return Transformations.map(pagedWorkPlaces,
+                pagingData -> PagingDataTransforms.map(pagingData, MoreExecutors.directExecutor(),
+                        workPlaceStore::canonicalize));
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void rankWorkPlaces(WorkPlaceListQuery query) {
+        workPlaceLocalDataSource.rankWorkPlaces(query);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public synchronized ListenableFuture<Void> syncWorkPlaces() {
+        // The live sync already writes every remote change as it happens
+        if (workPlaceRemoteDataSource.isLiveSyncRunning())
+            return Futures.immediateFuture(null);
+        if (pendingSync == null) {
+            pendingSync = SettableFuture.create();
+            // The first sync only reads the workplaces changed since the stored ones
+            if (catalogueVersionRestored)
+                fetchRemoteWorkPlaces();
+            else
+                workPlaceLocalDataSource.getCatalogueVersion();
+        }
+        return pendingSync;
+    }
+    /**
+     * Fetches the workplaces around the user from the remote source, or all of them if the
+     * position of the user is not known
+     */
+    private void fetchRemoteWorkPlaces() {
+        GeoArea area = getSyncArea();
+        if (area != null)
+            workPlaceRemoteDataSource.fetchWorkPlacesIn(area);
+        else
+            workPlaceRemoteDataSource.fetchWorkPlaces();
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void startLiveSync() {
+        if (WORKPLACE_LIVE_SYNC_ENABLED && !workPlaceRemoteDataSource.isLiveSyncRunning())
+            workPlaceRemoteDataSource.startLiveSync(getSyncArea());
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void stopLiveSync() {
+        workPlaceRemoteDataSource.stopLiveSync();
+    }
+    /**
+     * Gets the area whose workplaces are synced: only the workplaces around the user are
+     * downloaded, once their position is known
+     * @return The area around the origin of the paged workplaces, or null if it is not known
+     */
+    private GeoArea getSyncArea() {
+        Supplier<WorkPlaceListQuery> querySupplier = pagedWorkPlacesQuery;
+        WorkPlaceListQuery query = querySupplier != null ? querySupplier.get() : null;
+        if (query == null || !query.hasOrigin())
+            return null;
+        return GeoArea.around(query.getLatitude(), query.getLongitude(), WORKPLACE_SYNC_RADIUS_METERS);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long getLastSyncTime() {
+        return lastSyncTime;
+    }
+    /** {@inheritDoc} */
+    @Override
     public void fetchSavedWorkPlaces(String UID) {
         workPlaceRemoteDataSource.getSavedWorkPlaceKeys(UID);
+        // The changes left from a previous session are written once the user is known
+        setSavedChangesUser(UID);
+        writeSavedChanges();
     }
     /** {@inheritDoc} */
     @Override
@@ -76,8 +277,16 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
     }
     /** {@inheritDoc} */
     @Override
+    public LiveData<List<WorkPlace>> searchSavedWorkPlaces(String searchText) {
+        return Transformations.map(workPlaceLocalDataSource.searchSavedWorkPlaces(searchText),
+                workPlaceStore::canonicalizeAll);
+    }
+    /** {@inheritDoc} */
+    @Override
     public void saveWorkPlace(String UID, WorkPlace workPlace) {
-        workPlaceRemoteDataSource.saveWorkPlace(UID, workPlace);
+        setSavedChangesUser(UID);
+        // The change is written to the remote database once it is committed locally
+        workPlaceLocalDataSource.queueSavedChange(UID, workPlace, true);
     }
     /** {@inheritDoc} */
     @Override
@@ -93,7 +302,50 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
     /** {@inheritDoc} */
     @Override
     public void removeSavedWorkPlace(String UID, WorkPlace workPlace){
-        workPlaceRemoteDataSource.removeSavedWorkPlace(UID, workPlace);
+        setSavedChangesUser(UID);
+        workPlaceLocalDataSource.queueSavedChange(UID, workPlace, false);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void setOnline(boolean online) {
+        this.online = online;
+        if (online)
+            writeSavedChanges();
+    }
+    /**
+     * Remembers the signed-in user, whose pending changes of the saved workplaces are written
+     * @param UID The unique identifier of the user
+     */
+    private synchronized void setSavedChangesUser(String UID) {
+        savedChangesUID = UID;
+    }
+    /**
+     * Writes the pending changes of the saved workplaces of the signed-in user to the remote
+     * database, if the device is online. The changes of the other users are left in the outbox,
+     * since the remote database only accepts the writes of the signed-in user. A single write
+     * runs at a time: the changes made while it runs are written by the next one, so a burst of
+     * changes costs two writes at most
+     */
+    private synchronized void writeSavedChanges() {
+        if (!online || savedChangesUID == null)
+            return;
+        if (savedChangesWriteRunning) {
+            savedChangesWriteRequested = true;
+            return;
+        }
+        savedChangesWriteRunning = true;
+        savedChangesWriteRequested = false;
+        // The changes still being written locally start another write once committed
+        workPlaceLocalDataSource.getPendingSavedChanges(savedChangesUID);
+    }
+    /**
+     * Completes the write of the pending changes of the saved workplaces, and starts the next one
+     * if they changed in the meantime
+     */
+    private synchronized void completeSavedChangesWrite() {
+        savedChangesWriteRunning = false;
+        if (savedChangesWriteRequested)
+            writeSavedChanges();
     }
     /** {@inheritDoc} */
     @Override
@@ -108,34 +360,55 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
     /** {@inheritDoc} */
     @Override
     public void onSuccessFetchWorkPlacesFromRemote(List<WorkPlace> workPlaceList) {
-        workPlaceLocalDataSource.saveAllWorkPlaces(workPlaceList);
+        workPlaceLocalDataSource.saveAllWorkPlaces(workPlaceList, workPlaceRemoteDataSource.getCatalogueVersion());
     }
     /** {@inheritDoc} */
     @Override
-    public void onSuccessFetchWorkPlacesFromLocal(List<WorkPlace> workPlaceList) {
-        Result.WorkPlaceSuccess result = new Result.WorkPlaceSuccess(workPlaceList);
-        workPlacesMutableLiveData.postValue(result);
+    public void onSuccessFetchWorkPlacesInFromRemote(List<WorkPlace> workPlaceList, GeoArea area) {
+        workPlaceLocalDataSource.saveWorkPlacesIn(workPlaceList, area);
     }
     /** {@inheritDoc} */
     @Override
-    public void onFailureFetchWorkPlaceFromRemote(Exception exception) {
-        workPlaceLocalDataSource.getWorkPlaces();
+    public void onSuccessFetchUpdatedWorkPlacesFromRemote(List<WorkPlace> workPlaceList) {
+        workPlaceLocalDataSource.updateWorkPlaces(workPlaceList, workPlaceRemoteDataSource.getCatalogueVersion());
     }
     /** {@inheritDoc} */
     @Override
-    public void onSuccessFetchSavedKeysFromRemote(List<String> savedKeys) {
-        workPlaceLocalDataSource.setWorkplacesAsSaved(savedKeys);
+    public void onSuccessFetchWorkPlaceChangesFromRemote(List<WorkPlace> changedWorkPlaces, List<String> removedKeys) {
+        workPlaceLocalDataSource.applyWorkPlaceChanges(changedWorkPlaces, removedKeys);
     }
     /** {@inheritDoc} */
     @Override
-    public void onFailureFetchSavedKeysFromRemote(Exception exception) {
-        workPlaceLocalDataSource.getSavedWorkPlaces();
+    public void onSuccessFetchCatalogueVersionFromLocal(CatalogueVersion catalogueVersion) {
+        if (catalogueVersion != null)
+            workPlaceRemoteDataSource.setCatalogueVersion(catalogueVersion);
+        synchronized (this) {
+            catalogueVersionRestored = true;
+        }
+        fetchRemoteWorkPlaces();
     }
     /** {@inheritDoc} */
     @Override
-    public void onSuccessFetchSavedFromLocal(List<WorkPlace> workPlaceList) {
-        Result.WorkPlaceSuccess result = new Result.WorkPlaceSuccess(workPlaceList);
-        savedWorkPlacesMutableLiveData.postValue(result);
+    public void onFailureFetchCatalogueVersionFromLocal(Exception exception) {
+        // The sync still works without the version, by reading every workplace
+        Log.w(TAG, "Version of the stored workplaces not read", exception);
+        onSuccessFetchCatalogueVersionFromLocal(null);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void onFailureFetchWorkPlaceFromRemote(Exception exception) {
+        completeSync(exception);
+        repostLocalWorkPlaces(workPlacesMutableLiveData, localWorkPlacesLiveData);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void onSuccessFetchSavedKeysFromRemote(String UID, List<String> savedKeys) {
+        workPlaceLocalDataSource.setWorkplacesAsSaved(UID, savedKeys);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void onFailureFetchSavedKeysFromRemote(Exception exception) {
+        repostLocalWorkPlaces(savedWorkPlacesMutableLiveData, localSavedWorkPlacesLiveData);
     }
     /** {@inheritDoc} */
     @Override
@@ -150,36 +423,56 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
     /** {@inheritDoc} */
     @Override
     public void onSuccessCreateFromLocal(WorkPlace workPlace) {
-        Result.WorkPlaceSuccess result = new Result.WorkPlaceSuccess(workPlace);
+        Result.WorkPlaceSuccess result = new Result.WorkPlaceSuccess(workPlaceStore.canonicalize(workPlace));
         createWorkPlaceMutableLiveData.postValue(result);
     }
     /** {@inheritDoc} */
     @Override
-    public void onSuccessSaveFromRemote(WorkPlace workPlace) {
-        workPlaceLocalDataSource.setWorkPlaceAsSaved(workPlace);
-    }
-    /** {@inheritDoc} */
-    @Override
     public void onSuccessSaveFromLocal(WorkPlace workPlace) {
-        Result.WorkPlaceSuccess workPlaceSuccess = new Result.WorkPlaceSuccess(workPlace);
+        Result.WorkPlaceSuccess workPlaceSuccess = new Result.WorkPlaceSuccess(workPlaceStore.canonicalize(workPlace));
         saveResultMutableLiveData.postValue(workPlaceSuccess);
+        writeSavedChanges();
     }
     /** {@inheritDoc} */
     @Override
     public void onSuccessSaveFromLocal(List<WorkPlace> workPlaceList) {
-        Result.WorkPlaceSuccess result = new Result.WorkPlaceSuccess(workPlaceList);
-        workPlacesMutableLiveData.postValue(result);
+        // The synced workplaces are posted by the local database
+        completeSync(null);
     }
     /** {@inheritDoc} */
     @Override
-    public void onSuccessDeleteSavedFromRemote(WorkPlace workPlace) {
-        workPlaceLocalDataSource.setWorkPlaceAsNotSaved(workPlace);
+    public void onSuccessDeleteSavedFromLocal(WorkPlace workPlace) {
+        Result.WorkPlaceSuccess workPlaceSuccess = new Result.WorkPlaceSuccess(workPlaceStore.canonicalize(workPlace));
+        deleteResultMutableLiveData.postValue(workPlaceSuccess);
+        writeSavedChanges();
     }
     /** {@inheritDoc} */
     @Override
-    public void onSuccessDeleteSavedFromLocal(WorkPlace workPlace) {
-        Result.WorkPlaceSuccess workPlaceSuccess = new Result.WorkPlaceSuccess(workPlace);
-        deleteResultMutableLiveData.postValue(workPlaceSuccess);
+    public void onSuccessFetchPendingSavedChangesFromLocal(List<PendingSavedChange> pendingChanges) {
+        if (pendingChanges.isEmpty())
+            completeSavedChangesWrite();
+        else
+            workPlaceRemoteDataSource.writeSavedChanges(pendingChanges);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void onSuccessWriteSavedChangesFromRemote(List<PendingSavedChange> writtenChanges) {
+        workPlaceLocalDataSource.completeSavedChanges(writtenChanges);
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void onFailureWriteSavedChanges(Exception exception) {
+        // The changes stay in the outbox and are written again the next time the device is online
+        Log.w(TAG, "Pending saved workplace changes not written", exception);
+        synchronized (this) {
+            savedChangesWriteRequested = false;
+        }
+        completeSavedChangesWrite();
+    }
+    /** {@inheritDoc} */
+    @Override
+    public void onSuccessCompleteSavedChangesFromLocal() {
+        completeSavedChangesWrite();
     }
     /** {@inheritDoc} */
     @Override
@@ -193,16 +486,49 @@ public class WorkPlaceRepository implements IWorkPlaceResponseCallback, IWorkPla
     /** {@inheritDoc} */
     @Override
     public void onFailureFromLocal(Exception e) {
+        completeSync(e);
         Result.Error error = new Result.Error(e.getMessage());
         createWorkPlaceMutableLiveData.postValue(error);
         savedWorkPlacesMutableLiveData.postValue(error);
         workPlacesMutableLiveData.postValue(error);
         deleteResultMutableLiveData.postValue(error);
     }
-    /** {@inheritDoc} */
-    @Override
-    public void onSetSavedCompleted() {
-        workPlaceLocalDataSource.getSavedWorkPlaces();
+    /**
+     * Posts again the workplaces last read from the local database, so that the screens that
+     * asked for a refresh receive them even if the remote fetch failed and nothing was written
+     * @param liveData The LiveData exposed to the screens
+     * @param localLiveData The LiveData observed from the local database
+     */
+    private void repostLocalWorkPlaces(MutableLiveData<Result> liveData, LiveData<List<WorkPlace>> localLiveData) {
+        List<WorkPlace> workPlaces = localLiveData.getValue();
+        if (workPlaces != null)
+            liveData.postValue(toCanonicalResult(workPlaces));
+    }
+
+    /**
+     * Wraps the workplaces read from the local database in a result, replacing them with their
+     * canonical instances. The list is copied, as the snapshot executor may be reading it
+     * @param workPlaces The workplaces observed from the local database
+     * @return The successful result holding the canonical workplaces
+     */
+    private Result toCanonicalResult(List<WorkPlace> workPlaces) {
+        return new Result.WorkPlaceSuccess(workPlaceStore.canonicalizeAll(new ArrayList<>(workPlaces)));
+    }
+
+    /**
+     * Completes the sync of the local workplaces in progress, if any
+     * @param exception The error that made the sync fail, or null if it succeeded
+     */
+    private synchronized void completeSync(Exception exception) {
+        if (exception == null)
+            lastSyncTime = System.currentTimeMillis();
+        if (pendingSync != null) {
+            if (exception == null)
+                pendingSync.set(null);
+            else
+                pendingSync.setException(exception);
+            pendingSync = null;
+        }
     }
 
 }
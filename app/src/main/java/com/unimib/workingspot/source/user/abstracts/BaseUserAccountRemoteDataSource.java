@@ -27,6 +27,12 @@ public abstract class BaseUserAccountRemoteDataSource {
      */
     public abstract void getLoggedUser();
 
+    /**
+     * Abstract method to get the unique identifier of the currently logged-in user.
+     * @return The unique identifier, or null if no user is logged in.
+     */
+    public abstract String getLoggedUserId();
+
     /**
      * Abstract method to log out the current user.
      * Implementations should define the logout procedure remotely.
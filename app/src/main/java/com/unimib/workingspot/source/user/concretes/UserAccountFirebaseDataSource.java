@@ -40,6 +40,16 @@ public class UserAccountFirebaseDataSource extends BaseUserAccountRemoteDataSour
         UserCommonFirebaseMethods.getLoggedUser(firebaseAuth, userCallback);
     }
 
+    /**
+     * Gets the unique identifier of the currently logged-in Firebase user.
+     * @return The unique identifier, or null if no user is logged in
+     */
+    @Override
+    public String getLoggedUserId() {
+        FirebaseUser user = firebaseAuth.getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+
     /**
      * Logs out the current user.
      * Adds an AuthStateListener to detect when the user is signed out, then triggers callback.
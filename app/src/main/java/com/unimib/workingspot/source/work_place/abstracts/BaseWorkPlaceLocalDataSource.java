@@ -1,7 +1,16 @@
 package com.unimib.workingspot.source.work_place.abstracts;
 
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
+
+import com.unimib.workingspot.database.work_place.ranking.WorkPlaceRankKey;
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceListQuery;
 import com.unimib.workingspot.repository.work_place.IWorkPlaceResponseCallback;
+import com.unimib.workingspot.util.spatial.GeoArea;
 
 import java.util.List;
 
@@ -19,37 +28,116 @@ public abstract class BaseWorkPlaceLocalDataSource {
         this.callback = callback;
     }
     /**
-     * Abstract method for retrieving all the workplace data from the local database
+     * Abstract method for observing all the workplaces stored in the local database
+     * @return A LiveData holding the stored workplaces, updated whenever they change
+     */
+    public abstract LiveData<List<WorkPlace>> observeWorkPlaces();
+    /**
+     * Abstract method for observing the saved workplaces stored in the local database
+     * @return A LiveData holding the saved workplaces, updated whenever they change
+     */
+    public abstract LiveData<List<WorkPlace>> observeSavedWorkPlaces();
+    /**
+     * Abstract method for searching the saved workplaces stored in the local database
+     * @param searchText The text searched in the names and addresses of the workplaces
+     * @return A LiveData holding the matching saved workplaces, updated whenever they change
+     */
+    public abstract LiveData<List<WorkPlace>> searchSavedWorkPlaces(String searchText);
+    /**
+     * Abstract method for observing a single workplace stored in the local database
+     * @param firebaseKey The Firebase key of the workplace
+     * @return A LiveData holding the workplace, updated whenever it changes
+     */
+    public abstract LiveData<WorkPlace> observeWorkPlace(String firebaseKey);
+    /**
+     * Abstract method for checking whether a query searches a text, whose results are ordered
+     * by relevance instead of the ranking
+     * @param query The query describing the filter and the ordering of the workplaces
+     * @return true if the query has words to search
      */
-    public abstract void getWorkPlaces();
+    public abstract boolean isSearched(WorkPlaceListQuery query);
+    /**
+     * Abstract method for loading the workplaces matching the searched text from the local
+     * database page by page
+     * @param query The query describing the filter and the searched text
+     * @return A paging source that loads the workplaces a page at a time
+     */
+    public abstract PagingSource<Integer, WorkPlace> searchPagedWorkPlaces(WorkPlaceListQuery query);
+    /**
+     * Abstract method for loading the workplaces from the local database page by page, in the
+     * order of their stored score
+     * @param includeOutside Whether outdoor workplaces should be included
+     * @return A paging source that loads the workplaces a page at a time
+     */
+    public abstract PagingSource<WorkPlaceRankKey, WorkPlace> getRankedWorkPlaces(boolean includeOutside);
+    /**
+     * Abstract method for storing the scores of the workplaces for the ranking inputs of a query
+     * @param query The query holding the ranking inputs
+     */
+    public abstract void rankWorkPlaces(WorkPlaceListQuery query);
     /**
      * Abstract method for saving a list of workplaces to the local database
      * @param workPlaceList The list of workplaces to be saved
+     * @param catalogueVersion The version of the fetched workplaces, stored with them, or null if it is not known
+     */
+    public abstract void saveAllWorkPlaces(List<WorkPlace> workPlaceList, @Nullable CatalogueVersion catalogueVersion);
+    /**
+     * Abstract method for saving the workplaces of an area to the local database
+     * @param workPlaceList The list of workplaces fetched from the area
+     * @param area The area the workplaces were fetched from
      */
-    public abstract void saveAllWorkPlaces(List<WorkPlace> workPlaceList);
+    public abstract void saveWorkPlacesIn(List<WorkPlace> workPlaceList, GeoArea area);
     /**
-     * Abstract method for marking a single workplace as saved
-     * @param workPlace The workplace to be saved
+     * Abstract method for saving the workplaces changed since the previous fetch to the local database
+     * @param workPlaceList The list of changed workplaces
+     * @param catalogueVersion The version of the fetched workplaces, stored with them, or null if it is not known
      */
-    public abstract void setWorkPlaceAsSaved(WorkPlace workPlace);
+    public abstract void updateWorkPlaces(List<WorkPlace> workPlaceList, @Nullable CatalogueVersion catalogueVersion);
+    /**
+     * Abstract method for reading the version of the workplaces stored in the local database
+     */
+    public abstract void getCatalogueVersion();
+    /**
+     * Abstract method for applying the live changes of single workplaces to the local database
+     * @param changedWorkPlaces The workplaces added or changed remotely
+     * @param removedKeys The keys of the workplaces removed remotely
+     */
+    public abstract void applyWorkPlaceChanges(List<WorkPlace> changedWorkPlaces, List<String> removedKeys);
+    /**
+     * Abstract method for marking a single workplace as saved or not saved, and recording the
+     * change until it is written to the remote database
+     * @param UID The unique identifier of the user
+     * @param workPlace The workplace to be saved or removed from the saved ones
+     * @param saved The new saved status (true = saved, false = not saved)
+     */
+    public abstract void queueSavedChange(String UID, WorkPlace workPlace, boolean saved);
+    /**
+     * Abstract method for reading the changes of the saved workplaces made by a user and not yet
+     * written to the remote database
+     * @param UID The unique identifier of the user
+     */
+    public abstract void getPendingSavedChanges(String UID);
+    /**
+     * Abstract method for dropping the changes of the saved workplaces made by a user and not yet
+     * written to the remote database, once the user logs out. It notifies no callback
+     * @param UID The unique identifier of the user
+     */
+    public abstract void clearPendingSavedChanges(String UID);
+    /**
+     * Abstract method for removing the changes of the saved workplaces written to the remote database
+     * @param writtenChanges The changes written to the remote database
+     */
+    public abstract void completeSavedChanges(List<PendingSavedChange> writtenChanges);
     /**
      *  Abstract method for marking a list of workplaces as saved
+     * @param UID The unique identifier of the user, whose pending changes are kept
      * @param savedKeys A list of primary keys representing the unique identifiers for the
      *                  {@link WorkPlace WorkPlaces} to be set as saved
      */
-    public abstract void setWorkplacesAsSaved(List<String> savedKeys);
-    /**
-     * Abstract method for retrieving all saved workplaces from the local database
-     */
-    public abstract void getSavedWorkPlaces();
+    public abstract void setWorkplacesAsSaved(String UID, List<String> savedKeys);
     /**
      * Abstract method for inserting a single workplace into the local database
      * @param workPlace The workplace to be inserted
      */
     public abstract void insertWorkPlace(WorkPlace workPlace);
-    /**
-     * Abstract method for marking a Workplace as no longer saved
-     * @param workPlace The workplace to be set as "not saved"
-     */
-    public abstract void setWorkPlaceAsNotSaved(WorkPlace workPlace);
 }
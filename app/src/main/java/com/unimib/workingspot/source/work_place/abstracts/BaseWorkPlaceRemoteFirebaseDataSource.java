@@ -1,7 +1,14 @@
 package com.unimib.workingspot.source.work_place.abstracts;
 
+import androidx.annotation.Nullable;
+
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.WorkPlace;
 import com.unimib.workingspot.repository.work_place.IWorkPlaceResponseCallback;
+import com.unimib.workingspot.util.spatial.GeoArea;
+
+import java.util.List;
 
 public abstract class BaseWorkPlaceRemoteFirebaseDataSource {
 
@@ -17,30 +24,69 @@ public abstract class BaseWorkPlaceRemoteFirebaseDataSource {
     }
 
     /**
-     * Abstract method for fetching a list of workplaces from the remote source
+     * Abstract method for fetching a list of workplaces from the remote source: all of them, or
+     * only the ones changed since the previous fetch if the source can tell which ones changed
      */
     public abstract void fetchWorkPlaces();
+    /**
+     * Abstract method for fetching the workplaces of an area from the remote source
+     * @param area The circle or the viewport whose workplaces are fetched
+     */
+    public abstract void fetchWorkPlacesIn(GeoArea area);
+    /**
+     * Resumes the fetches from the version of the workplaces stored locally, so that the first
+     * fetch only reads the workplaces changed since. Sources that cannot tell which workplaces
+     * changed do nothing
+     * @param catalogueVersion The version of the stored workplaces
+     */
+    public void setCatalogueVersion(CatalogueVersion catalogueVersion) {
+        // No action needed for the sources that always fetch every workplace
+    }
+    /**
+     * Gets the version of the workplaces read by the last full fetch and the fetches after it
+     * @return The version of the fetched workplaces, or null if the source does not track it
+     */
+    @Nullable
+    public CatalogueVersion getCatalogueVersion() {
+        return null;
+    }
+    /**
+     * Starts the live sync: the changes of the workplaces of an area made since the last fetch
+     * are notified, then the ones made while it runs, as they happen, until {@link #stopLiveSync()}
+     * is called. Sources that cannot listen to the changes do nothing
+     * @param area The area whose workplaces are synced, or null for every workplace
+     */
+    public void startLiveSync(@Nullable GeoArea area) {
+        // No action needed for the sources without a live sync
+    }
+    /**
+     * Stops the live sync, if it is running
+     */
+    public void stopLiveSync() {
+        // No action needed for the sources without a live sync
+    }
+    /**
+     * Checks whether the live sync is running. It stops by itself if the source cancels it
+     * @return true if the remote changes are notified as they happen
+     */
+    public boolean isLiveSyncRunning() {
+        return false;
+    }
     /**
      * Abstract method for creating a new workplace on the remote source
      * @param workPlace The workplace object that needs to be created
      */
     public abstract void createWorkPlace(WorkPlace workPlace);
     /**
-     * Abstract method for saving a workplace for a specific user to the remote source
-     * @param UID The unique identifier of the user
-     * @param workPlace The workplace to be saved
+     * Abstract method for writing the changes of the saved workplaces to the remote source,
+     * with as few writes as the source allows
+     * @param changes The changes to write, all made by the signed-in user
      */
-    public abstract void saveWorkPlace(String UID, WorkPlace workPlace);
+    public abstract void writeSavedChanges(List<PendingSavedChange> changes);
     /**
      * Abstract method for fetching the keys of saved workplaces for a specific user from the remote source
      * @param UID The unique identifier of the user
      */
     public abstract void getSavedWorkPlaceKeys(String UID);
-    /**
-     * Abstract method to remove a saved workplace for a specific user on the remote source
-     * @param UID The unique identifier of the user
-     * @param workPlace he workplace to be removed from the saved list
-     */
-    public abstract void removeSavedWorkPlace(String UID, WorkPlace workPlace);
 
 }
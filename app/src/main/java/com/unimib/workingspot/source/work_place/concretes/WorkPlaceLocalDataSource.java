@@ -1,100 +1,423 @@
 package com.unimib.workingspot.source.work_place.concretes;
 
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_DISTANCE_WEIGHT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_SAVED_WEIGHT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_WEATHER_WEIGHT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_WINDOW_MAX_DRIFT_METERS;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_RANKING_WINDOW_RADIUS_METERS;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.unimib.workingspot.database.work_place.DatabaseWriteQueue;
+import com.unimib.workingspot.database.work_place.PendingSavedChangeDAO;
 import com.unimib.workingspot.database.work_place.WorkPlaceDAO;
+import com.unimib.workingspot.database.work_place.WorkPlaceFtsQuery;
 import com.unimib.workingspot.database.work_place.WorkPlaceRoomDatabase;
+import com.unimib.workingspot.database.work_place.ranking.DistanceScoreTerm;
+import com.unimib.workingspot.database.work_place.ranking.RankedWorkPlacePagingSource;
+import com.unimib.workingspot.database.work_place.ranking.SavedScoreTerm;
+import com.unimib.workingspot.database.work_place.ranking.WeatherScoreTerm;
+import com.unimib.workingspot.database.work_place.ranking.WorkPlaceRankKey;
+import com.unimib.workingspot.database.work_place.ranking.WorkPlaceRanking;
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceListQuery;
 import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceLocalDataSource;
+import com.unimib.workingspot.util.spatial.GeoArea;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 /**
  * Concrete implementation of {@link BaseWorkPlaceLocalDataSource} for interacting with
- * the local Room database
+ * the local Room database. The writes go through the {@link DatabaseWriteQueue} of the database,
+ * and the callbacks are notified once they are committed. The one-off reads run on the query
+ * executor of the database, in parallel with the writes.
+ * The score of the {@link WorkPlaceRanking} is stored with every workplace: the writes clear the
+ * score of the rows they change, and the rows without a score are scored in the same transaction
  */
 public class WorkPlaceLocalDataSource extends BaseWorkPlaceLocalDataSource {
 
+    private static final String TAG = WorkPlaceLocalDataSource.class.getSimpleName();
+
+    // Rows scored again when only the weather changes, and rows written without a score
+    private static final String OUTDOOR_ROWS = "outside = 1";
+    private static final String UNSCORED_ROWS = "score IS NULL";
+
+    private final WorkPlaceRoomDatabase workPlaceRoomDatabase;
     private final WorkPlaceDAO workPlaceDAO;
+    private final PendingSavedChangeDAO pendingSavedChangeDAO;
+    private final DatabaseWriteQueue writeQueue;
+    private final Executor readExecutor;
+
+    // Ranking of the stored scores, and the query whose inputs it was built from
+    private volatile WorkPlaceRanking ranking;
+    private WorkPlaceListQuery rankedQuery;
+    // Query of the last ranking that wrote the scores of every workplace
+    private WorkPlaceListQuery fullyRankedQuery;
     /**
      * Constructor to initialize WorkPlaceLocalDataSource
      * @param workPlaceRoomDatabase The Room database instance used to access the workplace data
      */
     public WorkPlaceLocalDataSource(WorkPlaceRoomDatabase workPlaceRoomDatabase) {
+        this.workPlaceRoomDatabase = workPlaceRoomDatabase;
         this.workPlaceDAO = workPlaceRoomDatabase.workPlaceDAO();
+        this.pendingSavedChangeDAO = workPlaceRoomDatabase.pendingSavedChangeDAO();
+        this.writeQueue = workPlaceRoomDatabase.getWriteQueue();
+        this.readExecutor = workPlaceRoomDatabase.getQueryExecutor();
+        // Until the inputs are known, the workplaces are ranked by their saved state. The rows
+        // left without a score by a migration are scored once the database is open
+        this.ranking = toRanking(WorkPlaceListQuery.savedFirst());
+        writeQueue.enqueue(() -> score(UNSCORED_ROWS), () -> {},
+                exception -> Log.w(TAG, "Workplace scores not written", exception));
     }
     /**
-     * Fetches all workplace data from the local Room database asynchronously.
-     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#getWorkPlaces()}
+     * Observes all the workplaces stored in the local Room database. Room runs the query on its
+     * own executor and again whenever the workplace table changes.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#observeWorkPlaces()}
+     * @return A LiveData holding the stored workplaces
      */
     @Override
-    public void getWorkPlaces() {
-        WorkPlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            try {
-                List<WorkPlace> workPlaces = workPlaceDAO.getAll();
-                callback.onSuccessFetchWorkPlacesFromLocal(workPlaces);
-            } catch (Exception e) {
-                callback.onFailureFromLocal(e);
-            }
-        });
+    public LiveData<List<WorkPlace>> observeWorkPlaces() {
+        return workPlaceDAO.observeAllSummaries();
+    }
+    /**
+     * Observes the saved workplaces stored in the local Room database.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#observeSavedWorkPlaces()}
+     * @return A LiveData holding the saved workplaces
+     */
+    @Override
+    public LiveData<List<WorkPlace>> observeSavedWorkPlaces() {
+        return workPlaceDAO.observeSavedWorkPlaces();
+    }
+    /**
+     * Observes the saved workplaces whose name or address match the given text, using the
+     * full-text index of the local Room database.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#searchSavedWorkPlaces(String)}
+     * @param searchText The text typed by the user
+     * @return A LiveData holding the matching saved workplaces, or all of them if the text
+     * contains no word to search
+     */
+    @Override
+    public LiveData<List<WorkPlace>> searchSavedWorkPlaces(String searchText) {
+        WorkPlaceFtsQuery ftsQuery = WorkPlaceFtsQuery.parse(searchText);
+        if (ftsQuery == null)
+            return workPlaceDAO.observeSavedWorkPlaces();
+        return workPlaceDAO.searchSavedWorkPlaces(ftsQuery.getMatch(), ftsQuery.getNameMatch(),
+                ftsQuery.getNamePrefix());
+    }
+    /**
+     * Observes a single workplace stored in the local Room database.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#observeWorkPlace(String)}
+     * @param firebaseKey The Firebase key of the workplace
+     * @return A LiveData holding the workplace, or null if it is not stored
+     */
+    @Override
+    public LiveData<WorkPlace> observeWorkPlace(String firebaseKey) {
+        return workPlaceDAO.observeWorkPlace(firebaseKey);
     }
     /**
-     * Saves a list of workplaces to the local Room database asynchronously.
-     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#saveAllWorkPlaces(List)}
+     * Checks whether the query searches a text in the full-text index of the local Room database.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#isSearched(WorkPlaceListQuery)}
+     * @param query The query describing the filter and the ordering of the workplaces
+     * @return true if the query has words to search
+     */
+    @Override
+    public boolean isSearched(WorkPlaceListQuery query) {
+        return WorkPlaceFtsQuery.parse(query.getSearchText()) != null;
+    }
+    /**
+     * Creates a paging source over the workplaces matching the searched text, ordered by
+     * relevance. Room invalidates it whenever the workplace table changes.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#searchPagedWorkPlaces(WorkPlaceListQuery)}
+     * @param query The query describing the filter and the searched text
+     * @return A paging source that loads the matching workplaces a page at a time
+     */
+    @Override
+    public PagingSource<Integer, WorkPlace> searchPagedWorkPlaces(WorkPlaceListQuery query) {
+        WorkPlaceFtsQuery ftsQuery = WorkPlaceFtsQuery.parse(query.getSearchText());
+        return workPlaceDAO.searchPaged(ftsQuery.getMatch(), ftsQuery.getNameMatch(),
+                ftsQuery.getNamePrefix(), query.isIncludeOutside());
+    }
+    /**
+     * Creates a paging source over the workplaces in the order of their stored score, which
+     * reads the pages along the index of the score. It invalidates itself whenever the workplace
+     * table changes, so the list is reloaded after every sync, update or new ranking.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#getRankedWorkPlaces(boolean)}
+     * @param includeOutside Whether outdoor workplaces should be included
+     * @return A paging source that loads the workplaces a page at a time
+     */
+    @Override
+    public PagingSource<WorkPlaceRankKey, WorkPlace> getRankedWorkPlaces(boolean includeOutside) {
+        return new RankedWorkPlacePagingSource(workPlaceRoomDatabase, includeOutside);
+    }
+    /**
+     * Stores asynchronously the scores of the workplaces for the ranking inputs of a query: the
+     * saved state, the distance from the origin and the weather, when they are known. Only the
+     * scores that depend on the changed inputs are written: a new weather rewrites the outdoor
+     * workplaces, and a move shorter than {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_RANKING_WINDOW_MAX_DRIFT_METERS}
+     * from the origin of the last full ranking rewrites only the workplaces within
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_RANKING_WINDOW_RADIUS_METERS} of the user, whose order
+     * changes the most. A longer move rewrites all of them, and nothing is written if the
+     * inputs are the same.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#rankWorkPlaces(WorkPlaceListQuery)}
+     * @param query The query holding the ranking inputs
+     */
+    @Override
+    public synchronized void rankWorkPlaces(WorkPlaceListQuery query) {
+        WorkPlaceListQuery previousQuery = rankedQuery;
+        rankedQuery = query;
+        boolean weatherChanged = previousQuery != null
+                && Double.compare(previousQuery.getOutdoorSuitability(), query.getOutdoorSuitability()) != 0;
+        String condition;
+        if (previousQuery == null || previousQuery.hasOutdoorSuitability() != query.hasOutdoorSuitability()
+                || (!hasSameOrigin(previousQuery, query) && !isWithinDrift(fullyRankedQuery, query))) {
+            condition = null;
+            fullyRankedQuery = query;
+        } else if (!hasSameOrigin(previousQuery, query)) {
+            condition = new DistanceScoreTerm(query.getLatitude(), query.getLongitude())
+                    .getWithinCondition(WORKPLACE_RANKING_WINDOW_RADIUS_METERS);
+            if (weatherChanged)
+                condition = "(" + condition + ") OR " + OUTDOOR_ROWS;
+        } else if (weatherChanged)
+            condition = OUTDOOR_ROWS;
+        else
+            return;
+        ranking = toRanking(query);
+        // The paging sources are invalidated by the write, and reload the displayed window
+        writeQueue.enqueue(() -> score(condition), () -> {},
+                exception -> Log.w(TAG, "Workplace scores not written", exception));
+    }
+    /**
+     * Checks whether the origin of a query is close enough to the origin of the last full
+     * ranking for its scores to be written only around the user
+     * @param fullQuery The query of the last full ranking
+     * @param query The new query
+     * @return true if both have an origin, closer than the maximum drift
+     */
+    private static boolean isWithinDrift(WorkPlaceListQuery fullQuery, WorkPlaceListQuery query) {
+        return fullQuery.hasOrigin() && query.hasOrigin()
+                && GeoArea.around(fullQuery.getLatitude(), fullQuery.getLongitude(),
+                        WORKPLACE_RANKING_WINDOW_MAX_DRIFT_METERS).contains(query.getLatitude(), query.getLongitude());
+    }
+    /**
+     * Checks whether two queries rank the workplaces by the distance from the same origin
+     * @param query The first query
+     * @param other The second query
+     * @return true if both have no origin, or the same one
+     */
+    private static boolean hasSameOrigin(WorkPlaceListQuery query, WorkPlaceListQuery other) {
+        if (query.hasOrigin() != other.hasOrigin())
+            return false;
+        return !query.hasOrigin() || (Double.compare(query.getLatitude(), other.getLatitude()) == 0
+                && Double.compare(query.getLongitude(), other.getLongitude()) == 0);
+    }
+    /**
+     * Builds the ranking of the inputs of a query
+     * @param query The query holding the ranking inputs
+     * @return The ranking by saved state, and by distance and weather when they are known
+     */
+    private static WorkPlaceRanking toRanking(WorkPlaceListQuery query) {
+        WorkPlaceRanking ranking = new WorkPlaceRanking()
+                .with(new SavedScoreTerm(), WORKPLACE_RANKING_SAVED_WEIGHT);
+        if (query.hasOrigin())
+            ranking = ranking.with(new DistanceScoreTerm(query.getLatitude(), query.getLongitude()),
+                    WORKPLACE_RANKING_DISTANCE_WEIGHT);
+        if (query.hasOutdoorSuitability())
+            ranking = ranking.with(new WeatherScoreTerm(query.getOutdoorSuitability()),
+                    WORKPLACE_RANKING_WEATHER_WEIGHT);
+        return ranking;
+    }
+    /**
+     * Stores the score of the current ranking in the workplaces matching a condition.
+     * Runs on the write queue
+     * @param condition A condition over the WorkPlace columns, or null for every workplace
+     */
+    private void score(String condition) {
+        SupportSQLiteQuery update = ranking.toScoreUpdate(condition);
+        SupportSQLiteStatement statement = workPlaceRoomDatabase.compileStatement(update.getSql());
+        update.bindTo(statement);
+        statement.executeUpdateDelete();
+    }
+    /**
+     * Enqueues a write of the workplaces, followed in the same transaction by the scoring of
+     * the rows it left without a score
+     * @param write The write to run
+     * @param onCommitted Called once the transaction is committed
+     * @param onFailure Called if the transaction failed
+     */
+    private void enqueueWrite(Runnable write, Runnable onCommitted, Consumer<Exception> onFailure) {
+        writeQueue.enqueue(() -> {
+            write.run();
+            score(UNSCORED_ROWS);
+        }, onCommitted, onFailure);
+    }
+    /**
+     * Syncs the local Room database asynchronously with the list of workplaces fetched from
+     * the remote database. Only the changed rows are written; if the sync fails, the stored
+     * workplaces are left as they were. The version of the workplaces is written in the same
+     * transaction, so it never gets ahead of the stored rows.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#saveAllWorkPlaces(List, CatalogueVersion)}
      * @param workPlaceList The list of workplaces to be saved
+     * @param catalogueVersion The version of the fetched workplaces, or null if it is not known
+     */
+    @Override
+    public void saveAllWorkPlaces(List<WorkPlace> workPlaceList, @Nullable CatalogueVersion catalogueVersion) {
+        // The observers of the workplace table receive the new list from Room
+        enqueueWrite(() -> {
+                    workPlaceDAO.syncWorkPlaces(workPlaceList);
+                    if (catalogueVersion != null)
+                        workPlaceDAO.setCatalogueVersion(catalogueVersion);
+                },
+                () -> callback.onSuccessSaveFromLocal(workPlaceList),
+                callback::onFailureFromLocal);
+    }
+    /**
+     * Syncs the local Room database asynchronously with the workplaces fetched from an area of
+     * the remote database. The stored workplaces outside the area are left as they are.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#saveWorkPlacesIn(List, GeoArea)}
+     * @param workPlaceList The list of workplaces fetched from the area
+     * @param area The area the workplaces were fetched from
      */
     @Override
-    public void saveAllWorkPlaces(List<WorkPlace> workPlaceList) {
-        WorkPlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+    public void saveWorkPlacesIn(List<WorkPlace> workPlaceList, GeoArea area) {
+        enqueueWrite(() -> workPlaceDAO.syncWorkPlacesIn(workPlaceList, area),
+                () -> callback.onSuccessSaveFromLocal(workPlaceList),
+                callback::onFailureFromLocal);
+    }
+    /**
+     * Writes asynchronously the workplaces changed in the remote database since the previous
+     * fetch to the local Room database, without deleting any stored workplace, together with
+     * the version of the workplaces.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#updateWorkPlaces(List, CatalogueVersion)}
+     * @param workPlaceList The list of changed workplaces
+     * @param catalogueVersion The version of the fetched workplaces, or null if it is not known
+     */
+    @Override
+    public void updateWorkPlaces(List<WorkPlace> workPlaceList, @Nullable CatalogueVersion catalogueVersion) {
+        enqueueWrite(() -> {
+                    workPlaceDAO.updateWorkPlaces(workPlaceList);
+                    if (catalogueVersion != null)
+                        workPlaceDAO.setCatalogueVersion(catalogueVersion);
+                },
+                () -> callback.onSuccessSaveFromLocal(workPlaceList),
+                callback::onFailureFromLocal);
+    }
+    /**
+     * Reads asynchronously the version of the workplaces stored in the local Room database, which
+     * comes from the catalogue snapshot on a seeded install.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#getCatalogueVersion()}
+     */
+    @Override
+    public void getCatalogueVersion() {
+        readExecutor.execute(() -> {
+            CatalogueVersion catalogueVersion;
             try {
-                workPlaceDAO.insertAll(workPlaceList);
-                callback.onSuccessSaveFromLocal(workPlaceList);
-            } catch (Exception e) {
-                workPlaceDAO.deleteEverything();
-                callback.onFailureFromLocal(e);
+                catalogueVersion = workPlaceDAO.getCatalogueVersion();
+            } catch (RuntimeException e) {
+                callback.onFailureFetchCatalogueVersionFromLocal(e);
+                return;
             }
+            callback.onSuccessFetchCatalogueVersionFromLocal(catalogueVersion);
         });
     }
+    /**
+     * Applies asynchronously the live changes of single workplaces to the local Room database,
+     * in a single transaction.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#applyWorkPlaceChanges(List, List)}
+     * @param changedWorkPlaces The workplaces added or changed remotely
+     * @param removedKeys The keys of the workplaces removed remotely
+     */
+    @Override
+    public void applyWorkPlaceChanges(List<WorkPlace> changedWorkPlaces, List<String> removedKeys) {
+        // The observers of the workplace table receive the changes from Room, there is no sync to complete
+        enqueueWrite(() -> workPlaceDAO.applyWorkPlaceChanges(changedWorkPlaces, removedKeys),
+                () -> {},
+                callback::onFailureFromLocal);
+    }
     /**
      * Updates asynchronously the "saved" status of a specific workplace in the local Room database,
-     * and calls the appropriate callback according to the state
-     *
+     * and records the change in the outbox in the same transaction, so that the user sees it
+     * at once and it is written to the remote database once the device is online. Toggling a
+     * workplace again collapses with its pending change.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#queueSavedChange(String, WorkPlace, boolean)}
+     * @param UID The unique identifier of the user
      * @param workPlace The workplace to be updated
      * @param saved The new saved status to set (true = saved, false = not saved)
      */
-    private void updateWorkPlaceSavedStatus(WorkPlace workPlace, boolean saved) {
-        workPlace.setSaved(saved);
-        WorkPlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
+    @Override
+    public void queueSavedChange(String UID, WorkPlace workPlace, boolean saved) {
+        // The given workplace may be a canonical instance shared by the screens, so a copy is changed
+        WorkPlace changedWorkPlace = new WorkPlace(workPlace);
+        changedWorkPlace.setSaved(saved);
+        PendingSavedChange change = new PendingSavedChange(changedWorkPlace.getFirebaseKey(), UID, saved,
+                !saved, System.currentTimeMillis());
+        // Only the saved column is written, the workplace may not hold its photo
+        enqueueWrite(() -> {
+                    pendingSavedChangeDAO.queue(change);
+                    workPlaceDAO.setSaved(changedWorkPlace.getFirebaseKey(), saved);
+                },
+                () -> {
+                    if (saved) {
+                        callback.onSuccessSaveFromLocal(changedWorkPlace);
+                    } else {
+                        callback.onSuccessDeleteSavedFromLocal(changedWorkPlace);
+                    }
+                },
+                callback::onFailureFromLocal);
+    }
+
+    /**
+     * Reads asynchronously the changes of the saved workplaces made by a user and not yet written
+     * to the remote database. The read sees the changes committed before it starts.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#getPendingSavedChanges(String)}
+     * @param UID The unique identifier of the user
+     */
+    @Override
+    public void getPendingSavedChanges(String UID) {
+        readExecutor.execute(() -> {
+            List<PendingSavedChange> pendingChanges;
             try {
-                workPlaceDAO.updateWorkPlace(workPlace);
-                if (saved) {
-                    callback.onSuccessSaveFromLocal(workPlace);
-                } else {
-                    callback.onSuccessDeleteSavedFromLocal(workPlace);
-                }
-            } catch (Exception e) {
-                callback.onFailureFromLocal(e);
+                pendingChanges = pendingSavedChangeDAO.getAll(UID);
+            } catch (RuntimeException e) {
+                callback.onFailureWriteSavedChanges(e);
+                return;
             }
+            callback.onSuccessFetchPendingSavedChangesFromLocal(pendingChanges);
         });
     }
 
     /**
-     * Marks asynchronously a specific workplace as saved in the local Room database.
-     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#setWorkPlaceAsSaved(WorkPlace)}.
-     *
-     * @param workPlace The workplace to be marked as saved
+     * Deletes asynchronously the changes of the saved workplaces made by a user and not yet
+     * written to the remote database, which cannot be written once the user is logged out.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#clearPendingSavedChanges(String)}
+     * @param UID The unique identifier of the user
      */
     @Override
-    public void setWorkPlaceAsSaved(WorkPlace workPlace) {
-        updateWorkPlaceSavedStatus(workPlace, true);
+    public void clearPendingSavedChanges(String UID) {
+        // The account repository has no workplace callback to notify
+        writeQueue.enqueue(() -> pendingSavedChangeDAO.deleteAll(UID), () -> {},
+                exception -> Log.w(TAG, "Pending saved workplace changes not cleared", exception));
     }
 
     /**
-     * Marks asynchronously a specific workplace as not saved in the local Room database.
-     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#setWorkPlaceAsNotSaved(WorkPlace)}.
-     *
-     * @param workPlace The workplace to be marked as not saved
+     * Removes asynchronously the changes of the saved workplaces written to the remote database
+     * from the outbox, keeping the ones changed again in the meantime.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#completeSavedChanges(List)}
+     * @param writtenChanges The changes written to the remote database
      */
     @Override
-    public void setWorkPlaceAsNotSaved(WorkPlace workPlace) {
-        updateWorkPlaceSavedStatus(workPlace, false);
+    public void completeSavedChanges(List<PendingSavedChange> writtenChanges) {
+        writeQueue.enqueue(() -> pendingSavedChangeDAO.complete(writtenChanges),
+                callback::onSuccessCompleteSavedChangesFromLocal,
+                callback::onFailureWriteSavedChanges);
     }
 
     /**
@@ -104,55 +427,31 @@ public class WorkPlaceLocalDataSource extends BaseWorkPlaceLocalDataSource {
      */
     @Override
     public void insertWorkPlace(WorkPlace workPlace) {
-        WorkPlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            try {
-                workPlaceDAO.insert(workPlace);
-                callback.onSuccessCreateFromLocal(workPlace);
-            } catch (Exception e) {
-                callback.onFailureFromLocal(e);
-            }
-        });
+        // The hash lets the next sync recognize the workplace as unchanged
+        workPlace.setContentHash(workPlace.computeContentHash());
+        workPlace.updateUnitVector();
+        workPlace.setScore(null);
+        enqueueWrite(() -> workPlaceDAO.insert(workPlace),
+                () -> callback.onSuccessCreateFromLocal(workPlace),
+                callback::onFailureFromLocal);
     }
     /**
-     * Retrieves all saved workplaces from the local database asynchronously.
-     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#getWorkPlaces()}
-     */
-    @Override
-    public void getSavedWorkPlaces() {
-        WorkPlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            try {
-                callback.onSuccessFetchSavedFromLocal(workPlaceDAO.getSavedWorkPlaces());
-            } catch (Exception e) {
-                callback.onFailureFromLocal(e);
-            }
-        });
-    }
-    /**
-     * Marks workplaces as saved based on a list of primary keys.
-     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#setWorkplacesAsSaved(List)}
+     * Marks workplaces as saved based on a list of primary keys, and the other ones as not saved.
+     * The changes of the user not yet written to the remote database are applied again on top.
+     * Concrete implementation of {@link BaseWorkPlaceLocalDataSource#setWorkplacesAsSaved(String, List)}
+     * @param UID The unique identifier of the user
      * @param savedKeys A list of primary keys representing the unique identifiers for the
      *                  {@link WorkPlace WorkPlaces} to be set as saved
      */
     @Override
-    public void setWorkplacesAsSaved(List<String> savedKeys) {
-        WorkPlaceRoomDatabase.databaseWriteExecutor.execute(() -> {
-            try {
-                List<WorkPlace> workPlaces = workPlaceDAO.getAll();
-                for (WorkPlace workPlace : workPlaces) {
-                    if (savedKeys.contains(workPlace.getFirebaseKey())) {
-                        workPlace.setSaved(true);
-                        workPlaceDAO.updateWorkPlace(workPlace);
-                    }
-                }
-
-                callback.onSetSavedCompleted();
-
-            } catch (Exception e) {
-
-                callback.onFailureFromLocal(e);
-
-            }
-        });
+    public void setWorkplacesAsSaved(String UID, List<String> savedKeys) {
+        // Two statements in one transaction, without reading any row. The observers of the
+        // saved workplaces receive the new list from Room
+        enqueueWrite(() -> {
+                    workPlaceDAO.setSavedKeys(savedKeys);
+                    pendingSavedChangeDAO.applyPendingChanges(UID);
+                }, () -> {},
+                callback::onFailureFromLocal);
     }
 
 
@@ -1,36 +1,94 @@
 package com.unimib.workingspot.source.work_place.concretes;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.REALTIME_DATABASE_BASE_URL;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_QUERY_PREFIX_END;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_TIMEOUT_MESSAGE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_GEOHASH_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_GEOHASH_MAX_QUERIES;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_ROOT_LOCATION;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_SAVED_ROOT_LOCATION;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_USER_SAVED_LOCATION;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_FULL_FETCH_INTERVAL;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_UPDATED_AT_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_FETCH_METRICS_FORMAT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_GEOHASH_PRECISION;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_LIVE_SYNC_BATCH_WINDOW_MILLIS;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
 import com.unimib.workingspot.model.WorkPlace;
 import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceRemoteFirebaseDataSource;
+import com.unimib.workingspot.util.spatial.GeoArea;
+import com.unimib.workingspot.util.spatial.GeoHash;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Concrete implementation of {@link BaseWorkPlaceRemoteFirebaseDataSource} that interacts
- * with Firebase Realtime Database to manage {@link WorkPlace Workplaces} data remotely
+ * with Firebase Realtime Database to manage {@link WorkPlace Workplaces} data remotely.
+ * <p>
+ * Every workplace holds the server time of its last change: after a full fetch, the next
+ * fetches only read the workplaces changed since the most recent change read, with a query on
+ * the index of that time, until a new full fetch is due to drop the deleted ones. The most recent
+ * change read is stored with the local workplaces as their {@link CatalogueVersion}, from which
+ * the fetches resume after a restart or on a fresh install seeded with the catalogue snapshot.
+ * <p>
+ * The geohash and the time of the last change are only written when a workplace is created:
+ * the database rules (database.rules.json) make the stored workplaces read-only for the app, and
+ * the workplaces stored before those children existed are filled once by the admin
+ * GeohashBackfill tool.
  */
 public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFirebaseDataSource {
 
+    private static final String TAG = WorkPlaceRemoteFirebaseDataSource.class.getSimpleName();
+
     private final DatabaseReference workPlacesRef; // Workplaces firestore reference
     private final DatabaseReference savedRef; // User saved reference
 
+    // Most recent change read by the last full fetch and the fetches after it, and when the
+    // full fetch completed; the repository runs one fetch at a time
+    private volatile long lastUpdatedAt;
+    private volatile long lastFullFetchTime;
+
+    // Query and listener of the live sync, null if it is not attached; they are only used on the main thread
+    private Query liveSyncQuery;
+    private ChildEventListener liveSyncListener;
+    private volatile boolean liveSyncRunning;
+    // Incremented when the live sync stops, so that a fetch started for a stopped one does not attach it
+    private int liveSyncGeneration;
+    // Live changes collected since the last notification, by key; empty for a removed workplace
+    private final Map<String, Optional<WorkPlace>> pendingLiveChanges = new LinkedHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushLiveChangesRunnable = this::flushLiveChanges;
+
     /**
      * Constructor for initializing the WorkPlaceRemoteFirebaseDataSource
      */
@@ -41,12 +99,31 @@ public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFireba
     }
 
     /**
-     * Fetches all workplaces stored in Firebase. The fetch request will be cancelled if more than
+     * Fetches the workplaces stored in Firebase: all of them if no full fetch was made in the last
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_WORKPLACE_FULL_FETCH_INTERVAL FIREBASE_WORKPLACE_FULL_FETCH_INTERVAL}
+     * milliseconds, otherwise only the ones changed since the most recent change read.
+     * The fetch request will be cancelled if more than
      * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT}
      * seconds have passed.
      */
     @Override
     public void fetchWorkPlaces() {
+        fetchWorkPlaces(null, null);
+    }
+    /**
+     * Fetches the workplaces stored in Firebase, like {@link #fetchWorkPlaces()}, then runs an
+     * action on the main thread
+     * @param onFetched Run after the fetched workplaces are notified, or null
+     * @param onFailed Run after the failure is notified, or null
+     */
+    private void fetchWorkPlaces(@Nullable Runnable onFetched, @Nullable Runnable onFailed) {
+        long startTime = SystemClock.elapsedRealtime();
+        long since = lastUpdatedAt;
+        boolean incremental = isIncremental();
+        // The changes made in the same millisecond as the most recent one read are read again
+        Query query = incremental
+                ? workPlacesRef.orderByChild(FIREBASE_WORKPLACE_UPDATED_AT_FIELD).startAt(since)
+                : workPlacesRef;
         // Setup a timer to check for a timeout
         Timer timer = new Timer();
 
@@ -56,37 +133,298 @@ public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFireba
             public void onDataChange(@NonNull DataSnapshot parent) {
                 timer.cancel(); // Remove the timer
                 List<WorkPlace> workPlaces = new ArrayList<>();
+                long latest = since;
                 for(DataSnapshot dataSnapshot : parent.getChildren()) {
                     WorkPlace workPlace = dataSnapshot.getValue(WorkPlace.class);
-                    if(workPlace != null)
+                    if(workPlace != null) {
                         workPlaces.add(workPlace);
+                        latest = Math.max(latest, workPlace.getUpdatedAt());
+                    }
+                }
+                lastUpdatedAt = latest;
+                logFetch(incremental ? "Incremental fetch" : "Full fetch", workPlaces.size(), 1, startTime);
+                if (incremental) {
+                    callback.onSuccessFetchUpdatedWorkPlacesFromRemote(workPlaces);
+                } else {
+                    lastFullFetchTime = System.currentTimeMillis();
+                    callback.onSuccessFetchWorkPlacesFromRemote(workPlaces);
                 }
-                callback.onSuccessFetchWorkPlacesFromRemote(workPlaces);
+                if (onFetched != null)
+                    onFetched.run();
             }
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
                 timer.cancel(); // Remove the timer
                 callback.onFailureFetchWorkPlaceFromRemote(new Exception(error.getMessage()));
+                if (onFailed != null)
+                    onFailed.run();
             }
         };
         // Add the listener
-        workPlacesRef.addListenerForSingleValueEvent(dataFetchListener);
+        query.addListenerForSingleValueEvent(dataFetchListener);
 
         // Creates a time task to handle the timeout event
         TimerTask timerTask = new TimerTask() {
             @Override
             public void run() {
                 timer.cancel();
-                workPlacesRef.removeEventListener(dataFetchListener);
+                query.removeEventListener(dataFetchListener);
                 callback.onFailureFetchWorkPlaceFromRemote(new Exception(FIREBASE_TIMEOUT_MESSAGE));
+                if (onFailed != null)
+                    mainHandler.post(onFailed);
+            }
+        };
+        // Start the timer
+        timer.schedule(timerTask, FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT);
+    }
+    /**
+     * Fetches the workplaces of an area stored in Firebase. The area is expanded to the geohash
+     * prefixes covering it, whose range queries run in parallel on the geohash index; their
+     * results are merged and the workplaces outside the area are filtered out. If every workplace
+     * was read in full recently, only the workplaces changed since are read, wherever they are,
+     * which costs less than reading the area again. The fetch request will be cancelled if more than
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT}
+     * seconds have passed.
+     * @param area The circle or the viewport whose workplaces are fetched
+     */
+    @Override
+    public void fetchWorkPlacesIn(GeoArea area) {
+        if (isIncremental()) {
+            fetchWorkPlaces();
+            return;
+        }
+        long startTime = SystemClock.elapsedRealtime();
+        // Setup a timer to check for a timeout
+        Timer timer = new Timer();
+
+        List<Query> queries = getAreaQueries(area);
+        // The listeners are called on the main thread, one at a time, so the results need no lock;
+        // the flag makes sure that only one of the results, the errors and the timeout is notified
+        Map<String, WorkPlace> workPlaces = new HashMap<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        int[] pendingQueries = { queries.size() };
+
+        // Create a listener for the events from Firebase, shared by the queries
+        ValueEventListener dataFetchListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot parent) {
+                for(DataSnapshot dataSnapshot : parent.getChildren()) {
+                    WorkPlace workPlace = dataSnapshot.getValue(WorkPlace.class);
+                    // The cells of the prefixes may extend beyond the area
+                    if(workPlace != null && area.contains(workPlace.getLatitude(), workPlace.getLongitude()))
+                        workPlaces.put(dataSnapshot.getKey(), workPlace);
+                }
+                if (--pendingQueries[0] == 0 && completed.compareAndSet(false, true)) {
+                    timer.cancel(); // Remove the timer
+                    logFetch("Area fetch", workPlaces.size(), queries.size(), startTime);
+                    callback.onSuccessFetchWorkPlacesInFromRemote(new ArrayList<>(workPlaces.values()), area);
+                }
+            }
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (completed.compareAndSet(false, true)) {
+                    timer.cancel(); // Remove the timer
+                    for (Query query : queries)
+                        query.removeEventListener(this);
+                    callback.onFailureFetchWorkPlaceFromRemote(new Exception(error.getMessage()));
+                }
+            }
+        };
+        // Add the listener to every query, so that they run in parallel
+        for (Query query : queries)
+            query.addListenerForSingleValueEvent(dataFetchListener);
+
+        // Creates a time task to handle the timeout event
+        TimerTask timerTask = new TimerTask() {
+            @Override
+            public void run() {
+                timer.cancel();
+                if (completed.compareAndSet(false, true)) {
+                    for (Query query : queries)
+                        query.removeEventListener(dataFetchListener);
+                    callback.onFailureFetchWorkPlaceFromRemote(new Exception(FIREBASE_TIMEOUT_MESSAGE));
+                }
             }
         };
         // Start the timer
         timer.schedule(timerTask, FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT);
     }
+    /**
+     * Resumes the fetches from the version of the stored workplaces, unless a full fetch has
+     * already been made: while the version is recent, the fetches only read the workplaces
+     * changed after it
+     * @param catalogueVersion The version of the stored workplaces
+     */
+    @Override
+    public void setCatalogueVersion(CatalogueVersion catalogueVersion) {
+        if (lastFullFetchTime != 0 || catalogueVersion.getUpdatedAt() == 0)
+            return;
+        lastUpdatedAt = catalogueVersion.getUpdatedAt();
+        lastFullFetchTime = catalogueVersion.getFetchedAt();
+    }
+    /**
+     * Gets the most recent change read by the last full fetch and the fetches after it
+     * @return The version of the fetched workplaces, or null if no full fetch was made
+     */
+    @Nullable
+    @Override
+    public CatalogueVersion getCatalogueVersion() {
+        long fullFetchTime = lastFullFetchTime;
+        if (fullFetchTime == 0)
+            return null;
+        return new CatalogueVersion(lastUpdatedAt, fullFetchTime);
+    }
+    /**
+     * Checks whether the next fetch only needs the workplaces changed since the last one
+     * @return true if every workplace was read in full recently
+     */
+    private boolean isIncremental() {
+        long fullFetchTime = lastFullFetchTime;
+        return fullFetchTime != 0
+                && System.currentTimeMillis() - fullFetchTime < FIREBASE_WORKPLACE_FULL_FETCH_INTERVAL;
+    }
+    /**
+     * Builds the geohash prefix range queries reading the workplaces of an area
+     * @param area The area to read
+     * @return The queries, whose results include every workplace of the area
+     */
+    private List<Query> getAreaQueries(GeoArea area) {
+        List<Query> queries = new ArrayList<>();
+        for (String prefix : area.getCoveringGeohashPrefixes(FIREBASE_WORKPLACE_GEOHASH_MAX_QUERIES))
+            queries.add(workPlacesRef.orderByChild(FIREBASE_WORKPLACE_GEOHASH_FIELD)
+                    .startAt(prefix).endAt(prefix + FIREBASE_QUERY_PREFIX_END));
+        return queries;
+    }
+    /**
+     * Starts the live sync of the workplaces of an area, or of every workplace. A single
+     * {@link ChildEventListener} is attached to the workplaces changed since the most recent
+     * change read, on the index of the last change time, so attaching it only downloads the
+     * changes made since, wherever they are. If every workplace was not read in full recently,
+     * they are fetched first, which gives the listener its starting point.
+     * The workplaces added or changed outside the area are skipped, the removed ones are always
+     * notified; the removals of workplaces not changed since the starting point are left to the
+     * next full fetch. The changes are collected for
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_LIVE_SYNC_BATCH_WINDOW_MILLIS WORKPLACE_LIVE_SYNC_BATCH_WINDOW_MILLIS}
+     * milliseconds and notified together. Must be called on the main thread.
+     * @param area The area whose workplaces are synced, or null for every workplace
+     */
+    @Override
+    public void startLiveSync(@Nullable GeoArea area) {
+        stopLiveSync();
+        liveSyncRunning = true;
+        if (isIncremental()) {
+            attachLiveSync(area);
+            return;
+        }
+        int generation = liveSyncGeneration;
+        fetchWorkPlaces(() -> {
+            if (generation == liveSyncGeneration)
+                attachLiveSync(area);
+        }, () -> {
+            if (generation == liveSyncGeneration)
+                stopLiveSync();
+        });
+    }
+    /**
+     * Attaches the listener of the live sync to the workplaces changed since the most recent
+     * change read. Must be called on the main thread.
+     * @param area The area whose workplaces are synced, or null for every workplace
+     */
+    private void attachLiveSync(@Nullable GeoArea area) {
+        // The changes made in the same millisecond as the most recent one read are read again
+        Query query = workPlacesRef.orderByChild(FIREBASE_WORKPLACE_UPDATED_AT_FIELD).startAt(lastUpdatedAt);
+        // Firebase calls the listener on the main thread, one event at a time
+        ChildEventListener childListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                onChildChanged(snapshot, previousChildName);
+            }
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                WorkPlace workPlace = snapshot.getValue(WorkPlace.class);
+                if (workPlace == null)
+                    return;
+                if (area == null) {
+                    // Every change is applied, so the fetches can resume after it
+                    lastUpdatedAt = Math.max(lastUpdatedAt, workPlace.getUpdatedAt());
+                    queueLiveChange(snapshot.getKey(), workPlace);
+                } else if (area.contains(workPlace.getLatitude(), workPlace.getLongitude())) {
+                    queueLiveChange(snapshot.getKey(), workPlace);
+                }
+            }
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                // The last change time only grows, so a workplace only leaves the query when it is deleted
+                queueLiveChange(snapshot.getKey(), null);
+            }
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // Only the order changed
+            }
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                stopLiveSync();
+                callback.onFailureFetchWorkPlaceFromRemote(new Exception(error.getMessage()));
+            }
+        };
+        query.addChildEventListener(childListener);
+        liveSyncQuery = query;
+        liveSyncListener = childListener;
+    }
+    /**
+     * Stops the live sync, notifying the changes collected so far. Must be called on the main thread.
+     */
+    @Override
+    public void stopLiveSync() {
+        if (liveSyncQuery != null)
+            liveSyncQuery.removeEventListener(liveSyncListener);
+        liveSyncQuery = null;
+        liveSyncListener = null;
+        liveSyncGeneration++;
+        liveSyncRunning = false;
+        flushLiveChanges();
+    }
+    /**
+     * Checks whether the live sync is running
+     * @return true if the listeners of the live sync are attached
+     */
+    @Override
+    public boolean isLiveSyncRunning() {
+        return liveSyncRunning;
+    }
+    /**
+     * Collects a live change of a workplace, replacing the previous change of the same workplace,
+     * and schedules the notification of the collected changes if it is not already scheduled
+     * @param key The key of the workplace
+     * @param workPlace The workplace added or changed, or null if it was removed
+     */
+    private void queueLiveChange(String key, @Nullable WorkPlace workPlace) {
+        if (pendingLiveChanges.isEmpty())
+            mainHandler.postDelayed(flushLiveChangesRunnable, WORKPLACE_LIVE_SYNC_BATCH_WINDOW_MILLIS);
+        pendingLiveChanges.put(key, Optional.ofNullable(workPlace));
+    }
+    /**
+     * Notifies the live changes collected, if any
+     */
+    private void flushLiveChanges() {
+        mainHandler.removeCallbacks(flushLiveChangesRunnable);
+        if (pendingLiveChanges.isEmpty())
+            return;
+        List<WorkPlace> changedWorkPlaces = new ArrayList<>();
+        List<String> removedKeys = new ArrayList<>();
+        for (Map.Entry<String, Optional<WorkPlace>> change : pendingLiveChanges.entrySet()) {
+            if (change.getValue().isPresent())
+                changedWorkPlaces.add(change.getValue().get());
+            else
+                removedKeys.add(change.getKey());
+        }
+        pendingLiveChanges.clear();
+        callback.onSuccessFetchWorkPlaceChangesFromRemote(changedWorkPlaces, removedKeys);
+    }
     /**
      * Creates a new workplace entry in Firebase. A firebase key is assigned to every
-     * {@link WorkPlace} entity created on the database
+     * {@link WorkPlace} entity created on the database, with the geohash of its position
+     * used by the area queries and the server time as its last change
      * @param workPlace The workplace to store remotely
      */
     @Override
@@ -96,7 +434,9 @@ public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFireba
         try{
             assert key != null;
             workPlace.setFirebaseKey(key);
-            newWorkPlaceRef.setValue(workPlace)
+            workPlace.setGeohash(GeoHash.encode(workPlace.getLatitude(), workPlace.getLongitude(),
+                    WORKPLACE_GEOHASH_PRECISION));
+            newWorkPlaceRef.setValue(toValue(workPlace))
                     .addOnSuccessListener(aVoid -> callback.onSuccessCreateFromRemote(workPlace))
                     .addOnFailureListener(e -> callback.onFailureFromRemote(e));
         } catch (Exception e) {
@@ -104,74 +444,63 @@ public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFireba
         }
     }
     /**
-     * Saves a workplace key under a user's saved list in Firebase
-     * @param UID       The unique user identifier
-     * @param workPlace The workplace to save
+     * Writes the changes of the saved workplaces to Firebase with a single multi-path update,
+     * which is atomic. The saved lists are keyed by the key of the workplace, with the server
+     * time it was saved as value, so saving and removing a workplace succeed whatever its
+     * remote state. All the paths belong to the signed-in user, the only one the rules let write them
+     * @param changes The changes to write
      */
     @Override
-    public void saveWorkPlace(String UID, WorkPlace workPlace) {
-        savedRef.child(UID).child(FIREBASE_WORKPLACES_USER_SAVED_LOCATION).push().setValue(workPlace.getFirebaseKey())
-                .addOnSuccessListener(aVoid -> callback.onSuccessSaveFromRemote(workPlace))
-                .addOnFailureListener(e -> callback.onFailureFromRemote(e));
-    }
-    /**
-     * Removes a saved workplace from a user's saved list in Firebase
-     * @param UID       The unique user identifier
-     * @param workPlace The workplace to remove
-     */
-    @Override
-    public void removeSavedWorkPlace(String UID, WorkPlace workPlace) {
-        savedRef.child(UID).child(FIREBASE_WORKPLACES_USER_SAVED_LOCATION)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                        try {
-                            for (DataSnapshot childSnapshot : dataSnapshot.getChildren()) {
-                                String keyValue = childSnapshot.getValue(String.class);
-                                if (keyValue != null && keyValue.equals(workPlace.getFirebaseKey())) {
-                                    childSnapshot.getRef().removeValue()
-                                            .addOnSuccessListener(aVoid -> callback.onSuccessDeleteSavedFromRemote(workPlace))
-                                            .addOnFailureListener(callback::onFailureFromRemote);
-                                    return;
-                                }
-                            }
-                        } catch(Exception e){
-                            callback.onFailureFromRemote(e);
-                        }
-
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        callback.onFailureFromRemote(new Exception(error.getMessage()));
-                    }
-                });
+    public void writeSavedChanges(List<PendingSavedChange> changes) {
+        Map<String, Object> updates = new HashMap<>();
+        for (PendingSavedChange change : changes)
+            updates.put(change.getUid() + "/" + FIREBASE_WORKPLACES_USER_SAVED_LOCATION + "/" + change.getFirebaseKey(),
+                    change.isSaved() ? ServerValue.TIMESTAMP : null);
+        savedRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> callback.onSuccessWriteSavedChangesFromRemote(changes))
+                .addOnFailureListener(callback::onFailureWriteSavedChanges);
     }
 
     /**
      * Retrieves all saved workplace keys for a specific user from Firebase.
      * The fetch request will be cancelled if more than
      * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT}
-     * seconds have passed
+     * seconds have passed.
+     * The saved list used to hold the workplace keys as values under push keys: the entries
+     * still in that layout are moved to the keyed layout, in a single atomic update, the first
+     * time the list is read. The keys are read before the user can remove a saved workplace,
+     * so no removal can miss an entry in the old layout
      * @param UID The unique user identifier
      */
     @Override
     public void getSavedWorkPlaceKeys(String UID) {
         // Setup a timer to check for a timeout
         Timer timer = new Timer();
+        DatabaseReference userSavedRef = getUserSavedRef(UID);
 
         // Create a listener for the events from Firebase
         ValueEventListener saveFetchListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot parent) {
                 timer.cancel(); // Cancel the timer
-                List<String> savedKeys = new ArrayList<>();
+                Set<String> savedKeys = new LinkedHashSet<>();
+                Map<String, Object> migration = new HashMap<>();
                 for(DataSnapshot child : parent.getChildren()) {
-                    String key = child.getValue(String.class);
-                    if(key != null)
+                    Object value = child.getValue();
+                    if (value instanceof String) {
+                        // Entry in the old layout: the value is the workplace key
+                        String key = (String) value;
                         savedKeys.add(key);
+                        migration.put(child.getKey(), null);
+                        migration.put(key, ServerValue.TIMESTAMP);
+                    } else if (child.getKey() != null) {
+                        savedKeys.add(child.getKey());
+                    }
                 }
-                callback.onSuccessFetchSavedKeysFromRemote(savedKeys);
+                // If the migration fails, the entries are still read and migrated next time
+                if (!migration.isEmpty())
+                    userSavedRef.updateChildren(migration);
+                callback.onSuccessFetchSavedKeysFromRemote(UID, new ArrayList<>(savedKeys));
             }
 
             @Override
@@ -180,14 +509,14 @@ public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFireba
                 callback.onFailureFromRemote(new Exception(error.getMessage()));
             }
         };
-        savedRef.child(UID).child(FIREBASE_WORKPLACES_USER_SAVED_LOCATION).addListenerForSingleValueEvent(saveFetchListener);
+        userSavedRef.addListenerForSingleValueEvent(saveFetchListener);
 
         // Creates a time task to handle the timeout event
         TimerTask timerTask = new TimerTask() {
             @Override
             public void run() {
                 timer.cancel();
-                workPlacesRef.removeEventListener(saveFetchListener);
+                userSavedRef.removeEventListener(saveFetchListener);
                 callback.onFailureFetchSavedKeysFromRemote(new Exception(FIREBASE_TIMEOUT_MESSAGE));
             }
         };
@@ -195,6 +524,46 @@ public class WorkPlaceRemoteFirebaseDataSource extends BaseWorkPlaceRemoteFireba
         timer.schedule(timerTask, FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT);
     }
 
+    /**
+     * Gets the saved list of a user, keyed by the keys of the saved workplaces
+     * @param UID The unique user identifier
+     * @return The reference of the list
+     */
+    private DatabaseReference getUserSavedRef(String UID) {
+        return savedRef.child(UID).child(FIREBASE_WORKPLACES_USER_SAVED_LOCATION);
+    }
 
+    /**
+     * Converts a workplace to the children of its entry, with the server time as its last change.
+     * The children are written one by one because the Firebase mapper cannot write a server time
+     * from a field of the workplace
+     * @param workPlace The workplace to store
+     * @return The children of the entry
+     */
+    private static Map<String, Object> toValue(WorkPlace workPlace) {
+        Map<String, Object> value = new HashMap<>();
+        value.put("firebaseKey", workPlace.getFirebaseKey());
+        value.put("name", workPlace.getName());
+        value.put("address", workPlace.getAddress());
+        value.put("latitude", workPlace.getLatitude());
+        value.put("longitude", workPlace.getLongitude());
+        value.put("outside", workPlace.isOutside());
+        value.put("b64PhotoEncoding", workPlace.getB64PhotoEncoding());
+        value.put("blurHash", workPlace.getBlurHash());
+        value.put(FIREBASE_WORKPLACE_GEOHASH_FIELD, workPlace.getGeohash());
+        value.put(FIREBASE_WORKPLACE_UPDATED_AT_FIELD, ServerValue.TIMESTAMP);
+        return value;
+    }
 
+    /**
+     * Logs the duration of a fetch, to compare the remote sources
+     * @param name The kind of fetch
+     * @param workPlaces The number of workplaces fetched
+     * @param queries The number of queries run
+     * @param startTime The time the fetch started, from {@link SystemClock#elapsedRealtime()}
+     */
+    private static void logFetch(String name, int workPlaces, int queries, long startTime) {
+        Log.d(TAG, String.format(Locale.US, WORKPLACE_FETCH_METRICS_FORMAT, name, workPlaces, queries,
+                SystemClock.elapsedRealtime() - startTime));
+    }
 }
@@ -0,0 +1,515 @@
+package com.unimib.workingspot.source.work_place.concretes;
+
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_QUERY_PREFIX_END;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_TIMEOUT_MESSAGE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_ROOT_LOCATION;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_SAVED_ROOT_LOCATION;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACES_USER_SAVED_LOCATION;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_GEOHASH_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIREBASE_WORKPLACE_GEOHASH_MAX_QUERIES;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIRESTORE_MAX_BATCH_WRITES;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIRESTORE_SAVED_AT_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIRESTORE_WORKPLACE_FULL_FETCH_INTERVAL;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIRESTORE_WORKPLACE_PAGE_SIZE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.FIRESTORE_WORKPLACE_UPDATED_AT_FIELD;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_FETCH_METRICS_FORMAT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_GEOHASH_PRECISION;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+import com.unimib.workingspot.model.CatalogueVersion;
+import com.unimib.workingspot.model.PendingSavedChange;
+import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceRemoteFirebaseDataSource;
+import com.unimib.workingspot.util.spatial.GeoArea;
+import com.unimib.workingspot.util.spatial.GeoHash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Concrete implementation of {@link BaseWorkPlaceRemoteFirebaseDataSource} that stores the
+ * {@link WorkPlace Workplaces} on Cloud Firestore, as an alternative to the Realtime Database
+ * selected in {@link com.unimib.workingspot.util.source.ServiceLocator}.
+ * <p>
+ * Every query is read a page at a time, each page starting after the last document of the
+ * previous one, so no response holds the whole collection. Every document holds the server
+ * time of its last change: after a full fetch, the next fetches only read the documents changed
+ * since the most recent change read, until a new full fetch is due to drop the deleted ones.
+ * Areas are read with geohash range queries, incrementally as well once every prefix covering
+ * the area has been read in full, or the whole collection has; these queries need the composite
+ * index on the geohash and the last change time of firestore.indexes.json, and the prefixes are
+ * read in full while it is not deployed. The other filters use the automatic single-field indexes.
+ * There is no remote filter on the outdoor workplaces: the fetches fill the local catalogue read by
+ * every screen, which filters them with its own queries.
+ * The most recent change read is stored with the local workplaces as their
+ * {@link CatalogueVersion}, from which the fetches resume after a restart or on a fresh install
+ * seeded with the catalogue snapshot.
+ */
+public class WorkPlaceRemoteFirestoreDataSource extends BaseWorkPlaceRemoteFirebaseDataSource {
+
+    private static final String TAG = WorkPlaceRemoteFirestoreDataSource.class.getSimpleName();
+
+    // Fields of a workplace document; its id is the key of the workplace
+    private static final String NAME_FIELD = "name";
+    private static final String ADDRESS_FIELD = "address";
+    private static final String LATITUDE_FIELD = "latitude";
+    private static final String LONGITUDE_FIELD = "longitude";
+    private static final String OUTSIDE_FIELD = "outside";
+    private static final String PHOTO_FIELD = "b64PhotoEncoding";
+    private static final String BLURHASH_FIELD = "blurHash";
+
+    private final CollectionReference workPlacesRef; // Workplaces collection reference
+    private final CollectionReference savedRef; // User saved collection reference
+
+    // Most recent change read by the last full fetch and the fetches after it, and when the
+    // full fetch completed; the repository runs one fetch at a time
+    private volatile Timestamp lastUpdatedAt;
+    private volatile long lastFullFetchTime;
+    // The same, for every geohash prefix read by an area fetch
+    private final Map<String, PrefixCursor> prefixCursors = new HashMap<>();
+    // true once an incremental area query failed because its composite index is not deployed
+    private volatile boolean compositeIndexMissing;
+
+    /**
+     * Constructor for initializing the WorkPlaceRemoteFirestoreDataSource
+     */
+    public WorkPlaceRemoteFirestoreDataSource() {
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+        workPlacesRef = firestore.collection(FIREBASE_WORKPLACES_ROOT_LOCATION);
+        savedRef = firestore.collection(FIREBASE_WORKPLACES_SAVED_ROOT_LOCATION);
+    }
+
+    /**
+     * Fetches the workplaces stored in Firestore: all of them if no full fetch was made in the last
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIRESTORE_WORKPLACE_FULL_FETCH_INTERVAL FIRESTORE_WORKPLACE_FULL_FETCH_INTERVAL}
+     * milliseconds, otherwise only the ones changed since the most recent change read.
+     * The fetch request will be cancelled if more than
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT}
+     * seconds have passed.
+     */
+    @Override
+    public void fetchWorkPlaces() {
+        long startTime = SystemClock.elapsedRealtime();
+        Timestamp since = lastUpdatedAt;
+        boolean incremental = since != null
+                && System.currentTimeMillis() - lastFullFetchTime < FIRESTORE_WORKPLACE_FULL_FETCH_INTERVAL;
+        Query query = incremental
+                ? workPlacesRef.whereGreaterThan(FIRESTORE_WORKPLACE_UPDATED_AT_FIELD, since)
+                        .orderBy(FIRESTORE_WORKPLACE_UPDATED_AT_FIELD)
+                : workPlacesRef.orderBy(FieldPath.documentId());
+
+        runWithTimeout(fetchAllPages(query, null, new ArrayList<>()), FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT,
+                documents -> {
+                    List<WorkPlace> workPlaces = toWorkPlaces(documents);
+                    lastUpdatedAt = latestUpdate(documents, since);
+                    logFetch(incremental ? "Incremental fetch" : "Full fetch", workPlaces.size(), 1, startTime);
+                    if (incremental) {
+                        callback.onSuccessFetchUpdatedWorkPlacesFromRemote(workPlaces);
+                    } else {
+                        lastFullFetchTime = System.currentTimeMillis();
+                        callback.onSuccessFetchWorkPlacesFromRemote(workPlaces);
+                    }
+                },
+                callback::onFailureFetchWorkPlaceFromRemote);
+    }
+
+    /**
+     * Fetches the workplaces of an area stored in Firestore. The area is expanded to the geohash
+     * prefixes covering it, whose range queries run in parallel; their results are merged and the
+     * workplaces outside the area are filtered out. If every prefix was read in full recently,
+     * only the workplaces changed since are read. The fetch request will be cancelled if more than
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT}
+     * seconds have passed.
+     * @param area The circle or the viewport whose workplaces are fetched
+     */
+    @Override
+    public void fetchWorkPlacesIn(GeoArea area) {
+        long startTime = SystemClock.elapsedRealtime();
+        List<String> prefixes = area.getCoveringGeohashPrefixes(FIREBASE_WORKPLACE_GEOHASH_MAX_QUERIES);
+        Map<String, PrefixCursor> cursors = getPrefixCursors(prefixes);
+        boolean incremental = cursors.size() == prefixes.size();
+
+        List<Task<List<DocumentSnapshot>>> tasks = new ArrayList<>();
+        for (String prefix : prefixes) {
+            Query query = workPlacesRef.whereGreaterThanOrEqualTo(FIREBASE_WORKPLACE_GEOHASH_FIELD, prefix)
+                    .whereLessThanOrEqualTo(FIREBASE_WORKPLACE_GEOHASH_FIELD, prefix + FIREBASE_QUERY_PREFIX_END)
+                    .orderBy(FIREBASE_WORKPLACE_GEOHASH_FIELD);
+            // A prefix whose cells had no workplace is read in full, there is nothing to skip
+            Timestamp since = incremental ? cursors.get(prefix).updatedAt : null;
+            if (since == null || compositeIndexMissing) {
+                tasks.add(fetchAllPages(query, null, new ArrayList<>()));
+                continue;
+            }
+            tasks.add(fetchAllPages(query.whereGreaterThan(FIRESTORE_WORKPLACE_UPDATED_AT_FIELD, since),
+                    null, new ArrayList<>()).continueWithTask(task -> {
+                if (task.isSuccessful() || !isMissingIndex(task.getException()))
+                    return task;
+                // The changed workplaces are among the ones of the prefix, which only need the
+                // automatic index on the geohash
+                compositeIndexMissing = true;
+                Log.w(TAG, "Composite index on the geohash and the last change time missing, "
+                        + "deploy firestore.indexes.json; reading the prefixes in full", task.getException());
+                return fetchAllPages(query, null, new ArrayList<>());
+            }));
+        }
+
+        Task<List<List<DocumentSnapshot>>> allTasks = Tasks.whenAllSuccess(tasks);
+        runWithTimeout(allTasks, FIREBASE_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT,
+                results -> {
+                    // The prefixes do not overlap, but the merge keeps one workplace per key anyway
+                    Map<String, WorkPlace> workPlaces = new HashMap<>();
+                    for (int i = 0; i < prefixes.size(); i++) {
+                        List<DocumentSnapshot> documents = results.get(i);
+                        for (WorkPlace workPlace : toWorkPlaces(documents))
+                            // The cells of the prefixes may extend beyond the area
+                            if (area.contains(workPlace.getLatitude(), workPlace.getLongitude()))
+                                workPlaces.put(workPlace.getFirebaseKey(), workPlace);
+                        PrefixCursor cursor = cursors.get(prefixes.get(i));
+                        updatePrefixCursor(prefixes.get(i), latestUpdate(documents, cursor != null ? cursor.updatedAt : null),
+                                incremental ? cursor.fullFetchTime : System.currentTimeMillis());
+                    }
+                    List<WorkPlace> workPlaceList = new ArrayList<>(workPlaces.values());
+                    logFetch(incremental ? "Incremental area fetch" : "Area fetch", workPlaceList.size(),
+                            prefixes.size(), startTime);
+                    if (incremental)
+                        callback.onSuccessFetchUpdatedWorkPlacesFromRemote(workPlaceList);
+                    else
+                        callback.onSuccessFetchWorkPlacesInFromRemote(workPlaceList, area);
+                },
+                callback::onFailureFetchWorkPlaceFromRemote);
+    }
+
+    /**
+     * Resumes the fetches from the version of the stored workplaces, unless a full fetch has
+     * already been made: while the version is recent, the fetches only read the workplaces
+     * changed after it
+     * @param catalogueVersion The version of the stored workplaces
+     */
+    @Override
+    public void setCatalogueVersion(CatalogueVersion catalogueVersion) {
+        if (lastFullFetchTime != 0 || catalogueVersion.getUpdatedAt() == 0)
+            return;
+        // The milliseconds round the time down, so the changes made in the same millisecond are read again
+        lastUpdatedAt = new Timestamp(new Date(catalogueVersion.getUpdatedAt()));
+        lastFullFetchTime = catalogueVersion.getFetchedAt();
+    }
+
+    /**
+     * Gets the most recent change read by the last full fetch and the fetches after it
+     * @return The version of the fetched workplaces, or null if no full fetch was made
+     */
+    @Nullable
+    @Override
+    public CatalogueVersion getCatalogueVersion() {
+        Timestamp updatedAt = lastUpdatedAt;
+        long fullFetchTime = lastFullFetchTime;
+        if (fullFetchTime == 0)
+            return null;
+        return new CatalogueVersion(updatedAt != null ? updatedAt.toDate().getTime() : 0, fullFetchTime);
+    }
+
+    /**
+     * Creates a new workplace document in Firestore. A key is assigned to every
+     * {@link WorkPlace} entity created on the database, with the geohash of its position
+     * used by the area queries
+     * @param workPlace The workplace to store remotely
+     */
+    @Override
+    public void createWorkPlace(WorkPlace workPlace) {
+        DocumentReference newWorkPlaceRef = workPlacesRef.document();
+        try {
+            workPlace.setFirebaseKey(newWorkPlaceRef.getId());
+            workPlace.setGeohash(GeoHash.encode(workPlace.getLatitude(), workPlace.getLongitude(),
+                    WORKPLACE_GEOHASH_PRECISION));
+            newWorkPlaceRef.set(toDocument(workPlace))
+                    .addOnSuccessListener(aVoid -> callback.onSuccessCreateFromRemote(workPlace))
+                    .addOnFailureListener(callback::onFailureFromRemote);
+        } catch (Exception e) {
+            callback.onFailureFromRemote(e);
+        }
+    }
+
+    /**
+     * Writes the changes of the saved workplaces to Firestore with batched writes, which commit
+     * up to {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIRESTORE_MAX_BATCH_WRITES FIRESTORE_MAX_BATCH_WRITES}
+     * changes each: a saved workplace is a document of the user's saved workplaces whose id is
+     * the key of the workplace, so saving and removing it succeed whatever its remote state
+     * @param changes The changes to write
+     */
+    @Override
+    public void writeSavedChanges(List<PendingSavedChange> changes) {
+        FirebaseFirestore firestore = workPlacesRef.getFirestore();
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int i = 0; i < changes.size(); i += FIRESTORE_MAX_BATCH_WRITES) {
+            WriteBatch batch = firestore.batch();
+            for (PendingSavedChange change : changes.subList(i, Math.min(i + FIRESTORE_MAX_BATCH_WRITES, changes.size()))) {
+                DocumentReference savedWorkPlaceRef = getUserSavedRef(change.getUid()).document(change.getFirebaseKey());
+                if (change.isSaved())
+                    batch.set(savedWorkPlaceRef, Collections.singletonMap(FIRESTORE_SAVED_AT_FIELD,
+                            FieldValue.serverTimestamp()));
+                else
+                    batch.delete(savedWorkPlaceRef);
+            }
+            commits.add(batch.commit());
+        }
+        Tasks.whenAll(commits)
+                .addOnSuccessListener(aVoid -> callback.onSuccessWriteSavedChangesFromRemote(changes))
+                .addOnFailureListener(callback::onFailureWriteSavedChanges);
+    }
+
+    /**
+     * Retrieves the keys of the workplaces saved by a user from Firestore.
+     * The fetch request will be cancelled if more than
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT}
+     * seconds have passed
+     * @param UID The unique user identifier
+     */
+    @Override
+    public void getSavedWorkPlaceKeys(String UID) {
+        runWithTimeout(fetchAllPages(getUserSavedRef(UID).orderBy(FieldPath.documentId()), null, new ArrayList<>()),
+                FIREBASE_SAVED_WORKPLACE_FETCH_TIME_UNTIL_TIMEOUT,
+                documents -> {
+                    List<String> savedKeys = new ArrayList<>(documents.size());
+                    for (DocumentSnapshot document : documents)
+                        savedKeys.add(document.getId());
+                    callback.onSuccessFetchSavedKeysFromRemote(UID, savedKeys);
+                },
+                callback::onFailureFetchSavedKeysFromRemote);
+    }
+
+    /**
+     * Gets the collection of the workplaces saved by a user
+     * @param UID The unique user identifier
+     * @return The collection reference
+     */
+    private CollectionReference getUserSavedRef(String UID) {
+        return savedRef.document(UID).collection(FIREBASE_WORKPLACES_USER_SAVED_LOCATION);
+    }
+
+    /**
+     * Reads every document of a query, a page at a time. Each page starts after the last
+     * document of the previous one
+     * @param query The query to read
+     * @param after The last document read, or null to read the first page
+     * @param documents The documents read so far
+     * @return A task completed with every document of the query
+     */
+    private Task<List<DocumentSnapshot>> fetchAllPages(Query query, @Nullable DocumentSnapshot after,
+                                                       List<DocumentSnapshot> documents) {
+        Query page = after == null ? query : query.startAfter(after);
+        return page.limit(FIRESTORE_WORKPLACE_PAGE_SIZE).get().continueWithTask(task -> {
+            if (!task.isSuccessful())
+                return Tasks.forException(task.getException());
+            List<DocumentSnapshot> pageDocuments = task.getResult().getDocuments();
+            documents.addAll(pageDocuments);
+            if (pageDocuments.size() < FIRESTORE_WORKPLACE_PAGE_SIZE)
+                return Tasks.forResult(documents);
+            return fetchAllPages(query, pageDocuments.get(pageDocuments.size() - 1), documents);
+        });
+    }
+
+    /**
+     * Checks whether a query failed because the composite index it needs is not deployed
+     * @param exception The error of the query
+     * @return true if Firestore refused the query for a missing index
+     */
+    private static boolean isMissingIndex(@Nullable Exception exception) {
+        return exception instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) exception).getCode() == FirebaseFirestoreException.Code.FAILED_PRECONDITION;
+    }
+
+    /**
+     * Notifies the result of a task, or a failure if it fails or does not complete in time.
+     * Only one of them is notified
+     * @param task The task to wait for
+     * @param timeout The time (in milliseconds) after which the task is considered failed
+     * @param onSuccess Called with the result of the task
+     * @param onFailure Called with the error of the task, or the timeout error
+     * @param <T> The type of the result
+     */
+    private <T> void runWithTimeout(Task<T> task, long timeout, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        // Setup a timer to check for a timeout
+        Timer timer = new Timer();
+        AtomicBoolean completed = new AtomicBoolean();
+        task.addOnCompleteListener(completedTask -> {
+            if (!completed.compareAndSet(false, true))
+                return;
+            timer.cancel(); // Remove the timer
+            if (completedTask.isSuccessful())
+                onSuccess.accept(completedTask.getResult());
+            else
+                onFailure.accept(completedTask.getException() != null ? completedTask.getException()
+                        : new Exception(FIREBASE_TIMEOUT_MESSAGE));
+        });
+
+        // Creates a time task to handle the timeout event; Firestore has no way to cancel the reads
+        TimerTask timerTask = new TimerTask() {
+            @Override
+            public void run() {
+                timer.cancel();
+                if (completed.compareAndSet(false, true))
+                    onFailure.accept(new Exception(FIREBASE_TIMEOUT_MESSAGE));
+            }
+        };
+        // Start the timer
+        timer.schedule(timerTask, timeout);
+    }
+
+    /**
+     * Gets the cursors of the prefixes read in full recently. A prefix never read by an area
+     * fetch starts from the most recent change read in the whole collection, if it was read in full
+     * @param prefixes The geohash prefixes
+     * @return The cursors of the prefixes that have one, by prefix
+     */
+    private synchronized Map<String, PrefixCursor> getPrefixCursors(List<String> prefixes) {
+        Map<String, PrefixCursor> cursors = new HashMap<>();
+        long now = System.currentTimeMillis();
+        Timestamp collectionUpdatedAt = lastUpdatedAt;
+        PrefixCursor collectionCursor = collectionUpdatedAt != null
+                ? new PrefixCursor(collectionUpdatedAt, lastFullFetchTime) : null;
+        for (String prefix : prefixes) {
+            PrefixCursor cursor = prefixCursors.get(prefix);
+            if (cursor == null)
+                cursor = collectionCursor;
+            if (cursor != null && now - cursor.fullFetchTime < FIRESTORE_WORKPLACE_FULL_FETCH_INTERVAL)
+                cursors.put(prefix, cursor);
+        }
+        return cursors;
+    }
+
+    /**
+     * Stores the cursor of a prefix after it has been read
+     * @param prefix The geohash prefix
+     * @param updatedAt The most recent change read in the prefix, or null if none was read
+     * @param fullFetchTime The time the prefix was last read in full
+     */
+    private synchronized void updatePrefixCursor(String prefix, @Nullable Timestamp updatedAt, long fullFetchTime) {
+        prefixCursors.put(prefix, new PrefixCursor(updatedAt, fullFetchTime));
+    }
+
+    /**
+     * Finds the most recent change among some documents
+     * @param documents The documents read
+     * @param since The most recent change read before them, or null
+     * @return The most recent change time, or null if none is known
+     */
+    @Nullable
+    private static Timestamp latestUpdate(List<DocumentSnapshot> documents, @Nullable Timestamp since) {
+        Timestamp latest = since;
+        for (DocumentSnapshot document : documents) {
+            Timestamp updatedAt = document.getTimestamp(FIRESTORE_WORKPLACE_UPDATED_AT_FIELD);
+            if (updatedAt != null && (latest == null || updatedAt.compareTo(latest) > 0))
+                latest = updatedAt;
+        }
+        return latest;
+    }
+
+    /**
+     * Converts the workplace documents read, skipping the ones without a position
+     * @param documents The documents read
+     * @return The workplaces
+     */
+    private static List<WorkPlace> toWorkPlaces(List<DocumentSnapshot> documents) {
+        if (documents.isEmpty())
+            return Collections.emptyList();
+        List<WorkPlace> workPlaces = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            WorkPlace workPlace = fromDocument(document);
+            if (workPlace != null)
+                workPlaces.add(workPlace);
+        }
+        return workPlaces;
+    }
+
+    /**
+     * Converts a workplace document. The fields are read one by one because the Firestore mapper
+     * ignores the annotations that keep the local-only fields out of the remote database
+     * @param document The document read
+     * @return The workplace, or null if the document has no position
+     */
+    @Nullable
+    private static WorkPlace fromDocument(DocumentSnapshot document) {
+        Double latitude = document.getDouble(LATITUDE_FIELD);
+        Double longitude = document.getDouble(LONGITUDE_FIELD);
+        if (latitude == null || longitude == null)
+            return null;
+        WorkPlace workPlace = new WorkPlace(document.getString(NAME_FIELD), document.getString(ADDRESS_FIELD),
+                latitude, longitude, Boolean.TRUE.equals(document.getBoolean(OUTSIDE_FIELD)));
+        workPlace.setFirebaseKey(document.getId());
+        workPlace.setB64PhotoEncoding(document.getString(PHOTO_FIELD));
+        workPlace.setBlurHash(document.getString(BLURHASH_FIELD));
+        workPlace.setGeohash(document.getString(FIREBASE_WORKPLACE_GEOHASH_FIELD));
+        return workPlace;
+    }
+
+    /**
+     * Converts a workplace to the fields of its document, with the server time as its last change
+     * @param workPlace The workplace to store
+     * @return The fields of the document
+     */
+    private static Map<String, Object> toDocument(WorkPlace workPlace) {
+        Map<String, Object> document = new HashMap<>();
+        document.put(NAME_FIELD, workPlace.getName());
+        document.put(ADDRESS_FIELD, workPlace.getAddress());
+        document.put(LATITUDE_FIELD, workPlace.getLatitude());
+        document.put(LONGITUDE_FIELD, workPlace.getLongitude());
+        document.put(OUTSIDE_FIELD, workPlace.isOutside());
+        document.put(PHOTO_FIELD, workPlace.getB64PhotoEncoding());
+        document.put(BLURHASH_FIELD, workPlace.getBlurHash());
+        document.put(FIREBASE_WORKPLACE_GEOHASH_FIELD, workPlace.getGeohash());
+        document.put(FIRESTORE_WORKPLACE_UPDATED_AT_FIELD, FieldValue.serverTimestamp());
+        return document;
+    }
+
+    /**
+     * Logs the duration of a fetch, to compare the remote sources
+     * @param name The kind of fetch
+     * @param workPlaces The number of workplaces fetched
+     * @param queries The number of queries run
+     * @param startTime The time the fetch started, from {@link SystemClock#elapsedRealtime()}
+     */
+    private static void logFetch(String name, int workPlaces, int queries, long startTime) {
+        Log.d(TAG, String.format(Locale.US, WORKPLACE_FETCH_METRICS_FORMAT, name, workPlaces, queries,
+                SystemClock.elapsedRealtime() - startTime));
+    }
+
+    /**
+     * The most recent change read in a geohash prefix, and when the prefix was last read in full
+     */
+    private static final class PrefixCursor {
+        final Timestamp updatedAt;
+        final long fullFetchTime;
+
+        PrefixCursor(@Nullable Timestamp updatedAt, long fullFetchTime) {
+            this.updatedAt = updatedAt;
+            this.fullFetchTime = fullFetchTime;
+        }
+    }
+}
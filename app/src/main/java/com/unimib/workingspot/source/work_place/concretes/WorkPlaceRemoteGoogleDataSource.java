@@ -126,6 +126,8 @@ public class WorkPlaceRemoteGoogleDataSource extends BaseWorkPlaceGoogleRemoteDa
                     Bitmap bitmap = photoResp.getBitmap();
                     String b64String = bitMapManager.encodeBitmap(context, bitmap, R.drawable.no_image);
                     workPlace.setB64PhotoEncoding(b64String);
+                    // Compute once the compact placeholder shown while the photo is loading
+                    workPlace.setBlurHash(bitMapManager.computeBlurHash(bitmap));
                     callback.onSuccessFetchWorkPlaceFromGoogle(workPlace);
                 })
                 .addOnFailureListener(e -> callback.onFailureFromRemote(e));
@@ -7,13 +7,17 @@ import android.widget.TextView;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.navigation.ui.NavigationUI;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.unimib.workingspot.R;
+import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModel;
+import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModelFactory;
 import com.unimib.workingspot.util.network.NetworkManagerSingleton;
 import com.unimib.workingspot.util.network.NetworkState;
+import com.unimib.workingspot.util.source.ServiceLocator;
 
 /**
  * Main activity of the application. This activity hosts the following fragments:
@@ -67,10 +71,16 @@ public class MainActivity extends AppCompatActivity {
 
 
 
+        // The workplace changes made offline are written once the device is online
+        WorkPlaceViewModel workPlaceViewModel = new ViewModelProvider(this,
+                new WorkPlaceViewModelFactory(ServiceLocator.getInstance().getWorkPlaceRepository(getApplication())))
+                .get(WorkPlaceViewModel.class);
+
         networkManagerSingleton = NetworkManagerSingleton.getInstance(this.getApplication());
         networkManagerSingleton.registerNetworkCallback();
         networkManagerSingleton.getConnectionStatusLiveData()
                 .observe(this, networkState -> {
+                    workPlaceViewModel.setOnline(networkState != NetworkState.OFFLINE);
                     if (networkState == NetworkState.ONLINE) {
                         applyLayout(this, statusText, Boolean.TRUE);
                     } else if(networkState == NetworkState.OFFLINE){
@@ -3,16 +3,21 @@ package com.unimib.workingspot.ui.main.fragments;
 import android.Manifest;
 import android.app.Application;
 import android.content.Intent;
+import android.location.Location;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Looper;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
+import androidx.appcompat.widget.SearchView;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.CombinedLoadStates;
+import androidx.paging.LoadState;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -24,11 +29,17 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.bumptech.glide.Glide;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
 import com.google.android.material.button.MaterialButton;
 import com.unimib.workingspot.R;
 import com.unimib.workingspot.adapter.WorkPlaceAdapter;
+import com.unimib.workingspot.adapter.WorkPlacePagingAdapter;
 import com.unimib.workingspot.model.Result;
 import com.unimib.workingspot.model.User;
 import com.unimib.workingspot.model.WorkPlace;
@@ -42,24 +53,25 @@ import com.unimib.workingspot.ui.main.viewmodel.weather.WeatherViewModel;
 import com.unimib.workingspot.ui.main.viewmodel.weather.WeatherViewModelFactory;
 import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModel;
 import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModelFactory;
+import com.unimib.workingspot.util.bitmap.glide.WorkPlacePhotoPrefetcher;
 import com.unimib.workingspot.util.constants.WeatherConstants;
 import com.unimib.workingspot.util.constants.WorkPlacesConstants;
 import com.unimib.workingspot.util.data_store.DataStoreManagerSingleton;
 import com.unimib.workingspot.util.network.NetworkManagerSingleton;
-import com.unimib.workingspot.util.network.NetworkState;
 import com.unimib.workingspot.util.permissions.IPermissionCallback;
 import com.unimib.workingspot.util.source.ServiceLocator;
 import com.unimib.workingspot.util.permissions.GeolocalizationPermissionsUtil;
+import com.unimib.workingspot.util.search.DebouncedQueryTextListener;
 
 import static com.unimib.workingspot.util.constants.Constants.*;
 import static com.unimib.workingspot.util.constants.DataStoreConstants.DATASTORE_RESOURCE_NOT_FOUND;
 import static com.unimib.workingspot.util.constants.DataStoreConstants.DATASTORE_WEATHER_LAST_UPDATED_KEY;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
+import kotlin.Unit;
+
 /**
  * {@link Fragment} that represents the home screen in the application.
  * It displays weather information and workplace data
@@ -77,15 +89,21 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
     // Client for fetching current device location
     private FusedLocationProviderClient flpc;
 
-    // Adapter for workplace data
-    private WorkPlaceAdapter workPlaceAdapter;
+    // Callback that re-ranks the workplaces when the user moves, null if no update is requested
+    private LocationCallback locationCallback;
 
-    // Workplace list
-    private List<WorkPlace> workPlaceList;
+    // Adapter for the paged workplace data
+    private WorkPlacePagingAdapter workPlaceAdapter;
 
     // Workplace recycler view
     private RecyclerView workPlaceRecyclerView;
 
+    // Prefetcher for the photos of the workplace cards
+    private WorkPlacePhotoPrefetcher photoPrefetcher;
+
+    // Listener that searches the workplaces once the user stops typing
+    private DebouncedQueryTextListener searchQueryListener;
+
     // Activity result launcher for asking geo-localization permissions
     private ActivityResultLauncher<String[]> geolocalizationPermissionsActivityResultLauncher;
 
@@ -104,9 +122,6 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
     // Current weather
     private Weather weather;
 
-    // Flag that indicates if the device is currently connected to the network
-    private boolean isConnected;
-
     /**
      * Default constructor for HomeFragment
      */
@@ -135,7 +150,6 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
 
         networkManager = NetworkManagerSingleton.getInstance(requireActivity().getApplication());
 
-        workPlaceList = Collections.synchronizedList(new ArrayList<>());
     }
 
     /**
@@ -161,26 +175,32 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
         // Registers network callbacks
         networkManager.registerNetworkCallback();
 
-        // Initializes observer for connection status changes
-        networkManager.getConnectionStatusLiveData().observe(getViewLifecycleOwner(),
-                networkState -> {
-                    isConnected = networkState != NetworkState.OFFLINE;
-                    initializeWorkPlaceAdapter(isConnected);
-                });
+        // Initializes recycler view
+        workPlaceRecyclerView = view.findViewById(R.id.workspot_recycler_view);
+        workPlaceRecyclerView.setLayoutManager(new LinearLayoutManager(view.getContext()));
+        // The favourite buttons stay enabled offline: the changes are written once the device is online
+        initializeWorkPlaceAdapter(true);
 
         if (!GeolocalizationPermissionsUtil.hasLocationPermissions(requireContext())) {
             setupRequestLocalizationPermissionsLayout(view);
         }
 
-        // Initializes recycler view
-        workPlaceRecyclerView = view.findViewById(R.id.workspot_recycler_view);
-        workPlaceRecyclerView.setLayoutManager(new LinearLayoutManager(view.getContext()));
+        // Searches the workplaces in the local database once the user stops typing
+        searchQueryListener = new DebouncedQueryTextListener(WorkPlacesConstants.WORKPLACE_SEARCH_DEBOUNCE_MILLIS,
+                text -> workPlaceViewModel.setWorkPlaceListQuery(
+                        workPlaceViewModel.getWorkPlaceListQuery().withSearchText(text)));
+        SearchView searchView = view.findViewById(R.id.home_search_view);
+        searchView.setOnQueryTextListener(searchQueryListener);
+
+        // Prefetches the photos of the next cards while scrolling
+        photoPrefetcher = new WorkPlacePhotoPrefetcher(requireContext(), Glide.with(this), R.id.card_image);
+        workPlaceRecyclerView.addOnScrollListener(photoPrefetcher);
 
         // Retrieves the current User
         userAccountViewModel.getUser(USER);
 
-        // Fetches the workplaces
-        workPlaceViewModel.getWorkPlaces();
+        // Loads the workplaces page by page; the local database is synced with Firebase when needed
+        workPlaceViewModel.setWorkPlaceListQuery(workPlaceViewModel.getWorkPlaceListQuery());
         return view;
     }
 
@@ -200,6 +220,24 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
         setupObservers();
     }
 
+    /**
+     * Called when the fragment becomes visible: the workplaces are kept in sync while it is
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        workPlaceViewModel.onScreenStarted();
+    }
+
+    /**
+     * Called when the fragment is no longer visible
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        workPlaceViewModel.onScreenStopped();
+    }
+
     /**
      * Called when the view is destroyed
      */
@@ -207,6 +245,12 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
     public void onDestroyView() {
         super.onDestroyView();
         networkManager.unregisterNetworkCallback();
+        photoPrefetcher.cancel();
+        searchQueryListener.cancel();
+        if (locationCallback != null) {
+            flpc.removeLocationUpdates(locationCallback);
+            locationCallback = null;
+        }
     }
 
 
@@ -274,6 +318,10 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
         view.findViewById(R.id.weather_grid_layout).setVisibility(View.VISIBLE);
         view.findViewById(R.id.weather_degrees_text).setVisibility(View.VISIBLE); // In case of previous error
         view.findViewById(R.id.loading_screen).setVisibility(View.GONE);
+
+        // Ranks the workplaces according to the new weather
+        workPlaceViewModel.setWorkPlaceListQuery(workPlaceViewModel.getWorkPlaceListQuery()
+                .withOutdoorSuitability(weather.getOutdoorSuitability()));
     }
 
     /**
@@ -332,26 +380,24 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
     }
 
     /**
-     * Handles the success of workplace data fetching. Updates the UI to display the workplaces
+     * Handles the changes in the load state of the paged workplaces. The cards are displayed as
+     * soon as the local database provides them; the error layout is only displayed when there
+     * is nothing to show
+     * @param loadStates The load states of the local database and of the remote sync
      */
-    private void onWorkPlaceFetchSuccess() {
-        // Modifies the list according to the current weather
-        if(weather != null)
-            applyWeatherFilter();
-        else
-            initializeWorkPlaceAdapter(isConnected);
-
-        // Notifies the adapter that new items have been inserted into the list
-        workPlaceAdapter.notifyItemRangeInserted(0, workPlaceList.size());
-
-        // Removes shimmer layout and displays the workplaces cards
-        requireView().findViewById(R.id.failed_to_load_workplaces_layout).setVisibility(View.GONE);
-        requireView().findViewById(R.id.workspot_shimmer_view).setVisibility(View.GONE);
-        requireView().findViewById(R.id.workspot_recycler_view).setVisibility(View.VISIBLE);
-
-        // If the user is logged in, starts fetching their saved workplaces
-        if(UID != null)
-            workPlaceViewModel.getSavedWorkPlaces(UID);
+    private void onWorkPlaceLoadStateChanged(CombinedLoadStates loadStates) {
+        if(getView() == null)
+            return;
+        boolean hasItems = workPlaceAdapter.getItemCount() > 0;
+        if(loadStates.getRefresh() instanceof LoadState.Error && !hasItems) {
+            onFailureFetchWorkPlace();
+        } else if(loadStates.getSource().getRefresh() instanceof LoadState.NotLoading
+                && (hasItems || loadStates.getRefresh() instanceof LoadState.NotLoading)) {
+            // Removes shimmer layout and displays the workplaces cards
+            requireView().findViewById(R.id.failed_to_load_workplaces_layout).setVisibility(View.GONE);
+            requireView().findViewById(R.id.workspot_shimmer_view).setVisibility(View.GONE);
+            requireView().findViewById(R.id.workspot_recycler_view).setVisibility(View.VISIBLE);
+        }
     }
 
     /**
@@ -374,20 +420,6 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
         Toast.makeText(getActivity(), message, Toast.LENGTH_SHORT).show();
     }
 
-    /**
-     * Handles success in fetching saved workplaces and updates the UI to mark them as saved
-     * @param savedWorkPlaces List of saved workplaces
-     */
-    private void onSavedWorkPlaceFetchSuccess(List<WorkPlace> savedWorkPlaces) {
-        for(WorkPlace workPlace : savedWorkPlaces) {
-            int position = workPlaceList.indexOf(workPlace);
-            if(position != -1) {
-                workPlaceList.get(position).setSaved(true);
-                workPlaceAdapter.notifyItemChanged(position);
-            }
-        }
-
-    }
     //--------------------------------------- Util methods ---------------------------------------//
     /**
      * Initializes the ViewModels with the necessary repositories
@@ -420,22 +452,11 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
      */
     private void setupObservers() {
         // Workplace observers:
-        workPlaceViewModel.getWorkPlacesLiveData().observe(getViewLifecycleOwner(), resultEvent -> {
-            Result result = resultEvent.getContentIfNotHandled();
-            if (result instanceof Result.WorkPlaceSuccess workPlaceSuccess) {
-                workPlaceList.clear();
-                workPlaceList.addAll(workPlaceSuccess.getWorkPlaceList());
-                onWorkPlaceFetchSuccess();
-            } else if (result instanceof Result.Error) {
-                onFailureFetchWorkPlace();
-            }
-        });
+        workPlaceViewModel.getPagedWorkPlacesLiveData().observe(getViewLifecycleOwner(), pagingData ->
+                workPlaceAdapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
         workPlaceViewModel.getSavedWorkPlaceLiveData().observe(getViewLifecycleOwner(), resultEvent -> {
             Result result = resultEvent.getContentIfNotHandled();
-            if (result instanceof Result.WorkPlaceSuccess saved) {
-                List<WorkPlace> savedWorkPlaces = saved.getWorkPlaceList();
-                onSavedWorkPlaceFetchSuccess(savedWorkPlaces);
-            } else if (result instanceof Result.Error) {
+            if (result instanceof Result.Error) {
                 showToast(getString(R.string.failed_to_fetch_saved));
             }
         });
@@ -468,6 +489,9 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
             if (result instanceof Result.ResponseSuccess responseSuccess) {
                 User user = User.userFromString(responseSuccess.getResponse());
                 UID = user.getUid();
+                // Marks the saved workplaces of the user, which are then updated in the paged
+                // list by the local database. The saved state is kept across the syncs
+                workPlaceViewModel.getSavedWorkPlaces(UID);
             }
         });
     }
@@ -498,9 +522,39 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
     private void getLocationData() {
         flpc.getLastLocation().addOnSuccessListener(requireActivity(), location -> {
             if(location != null) {
+                // Orders the workplaces by distance from the device
+                workPlaceViewModel.setWorkPlaceListQuery(workPlaceViewModel.getWorkPlaceListQuery()
+                        .withOrigin(location.getLatitude(), location.getLongitude()));
                 getWeatherData(location.getLatitude(), location.getLongitude());
             }
         }).addOnFailureListener(e -> showToast(getString(R.string.error_message_toast, e.getMessage())));
+        requestLocationUpdates();
+    }
+
+    /**
+     * Requests the location updates that keep the workplaces ordered by distance while the user
+     * moves. Moves shorter than {@link WorkPlacesConstants#WORKPLACE_LOCATION_MIN_UPDATE_DISTANCE_METERS}
+     * are not reported, and each reported move only reloads the displayed part of the list
+     */
+    @RequiresPermission(anyOf = {Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION})
+    private void requestLocationUpdates() {
+        if (locationCallback != null)
+            return;
+        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY,
+                WorkPlacesConstants.WORKPLACE_LOCATION_UPDATE_INTERVAL_MILLIS)
+                .setMinUpdateDistanceMeters(WorkPlacesConstants.WORKPLACE_LOCATION_MIN_UPDATE_DISTANCE_METERS)
+                .build();
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(@NonNull LocationResult locationResult) {
+                Location location = locationResult.getLastLocation();
+                if (location != null)
+                    workPlaceViewModel.setWorkPlaceListQuery(workPlaceViewModel.getWorkPlaceListQuery()
+                            .withOrigin(location.getLatitude(), location.getLongitude()));
+            }
+        };
+        flpc.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
     }
 
     /**
@@ -520,12 +574,13 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
     }
 
     /**
-     * Initializes the WorkPlaceAdapter for the RecyclerView.
+     * Initializes the WorkPlacePagingAdapter for the RecyclerView. The adapter is created once per
+     * view, new pages are then submitted to it.
      * @param shouldShowFavoriteButton A boolean indicating whether the favorite button should be displayed.
      */
     private void initializeWorkPlaceAdapter(boolean shouldShowFavoriteButton) {
         // Setups the adapter
-        workPlaceAdapter = new WorkPlaceAdapter(R.layout.card_workplace, workPlaceList, shouldShowFavoriteButton,
+        workPlaceAdapter = new WorkPlacePagingAdapter(R.layout.card_workplace, shouldShowFavoriteButton,
                 new WorkPlaceAdapter.OnItemClickListener() {
             @Override
             public void onWorkPlaceItemClick(WorkPlace workPlace) {
@@ -536,7 +591,12 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
             }
             @Override
             public void onFavouriteButtonPressed(int position) {
-                WorkPlace workPlace = workPlaceList.get(position);
+                WorkPlace workPlace = workPlaceAdapter.getWorkPlace(position);
+                if(workPlace == null)
+                    return; // Not loaded yet
+                // The saved state is updated on a copy: the displayed item changes when the local
+                // database does, so that only the favourite button of the card is rebound
+                workPlace = new WorkPlace(workPlace);
                 if(UID == null) {
                     showToast(getString(R.string.guests_cannot_save_workplaces));
                 } else if (!workPlace.isSaved()) {
@@ -546,30 +606,10 @@ public class HomeFragment extends Fragment implements IPermissionCallback {
                 }
             }
         });
+        workPlaceAdapter.addLoadStateListener(loadStates -> {
+            onWorkPlaceLoadStateChanged(loadStates);
+            return Unit.INSTANCE;
+        });
         workPlaceRecyclerView.setAdapter(workPlaceAdapter);
     }
-
-    /**
-     * Filters workplaces based on the current weather condition
-     * Outdoors workplaces are recommended if there is a clear sky and the temperature is greater or
-     * equal to 22 degrees Celsius
-     */
-    private void applyWeatherFilter() {
-        boolean shouldRecommendOutdoors = false;
-        int code = weather.getWeatherCondition().getCode();
-
-        // If there is a clear sky and the temperature is greater o equal to 22 degrees Celsius
-        if(code >= 1000 && code <= 1003 && weather.getTemperature() >= 22)
-            shouldRecommendOutdoors = true;
-
-        // Additional list to avoid concurrency problems
-        List<WorkPlace> filteredWorkplaces = new ArrayList<>(workPlaceList);
-        for(WorkPlace workPlace: workPlaceList) {
-            if(!shouldRecommendOutdoors && workPlace.isOutside())
-                filteredWorkplaces.remove(workPlace);
-        }
-        workPlaceList.clear();
-        workPlaceList.addAll(filteredWorkplaces);
-        initializeWorkPlaceAdapter(isConnected);
-    }
 }
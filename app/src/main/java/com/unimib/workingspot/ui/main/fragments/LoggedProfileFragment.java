@@ -410,10 +410,14 @@ public class LoggedProfileFragment extends Fragment {
      * @param manager        the bitmap manager
      */
     private void setProfilePictureDrawable(MaterialButton materialButton, String encodedBitmap, BitMapManager manager) {
-        Bitmap bitmap = manager.decodeBitmap(encodedBitmap);
+        // The picture is a JPEG shown as a small icon: decode it downsampled and without alpha
+        int size = getResources().getDimensionPixelSize(R.dimen.profile_picture_size);
+        Bitmap bitmap = manager.decodeBitmap(encodedBitmap, size, size, Bitmap.Config.RGB_565);
         manager.createCircularDrawable(requireContext(), bitmap, drawable -> {
             materialButton.setIcon(drawable);
             materialButton.requestLayout();
+            // The circular drawable is a new bitmap, the decoded one can be reused
+            manager.releaseBitmap(bitmap);
         }, R.mipmap.default_profile_picture);
     }
 
@@ -5,8 +5,8 @@ import com.unimib.workingspot.util.map_managing_utils.MapUtils;
 import android.app.Activity;
 import android.app.Application;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -30,6 +30,8 @@ import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
 import com.google.android.libraries.places.api.Places;
 import com.google.android.libraries.places.api.model.Place;
 import com.google.android.libraries.places.widget.Autocomplete;
@@ -48,12 +50,16 @@ import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModelFac
 import com.unimib.workingspot.util.bitmap.BitMapManager;
 import com.unimib.workingspot.util.network.NetworkManagerSingleton;
 import com.unimib.workingspot.util.network.NetworkState;
+import com.unimib.workingspot.util.spatial.WorkPlaceColumns;
 import com.unimib.workingspot.util.source.ServiceLocator;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
 
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.GOOGLE_PLACES_API_KEY;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_DUPLICATE_RADIUS_METERS;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_MAP_MAX_MARKERS;
 import static com.unimib.workingspot.util.constants.Constants.USER;
 
 
@@ -67,7 +73,6 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private View rootView;
     private GoogleMap googleMap;
     private final LatLng MILAN_COORDINATES = new LatLng(45.4642, 9.1900); // Milan, because why not?
-    private final List<WorkPlace> workPlaces = new ArrayList<>();
     private LatLng selectedLatLng;
     private String selectedName;
     private String selectedAddress;
@@ -78,7 +83,15 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private String UID;
     private BitMapManager bitMapManager; // For handling those lovely bitmaps!
     private NetworkManagerSingleton networkManager;
-    private List<WorkPlace> pendingWorkPlaces = null;
+    private WorkPlaceColumns workPlaceColumns; // Snapshot of the workplaces, null until built
+    private final SparseArray<Marker> markers = new SparseArray<>(); // Displayed markers, by snapshot row
+    // Rows of the snapshot in view, displayed, and changed; reused across camera moves
+    private final BitSet visibleRows = new BitSet();
+    private final BitSet shownRows = new BitSet();
+    private final BitSet changedRows = new BitSet();
+    // Scratch arrays for ordering the rows in view by distance, sized to the snapshot
+    private int[] rowOrder = new int[0];
+    private double[] rowDistances = new double[0];
 
 
     /**
@@ -170,6 +183,24 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         fab.setOnClickListener(v -> MapUtils.prepareAndLaunchPlaceSearch(requireContext(), autocompleteLauncher, GOOGLE_PLACES_API_KEY));
     }
 
+    /**
+     * Called when the fragment becomes visible: the workplaces are kept in sync while it is
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        workPlaceViewModel.onScreenStarted();
+    }
+
+    /**
+     * Called when the fragment is no longer visible
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        workPlaceViewModel.onScreenStopped();
+    }
+
     /**
      * Called when the map is ready to be used. This is our entry point for map interactions.
      * @param map The {@link GoogleMap} object that is ready to be used.
@@ -182,9 +213,8 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         setupListeners();
 
         // Now that map is ready, proceed
-        if (pendingWorkPlaces != null) {
-            onWorkPlaceDatabaseRetrieveSuccess(pendingWorkPlaces);
-            pendingWorkPlaces = null;
+        if (workPlaceColumns != null) {
+            showVisibleMarkers();
         } else {
             workPlaceViewModel.getWorkPlaces();
         }
@@ -192,50 +222,86 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
 
     /**
-     * Callback for when all workplaces are successfully retrieved from the database.
-     * Clears existing workplaces and adds new markers.
-     * @param workPlaceList A {@link List} of {@link WorkPlace} objects retrieved from the database.
+     * Callback for when a new snapshot of the workplaces is built from the local database,
+     * which happens after every change. The markers of the workplaces still stored are kept,
+     * found by key in the new snapshot, and only the changed ones are updated; the markers of
+     * the removed workplaces are removed, and the ones newly in view are added.
+     * @param columns The {@link WorkPlaceColumns} snapshot of the stored workplaces.
      */
-    public void onWorkPlaceDatabaseRetrieveSuccess(List<WorkPlace> workPlaceList) {
-        if (googleMap == null) {
-            // Map not ready, store the list for later use.
-            pendingWorkPlaces = new ArrayList<>(workPlaceList);
-            return;
-        }
-
-        workPlaces.clear();
-        workPlaces.addAll(workPlaceList);
-
-        for (WorkPlace wp : workPlaces) {
-            MapUtils.addMapMarker(googleMap, wp, BitmapDescriptorFactory.HUE_VIOLET);
+    public void onWorkPlaceColumnsChanged(WorkPlaceColumns columns) {
+        workPlaceColumns = columns;
+        if (rowOrder.length < columns.size()) {
+            rowOrder = new int[columns.size()];
+            rowDistances = new double[columns.size()];
         }
-
-        if (UID != null) {
-            workPlaceViewModel.getSavedWorkPlaces(UID);
+        if (googleMap == null)
+            return; // Map not ready, the markers are added once it is.
+
+        SparseArray<Marker> previousMarkers = markers.clone();
+        markers.clear();
+        shownRows.clear();
+        for (int i = 0; i < previousMarkers.size(); i++) {
+            Marker marker = previousMarkers.valueAt(i);
+            int row = columns.rowOf(((WorkPlace) Objects.requireNonNull(marker.getTag())).getFirebaseKey());
+            if (row < 0) {
+                marker.remove();
+                continue;
+            }
+            // The snapshot returns the same instance for an unchanged workplace
+            WorkPlace workPlace = columns.getWorkPlace(row);
+            if (marker.getTag() != workPlace) {
+                marker.setTag(workPlace);
+                marker.setTitle(workPlace.getName());
+                marker.setPosition(new LatLng(workPlace.getLatitude(), workPlace.getLongitude()));
+            }
+            markers.put(row, marker);
+            shownRows.set(row);
         }
+        showVisibleMarkers();
     }
 
     /**
-     * Callback for when the user's saved workplaces are successfully retrieved.
-     * Updates the 'saved' status of existing workplaces.
-     * @param savedWorkPlaces A {@link List} of {@link WorkPlace} objects that are saved by the user.
+     * Shows the markers of the workplaces in view, and removes the other ones. When too many
+     * workplaces are in view, only the ones nearest to the center are shown.
+     * The passes run on the columns of the snapshot and only allocate the new markers.
      */
-    public void onSavedWorkPlaceDatabaseRetrieveSuccess(List<WorkPlace> savedWorkPlaces) {
-        for (WorkPlace fav : savedWorkPlaces) {
-            int index = workPlaces.indexOf(fav);
-            if (index != -1) {
-                workPlaces.get(index).setSaved(true);
-            }
+    private void showVisibleMarkers() {
+        if (googleMap == null || workPlaceColumns == null)
+            return;
+        LatLngBounds bounds = googleMap.getProjection().getVisibleRegion().latLngBounds;
+        workPlaceColumns.withinBounds(bounds.southwest.latitude, bounds.southwest.longitude,
+                bounds.northeast.latitude, bounds.northeast.longitude, visibleRows);
+        if (visibleRows.cardinality() > WORKPLACE_MAP_MAX_MARKERS) {
+            LatLng center = googleMap.getCameraPosition().target;
+            workPlaceColumns.orderByDistance(center.latitude, center.longitude, visibleRows,
+                    rowOrder, rowDistances);
+            visibleRows.clear();
+            for (int i = 0; i < WORKPLACE_MAP_MAX_MARKERS; i++)
+                visibleRows.set(rowOrder[i]);
         }
-    }
 
-    /**
-     * Callback for when a new workplace is successfully created in the database.
-     * Adds a new marker for the newly created workplace.
-     * @param workPlace The {@link WorkPlace} object that was just created.
-     */
-    public void onWorkPlaceDatabaseCreateSuccess(WorkPlace workPlace) {
-        MapUtils.addMapMarker(googleMap, workPlace, BitmapDescriptorFactory.HUE_VIOLET);
+        // Removes the markers no longer in view
+        changedRows.clear();
+        changedRows.or(shownRows);
+        changedRows.andNot(visibleRows);
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            markers.get(row).remove();
+            markers.remove(row);
+        }
+        // Adds the markers newly in view
+        changedRows.clear();
+        changedRows.or(visibleRows);
+        changedRows.andNot(shownRows);
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            Marker marker = MapUtils.addMapMarker(googleMap, workPlaceColumns.getWorkPlace(row),
+                    BitmapDescriptorFactory.HUE_VIOLET);
+            if (marker != null)
+                markers.put(row, marker);
+            else
+                visibleRows.clear(row);
+        }
+        shownRows.clear();
+        shownRows.or(visibleRows);
     }
 
     /**
@@ -263,13 +329,15 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         googleMap.setOnMarkerClickListener(marker -> {
             Object tag = marker.getTag();
             if (tag instanceof WorkPlace) {
-                showCard((WorkPlace) tag); // Show detailed card for the workplace.
+                // The marker holds the workplace shared with the other screens, the card changes a copy
+                showCard(new WorkPlace((WorkPlace) tag)); // Show detailed card for the workplace.
             } else {
                 hideCard(); // Hide card if it's not a workplace marker.
             }
             return true;
         });
         googleMap.setOnMapClickListener(latLng -> hideCard()); // Hide card if user clicks anywhere on the map.
+        googleMap.setOnCameraIdleListener(this::showVisibleMarkers); // Show the workplaces in view.
     }
 
     /**
@@ -285,9 +353,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         ((TextView) card.findViewById(R.id.card_subtitle)).setText(wp.getAddress());
 
         ImageView img = card.findViewById(R.id.card_image);
-        Bitmap bitmap = bitMapManager.decodeBitmap(wp.getB64PhotoEncoding());
-        img.setImageBitmap(bitmap);
-        if (bitmap == null) img.setImageResource(R.drawable.baseline_home_24); // Default image if no photo.
+        bitMapManager.loadWorkPlacePhoto(img, wp, R.drawable.baseline_home_24); // Default image if no photo.
 
         ImageButton fav = card.findViewById(R.id.card_favorite);
 
@@ -327,8 +393,26 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     /**
      * A wrapper method to call the {@code showAddConfirmationDialog} from {@link MapUtils}.
      * This keeps the fragment's code clean and delegates dialog logic.
+     * If a workplace is already stored close to the selected place, the user is asked first
+     * whether the new one is a different place.
      */
     private void showAddConfirmationDialogWrapper() {
+        if (workPlaceColumns != null) {
+            List<WorkPlace> nearby = workPlaceColumns.getTree().withinRadius(selectedLatLng.latitude,
+                    selectedLatLng.longitude, WORKPLACE_DUPLICATE_RADIUS_METERS);
+            if (!nearby.isEmpty()) {
+                MapUtils.showSimilarWorkPlaceNearbyDialog(requireContext(), nearby.get(0).getName(),
+                        this::showAddConfirmationDialog);
+                return;
+            }
+        }
+        showAddConfirmationDialog();
+    }
+
+    /**
+     * Shows the dialog confirming the details of the new workplace, and creates it once confirmed
+     */
+    private void showAddConfirmationDialog() {
         MapUtils.showAddConfirmationDialog(requireContext(), selectedName, selectedAddress, (name, address, outside) -> {
             selectedName = name;
             selectedAddress = address;
@@ -362,19 +446,15 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         // Observers for Workplace data:
         workPlaceViewModel.getWorkPlacesLiveData().observe(getViewLifecycleOwner(), resultConsumable -> {
             Result result = resultConsumable.getContentIfNotHandled();
-            if (result instanceof Result.WorkPlaceSuccess workPlaceSuccess) {
-                List<WorkPlace> workPlaces = workPlaceSuccess.getWorkPlaceList();
-                onWorkPlaceDatabaseRetrieveSuccess(workPlaces);
-            } else if (result instanceof Result.Error) {
+            // The workplaces themselves are displayed from the snapshot of the local database
+            if (result instanceof Result.Error) {
                 onWorkPlaceDatabaseFailure();
             }
         });
         workPlaceViewModel.getSavedWorkPlaceLiveData().observe(getViewLifecycleOwner(), resultConsumable -> {
             Result result = resultConsumable.getContentIfNotHandled();
-            if (result instanceof Result.WorkPlaceSuccess saved) {
-                List<WorkPlace> savedWorkPlaces = saved.getWorkPlaceList();
-                onSavedWorkPlaceDatabaseRetrieveSuccess(savedWorkPlaces);
-            } else if (result instanceof Result.Error) {
+            // The saved state is part of the snapshot of the local database
+            if (result instanceof Result.Error) {
                 onWorkPlaceDatabaseFailure();
             }
         });
@@ -395,24 +475,23 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             }
         });
 
+        // The marker of a new workplace is added when the local database posts the updated list
         workPlaceViewModel.getCreateWorkPlaceLiveData().observe(getViewLifecycleOwner(), resultConsumable -> {
-            Result result = resultConsumable.getContentIfNotHandled();
-            if(result instanceof Result.WorkPlaceSuccess workPlaceSuccess) {
-                List<WorkPlace> workPlaceList = workPlaceSuccess.getWorkPlaceList();
-                if(!workPlaceList.isEmpty()) {
-                    WorkPlace workPlace = workPlaceSuccess.getWorkPlaceList().get(0);
-                    onWorkPlaceDatabaseCreateSuccess(workPlace);
-                }
-            } else if (result instanceof Result.Error)
+            if (resultConsumable.getContentIfNotHandled() instanceof Result.Error)
                 onWorkPlaceDatabaseFailure();
         });
 
 
+        // Observer for the snapshot of the workplaces:
+        workPlaceViewModel.getWorkPlaceColumnsLiveData().observe(getViewLifecycleOwner(),
+                this::onWorkPlaceColumnsChanged);
+
         // Observer for User account data:
         userAccountViewModel.getCacheLiveData().observe(getViewLifecycleOwner(), result -> {
             if (result instanceof Result.ResponseSuccess responseSuccess) {
                 User user = User.userFromString(responseSuccess.getResponse());
                 UID = user.getUid();
+                workPlaceViewModel.getSavedWorkPlaces(UID);
             } else if (result instanceof Result.Error) {
                 FloatingActionButton fab = rootView.findViewById(R.id.add_location_button);
                 fab.setEnabled(false);
@@ -1,6 +1,7 @@
 package com.unimib.workingspot.ui.main.fragments;
 
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.GOOGLE_MAPS_API_LINK_FORMATTED;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_SEARCH_DEBOUNCE_MILLIS;
 import static com.unimib.workingspot.util.constants.Constants.USER;
 
 import android.app.Application;
@@ -14,11 +15,13 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.widget.SearchView;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.bumptech.glide.Glide;
 import com.unimib.workingspot.R;
 import com.unimib.workingspot.adapter.WorkPlaceAdapter;
 import com.unimib.workingspot.model.Result;
@@ -30,8 +33,9 @@ import com.unimib.workingspot.ui.main.viewmodel.user.UserAccountViewModel;
 import com.unimib.workingspot.ui.main.viewmodel.user.UserAccountViewModelFactory;
 import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModel;
 import com.unimib.workingspot.ui.main.viewmodel.work_place.WorkPlaceViewModelFactory;
+import com.unimib.workingspot.util.bitmap.glide.WorkPlacePhotoPrefetcher;
 import com.unimib.workingspot.util.network.NetworkManagerSingleton;
-import com.unimib.workingspot.util.network.NetworkState;
+import com.unimib.workingspot.util.search.DebouncedQueryTextListener;
 import com.unimib.workingspot.util.source.ServiceLocator;
 import java.util.ArrayList;
 import java.util.List;
@@ -85,6 +89,16 @@ public class SavedWorkPlaceFragment extends Fragment {
     private List<WorkPlace> savedWorkPlaces;
 
 
+    /**
+     * Prefetcher that decodes the photos of the next cards while scrolling.
+     */
+    private WorkPlacePhotoPrefetcher photoPrefetcher;
+
+    /**
+     * Listener that searches the saved workplaces once the user stops typing.
+     */
+    private DebouncedQueryTextListener searchQueryListener;
+
     /**
      * Network manager singleton for monitoring internet connectivity.
      */
@@ -117,7 +131,7 @@ public class SavedWorkPlaceFragment extends Fragment {
      *
      * <p>This method inflates the layout for the saved workplaces fragment, sets up the RecyclerView,
      * initializes the adapter with item click and favorite button handlers, and
-     * observes the network connectivity to load user data and set the adapter accordingly.</p>
+     * observes the network connectivity to show or hide the favorite buttons accordingly.</p>
      *
      * <p>The adapter handles two user actions:
      * <ul>
@@ -138,15 +152,23 @@ public class SavedWorkPlaceFragment extends Fragment {
         RecyclerView workPlaceRecyclerView = view.findViewById(R.id.recycler_view_favorites);
         workPlaceRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
 
+        photoPrefetcher = new WorkPlacePhotoPrefetcher(requireContext(), Glide.with(this), R.id.card_image);
+        workPlaceRecyclerView.addOnScrollListener(photoPrefetcher);
+
         tvNoFavorites = view.findViewById(R.id.tv_no_favorites);
 
 
+        initializeAdapter(true);
+        workPlaceRecyclerView.setAdapter(workPlaceAdapter);
+
+        // Searches the saved workplaces in the local database once the user stops typing
+        searchQueryListener = new DebouncedQueryTextListener(WORKPLACE_SEARCH_DEBOUNCE_MILLIS,
+                workPlaceViewModel::setSavedSearchText);
+        SearchView searchView = view.findViewById(R.id.saved_search_view);
+        searchView.setOnQueryTextListener(searchQueryListener);
+
         networkManagerSingleton = NetworkManagerSingleton.getInstance(requireActivity().getApplication());
         networkManagerSingleton.registerNetworkCallback();
-        networkManagerSingleton.getConnectionStatusLiveData().observe(getViewLifecycleOwner(), isConnected ->{
-            initializeAdapter(isConnected != NetworkState.OFFLINE);
-            workPlaceRecyclerView.setAdapter(workPlaceAdapter);
-        });
         userAccountViewModel.getUser(USER);
         updateNoFavoritesVisibility();
         return view;
@@ -185,17 +207,14 @@ public class SavedWorkPlaceFragment extends Fragment {
 
     /**
      * Replaces the content of the adapter with a new filtered or updated list of workplaces.
+     * The list is diffed against the displayed one, so only the changed cards are rebound.
      * Also updates the visibility of the "no favorites" message accordingly.
      *
      * @param filteredList The new list of workplaces to display.
      */
     public void updateAdapter(List<WorkPlace> filteredList) {
-        int oldSize = savedWorkPlaces.size();
-        savedWorkPlaces.clear();
-        workPlaceAdapter.notifyItemRangeRemoved(0, oldSize);
-
-        savedWorkPlaces.addAll(filteredList);
-        workPlaceAdapter.notifyItemRangeInserted(0, savedWorkPlaces.size());
+        savedWorkPlaces = new ArrayList<>(filteredList);
+        workPlaceAdapter.submitList(savedWorkPlaces);
 
         updateNoFavoritesVisibility();
     }
@@ -235,26 +254,15 @@ public class SavedWorkPlaceFragment extends Fragment {
         Toast.makeText(getActivity(), message, Toast.LENGTH_SHORT).show();
     }
 
-    /**
-     * Requests the latest list of saved workplaces from the {@link WorkPlaceViewModel}.
-     *
-     * <p>Triggers data refresh for the current user identified by {@code UID}.</p>
-     */
-    private void refreshWorkplaceList() {
-        workPlaceViewModel.getSavedWorkPlaces(UID);
-    }
-
-
     /**
      * Callback invoked when a workplace has been successfully deleted from the database.
      *
-     * <p>Displays a success toast and triggers a refresh of the saved workplace list.</p>
+     * <p>Displays a success toast. The saved workplace list is updated by the local database.</p>
      *
      * @param workPlace The {@link WorkPlace} that was successfully removed.
      */
     public void onWorkPlaceDatabaseDeleteSuccess(WorkPlace workPlace) {
         showToast(getString(R.string.workplace_deleted_successfully, workPlace.getName()));
-        refreshWorkplaceList();
     }
 
     /**
@@ -291,6 +299,34 @@ public class SavedWorkPlaceFragment extends Fragment {
         }
     }
 
+    /**
+     * Called when the fragment becomes visible: the workplaces are kept in sync while it is
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        workPlaceViewModel.onScreenStarted();
+    }
+
+    /**
+     * Called when the fragment is no longer visible
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        workPlaceViewModel.onScreenStopped();
+    }
+
+    /**
+     * Cancels the photo prefetch requests still running when the view is destroyed.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        photoPrefetcher.cancel();
+        searchQueryListener.cancel();
+    }
+
     /**
      * Called when the fragment is being destroyed.
      * <p>
@@ -331,7 +367,8 @@ public class SavedWorkPlaceFragment extends Fragment {
      *
      * <p>Observes changes related to workplace data and user account data:</p>
      * <ul>
-     *   <li><b>Saved workplaces:</b> handles successful retrieval or failure events.</li>
+     *   <li><b>Saved workplaces:</b> displays the saved workplaces matching the searched text,
+     *       updated by the local database, and handles failure events.</li>
      *   <li><b>Workplace save results:</b> handles success or failure when saving a workplace.</li>
      *   <li><b>Workplace removal results:</b> handles success or failure when removing a workplace.</li>
      *   <li><b>User account cache:</b> observes user data retrieval, extracts the user ID,
@@ -340,12 +377,12 @@ public class SavedWorkPlaceFragment extends Fragment {
      */
     private void setupObservers() {
 
+        workPlaceViewModel.getSavedSearchResultsLiveData().observe(getViewLifecycleOwner(),
+                this::onSavedWorkPlaceDatabaseRetrieveSuccess);
         workPlaceViewModel.getSavedWorkPlaceLiveData().observe(getViewLifecycleOwner(), resultEvent -> {
             Result result = resultEvent.getContentIfNotHandled();
-            if (result instanceof Result.WorkPlaceSuccess saved) {
-                List<WorkPlace> savedWorkPlaces = saved.getWorkPlaceList();
-                onSavedWorkPlaceDatabaseRetrieveSuccess(savedWorkPlaces);
-            } else if (result instanceof Result.Error) {
+            // The saved workplaces themselves are displayed from the search results
+            if (result instanceof Result.Error) {
                 onWorkPlaceDatabaseFailure();
             }
         });
@@ -393,7 +430,7 @@ public class SavedWorkPlaceFragment extends Fragment {
      * @param showFavouriteButton A boolean indicating whether the favorite button should be displayed.
      */
     private void initializeAdapter(boolean showFavouriteButton) {
-        workPlaceAdapter = new WorkPlaceAdapter(R.layout.card_workplace, savedWorkPlaces, showFavouriteButton,
+        workPlaceAdapter = new WorkPlaceAdapter(R.layout.card_workplace, showFavouriteButton,
         new WorkPlaceAdapter.OnItemClickListener() {
             @Override
             public void onWorkPlaceItemClick(WorkPlace workPlace) {
@@ -402,8 +439,12 @@ public class SavedWorkPlaceFragment extends Fragment {
 
             @Override
             public void onFavouriteButtonPressed(int position) {
-                WorkPlace wp = savedWorkPlaces.get(position);
+                // The displayed workplace is replaced by a copy, so that the change can be diffed
+                WorkPlace wp = new WorkPlace(workPlaceAdapter.getWorkPlace(position));
                 wp.setSaved(!wp.isSaved());
+                List<WorkPlace> updatedWorkPlaces = new ArrayList<>(savedWorkPlaces);
+                updatedWorkPlaces.set(position, wp);
+                updateAdapter(updatedWorkPlaces);
                 if(wp.isSaved()){
                     workPlaceViewModel.saveWorkPlace(UID, wp);
                 }
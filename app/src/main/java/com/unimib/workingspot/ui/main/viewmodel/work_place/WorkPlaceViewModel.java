@@ -1,15 +1,30 @@
 package com.unimib.workingspot.ui.main.viewmodel.work_place;
 
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_LIVE_SYNC_STOP_DELAY_MILLIS;
+
+import android.os.Handler;
+import android.os.Looper;
+
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Observer;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
 import com.unimib.workingspot.model.Consumable;
 import com.unimib.workingspot.model.Result;
 import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceListQuery;
+import com.unimib.workingspot.util.spatial.WorkPlaceColumns;
 import com.unimib.workingspot.repository.work_place.IWorkPlaceRepository;
 
+import java.util.List;
+import java.util.Objects;
+
 /**
  * ViewModel for managing workplace-related data and communication with the repository.
  * This class acts as a bridge between the UI and the {@link IWorkPlaceRepository} implementation
@@ -26,6 +41,21 @@ public class WorkPlaceViewModel extends ViewModel {
     private final MutableLiveData<Consumable<Result>> saveResultLiveData;
     private final MutableLiveData<Consumable<Result>> deleteResultLiveData;
 
+    // Paged workplaces for the current query, cached so that they survive configuration changes
+    private final MediatorLiveData<PagingData<WorkPlace>> pagedWorkPlacesLiveData;
+    private LiveData<PagingData<WorkPlace>> pagedWorkPlacesSource;
+    private volatile WorkPlaceListQuery workPlaceListQuery;
+
+    // Saved workplaces matching the searched text, queried again whenever the text changes
+    private final MutableLiveData<String> savedSearchTextLiveData;
+    private final LiveData<List<WorkPlace>> savedSearchResultsLiveData;
+
+    // Number of started screens showing the workplaces, and the delayed stop of the live sync
+    // once none is started
+    private int startedScreens;
+    private final Handler liveSyncHandler = new Handler(Looper.getMainLooper());
+    private final Runnable stopLiveSyncRunnable;
+
     // Livedata observers
     private final Observer<Result> fetchWorkPlacesObserver;
     private final Observer<Result> fetchSavedWorkPlaceObserver;
@@ -53,6 +83,10 @@ public class WorkPlaceViewModel extends ViewModel {
         this.fetchResultLiveData = new MutableLiveData<>();
         this.fetchSavedResultLiveData = new MutableLiveData<>();
         this.createResultLiveData = new MutableLiveData<>();
+        this.pagedWorkPlacesLiveData = new MediatorLiveData<>();
+        this.savedSearchTextLiveData = new MutableLiveData<>("");
+        this.savedSearchResultsLiveData = Transformations.switchMap(savedSearchTextLiveData,
+                workPlaceRepository::searchSavedWorkPlaces);
 
         // Creates the observers
         fetchWorkPlacesObserver = result -> fetchResultLiveData.postValue(new Consumable<>(result));
@@ -60,6 +94,7 @@ public class WorkPlaceViewModel extends ViewModel {
         saveObserver = result -> saveResultLiveData.postValue(new Consumable<>(result));
         deleteObserver = result -> deleteResultLiveData.postValue(new Consumable<>(result));
         createObserver = result -> createResultLiveData.postValue(new Consumable<>(result));
+        stopLiveSyncRunnable = workPlaceRepository::stopLiveSync;
     }
 
     /**
@@ -74,6 +109,26 @@ public class WorkPlaceViewModel extends ViewModel {
         return fetchResultLiveData;
     }
 
+    /**
+     * Returns LiveData that will contain a single workplace, updated whenever it changes in the
+     * local database
+     * @param firebaseKey The Firebase key of the workplace
+     * @return A {@link LiveData} object that will hold the workplace, or null if it is not stored
+     */
+    public LiveData<WorkPlace> getWorkPlaceLiveData(String firebaseKey) {
+        return workPlaceRepository.getWorkPlaceLiveData(firebaseKey);
+    }
+
+    /**
+     * Returns LiveData that will contain the columnar snapshot of the stored workplaces and its
+     * k-d tree, rebuilt in the background whenever they change. The snapshot is shared by every
+     * screen of the activity
+     * @return A {@link LiveData} object that will hold the latest snapshot
+     */
+    public LiveData<WorkPlaceColumns> getWorkPlaceColumnsLiveData() {
+        return workPlaceRepository.getWorkPlaceColumnsLiveData();
+    }
+
     /**
      * Returns LiveData that will contain saved workplace fetching results
      * @return A {@link LiveData} object that will hold the fetched saved workplaces.
@@ -122,6 +177,94 @@ public class WorkPlaceViewModel extends ViewModel {
         return createResultLiveData;
     }
 
+    /**
+     * Returns LiveData that will contain the workplaces page by page, loaded according to the
+     * query set with {@link #setWorkPlaceListQuery(WorkPlaceListQuery)}
+     * @return A {@link LiveData} object that will hold the paged workplaces
+     */
+    public LiveData<PagingData<WorkPlace>> getPagedWorkPlacesLiveData() {
+        return pagedWorkPlacesLiveData;
+    }
+
+    /**
+     * Sets the query used to load the paged workplaces. A new paged list is only created when
+     * the filter changes; when only the ranking changes, for example while the user walks,
+     * the scores are written again in the background and the current list is reloaded around
+     * the displayed items, keeping the scroll position
+     * @param query The query describing the filter and the ordering of the workplaces
+     */
+    public void setWorkPlaceListQuery(WorkPlaceListQuery query) {
+        if(query.equals(workPlaceListQuery))
+            return;
+        WorkPlaceListQuery previousQuery = workPlaceListQuery;
+        workPlaceListQuery = query;
+        // Only the scores depending on the changed inputs are written
+        workPlaceRepository.rankWorkPlaces(query);
+        if(previousQuery == null || !query.hasSameFilter(previousQuery)) {
+            if(pagedWorkPlacesSource != null)
+                pagedWorkPlacesLiveData.removeSource(pagedWorkPlacesSource);
+            pagedWorkPlacesSource = PagingLiveData.cachedIn(
+                    workPlaceRepository.getPagedWorkPlaces(this::getWorkPlaceListQuery),
+                    ViewModelKt.getViewModelScope(this));
+            pagedWorkPlacesLiveData.addSource(pagedWorkPlacesSource, pagedWorkPlacesLiveData::setValue);
+        }
+        // The live sync started before the position of the user was known listens to every
+        // workplace, it is moved to the area around the user
+        boolean originFound = query.hasOrigin() && (previousQuery == null || !previousQuery.hasOrigin());
+        if(originFound && startedScreens > 0) {
+            workPlaceRepository.stopLiveSync();
+            workPlaceRepository.startLiveSync();
+        }
+    }
+
+    /**
+     * Gets the query currently used to load the paged workplaces
+     * @return The current query, or the default one ranking the saved workplaces first if none was set
+     */
+    public WorkPlaceListQuery getWorkPlaceListQuery() {
+        return workPlaceListQuery != null ? workPlaceListQuery : WorkPlaceListQuery.savedFirst();
+    }
+
+    /**
+     * Returns LiveData that will contain the saved workplaces matching the text set with
+     * {@link #setSavedSearchText(String)}, or all of them if no text is set. The list is updated
+     * whenever the saved workplaces change
+     * @return A {@link LiveData} object that will hold the matching saved workplaces
+     */
+    public LiveData<List<WorkPlace>> getSavedSearchResultsLiveData() {
+        return savedSearchResultsLiveData;
+    }
+
+    /**
+     * Sets the text searched in the saved workplaces. A new search is only run when the text changes
+     * @param searchText The text to search, or an empty text for every saved workplace
+     */
+    public void setSavedSearchText(String searchText) {
+        String text = searchText == null ? "" : searchText.trim();
+        if (!Objects.equals(text, savedSearchTextLiveData.getValue()))
+            savedSearchTextLiveData.setValue(text);
+    }
+
+    /**
+     * Notifies that a screen showing the workplaces is visible: the remote changes are applied
+     * as they happen while at least one is. Called when the screen is started
+     */
+    public void onScreenStarted() {
+        liveSyncHandler.removeCallbacks(stopLiveSyncRunnable);
+        if (startedScreens++ == 0)
+            workPlaceRepository.startLiveSync();
+    }
+
+    /**
+     * Notifies that a screen showing the workplaces is no longer visible. The live sync is
+     * stopped a little after the last one is hidden, so that switching screens keeps it running.
+     * Called when the screen is stopped
+     */
+    public void onScreenStopped() {
+        if (--startedScreens == 0)
+            liveSyncHandler.postDelayed(stopLiveSyncRunnable, WORKPLACE_LIVE_SYNC_STOP_DELAY_MILLIS);
+    }
+
     /**
      * Initiates workplace fetching from the repository
      */
@@ -155,6 +298,15 @@ public class WorkPlaceViewModel extends ViewModel {
         workPlaceRepository.removeSavedWorkPlace(UID, workPlace);
     }
 
+    /**
+     * Tells the repository whether the device is online, so that the saved workplaces changed
+     * while offline are written to the remote database once it is
+     * @param online true if the device is online
+     */
+    public void setOnline(boolean online) {
+        workPlaceRepository.setOnline(online);
+    }
+
     /**
      * Initiates the operation that will create a new {@link WorkPlace}
      * @param name The name of the workplace
@@ -181,6 +333,8 @@ public class WorkPlaceViewModel extends ViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        liveSyncHandler.removeCallbacks(stopLiveSyncRunnable);
+        workPlaceRepository.stopLiveSync();
         if(fetchObserverAttached)
             workPlaceRepository.getWorkPlaceLiveData().removeObserver(fetchWorkPlacesObserver);
         if(fetchSavedObserverAttached)
@@ -1,18 +1,41 @@
 package com.unimib.workingspot.util.bitmap;
 
+import static com.unimib.workingspot.util.constants.Constants.BITMAP_POOL_MEMORY_FRACTION;
 import static com.unimib.workingspot.util.constants.Constants.NULL_BITMAP_ENCODING;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_BLURHASH_CACHE_SIZE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_BLURHASH_COMPONENTS_X;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_BLURHASH_COMPONENTS_Y;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_BLURHASH_DECODE_SIZE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_BLURHASH_ENCODE_SIZE;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_THUMBNAIL_SIZE_MULTIPLIER;
+
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.CustomTarget;
+import com.bumptech.glide.request.target.Target;
 import com.bumptech.glide.request.transition.Transition;
-import java.io.ByteArrayOutputStream;
+import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlacePhoto;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Base64;
 import java.util.Objects;
 
@@ -24,6 +47,17 @@ public class BitMapManager {
 
     private static final String TAG = BitMapManager.class.getSimpleName();
 
+    // Decoded BlurHash placeholders, shared by every screen
+    private static final LruCache<String, Bitmap> BLUR_HASH_CACHE =
+            new LruCache<>(WORKPLACE_PHOTO_BLURHASH_CACHE_SIZE);
+
+    // Format of the decoded workplace photos, shared by the loads, the preloads and the prefetch budget
+    private static final DecodeFormat WORKPLACE_PHOTO_FORMAT = DecodeFormat.PREFER_RGB_565;
+
+    // Bitmaps reused by the decodes, shared by every screen
+    private static final BitmapReusePool BITMAP_POOL =
+            new BitmapReusePool((long) (Runtime.getRuntime().maxMemory() * BITMAP_POOL_MEMORY_FRACTION));
+
     /**
      * Callback interface for when a Bitmap is ready.
      */
@@ -104,7 +138,9 @@ public class BitMapManager {
 
     /**
      * Converts a Bitmap to a circular-cropped Drawable using Glide.
-     * Uses fallback image if bitmap is null.
+     * Uses fallback image if bitmap is null. The result is not cached: Glide would key it by the
+     * bitmap instance, which the caller may give back to the {@link BitmapReusePool} and get
+     * again from the next decode with other pixels.
      *
      * @param context        The application context.
      * @param bitmap         The Bitmap to convert.
@@ -115,6 +151,8 @@ public class BitMapManager {
         Glide.with(context)
                 .asDrawable()
                 .load(bitmap != null ? bitmap : fallbackImage)
+                .skipMemoryCache(true)
+                .diskCacheStrategy(DiskCacheStrategy.NONE)
                 .circleCrop()
                 .placeholder(fallbackImage)
                 .error(fallbackImage)
@@ -131,6 +169,139 @@ public class BitMapManager {
                 });
     }
 
+    /**
+     * Loads the photo of a workplace into an ImageView using Glide.
+     * The photo is decoded off the main thread, downsampled to the size of the view and kept in
+     * Glide's memory cache; its bitmaps come from the shared {@link BitmapReusePool}. The BlurHash placeholder of the workplace, if any, is
+     * shown immediately, then a low resolution thumbnail while the full photo is loading.
+     * The request is cancelled when the view is recycled or detached.
+     *
+     * @param imageView      The ImageView that will display the photo.
+     * @param workPlace      The workplace whose photo should be loaded.
+     * @param fallbackImage  Resource ID of the fallback image.
+     */
+    public void loadWorkPlacePhoto(ImageView imageView, WorkPlace workPlace, int fallbackImage) {
+        WorkPlacePhoto photo = WorkPlacePhoto.fromWorkPlace(workPlace);
+        RequestManager requestManager = Glide.with(imageView);
+
+        if (photo == null) {
+            requestManager.clear(imageView);
+            imageView.setImageResource(fallbackImage);
+            return;
+        }
+
+        buildWorkPlacePhotoRequest(requestManager, photo, fallbackImage)
+                .placeholder(decodeBlurHash(imageView.getResources(), workPlace.getBlurHash()))
+                .thumbnail(requestManager
+                        .load(photo)
+                        .sizeMultiplier(WORKPLACE_PHOTO_THUMBNAIL_SIZE_MULTIPLIER)
+                        .downsample(DownsampleStrategy.AT_MOST))
+                .into(imageView);
+    }
+
+    /**
+     * Decodes the photo of a workplace ahead of time into Glide's memory cache, so that a later
+     * call to {@link #loadWorkPlacePhoto(ImageView, WorkPlace, int)} with a view of the same size
+     * is served without decoding.
+     *
+     * @param requestManager The request manager tied to the lifecycle of the screen.
+     * @param workPlace      The workplace whose photo should be preloaded.
+     * @param width          The width in pixels of the view that will display the photo.
+     * @param height         The height in pixels of the view that will display the photo.
+     * @param listener       Listener notified when the preload completes or fails.
+     * @return The target of the preload request, or null if the workplace has no photo.
+     */
+    @Nullable
+    public Target<Drawable> preloadWorkPlacePhoto(RequestManager requestManager, WorkPlace workPlace,
+                                                  int width, int height,
+                                                  RequestListener<Drawable> listener) {
+        WorkPlacePhoto photo = WorkPlacePhoto.fromWorkPlace(workPlace);
+        if (photo == null)
+            return null;
+        return buildWorkPlacePhotoRequest(requestManager, photo, 0)
+                .listener(listener)
+                .preload(width, height);
+    }
+
+    /**
+     * Builds the request shared by the photo loads and preloads. Both must use the same options
+     * so that they resolve to the same memory cache entry. Workplace photos are JPEGs without
+     * alpha, so they are decoded as RGB_565.
+     *
+     * @param requestManager The request manager used to start the request.
+     * @param photo          The photo to load.
+     * @param fallbackImage  Resource ID of the fallback image, or 0 for none.
+     * @return The request builder.
+     */
+    private RequestBuilder<Drawable> buildWorkPlacePhotoRequest(RequestManager requestManager,
+                                                                WorkPlacePhoto photo, int fallbackImage) {
+        return requestManager
+                .load(photo)
+                .format(WORKPLACE_PHOTO_FORMAT)
+                .downsample(DownsampleStrategy.CENTER_OUTSIDE)
+                .centerCrop()
+                .error(fallbackImage);
+    }
+
+    /**
+     * Computes the BlurHash of a photo, used as a compact placeholder while the photo is loading.
+     * The photo is scaled down first, so the cost does not depend on its resolution.
+     *
+     * @param bitmap The photo.
+     * @return The BlurHash of the photo, or null if the bitmap is null.
+     */
+    @Nullable
+    public String computeBlurHash(@Nullable Bitmap bitmap) {
+        if (bitmap == null)
+            return null;
+        int size = WORKPLACE_PHOTO_BLURHASH_ENCODE_SIZE;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, size, size, true);
+        int[] pixels = new int[size * size];
+        scaled.getPixels(pixels, 0, size, 0, 0, size, size);
+        if (scaled != bitmap)
+            scaled.recycle();
+        return BlurHash.encode(pixels, size, size,
+                WORKPLACE_PHOTO_BLURHASH_COMPONENTS_X, WORKPLACE_PHOTO_BLURHASH_COMPONENTS_Y);
+    }
+
+    /**
+     * Decodes a BlurHash into a small drawable that is stretched to fit the view.
+     * Decoded placeholders are kept in a small in-memory cache.
+     *
+     * @param resources The resources used to create the drawable.
+     * @param blurHash  The BlurHash to decode.
+     * @return The placeholder drawable, or null if the BlurHash is missing or malformed.
+     */
+    @Nullable
+    public Drawable decodeBlurHash(Resources resources, @Nullable String blurHash) {
+        if (blurHash == null || blurHash.isEmpty())
+            return null;
+
+        Bitmap placeholder = BLUR_HASH_CACHE.get(blurHash);
+        if (placeholder == null) {
+            try {
+                int size = WORKPLACE_PHOTO_BLURHASH_DECODE_SIZE;
+                int[] pixels = BlurHash.decode(blurHash, size, size);
+                placeholder = Bitmap.createBitmap(pixels, size, size, Bitmap.Config.ARGB_8888);
+                BLUR_HASH_CACHE.put(blurHash, placeholder);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, Objects.requireNonNull(e.getMessage()));
+                return null;
+            }
+        }
+        return new BitmapDrawable(resources, placeholder);
+    }
+
+    /**
+     * Cancels any pending photo request for an ImageView and releases its bitmap back to
+     * the shared {@link BitmapReusePool}, which Glide uses as its bitmap pool.
+     *
+     * @param imageView The ImageView to clear.
+     */
+    public void clearWorkPlacePhoto(ImageView imageView) {
+        Glide.with(imageView).clear(imageView);
+    }
+
     /**
      * Encodes a Bitmap into a Base64 String.
      * If bitmap is null, it uses a fallback image resource.
@@ -149,10 +320,30 @@ public class BitMapManager {
             }
         }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 100, outputStream);
-        byte[] byteArray = outputStream.toByteArray();
-        return Base64.getEncoder().encodeToString(byteArray);
+        // The JPEG bytes are encoded while they are compressed, without an intermediate array
+        StringBuilderOutputStream outputStream =
+                new StringBuilderOutputStream(bitmap.getWidth() * bitmap.getHeight() / 2);
+        if (!encodeBitmap(bitmap, outputStream)) {
+            return null;
+        }
+        return outputStream.toString();
+    }
+
+    /**
+     * Compresses a Bitmap to JPEG and writes its Base64 encoding to a stream, without holding the
+     * compressed or encoded bytes in memory. The stream is closed when the encoding completes.
+     *
+     * @param bitmap        The Bitmap to encode.
+     * @param outputStream  The stream that receives the Base64 characters.
+     * @return true if the bitmap was encoded, false otherwise.
+     */
+    public boolean encodeBitmap(Bitmap bitmap, OutputStream outputStream) {
+        try (OutputStream base64Stream = Base64.getEncoder().wrap(outputStream)) {
+            return bitmap.compress(Bitmap.CompressFormat.JPEG, 100, base64Stream);
+        } catch (IOException e) {
+            Log.e(TAG, Objects.requireNonNull(e.getMessage()));
+            return false;
+        }
     }
 
     /**
@@ -162,16 +353,171 @@ public class BitMapManager {
      * @return The decoded Bitmap, or null if decoding fails.
      */
     public Bitmap decodeBitmap(final String encodedBitmap) {
+        return decodeBitmap(encodedBitmap, 0, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Decodes a Base64 encoded string into a Bitmap, downsampled to the requested size.
+     * Unless the config is {@link Bitmap.Config#HARDWARE}, the pixels are decoded into a bitmap
+     * taken from the shared {@link BitmapReusePool} when one is available; callers that are done
+     * with the bitmap can give it back with {@link #releaseBitmap(Bitmap)}.
+     * Opaque photos (e.g. JPEGs) can be decoded with {@link Bitmap.Config#RGB_565} to halve
+     * their memory footprint, or with {@link Bitmap.Config#HARDWARE} when they are only drawn.
+     *
+     * @param encodedBitmap The Base64 encoded bitmap string.
+     * @param reqWidth      The width the bitmap will be displayed at, or 0 to keep the full size.
+     * @param reqHeight     The height the bitmap will be displayed at, or 0 to keep the full size.
+     * @param config        The config of the decoded bitmap.
+     * @return The decoded Bitmap, or null if decoding fails.
+     */
+    public Bitmap decodeBitmap(final String encodedBitmap, int reqWidth, int reqHeight, Bitmap.Config config) {
         if (encodedBitmap == null || encodedBitmap.isEmpty()) {
             return null;
         }
+        // Reads the characters of the string directly, without copying them into byte arrays
+        return decodeBitmap(new CharSequenceInputStream(encodedBitmap), reqWidth, reqHeight, config);
+    }
+
+    /**
+     * Decodes a stream of Base64 characters into a Bitmap, downsampled to the requested size.
+     * The characters are decoded while the image is read, so neither the encoded nor the decoded
+     * bytes are held in memory. If the stream supports {@link InputStream#mark(int)}, the size of
+     * the image is read first to downsample it and to reuse a bitmap from the
+     * {@link BitmapReusePool}; otherwise the image is decoded at full size into a new bitmap.
+     *
+     * @param encodedStream The stream of Base64 characters.
+     * @param reqWidth      The width the bitmap will be displayed at, or 0 to keep the full size.
+     * @param reqHeight     The height the bitmap will be displayed at, or 0 to keep the full size.
+     * @param config        The config of the decoded bitmap.
+     * @return The decoded Bitmap, or null if decoding fails.
+     */
+    public Bitmap decodeBitmap(InputStream encodedStream, int reqWidth, int reqHeight, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = config;
+
+        if (!encodedStream.markSupported()) {
+            return BitmapFactory.decodeStream(Base64.getDecoder().wrap(encodedStream), null, options);
+        }
 
         try {
-            byte[] decodedBytes = Base64.getDecoder().decode(encodedBitmap);
-            return BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
-        } catch (IllegalArgumentException e) {
+            // Reads the size of the image without allocating its pixels
+            encodedStream.mark(Integer.MAX_VALUE);
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(Base64.getDecoder().wrap(encodedStream), null, options);
+            encodedStream.reset();
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+
+            if (config == Bitmap.Config.HARDWARE) {
+                // Hardware bitmaps are immutable and cannot be reused
+                return BitmapFactory.decodeStream(Base64.getDecoder().wrap(encodedStream), null, options);
+            }
+
+            int width = (int) Math.ceil((double) options.outWidth / options.inSampleSize);
+            int height = (int) Math.ceil((double) options.outHeight / options.inSampleSize);
+            int requiredBytes = width * height * bytesPerPixel(config);
+
+            options.inMutable = true;
+            options.inBitmap = BITMAP_POOL.get(requiredBytes);
+            if (options.inBitmap == null) {
+                BITMAP_POOL.recordAllocation(requiredBytes);
+                return BitmapFactory.decodeStream(Base64.getDecoder().wrap(encodedStream), null, options);
+            }
+
+            Bitmap pooledBitmap = options.inBitmap;
+            Bitmap decoded;
+            try {
+                decoded = BitmapFactory.decodeStream(Base64.getDecoder().wrap(encodedStream), null, options);
+            } catch (IllegalArgumentException e) {
+                decoded = null;
+            }
+            if (decoded != null) {
+                return decoded;
+            }
+            // The pooled bitmap could not be reused for this image: it goes back to the pool,
+            // and the image is decoded into a new one
+            BITMAP_POOL.put(pooledBitmap);
+            encodedStream.reset();
+            options.inBitmap = null;
+            BITMAP_POOL.recordAllocation(requiredBytes);
+            return BitmapFactory.decodeStream(Base64.getDecoder().wrap(encodedStream), null, options);
+        } catch (IOException | IllegalArgumentException e) {
             Log.e(TAG, Objects.requireNonNull(e.getMessage()));
             return null;
         }
     }
+
+    /**
+     * Gives a decoded bitmap back to the shared {@link BitmapReusePool}, so that its memory can be
+     * reused by the next decode. The bitmap must not be used anymore after this call.
+     *
+     * @param bitmap The bitmap that is no longer in use.
+     */
+    public void releaseBitmap(Bitmap bitmap) {
+        BITMAP_POOL.put(bitmap);
+    }
+
+    /**
+     * Gets the number of bytes used by a pixel of a decoded workplace photo, e.g. to size a
+     * memory budget of photos.
+     *
+     * @return The bytes per pixel of the format the workplace photos are decoded with.
+     */
+    public static int getWorkPlacePhotoBytesPerPixel() {
+        return bytesPerPixel(WORKPLACE_PHOTO_FORMAT == DecodeFormat.PREFER_RGB_565
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Gets the shared bitmap pool, e.g. to read its hit rate and allocation metrics.
+     *
+     * @return The shared {@link BitmapReusePool}.
+     */
+    public static BitmapReusePool getBitmapPool() {
+        return BITMAP_POOL;
+    }
+
+    /**
+     * Computes the largest power of two sample size that keeps the image at least as large as the
+     * requested size.
+     *
+     * @param width     The width of the encoded image.
+     * @param height    The height of the encoded image.
+     * @param reqWidth  The requested width, or 0 to keep the full size.
+     * @param reqHeight The requested height, or 0 to keep the full size.
+     * @return The sample size.
+     */
+    private static int computeSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Gets the number of bytes used by a pixel with the given config.
+     *
+     * @param config The bitmap config.
+     * @return The bytes per pixel.
+     */
+    public static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+                return 2;
+            case RGBA_F16:
+                return 8;
+            default:
+                return 4;
+        }
+    }
 }
@@ -0,0 +1,225 @@
+package com.unimib.workingspot.util.bitmap;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of mutable bitmaps that can be reused as {@link android.graphics.BitmapFactory.Options#inBitmap}
+ * when decoding photos, so that decoding does not allocate a new multi-MB bitmap every time.
+ * Bitmaps are grouped in size classes (powers of two of their allocation size): a request is
+ * served by the smallest class that is large enough. The pool keeps track of its hit rate and of
+ * the bytes that had to be freshly allocated.
+ * The same pool serves the decodes of {@link BitMapManager} and, through
+ * {@link com.unimib.workingspot.util.bitmap.glide.GlideBitmapReusePool}, the decodes of Glide.
+ * All the methods are thread safe.
+ */
+public class BitmapReusePool {
+
+    private final long initialMaxSizeBytes;
+    private long maxSizeBytes;
+    private final TreeMap<Integer, ArrayDeque<PooledBitmap>> sizeClasses;
+    private long currentSizeBytes;
+
+    // Metrics
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long bytesAllocated;
+    private long bytesReused;
+
+    /**
+     * Constructor for the BitmapReusePool class
+     * @param maxSizeBytes The maximum number of bytes the pool can hold
+     */
+    public BitmapReusePool(long maxSizeBytes) {
+        this.initialMaxSizeBytes = maxSizeBytes;
+        this.maxSizeBytes = maxSizeBytes;
+        this.sizeClasses = new TreeMap<>();
+    }
+
+    /**
+     * Retrieves a bitmap whose allocation can hold at least the given number of bytes
+     * @param requiredBytes The number of bytes needed by the decoded image
+     * @return A reusable bitmap, or null if none is available
+     */
+    @Nullable
+    public synchronized Bitmap get(int requiredBytes) {
+        Map.Entry<Integer, ArrayDeque<PooledBitmap>> entry = sizeClasses.ceilingEntry(sizeClassOf(requiredBytes));
+        while (entry != null) {
+            Iterator<PooledBitmap> iterator = entry.getValue().iterator();
+            while (iterator.hasNext()) {
+                PooledBitmap pooled = iterator.next();
+                if (pooled.bitmap().isRecycled()) {
+                    // Recycled by someone else while in the pool, it cannot be reused
+                    iterator.remove();
+                    currentSizeBytes -= pooled.size();
+                } else if (pooled.size() >= requiredBytes) {
+                    iterator.remove();
+                    currentSizeBytes -= pooled.size();
+                    if (entry.getValue().isEmpty())
+                        sizeClasses.remove(entry.getKey());
+                    hits++;
+                    bytesReused += requiredBytes;
+                    return pooled.bitmap();
+                }
+            }
+            Integer sizeClass = entry.getKey();
+            if (entry.getValue().isEmpty())
+                sizeClasses.remove(sizeClass);
+            entry = sizeClasses.higherEntry(sizeClass);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Records that a bitmap had to be allocated because the pool could not provide one
+     * @param bytes The size in bytes of the new allocation
+     */
+    public synchronized void recordAllocation(int bytes) {
+        bytesAllocated += bytes;
+    }
+
+    /**
+     * Returns a bitmap to the pool. Immutable, recycled and hardware bitmaps cannot be reused
+     * and are ignored. The largest bitmaps are evicted when the pool exceeds its maximum size.
+     * @param bitmap The bitmap that is no longer in use
+     */
+    public synchronized void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getConfig() == Bitmap.Config.HARDWARE)
+            return;
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxSizeBytes)
+            return;
+
+        sizeClasses.computeIfAbsent(sizeClassOf(size), key -> new ArrayDeque<>())
+                .addLast(new PooledBitmap(bitmap, size));
+        currentSizeBytes += size;
+        trimToSize(maxSizeBytes);
+    }
+
+    /**
+     * Evicts the largest bitmaps until the pool holds at most the given number of bytes
+     * @param sizeBytes The number of bytes the pool may keep
+     */
+    public synchronized void trimToSize(long sizeBytes) {
+        while (currentSizeBytes > sizeBytes && !sizeClasses.isEmpty()) {
+            Map.Entry<Integer, ArrayDeque<PooledBitmap>> largest = sizeClasses.lastEntry();
+            PooledBitmap evicted = largest.getValue().pollFirst();
+            if (largest.getValue().isEmpty())
+                sizeClasses.remove(largest.getKey());
+            if (evicted != null) {
+                currentSizeBytes -= evicted.size();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Changes the maximum size of the pool, evicting bitmaps if it shrinks
+     * @param sizeMultiplier The multiplier of the size the pool was created with
+     */
+    public synchronized void setSizeMultiplier(float sizeMultiplier) {
+        maxSizeBytes = Math.round(initialMaxSizeBytes * sizeMultiplier);
+        trimToSize(maxSizeBytes);
+    }
+
+    /**
+     * Removes every bitmap from the pool
+     */
+    public synchronized void clear() {
+        sizeClasses.clear();
+        currentSizeBytes = 0;
+    }
+
+    /**
+     * Gets the fraction of requests that were served by the pool
+     * @return The hit rate, between 0 and 1
+     */
+    public synchronized float getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0f : (float) hits / requests;
+    }
+
+    /**
+     * Gets the number of requests served by the pool
+     * @return The number of hits
+     */
+    public synchronized long getHits() { return hits; }
+
+    /**
+     * Gets the number of requests the pool could not serve
+     * @return The number of misses
+     */
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Gets the number of bitmaps evicted because the pool was full
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Gets the number of bytes that had to be freshly allocated for decoding
+     * @return The allocated bytes
+     */
+    public synchronized long getBytesAllocated() { return bytesAllocated; }
+
+    /**
+     * Gets the number of bytes decoded into reused bitmaps
+     * @return The reused bytes
+     */
+    public synchronized long getBytesReused() { return bytesReused; }
+
+    /**
+     * Gets the maximum number of bytes the pool can hold
+     * @return The maximum size of the pool in bytes
+     */
+    public synchronized long getMaxSizeBytes() { return maxSizeBytes; }
+
+    /**
+     * Gets the number of bytes currently held by the pool
+     * @return The current size of the pool in bytes
+     */
+    public synchronized long getCurrentSizeBytes() { return currentSizeBytes; }
+
+    /**
+     * Returns a summary of the pool metrics, useful for logging
+     * @return The metrics of the pool
+     */
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ENGLISH,
+                "BitmapReusePool{hitRate=%.2f, hits=%d, misses=%d, evictions=%d, bytesAllocated=%d, bytesReused=%d, size=%d/%d}",
+                getHitRate(), hits, misses, evictions, bytesAllocated, bytesReused, currentSizeBytes, maxSizeBytes);
+    }
+
+    /**
+     * A bitmap held by the pool, with its allocation size recorded when it was added
+     * @param bitmap The pooled bitmap
+     * @param size The allocation size of the bitmap in bytes
+     */
+    private record PooledBitmap(Bitmap bitmap, int size) {}
+
+    /**
+     * Computes the size class of an allocation, the smallest power of two that can hold it
+     * @param bytes The size of the allocation
+     * @return The size class
+     */
+    private static int sizeClassOf(int bytes) {
+        if (bytes <= 1)
+            return 1;
+        int highestBit = Integer.highestOneBit(bytes - 1);
+        return highestBit >= (1 << 30) ? Integer.MAX_VALUE : highestBit << 1;
+    }
+}
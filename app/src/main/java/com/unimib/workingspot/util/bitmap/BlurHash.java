@@ -0,0 +1,228 @@
+package com.unimib.workingspot.util.bitmap;
+
+/**
+ * Encoder and decoder for the BlurHash format (https://blurha.sh).
+ * A BlurHash is a compact string (around 30 characters) describing the main colours of an image
+ * as a few cosine components. It is used to show a blurred preview of a workplace photo while the
+ * real photo is loading.
+ * This class works on ARGB pixel arrays, so it does not depend on the Android graphics classes.
+ */
+public final class BlurHash {
+
+    private static final String BASE83_CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    /**
+     * Private constructor, this class only exposes static methods
+     */
+    private BlurHash() {}
+
+    /**
+     * Encodes an image into a BlurHash string
+     * @param pixels The ARGB pixels of the image, row by row
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param componentsX The number of horizontal components (1 to 9)
+     * @param componentsY The number of vertical components (1 to 9)
+     * @return The BlurHash of the image
+     */
+    public static String encode(int[] pixels, int width, int height, int componentsX, int componentsY) {
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9)
+            throw new IllegalArgumentException("BlurHash components must be between 1 and 9");
+        if (pixels.length < width * height)
+            throw new IllegalArgumentException("Not enough pixels for the given size");
+
+        // Converts the pixels to linear RGB once
+        float[] linear = new float[width * height * 3];
+        for (int i = 0; i < width * height; i++) {
+            int color = pixels[i];
+            linear[i * 3] = srgbToLinear((color >> 16) & 0xFF);
+            linear[i * 3 + 1] = srgbToLinear((color >> 8) & 0xFF);
+            linear[i * 3 + 2] = srgbToLinear(color & 0xFF);
+        }
+
+        float[][] factors = new float[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                factors[j * componentsX + i] = multiplyBasisFunction(linear, width, height, i, j);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        int sizeFlag = (componentsX - 1) + (componentsY - 1) * 9;
+        encode83(sizeFlag, 1, hash);
+
+        float maximumValue;
+        if (factors.length > 1) {
+            float actualMaximumValue = 0;
+            for (int k = 1; k < factors.length; k++) {
+                for (float value : factors[k])
+                    actualMaximumValue = Math.max(actualMaximumValue, Math.abs(value));
+            }
+            int quantisedMaximumValue = (int) Math.max(0, Math.min(82, Math.floor(actualMaximumValue * 166 - 0.5)));
+            maximumValue = (quantisedMaximumValue + 1) / 166f;
+            encode83(quantisedMaximumValue, 1, hash);
+        } else {
+            maximumValue = 1;
+            encode83(0, 1, hash);
+        }
+
+        encode83(encodeDC(factors[0]), 4, hash);
+        for (int k = 1; k < factors.length; k++)
+            encode83(encodeAC(factors[k], maximumValue), 2, hash);
+
+        return hash.toString();
+    }
+
+    /**
+     * Decodes a BlurHash string into an image
+     * @param blurHash The BlurHash to decode
+     * @param width The width of the decoded image
+     * @param height The height of the decoded image
+     * @return The ARGB pixels of the decoded image, row by row
+     * @throws IllegalArgumentException if the BlurHash is malformed
+     */
+    public static int[] decode(String blurHash, int width, int height) {
+        if (blurHash == null || blurHash.length() < 6)
+            throw new IllegalArgumentException("BlurHash must be at least 6 characters long");
+
+        int sizeFlag = decode83(blurHash, 0, 1);
+        int componentsY = sizeFlag / 9 + 1;
+        int componentsX = sizeFlag % 9 + 1;
+        if (blurHash.length() != 4 + 2 * componentsX * componentsY)
+            throw new IllegalArgumentException("Invalid BlurHash length");
+
+        float maximumValue = (decode83(blurHash, 1, 2) + 1) / 166f;
+
+        float[][] colors = new float[componentsX * componentsY][];
+        colors[0] = decodeDC(decode83(blurHash, 2, 6));
+        for (int k = 1; k < colors.length; k++)
+            colors[k] = decodeAC(decode83(blurHash, 4 + k * 2, 6 + k * 2), maximumValue);
+
+        // Precomputes the cosines, they only depend on one coordinate each
+        float[] cosX = new float[width * componentsX];
+        for (int x = 0; x < width; x++)
+            for (int i = 0; i < componentsX; i++)
+                cosX[x * componentsX + i] = (float) Math.cos(Math.PI * x * i / width);
+        float[] cosY = new float[height * componentsY];
+        for (int y = 0; y < height; y++)
+            for (int j = 0; j < componentsY; j++)
+                cosY[y * componentsY + j] = (float) Math.cos(Math.PI * y * j / height);
+
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float r = 0, g = 0, b = 0;
+                for (int j = 0; j < componentsY; j++) {
+                    for (int i = 0; i < componentsX; i++) {
+                        float basis = cosX[x * componentsX + i] * cosY[y * componentsY + j];
+                        float[] color = colors[j * componentsX + i];
+                        r += color[0] * basis;
+                        g += color[1] * basis;
+                        b += color[2] * basis;
+                    }
+                }
+                pixels[y * width + x] = 0xFF000000
+                        | (linearToSrgb(r) << 16) | (linearToSrgb(g) << 8) | linearToSrgb(b);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Computes a single component of the image
+     */
+    private static float[] multiplyBasisFunction(float[] linear, int width, int height, int i, int j) {
+        float r = 0, g = 0, b = 0;
+        float normalisation = (i == 0 && j == 0) ? 1 : 2;
+        for (int y = 0; y < height; y++) {
+            float cosY = (float) Math.cos(Math.PI * j * y / height);
+            for (int x = 0; x < width; x++) {
+                float basis = normalisation * (float) Math.cos(Math.PI * i * x / width) * cosY;
+                int index = (y * width + x) * 3;
+                r += basis * linear[index];
+                g += basis * linear[index + 1];
+                b += basis * linear[index + 2];
+            }
+        }
+        float scale = 1f / (width * height);
+        return new float[]{r * scale, g * scale, b * scale};
+    }
+
+    private static int encodeDC(float[] value) {
+        return (linearToSrgb(value[0]) << 16) + (linearToSrgb(value[1]) << 8) + linearToSrgb(value[2]);
+    }
+
+    private static int encodeAC(float[] value, float maximumValue) {
+        int quantR = quantise(value[0] / maximumValue);
+        int quantG = quantise(value[1] / maximumValue);
+        int quantB = quantise(value[2] / maximumValue);
+        return quantR * 19 * 19 + quantG * 19 + quantB;
+    }
+
+    private static int quantise(float value) {
+        return (int) Math.max(0, Math.min(18, Math.floor(signPow(value, 0.5f) * 9 + 9.5)));
+    }
+
+    private static float[] decodeDC(int value) {
+        return new float[]{
+                srgbToLinear(value >> 16),
+                srgbToLinear((value >> 8) & 0xFF),
+                srgbToLinear(value & 0xFF)
+        };
+    }
+
+    private static float[] decodeAC(int value, float maximumValue) {
+        int quantR = value / (19 * 19);
+        int quantG = (value / 19) % 19;
+        int quantB = value % 19;
+        return new float[]{
+                signPow((quantR - 9) / 9f, 2f) * maximumValue,
+                signPow((quantG - 9) / 9f, 2f) * maximumValue,
+                signPow((quantB - 9) / 9f, 2f) * maximumValue
+        };
+    }
+
+    private static float srgbToLinear(int value) {
+        float v = value / 255f;
+        if (v <= 0.04045f)
+            return v / 12.92f;
+        return (float) Math.pow((v + 0.055f) / 1.055f, 2.4f);
+    }
+
+    private static int linearToSrgb(float value) {
+        float v = Math.max(0f, Math.min(1f, value));
+        if (v <= 0.0031308f)
+            return (int) (v * 12.92f * 255 + 0.5f);
+        return (int) ((1.055f * Math.pow(v, 1 / 2.4f) - 0.055f) * 255 + 0.5f);
+    }
+
+    private static float signPow(float value, float exponent) {
+        return Math.copySign((float) Math.pow(Math.abs(value), exponent), value);
+    }
+
+    private static void encode83(int value, int length, StringBuilder builder) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / pow83(length - i)) % 83;
+            builder.append(BASE83_CHARACTERS.charAt(digit));
+        }
+    }
+
+    private static int decode83(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = BASE83_CHARACTERS.indexOf(value.charAt(i));
+            if (digit == -1)
+                throw new IllegalArgumentException("Invalid BlurHash character");
+            result = result * 83 + digit;
+        }
+        return result;
+    }
+
+    private static int pow83(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++)
+            result *= 83;
+        return result;
+    }
+}
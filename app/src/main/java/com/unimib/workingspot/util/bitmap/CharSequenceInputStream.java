@@ -0,0 +1,100 @@
+package com.unimib.workingspot.util.bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} that reads the characters of an ASCII {@link CharSequence} (such as a
+ * Base64 encoding) as bytes, without copying the sequence into a byte array first.
+ */
+public class CharSequenceInputStream extends InputStream {
+
+    private final CharSequence sequence;
+    private int position;
+    private int mark;
+
+    /**
+     * Constructor for the CharSequenceInputStream class
+     * @param sequence The ASCII characters to read
+     */
+    public CharSequenceInputStream(@NonNull CharSequence sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Reads the next character as a byte
+     * @return The next byte, or -1 at the end of the sequence
+     */
+    @Override
+    public int read() {
+        if (position >= sequence.length())
+            return -1;
+        return sequence.charAt(position++) & 0xFF;
+    }
+
+    /**
+     * Reads up to {@code length} characters as bytes into an array
+     * @param buffer The destination array
+     * @param offset The start offset in the array
+     * @param length The maximum number of bytes to read
+     * @return The number of bytes read, or -1 at the end of the sequence
+     */
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) {
+        if (length == 0)
+            return 0;
+        int remaining = sequence.length() - position;
+        if (remaining <= 0)
+            return -1;
+        int count = Math.min(length, remaining);
+        for (int i = 0; i < count; i++)
+            buffer[offset + i] = (byte) sequence.charAt(position++);
+        return count;
+    }
+
+    /**
+     * Skips characters of the sequence
+     * @param n The number of characters to skip
+     * @return The number of characters actually skipped
+     */
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, sequence.length() - position));
+        position += (int) skipped;
+        return skipped;
+    }
+
+    /**
+     * @return The number of characters left to read
+     */
+    @Override
+    public int available() {
+        return sequence.length() - position;
+    }
+
+    /**
+     * @return true, the stream can be reset to a marked position
+     */
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Marks the current position
+     * @param readLimit Ignored, the whole sequence is always available
+     */
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = position;
+    }
+
+    /**
+     * Moves back to the marked position
+     */
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+}
@@ -0,0 +1,55 @@
+package com.unimib.workingspot.util.bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} that appends the bytes it receives to a {@link StringBuilder} as ASCII
+ * characters. Wrapped by a Base64 encoder, it produces the encoding of a photo without holding an
+ * intermediate byte array.
+ */
+public class StringBuilderOutputStream extends OutputStream {
+
+    private final StringBuilder builder;
+
+    /**
+     * Constructor for the StringBuilderOutputStream class
+     * @param initialCapacity The expected number of characters
+     */
+    public StringBuilderOutputStream(int initialCapacity) {
+        this.builder = new StringBuilder(initialCapacity);
+    }
+
+    /**
+     * Appends a single byte as a character
+     * @param b The byte to append
+     */
+    @Override
+    public void write(int b) {
+        builder.append((char) (b & 0xFF));
+    }
+
+    /**
+     * Appends a range of bytes as characters
+     * @param buffer The bytes to append
+     * @param offset The start offset in the array
+     * @param length The number of bytes to append
+     */
+    @Override
+    public void write(@NonNull byte[] buffer, int offset, int length) {
+        builder.ensureCapacity(builder.length() + length);
+        for (int i = offset; i < offset + length; i++)
+            builder.append((char) (buffer[i] & 0xFF));
+    }
+
+    /**
+     * Returns the characters written so far
+     * @return The content of the stream as a String
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+}
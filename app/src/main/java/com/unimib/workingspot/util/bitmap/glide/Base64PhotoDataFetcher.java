@@ -0,0 +1,84 @@
+package com.unimib.workingspot.util.bitmap.glide;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.unimib.workingspot.util.bitmap.CharSequenceInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Glide {@link DataFetcher} that exposes the Base64 encoding of a workplace photo as an
+ * {@link InputStream}, so that Glide can decode it with its own downsampler and bitmap pool.
+ */
+public class Base64PhotoDataFetcher implements DataFetcher<InputStream> {
+
+    private final String b64PhotoEncoding;
+    private InputStream inputStream;
+
+    /**
+     * Constructor for the Base64PhotoDataFetcher class
+     * @param b64PhotoEncoding The Base64 encoding of the photo
+     */
+    public Base64PhotoDataFetcher(String b64PhotoEncoding) {
+        this.b64PhotoEncoding = b64PhotoEncoding;
+    }
+
+    /**
+     * Notifies the callback with a stream that decodes the Base64 string as it is read.
+     * This method is called by Glide on one of its background threads
+     * @param priority The priority with which the request should be completed.
+     * @param callback The callback to notify when the data is ready or the load failed
+     */
+    @Override
+    public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+        // The characters are decoded while Glide reads the stream, so neither the encoded nor the
+        // decoded bytes are copied into an array
+        inputStream = Base64.getDecoder().wrap(new CharSequenceInputStream(b64PhotoEncoding));
+        callback.onDataReady(inputStream);
+    }
+
+    /**
+     * Closes the stream handed over to Glide
+     */
+    @Override
+    public void cleanup() {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+                // Nothing to release for an in-memory stream
+            }
+        }
+    }
+
+    /**
+     * The decoding happens while Glide reads the stream, there is nothing to cancel
+     */
+    @Override
+    public void cancel() {
+        // No action needed
+    }
+
+    /**
+     * @return The class of the data produced by this fetcher
+     */
+    @NonNull
+    @Override
+    public Class<InputStream> getDataClass() {
+        return InputStream.class;
+    }
+
+    /**
+     * @return The data source of the photo, which is always stored locally
+     */
+    @NonNull
+    @Override
+    public DataSource getDataSource() {
+        return DataSource.LOCAL;
+    }
+}
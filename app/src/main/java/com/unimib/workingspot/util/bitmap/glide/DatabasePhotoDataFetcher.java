@@ -0,0 +1,99 @@
+package com.unimib.workingspot.util.bitmap.glide;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.unimib.workingspot.database.work_place.WorkPlaceDAO;
+import com.unimib.workingspot.util.bitmap.CharSequenceInputStream;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Glide {@link DataFetcher} that reads the Base64 photo of a single workplace from the local
+ * database, so that the list queries do not have to read the photos of every workplace.
+ */
+public class DatabasePhotoDataFetcher implements DataFetcher<InputStream> {
+
+    private final WorkPlaceDAO workPlaceDAO;
+    private final String firebaseKey;
+    private InputStream inputStream;
+
+    /**
+     * Constructor for the DatabasePhotoDataFetcher class
+     * @param workPlaceDAO The DAO used to read the photo
+     * @param firebaseKey The Firebase key of the workplace whose photo should be read
+     */
+    public DatabasePhotoDataFetcher(WorkPlaceDAO workPlaceDAO, String firebaseKey) {
+        this.workPlaceDAO = workPlaceDAO;
+        this.firebaseKey = firebaseKey;
+    }
+
+    /**
+     * Reads the photo from the database and notifies the callback with a stream that decodes it.
+     * This method is called by Glide on one of its background threads
+     * @param priority The priority with which the request should be completed.
+     * @param callback The callback to notify when the data is ready or the load failed
+     */
+    @Override
+    public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+        String b64PhotoEncoding;
+        try {
+            b64PhotoEncoding = workPlaceDAO.getPhoto(firebaseKey);
+        } catch (RuntimeException e) {
+            callback.onLoadFailed(e);
+            return;
+        }
+        if (b64PhotoEncoding == null || b64PhotoEncoding.isEmpty()) {
+            // The error drawable of the request is shown instead
+            callback.onLoadFailed(new FileNotFoundException("No photo stored for workplace " + firebaseKey));
+            return;
+        }
+        inputStream = Base64.getDecoder().wrap(new CharSequenceInputStream(b64PhotoEncoding));
+        callback.onDataReady(inputStream);
+    }
+
+    /**
+     * Closes the stream handed over to Glide
+     */
+    @Override
+    public void cleanup() {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+                // Nothing to release for an in-memory stream
+            }
+        }
+    }
+
+    /**
+     * The query of a single row is short, there is nothing to cancel
+     */
+    @Override
+    public void cancel() {
+        // No action needed
+    }
+
+    /**
+     * @return The class of the data produced by this fetcher
+     */
+    @NonNull
+    @Override
+    public Class<InputStream> getDataClass() {
+        return InputStream.class;
+    }
+
+    /**
+     * @return The data source of the photo, which is always stored locally
+     */
+    @NonNull
+    @Override
+    public DataSource getDataSource() {
+        return DataSource.LOCAL;
+    }
+}
@@ -0,0 +1,124 @@
+package com.unimib.workingspot.util.bitmap.glide;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.unimib.workingspot.util.bitmap.BitMapManager;
+import com.unimib.workingspot.util.bitmap.BitmapReusePool;
+
+/**
+ * Glide {@link BitmapPool} backed by the shared {@link BitmapReusePool}, so that the photos
+ * decoded, transformed and released by Glide reuse the same bitmaps as the decodes of
+ * {@link BitMapManager}, and show up in the same metrics.
+ */
+public class GlideBitmapReusePool implements BitmapPool {
+
+    private final BitmapReusePool pool;
+
+    /**
+     * Constructor for the GlideBitmapReusePool class
+     * @param pool The pool the bitmaps are taken from and given back to
+     */
+    public GlideBitmapReusePool(@NonNull BitmapReusePool pool) {
+        this.pool = pool;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getMaxSize() {
+        return pool.getMaxSizeBytes();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setSizeMultiplier(float sizeMultiplier) {
+        pool.setSizeMultiplier(sizeMultiplier);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void put(Bitmap bitmap) {
+        pool.put(bitmap);
+    }
+
+    /** {@inheritDoc} */
+    @NonNull
+    @Override
+    public Bitmap get(int width, int height, @Nullable Bitmap.Config config) {
+        Bitmap reused = getReused(width, height, config);
+        if (reused == null)
+            return allocate(width, height, config);
+        reused.eraseColor(Color.TRANSPARENT);
+        return reused;
+    }
+
+    /** {@inheritDoc} */
+    @NonNull
+    @Override
+    public Bitmap getDirty(int width, int height, @Nullable Bitmap.Config config) {
+        Bitmap reused = getReused(width, height, config);
+        return reused != null ? reused : allocate(width, height, config);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clearMemory() {
+        pool.clear();
+    }
+
+    /**
+     * Empties the pool when the application is in the background, and halves it when the
+     * system is running low on memory
+     * @param level The level of the memory trim
+     */
+    @Override
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            pool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            pool.trimToSize(pool.getMaxSizeBytes() / 2);
+        }
+    }
+
+    /**
+     * Takes a pooled bitmap large enough for the given size and reconfigures it to that size
+     * @return The reconfigured bitmap, or null if none could be reused
+     */
+    @Nullable
+    private Bitmap getReused(int width, int height, @Nullable Bitmap.Config config) {
+        Bitmap.Config bitmapConfig = configOf(config);
+        if (bitmapConfig == Bitmap.Config.HARDWARE)
+            return null;
+        Bitmap reused = pool.get(width * height * BitMapManager.bytesPerPixel(bitmapConfig));
+        if (reused == null)
+            return null;
+        try {
+            reused.reconfigure(width, height, bitmapConfig);
+            return reused;
+        } catch (IllegalArgumentException e) {
+            // The allocation cannot hold the requested size, the bitmap goes back to the pool
+            pool.put(reused);
+            return null;
+        }
+    }
+
+    /**
+     * Allocates a new bitmap, recording the allocation in the pool metrics
+     */
+    @NonNull
+    private Bitmap allocate(int width, int height, @Nullable Bitmap.Config config) {
+        Bitmap.Config bitmapConfig = configOf(config);
+        pool.recordAllocation(width * height * BitMapManager.bytesPerPixel(bitmapConfig));
+        return Bitmap.createBitmap(width, height, bitmapConfig);
+    }
+
+    private static Bitmap.Config configOf(@Nullable Bitmap.Config config) {
+        return config != null ? config : Bitmap.Config.ARGB_8888;
+    }
+}
@@ -0,0 +1,130 @@
+package com.unimib.workingspot.util.bitmap.glide;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+import com.unimib.workingspot.database.work_place.WorkPlaceDAO;
+import com.unimib.workingspot.model.WorkPlacePhoto;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Glide {@link ModelLoader} for {@link WorkPlacePhoto WorkPlacePhotos}.
+ * Base64 photos are handled by a {@link Base64PhotoDataFetcher}, photos stored in the local
+ * database by a {@link DatabasePhotoDataFetcher}, while local files and remote URLs are delegated
+ * to the loaders Glide already registers for {@link File} and {@link GlideUrl}.
+ */
+public class WorkPlacePhotoModelLoader implements ModelLoader<WorkPlacePhoto, InputStream> {
+
+    private final ModelLoader<File, InputStream> fileLoader;
+    private final ModelLoader<GlideUrl, InputStream> urlLoader;
+    private final WorkPlaceDAO workPlaceDAO;
+
+    /**
+     * Constructor for the WorkPlacePhotoModelLoader class
+     * @param fileLoader The loader used for photos stored in local files
+     * @param urlLoader The loader used for photos available at a remote URL
+     * @param workPlaceDAO The DAO used for photos stored in the local database
+     */
+    public WorkPlacePhotoModelLoader(ModelLoader<File, InputStream> fileLoader,
+                                     ModelLoader<GlideUrl, InputStream> urlLoader,
+                                     WorkPlaceDAO workPlaceDAO) {
+        this.fileLoader = fileLoader;
+        this.urlLoader = urlLoader;
+        this.workPlaceDAO = workPlaceDAO;
+    }
+
+    /**
+     * Builds the load data for a photo according to its source
+     * @param photo The photo to load
+     * @param width The width in pixels of the target, used for downsampling
+     * @param height The height in pixels of the target, used for downsampling
+     * @param options The options of the request
+     * @return The load data, or null if the photo cannot be loaded
+     */
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull WorkPlacePhoto photo, int width, int height,
+                                               @NonNull Options options) {
+        switch (photo.getSource()) {
+            case BASE64:
+                return new LoadData<>(new ObjectKey(photo.getCacheKey()),
+                        new Base64PhotoDataFetcher(photo.getB64PhotoEncoding()));
+            case DATABASE:
+                return new LoadData<>(new ObjectKey(photo.getCacheKey()),
+                        new DatabasePhotoDataFetcher(workPlaceDAO, photo.getFirebaseKey()));
+            case FILE:
+                return fileLoader.buildLoadData(photo.getFile(), width, height, options);
+            case REMOTE:
+                return urlLoader.buildLoadData(new GlideUrl(photo.getUrl()), width, height, options);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks if the photo can be handled by this loader
+     * @param photo The photo to check
+     * @return true if the photo has a valid source, false otherwise
+     */
+    @Override
+    public boolean handles(@NonNull WorkPlacePhoto photo) {
+        switch (photo.getSource()) {
+            case BASE64:
+                return photo.getB64PhotoEncoding() != null && !photo.getB64PhotoEncoding().isEmpty();
+            case DATABASE:
+                return photo.getFirebaseKey() != null;
+            case FILE:
+                return photo.getFile() != null;
+            case REMOTE:
+                return photo.getUrl() != null && !photo.getUrl().isEmpty();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Factory used by Glide to create new instances of {@link WorkPlacePhotoModelLoader}
+     */
+    public static class Factory implements ModelLoaderFactory<WorkPlacePhoto, InputStream> {
+
+        private final WorkPlaceDAO workPlaceDAO;
+
+        /**
+         * Constructor for the Factory class
+         * @param workPlaceDAO The DAO used for photos stored in the local database
+         */
+        public Factory(WorkPlaceDAO workPlaceDAO) {
+            this.workPlaceDAO = workPlaceDAO;
+        }
+
+        /**
+         * Builds the loader, retrieving the delegate loaders from Glide's registry
+         * @param multiFactory The factory used to build the delegate loaders
+         * @return A new {@link WorkPlacePhotoModelLoader}
+         */
+        @NonNull
+        @Override
+        public ModelLoader<WorkPlacePhoto, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new WorkPlacePhotoModelLoader(
+                    multiFactory.build(File.class, InputStream.class),
+                    multiFactory.build(GlideUrl.class, InputStream.class),
+                    workPlaceDAO);
+        }
+
+        /**
+         * No resources to release
+         */
+        @Override
+        public void teardown() {
+            // No action needed
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.unimib.workingspot.util.bitmap.glide;
+
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_PREFETCH_MAX_CONCURRENT;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_PREFETCH_MAX_ITEMS;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_PREFETCH_MEMORY_FRACTION;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_PREFETCH_MIN_ITEMS;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_PHOTO_PREFETCH_VELOCITY_STEP_PX;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.unimib.workingspot.adapter.IWorkPlaceItemAdapter;
+import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.util.bitmap.BitMapManager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Scroll listener that decodes the photos of the next workplaces before their cards are bound.
+ * The number of items prefetched grows with the scroll velocity, the number of requests in flight
+ * is bounded, the pending requests are cancelled when the scroll direction flips and the prefetch
+ * window never exceeds a fraction of Glide's memory cache.
+ */
+public class WorkPlacePhotoPrefetcher extends RecyclerView.OnScrollListener {
+
+    private final RequestManager requestManager;
+    private final BitMapManager bitMapManager;
+    private final int imageViewId;
+    private final long memoryBudgetBytes;
+
+    // Prefetch requests in flight, by adapter position
+    private final Map<Integer, Target<Drawable>> inFlight;
+
+    // Last scroll direction: 1 when scrolling down, -1 when scrolling up, 0 before any scroll
+    private int lastDirection;
+    // Furthest position already prefetched in the current direction
+    private int lastPrefetchedPosition;
+
+    /**
+     * Constructor for the WorkPlacePhotoPrefetcher class
+     * @param context The context used to access Glide's memory cache
+     * @param requestManager The request manager tied to the lifecycle of the screen
+     * @param imageViewId The ID of the ImageView that displays the photo in each card
+     */
+    public WorkPlacePhotoPrefetcher(Context context, RequestManager requestManager, int imageViewId) {
+        this.requestManager = requestManager;
+        this.bitMapManager = new BitMapManager();
+        this.imageViewId = imageViewId;
+        this.memoryBudgetBytes = (long) (Glide.get(context).getMemoryCache().getMaxSize()
+                * WORKPLACE_PHOTO_PREFETCH_MEMORY_FRACTION);
+        this.inFlight = new HashMap<>();
+        this.lastDirection = 0;
+        this.lastPrefetchedPosition = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Prefetches the photos of the items ahead of the visible ones, in the scroll direction
+     * @param recyclerView The RecyclerView which scrolled.
+     * @param dx The amount of horizontal scroll.
+     * @param dy The amount of vertical scroll.
+     */
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0)
+            return;
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager layoutManager)
+                || !(recyclerView.getAdapter() instanceof IWorkPlaceItemAdapter adapter))
+            return;
+
+        int direction = dy > 0 ? 1 : -1;
+        if (direction != lastDirection) {
+            // The photos ahead in the old direction are no longer needed
+            cancel();
+            lastDirection = direction;
+        }
+
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        View sizeReference = findImageView(layoutManager);
+        if (firstVisible == RecyclerView.NO_POSITION || sizeReference == null)
+            return;
+
+        int width = sizeReference.getWidth();
+        int height = sizeReference.getHeight();
+        if (width <= 0 || height <= 0)
+            return;
+
+        int window = Math.min(computeWindow(dy), maxItemsInBudget(width, height));
+        int start = direction > 0 ? lastVisible + 1 : firstVisible - 1;
+        int end = start + direction * (window - 1);
+
+        // Skip what has already been requested in this direction
+        if (lastPrefetchedPosition != RecyclerView.NO_POSITION
+                && (end - lastPrefetchedPosition) * direction <= 0)
+            return;
+        if (lastPrefetchedPosition != RecyclerView.NO_POSITION
+                && (lastPrefetchedPosition - start) * direction >= 0)
+            start = lastPrefetchedPosition + direction;
+
+        for (int position = start; (end - position) * direction >= 0; position += direction) {
+            if (position < 0 || position >= adapter.getItemCount())
+                break;
+            if (inFlight.size() >= WORKPLACE_PHOTO_PREFETCH_MAX_CONCURRENT)
+                break;
+            prefetch(adapter.getWorkPlace(position), position, width, height);
+            lastPrefetchedPosition = position;
+        }
+    }
+
+    /**
+     * Cancels every prefetch request in flight
+     */
+    public void cancel() {
+        Iterator<Target<Drawable>> iterator = inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            requestManager.clear(iterator.next());
+            iterator.remove();
+        }
+        lastPrefetchedPosition = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Starts the prefetch of a single photo
+     * @param workPlace The workplace whose photo should be prefetched, null if not loaded yet
+     * @param position The adapter position of the workplace
+     * @param width The width in pixels of the card image
+     * @param height The height in pixels of the card image
+     */
+    private void prefetch(@Nullable WorkPlace workPlace, int position, int width, int height) {
+        // Placeholders of paged lists have nothing to prefetch yet
+        if (workPlace == null || inFlight.containsKey(position))
+            return;
+        Target<Drawable> target = bitMapManager.preloadWorkPlacePhoto(requestManager, workPlace,
+                width, height, new RequestListener<>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                @NonNull Target<Drawable> target, boolean isFirstResource) {
+                        inFlight.remove(position);
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(@NonNull Drawable resource, @NonNull Object model,
+                                                   Target<Drawable> target, @NonNull DataSource dataSource,
+                                                   boolean isFirstResource) {
+                        inFlight.remove(position);
+                        return false;
+                    }
+                });
+        // A request served synchronously from the memory cache has already completed here
+        if (target != null && target.getRequest() != null && target.getRequest().isRunning())
+            inFlight.put(position, target);
+    }
+
+    /**
+     * Computes how many items should be prefetched according to the scroll velocity
+     * @param dy The amount of vertical scroll of the last scroll event
+     * @return The size of the prefetch window
+     */
+    private int computeWindow(int dy) {
+        int window = WORKPLACE_PHOTO_PREFETCH_MIN_ITEMS + Math.abs(dy) / WORKPLACE_PHOTO_PREFETCH_VELOCITY_STEP_PX;
+        return Math.min(window, WORKPLACE_PHOTO_PREFETCH_MAX_ITEMS);
+    }
+
+    /**
+     * Computes how many decoded photos of the given size fit in the memory budget
+     * @param width The width in pixels of a decoded photo
+     * @param height The height in pixels of a decoded photo
+     * @return The number of photos that fit in the budget, at least 1
+     */
+    private int maxItemsInBudget(int width, int height) {
+        long bytesPerPhoto = (long) width * height * BitMapManager.getWorkPlacePhotoBytesPerPixel();
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudgetBytes / bytesPerPhoto));
+    }
+
+    /**
+     * Finds the image view of a visible card, used as a reference for the size of the photos
+     * @param layoutManager The layout manager of the RecyclerView
+     * @return The image view, or null if no card is laid out
+     */
+    @Nullable
+    private View findImageView(LinearLayoutManager layoutManager) {
+        for (int i = 0; i < layoutManager.getChildCount(); i++) {
+            View child = layoutManager.getChildAt(i);
+            if (child != null) {
+                View imageView = child.findViewById(imageViewId);
+                if (imageView != null && imageView.getWidth() > 0)
+                    return imageView;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package com.unimib.workingspot.util.bitmap.glide;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.unimib.workingspot.database.work_place.WorkPlaceRoomDatabase;
+import com.unimib.workingspot.model.WorkPlacePhoto;
+import com.unimib.workingspot.util.bitmap.BitMapManager;
+
+import java.io.InputStream;
+
+/**
+ * Application-wide Glide configuration.
+ * Registers the {@link WorkPlacePhotoModelLoader} so that workplace photos can be loaded,
+ * pooled and cached by Glide like any other image, and makes Glide decode into the bitmaps of
+ * the shared {@link com.unimib.workingspot.util.bitmap.BitmapReusePool}.
+ */
+@GlideModule
+public class WorkingSpotGlideModule extends AppGlideModule {
+
+    /**
+     * Replaces the bitmap pool of Glide with the shared pool of the application
+     * @param context The application context
+     * @param builder The builder of the Glide singleton
+     */
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        builder.setBitmapPool(new GlideBitmapReusePool(BitMapManager.getBitmapPool()));
+    }
+
+    /**
+     * Registers the custom components used by the application
+     * @param context The application context
+     * @param glide The Glide singleton
+     * @param registry The registry where the components are added
+     */
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(WorkPlacePhoto.class, InputStream.class, new WorkPlacePhotoModelLoader.Factory(
+                WorkPlaceRoomDatabase.getDatabase(context).workPlaceDAO()));
+    }
+
+    /**
+     * Disables the legacy manifest parsing, all the modules are registered here
+     * @return false
+     */
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -31,6 +31,7 @@ public class Constants {
 
 
     public static final String NULL_BITMAP_ENCODING = "encodeBitmap: fallback bitmap is null";
+    public static final float BITMAP_POOL_MEMORY_FRACTION = 1f / 16;
     public static final int ONLINE_MESSAGE_DURATION_MS = 4500;
     public static final String CACHE_READING_ERROR = "cache_reading_error";
     public static final String EMPTY_STRING = "";
@@ -33,5 +33,19 @@ public class WeatherConstants {
     public static final String WEATHER_API_FAILED_TO_FETCH = "FAILED TO FETCH WEATHER DATA";
     /** Serialized name for weather condition */
     public static final String WEATHER_API_CONDITION_SERIALIZED_NAME = "text";
+    /** Highest condition code of a clear sky (1000 sunny, 1003 partly cloudy) */
+    public static final int WEATHER_CLEAR_MAX_CODE = 1003;
+    /** Highest condition code of a cloudy but dry sky (1006 cloudy, 1009 overcast) */
+    public static final int WEATHER_CLOUDY_MAX_CODE = 1009;
+    /** Outdoor suitability of a cloudy but dry sky */
+    public static final double WEATHER_CLOUDY_SUITABILITY = 0.5;
+    /** Temperature (in Celsius) below which working outside is not suitable */
+    public static final double WEATHER_OUTDOOR_MIN_TEMPERATURE = 12;
+    /** Temperature (in Celsius) from which working outside is fully suitable */
+    public static final double WEATHER_OUTDOOR_COMFORT_MIN_TEMPERATURE = 22;
+    /** Temperature (in Celsius) up to which working outside is fully suitable */
+    public static final double WEATHER_OUTDOOR_COMFORT_MAX_TEMPERATURE = 30;
+    /** Temperature (in Celsius) above which working outside is not suitable */
+    public static final double WEATHER_OUTDOOR_MAX_TEMPERATURE = 38;
 
 }
@@ -10,9 +10,26 @@ public class WorkPlacesConstants {
     public static String GOOGLE_MAPS_API_LINK_FORMATTED = "https://www.google.com/maps/dir/?api=1&destination=%f,%f";
 
     /** Workplace Room Database current version */
-    public static final int WORKPLACE_DATABASE_VERSION = 10;
+    public static final int WORKPLACE_DATABASE_VERSION = 17;
     /** Workplace Room Database name */
     public static final String WORKPLACES_DB_NAME = "saved_work_places_db";
+    /**
+     * Path in the assets of the catalogue snapshot that seeds the Workplace Room Database on the
+     * first launch. The snapshot is a copy of the database file of a synced install, at the
+     * current database version; it is optional, without it the first launch waits for the sync.
+     * It is generated by the pullWorkPlaceSnapshot Gradle task from a debug build
+     */
+    public static final String WORKPLACES_DB_SNAPSHOT_ASSET = "database/workplaces_snapshot.db";
+    /** Name of the catalogue snapshot exported by a debug build, in its external files directory */
+    public static final String WORKPLACES_DB_SNAPSHOT_EXPORT_NAME = "workplaces_snapshot.db";
+    /** Maximum number of threads running queries on the Workplace Room Database */
+    public static final int WORKPLACE_DATABASE_READ_THREADS = 4;
+    /** Maximum number of queued writes committed in a single transaction */
+    public static final int WORKPLACE_DATABASE_MAX_WRITE_BATCH = 64;
+    /** Number of completed database tasks after which the executor metrics are logged */
+    public static final int WORKPLACE_DATABASE_METRICS_LOG_INTERVAL = 100;
+    /** Maximum number of keys bound to a single statement, below the SQLite limit of 999 variables */
+    public static final int WORKPLACE_DATABASE_MAX_BOUND_KEYS = 500;
 
     /** Base URL for Firebase Realtime Database */
     public static final String REALTIME_DATABASE_BASE_URL = "YOUR_FIREBASE_DATABASE_URL";
@@ -22,6 +39,34 @@ public class WorkPlacesConstants {
     public static final String FIREBASE_WORKPLACES_USER_SAVED_LOCATION = "saved-work-places";
     /** Root location for all workplaces in Firebase Realtime Database */
     public static final String FIREBASE_WORKPLACES_ROOT_LOCATION = "workplaces";
+    /** Child of a workplace in Firebase Realtime Database holding the geohash of its position */
+    public static final String FIREBASE_WORKPLACE_GEOHASH_FIELD = "geohash";
+    /** Child of a workplace in Firebase Realtime Database holding the server time of its last change */
+    public static final String FIREBASE_WORKPLACE_UPDATED_AT_FIELD = "updatedAt";
+    /** Time (in milliseconds) after which the workplaces are fetched again in full from Firebase Realtime
+     * Database, to remove the deleted ones, instead of only the changed ones (1 day) */
+    public static final long FIREBASE_WORKPLACE_FULL_FETCH_INTERVAL = 24 * 60 * 60 * 1000L;
+    /** Character appended to a prefix to end a Firebase range query on the strings starting with it */
+    public static final String FIREBASE_QUERY_PREFIX_END = "\uf8ff";
+    /** Maximum number of geohash prefix queries run in parallel to fetch the workplaces of an area */
+    public static final int FIREBASE_WORKPLACE_GEOHASH_MAX_QUERIES = 16;
+    /** Number of characters of the geohash stored with a workplace (cells of about 5 meters) */
+    public static final int WORKPLACE_GEOHASH_PRECISION = 9;
+    /** true to read and write the workplaces on Cloud Firestore, false for the Realtime Database */
+    public static final boolean WORKPLACE_REMOTE_SOURCE_FIRESTORE = false;
+    /** Field of a workplace document in Cloud Firestore holding the server time of its last change */
+    public static final String FIRESTORE_WORKPLACE_UPDATED_AT_FIELD = "updatedAt";
+    /** Field of a saved workplace document in Cloud Firestore holding the server time it was saved */
+    public static final String FIRESTORE_SAVED_AT_FIELD = "savedAt";
+    /** Number of documents read from Cloud Firestore in a single page */
+    public static final int FIRESTORE_WORKPLACE_PAGE_SIZE = 500;
+    /** Maximum number of writes committed by a single batched write on Cloud Firestore */
+    public static final int FIRESTORE_MAX_BATCH_WRITES = 500;
+    /** Time (in milliseconds) after which the workplaces are fetched again in full from Cloud Firestore,
+     * to remove the deleted ones, instead of only the changed ones (1 day) */
+    public static final long FIRESTORE_WORKPLACE_FULL_FETCH_INTERVAL = 24 * 60 * 60 * 1000L;
+    /** Format of the logged duration of a remote workplace fetch, to compare the remote sources */
+    public static final String WORKPLACE_FETCH_METRICS_FORMAT = "%s: %d workplaces from %d queries in %d ms";
     /** Error message used when a Firebase request times out */
     public static final String FIREBASE_TIMEOUT_MESSAGE = "Request timed out!";
     /** Timeout duration (in milliseconds) for fetching workplace data from Firebase (20 seconds) */
@@ -32,6 +77,70 @@ public class WorkPlacesConstants {
     public static final int WORKPLACE_PHOTO_MAX_WIDTH = 800;
     /** Maximum height (in pixels) for workplace photos */
     public static final int WORKPLACE_PHOTO_MAX_HEIGHT = 600;
+    /** Size multiplier of the low resolution thumbnail shown while a workplace photo is loading */
+    public static final float WORKPLACE_PHOTO_THUMBNAIL_SIZE_MULTIPLIER = 0.1f;
+    /** Minimum number of workplace photos prefetched ahead of the scroll direction */
+    public static final int WORKPLACE_PHOTO_PREFETCH_MIN_ITEMS = 2;
+    /** Maximum number of workplace photos prefetched ahead of the scroll direction */
+    public static final int WORKPLACE_PHOTO_PREFETCH_MAX_ITEMS = 8;
+    /** Scroll distance (in pixels per scroll event) that adds one more item to the prefetch window */
+    public static final int WORKPLACE_PHOTO_PREFETCH_VELOCITY_STEP_PX = 40;
+    /** Maximum number of workplace photo prefetch requests running at the same time */
+    public static final int WORKPLACE_PHOTO_PREFETCH_MAX_CONCURRENT = 3;
+    /** Fraction of Glide's memory cache that prefetched workplace photos may occupy */
+    public static final float WORKPLACE_PHOTO_PREFETCH_MEMORY_FRACTION = 0.5f;
+    /** Number of horizontal components of the workplace photo BlurHash */
+    public static final int WORKPLACE_PHOTO_BLURHASH_COMPONENTS_X = 4;
+    /** Number of vertical components of the workplace photo BlurHash */
+    public static final int WORKPLACE_PHOTO_BLURHASH_COMPONENTS_Y = 3;
+    /** Size (in pixels) of the scaled down photo used to compute the BlurHash */
+    public static final int WORKPLACE_PHOTO_BLURHASH_ENCODE_SIZE = 32;
+    /** Size (in pixels) of the placeholder decoded from a BlurHash, stretched to fit the view */
+    public static final int WORKPLACE_PHOTO_BLURHASH_DECODE_SIZE = 24;
+    /** Number of decoded BlurHash placeholders kept in memory */
+    public static final int WORKPLACE_PHOTO_BLURHASH_CACHE_SIZE = 64;
+    /** Number of workplaces loaded from the local database in a single page */
+    public static final int WORKPLACE_PAGE_SIZE = 20;
+    /** Distance (in items) from the end of the loaded workplaces at which the next page is loaded */
+    public static final int WORKPLACE_PAGE_PREFETCH_DISTANCE = 10;
+    /** Maximum number of workplaces kept in memory by the paged list before pages are dropped */
+    public static final int WORKPLACE_PAGE_MAX_SIZE = 100;
+    /** Time (in milliseconds) after which the local workplaces are synced again with Firebase (5 minutes) */
+    public static final long WORKPLACE_SYNC_INTERVAL = 5 * 60 * 1000L;
+    /** Distance (in meters) from the user within which the workplaces are synced with Firebase */
+    public static final double WORKPLACE_SYNC_RADIUS_METERS = 25000;
+    /** true to apply the remote workplace changes as they happen while a main screen is visible */
+    public static final boolean WORKPLACE_LIVE_SYNC_ENABLED = true;
+    /** Time (in milliseconds) during which the live workplace changes are collected and written together */
+    public static final long WORKPLACE_LIVE_SYNC_BATCH_WINDOW_MILLIS = 500L;
+    /** Time (in milliseconds) the live sync stays attached after the last main screen is hidden,
+     * so that switching between screens does not download the workplaces again */
+    public static final long WORKPLACE_LIVE_SYNC_STOP_DELAY_MILLIS = 5000L;
+    /** Time (in milliseconds) the user has to stop typing before the workplaces are searched */
+    public static final long WORKPLACE_SEARCH_DEBOUNCE_MILLIS = 300L;
+    /** Weight of the distance from the user in the ranking of the workplaces */
+    public static final double WORKPLACE_RANKING_DISTANCE_WEIGHT = 1.0;
+    /** Weight of the weather suitability in the ranking of the workplaces */
+    public static final double WORKPLACE_RANKING_WEATHER_WEIGHT = 0.6;
+    /** Weight of the saved state in the ranking of the workplaces */
+    public static final double WORKPLACE_RANKING_SAVED_WEIGHT = 0.3;
+    /** Distance (in kilometers) at which a workplace gets half of the distance score */
+    public static final double WORKPLACE_RANKING_DISTANCE_SCALE_KM = 2.0;
+    /** Weather score of the indoor workplaces, which do not depend on the weather */
+    public static final double WORKPLACE_RANKING_INDOOR_WEATHER_SCORE = 0.5;
+    /** Distance (in meters) from the user within which the scores are written again after a small move */
+    public static final double WORKPLACE_RANKING_WINDOW_RADIUS_METERS = 10000;
+    /** Distance (in meters) from the origin of the last full ranking up to which a move only scores
+     * the workplaces within the window again; the scores outside it are off by less than 0.01 */
+    public static final double WORKPLACE_RANKING_WINDOW_MAX_DRIFT_METERS = 1000;
+    /** Interval (in milliseconds) between the location updates that re-rank the workplaces */
+    public static final long WORKPLACE_LOCATION_UPDATE_INTERVAL_MILLIS = 30 * 1000L;
+    /** Distance (in meters) the user has to move before the workplaces are re-ranked */
+    public static final float WORKPLACE_LOCATION_MIN_UPDATE_DISTANCE_METERS = 100f;
+    /** Distance (in meters) within which adding a workplace asks for a confirmation, as a stored one may be the same place */
+    public static final double WORKPLACE_DUPLICATE_RADIUS_METERS = 30;
+    /** Maximum number of workplace markers shown on the map at the same time */
+    public static final int WORKPLACE_MAP_MAX_MARKERS = 200;
 
 
 }
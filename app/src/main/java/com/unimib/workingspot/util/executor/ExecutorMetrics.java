@@ -0,0 +1,138 @@
+package com.unimib.workingspot.util.executor;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the queue depth and the latencies of the tasks run by an executor.
+ * The wait time of a task goes from when it is queued to when it starts, the run time from when
+ * it starts to when it completes. A summary is logged every given number of completed tasks.
+ */
+public class ExecutorMetrics {
+
+    private static final String TAG = ExecutorMetrics.class.getSimpleName();
+
+    private final String name;
+    private final int logInterval;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    // Guarded by this
+    private int maxQueueDepth;
+    private long completedTasks;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+
+    /**
+     * Constructor for the ExecutorMetrics class
+     * @param name The name of the executor, used in the logged summary
+     * @param logInterval The number of completed tasks after which a summary is logged,
+     *                    or 0 to never log it
+     */
+    public ExecutorMetrics(String name, int logInterval) {
+        this.name = name;
+        this.logInterval = logInterval;
+    }
+
+    /**
+     * Records that a task has been queued
+     */
+    public void onQueued() {
+        int depth = queueDepth.incrementAndGet();
+        synchronized (this) {
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+    }
+
+    /**
+     * Records that a queued task has been taken from the queue
+     */
+    public void onDequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    /**
+     * Records the latencies of a completed task
+     * @param waitNanos The time the task spent in the queue, in nanoseconds
+     * @param runNanos The time the task took to run, in nanoseconds
+     */
+    public void onCompleted(long waitNanos, long runNanos) {
+        boolean log;
+        synchronized (this) {
+            completedTasks++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            totalRunNanos += runNanos;
+            maxRunNanos = Math.max(maxRunNanos, runNanos);
+            log = logInterval > 0 && completedTasks % logInterval == 0;
+        }
+        if (log)
+            Log.d(TAG, toString());
+    }
+
+    /**
+     * @return The number of tasks currently waiting in the queue
+     */
+    public int getQueueDepth() { return queueDepth.get(); }
+
+    /**
+     * @return The highest number of tasks that waited in the queue at the same time
+     */
+    public synchronized int getMaxQueueDepth() { return maxQueueDepth; }
+
+    /**
+     * @return The number of completed tasks
+     */
+    public synchronized long getCompletedTasks() { return completedTasks; }
+
+    /**
+     * @return The average time the completed tasks spent in the queue, in milliseconds
+     */
+    public synchronized double getAverageWaitMillis() {
+        return completedTasks == 0 ? 0 : toMillis(totalWaitNanos) / completedTasks;
+    }
+
+    /**
+     * @return The longest time a completed task spent in the queue, in milliseconds
+     */
+    public synchronized double getMaxWaitMillis() { return toMillis(maxWaitNanos); }
+
+    /**
+     * @return The average time the completed tasks took to run, in milliseconds
+     */
+    public synchronized double getAverageRunMillis() {
+        return completedTasks == 0 ? 0 : toMillis(totalRunNanos) / completedTasks;
+    }
+
+    /**
+     * @return The longest time a completed task took to run, in milliseconds
+     */
+    public synchronized double getMaxRunMillis() { return toMillis(maxRunNanos); }
+
+    /**
+     * @return A summary of the metrics
+     */
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT,
+                "%s: %d tasks, queue %d (max %d), wait %.2f ms (max %.2f), run %.2f ms (max %.2f)",
+                name, completedTasks, queueDepth.get(), maxQueueDepth,
+                getAverageWaitMillis(), getMaxWaitMillis(), getAverageRunMillis(), getMaxRunMillis());
+    }
+
+    /**
+     * Converts a duration from nanoseconds to milliseconds
+     * @param nanos The duration in nanoseconds
+     * @return The duration in milliseconds
+     */
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,51 @@
+package com.unimib.workingspot.util.executor;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link Executor} that runs its tasks on another executor, recording their queue depth and
+ * latencies in an {@link ExecutorMetrics}.
+ */
+public class MeteredExecutor implements Executor {
+
+    private final Executor executor;
+    private final ExecutorMetrics metrics;
+
+    /**
+     * Constructor for the MeteredExecutor class
+     * @param executor The executor that runs the tasks
+     * @param metrics The metrics in which the tasks are recorded
+     */
+    public MeteredExecutor(Executor executor, ExecutorMetrics metrics) {
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues a task on the underlying executor
+     * @param command The task to run
+     */
+    @Override
+    public void execute(@NonNull Runnable command) {
+        long queuedAt = System.nanoTime();
+        metrics.onQueued();
+        executor.execute(() -> {
+            long startedAt = System.nanoTime();
+            metrics.onDequeued();
+            try {
+                command.run();
+            } finally {
+                metrics.onCompleted(startedAt - queuedAt, System.nanoTime() - startedAt);
+            }
+        });
+    }
+
+    /**
+     * @return The metrics of the tasks run by this executor
+     */
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+}
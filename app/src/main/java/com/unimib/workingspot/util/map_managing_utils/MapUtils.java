@@ -53,8 +53,9 @@ public class MapUtils {
      * @param googleMap The {@link GoogleMap} instance where the marker will be added.
      * @param workPlace The {@link WorkPlace} object to represent with the marker.
      * @param color The hue for the marker icon (e.g., {@link BitmapDescriptorFactory#HUE_VIOLET}).
+     * @return The added marker, or null if the map could not add it.
      */
-    public static void addMapMarker(GoogleMap googleMap, WorkPlace workPlace, float color) {
+    public static Marker addMapMarker(GoogleMap googleMap, WorkPlace workPlace, float color) {
         LatLng pos = new LatLng(workPlace.getLatitude(), workPlace.getLongitude());
         Marker marker = googleMap.addMarker(new MarkerOptions()
                 .position(pos)
@@ -63,6 +64,7 @@ public class MapUtils {
         if (marker != null) {
             marker.setTag(workPlace);
         }
+        return marker;
     }
 
     /**
@@ -127,6 +129,25 @@ public class MapUtils {
                 .show();
     }
 
+    /**
+     * Displays a dialog warning that a workplace is already stored close to the selected place,
+     * letting the user add the new one anyway, since different places can be that close.
+     *
+     * @param context The {@link Context} for the dialog.
+     * @param nearbyName The name of the nearest stored workplace.
+     * @param onAddAnyway Called when the user chooses to add the new workplace.
+     */
+    public static void showSimilarWorkPlaceNearbyDialog(Context context,
+                                                        String nearbyName,
+                                                        Runnable onAddAnyway) {
+        new AlertDialog.Builder(context)
+                .setTitle(R.string.similar_workplace_nearby)
+                .setMessage(context.getString(R.string.similar_workplace_nearby_message, nearbyName))
+                .setPositiveButton(R.string.add_anyway, (dialog, which) -> onAddAnyway.run())
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
     /**
      * An interface to define a callback for when a location is confirmed in the dialog.
      */
@@ -0,0 +1,66 @@
+package com.unimib.workingspot.util.search;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.appcompat.widget.SearchView;
+
+import java.util.function.Consumer;
+
+/**
+ * {@link SearchView.OnQueryTextListener} that runs the search only once the user stops typing
+ * for the given time, so that a query is not run for every typed character.
+ * Submitting the query runs the search immediately.
+ */
+public class DebouncedQueryTextListener implements SearchView.OnQueryTextListener {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long delayMillis;
+    private final Consumer<String> onSearch;
+    private Runnable pendingSearch;
+
+    /**
+     * Constructor for the DebouncedQueryTextListener class
+     * @param delayMillis The time (in milliseconds) the user has to stop typing before the search
+     * @param onSearch Called on the main thread with the text to search
+     */
+    public DebouncedQueryTextListener(long delayMillis, Consumer<String> onSearch) {
+        this.delayMillis = delayMillis;
+        this.onSearch = onSearch;
+    }
+
+    /**
+     * Runs the search immediately when the query is submitted
+     * @param query The submitted text
+     * @return false, so that the SearchView also handles the submit (closing the keyboard)
+     */
+    @Override
+    public boolean onQueryTextSubmit(String query) {
+        cancel();
+        onSearch.accept(query);
+        return false;
+    }
+
+    /**
+     * Schedules the search, replacing the one scheduled for the previous text
+     * @param newText The current text
+     * @return true, as the change has been handled
+     */
+    @Override
+    public boolean onQueryTextChange(String newText) {
+        cancel();
+        pendingSearch = () -> onSearch.accept(newText);
+        handler.postDelayed(pendingSearch, delayMillis);
+        return true;
+    }
+
+    /**
+     * Cancels the scheduled search, if any. To be called when the view is destroyed
+     */
+    public void cancel() {
+        if (pendingSearch != null) {
+            handler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import static com.unimib.workingspot.util.constants.Constants.DATASTORE;
 import static com.unimib.workingspot.util.constants.Constants.HTTP_BROWSER_HEADER;
 import static com.unimib.workingspot.util.constants.Constants.USER_AGENT;
 import static com.unimib.workingspot.util.constants.WorkPlacesConstants.GOOGLE_PLACES_API_KEY;
+import static com.unimib.workingspot.util.constants.WorkPlacesConstants.WORKPLACE_REMOTE_SOURCE_FIRESTORE;
 
 import android.app.Application;
 
@@ -23,6 +24,7 @@ import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceLocalData
 import com.unimib.workingspot.source.work_place.abstracts.BaseWorkPlaceRemoteFirebaseDataSource;
 import com.unimib.workingspot.source.work_place.concretes.WorkPlaceLocalDataSource;
 import com.unimib.workingspot.source.work_place.concretes.WorkPlaceRemoteFirebaseDataSource;
+import com.unimib.workingspot.source.work_place.concretes.WorkPlaceRemoteFirestoreDataSource;
 import com.unimib.workingspot.source.user.abstracts.BaseUserLocalDataSource;
 import com.unimib.workingspot.source.user.concretes.UserAccountFirebaseDataSource;
 import com.unimib.workingspot.source.user.concretes.UserAuthenticationFirebaseDataSource;
@@ -103,7 +105,8 @@ public class ServiceLocator {
     public UserAccountRepository getUserAccountRepository(Application application) {
         return new UserAccountRepository(getUserLocalDataSource(application),
                 new UserRealTimeDatabaseRemoteDataSource(),
-        new UserAccountFirebaseDataSource());
+        new UserAccountFirebaseDataSource(),
+                new WorkPlaceLocalDataSource(getWorkPlaceDAO(application)));
     }
 
     /**
@@ -166,6 +169,19 @@ public class ServiceLocator {
     }
 
 
+    /**
+     * Provides the remote data source of the workplaces, on Cloud Firestore or on the Realtime
+     * Database according to
+     * {@link com.unimib.workingspot.util.constants.WorkPlacesConstants#WORKPLACE_REMOTE_SOURCE_FIRESTORE}.
+     *
+     * @return An instance of BaseWorkPlaceRemoteFirebaseDataSource.
+     */
+    private BaseWorkPlaceRemoteFirebaseDataSource getWorkPlaceRemoteDataSource() {
+        if (WORKPLACE_REMOTE_SOURCE_FIRESTORE)
+            return new WorkPlaceRemoteFirestoreDataSource();
+        return new WorkPlaceRemoteFirebaseDataSource();
+    }
+
     /**
      * Provides the WorkPlace repository composed of remote Firebase, local database,
      * and Google remote data sources.
@@ -178,7 +194,7 @@ public class ServiceLocator {
             Places.initialize(application.getApplicationContext(), GOOGLE_PLACES_API_KEY);
             placesClient = Places.createClient(application.getApplicationContext());
         }
-        BaseWorkPlaceRemoteFirebaseDataSource workPlaceRemoteDataSource = new WorkPlaceRemoteFirebaseDataSource();
+        BaseWorkPlaceRemoteFirebaseDataSource workPlaceRemoteDataSource = getWorkPlaceRemoteDataSource();
         BaseWorkPlaceLocalDataSource workPlaceLocalDataSource = new WorkPlaceLocalDataSource(getWorkPlaceDAO(application));
         BaseWorkPlaceGoogleRemoteDataSource workPlaceGoogleRemoteDataSource = new WorkPlaceRemoteGoogleDataSource(application.getApplicationContext(), GOOGLE_PLACES_API_KEY, placesClient);
         return new WorkPlaceRepository(workPlaceRemoteDataSource, workPlaceLocalDataSource, workPlaceGoogleRemoteDataSource);
@@ -0,0 +1,125 @@
+package com.unimib.workingspot.util.spatial;
+
+import androidx.annotation.NonNull;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+import java.util.List;
+
+/**
+ * Immutable area of the Earth whose workplaces are fetched from the remote database: either a
+ * circle around a centre, or a viewport bounded by two latitudes and two longitudes. The area
+ * is read through the geohash prefixes covering its bounding box, and the workplaces read are
+ * filtered with {@link #contains(double, double)}.
+ */
+public final class GeoArea {
+
+    // Mean radius (in meters) of the Earth
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    // Bounding box of the area; west is greater than east if the box crosses the antimeridian
+    private final double south;
+    private final double west;
+    private final double north;
+    private final double east;
+    // Unit vector of the centre of a circle, null for a viewport
+    private final double[] center;
+    // Minimum dot product between the unit vectors of the centre and of a position inside the circle
+    private final double minDot;
+
+    /**
+     * Constructor for the GeoArea class
+     * @param center The unit vector of the centre of a circle, or null for a viewport
+     * @param minDot The cosine of the angular radius of the circle
+     */
+    private GeoArea(double south, double west, double north, double east, double[] center, double minDot) {
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+        this.center = center;
+        this.minDot = minDot;
+    }
+
+    /**
+     * Creates the area within a distance from a centre
+     * @param latitude The latitude of the centre, in degrees
+     * @param longitude The longitude of the centre, in degrees
+     * @param radiusMeters The great-circle distance from the centre, in meters
+     * @return The circle
+     */
+    @NonNull
+    public static GeoArea around(double latitude, double longitude, double radiusMeters) {
+        double angle = Math.min(Math.PI, radiusMeters / EARTH_RADIUS_METERS);
+        double south = Math.max(-90, latitude - Math.toDegrees(angle));
+        double north = Math.min(90, latitude + Math.toDegrees(angle));
+        double west = -180;
+        double east = 180;
+        // A circle containing a pole spans every longitude
+        if (south > -90 && north < 90) {
+            double longitudeAngle = Math.toDegrees(Math.asin(
+                    Math.min(1, Math.sin(angle) / Math.cos(Math.toRadians(latitude)))));
+            if (longitudeAngle < 180) {
+                west = normalizeLongitude(longitude - longitudeAngle);
+                east = normalizeLongitude(longitude + longitudeAngle);
+            }
+        }
+        return new GeoArea(south, west, north, east, WorkPlace.unitVector(latitude, longitude), Math.cos(angle));
+    }
+
+    /**
+     * Creates the area of a viewport. A viewport crossing the antimeridian has a west longitude
+     * greater than its east longitude
+     * @param south The southern latitude, in degrees
+     * @param west The western longitude, in degrees
+     * @param north The northern latitude, in degrees
+     * @param east The eastern longitude, in degrees
+     * @return The viewport
+     */
+    @NonNull
+    public static GeoArea ofBounds(double south, double west, double north, double east) {
+        return new GeoArea(south, west, north, east, null, 0);
+    }
+
+    /**
+     * Checks whether a position is inside the area
+     * @param latitude The latitude of the position, in degrees
+     * @param longitude The longitude of the position, in degrees
+     * @return true if the position is inside the area
+     */
+    public boolean contains(double latitude, double longitude) {
+        if (center != null) {
+            double[] position = WorkPlace.unitVector(latitude, longitude);
+            return center[0] * position[0] + center[1] * position[1] + center[2] * position[2] >= minDot;
+        }
+        if (latitude < south || latitude > north)
+            return false;
+        return west <= east
+                ? longitude >= west && longitude <= east
+                : longitude >= west || longitude <= east;
+    }
+
+    /**
+     * Computes the geohash prefixes of the cells covering the area
+     * @param maxPrefixes The maximum number of prefixes, see
+     *                    {@link GeoHash#coveringPrefixes(double, double, double, double, int)}
+     * @return The prefixes of the cells intersecting the bounding box of the area
+     */
+    @NonNull
+    public List<String> getCoveringGeohashPrefixes(int maxPrefixes) {
+        return GeoHash.coveringPrefixes(south, west, north, east, maxPrefixes);
+    }
+
+    /**
+     * Brings a longitude back between -180 and 180 degrees
+     * @param longitude The longitude, in degrees
+     * @return The same meridian, between -180 and 180 degrees
+     */
+    private static double normalizeLongitude(double longitude) {
+        if (longitude < -180)
+            return longitude + 360;
+        if (longitude > 180)
+            return longitude - 360;
+        return longitude;
+    }
+}
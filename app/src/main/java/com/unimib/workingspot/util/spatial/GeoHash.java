@@ -0,0 +1,154 @@
+package com.unimib.workingspot.util.spatial;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes positions as geohashes, the base 32 strings obtained by halving the longitude and
+ * latitude ranges in turn. Every character narrows the cell of the previous ones, so the
+ * workplaces inside a cell are the ones whose geohash starts with the cell's geohash, and a
+ * region can be read from an index ordered by geohash with a few prefix range queries.
+ */
+public final class GeoHash {
+
+    // Alphabet of the geohashes, without the letters a, i, l and o
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    // Number of bits encoded by a character
+    private static final int BITS_PER_CHAR = 5;
+    /** Maximum number of characters of a geohash, which fits in a long */
+    public static final int MAX_PRECISION = 12;
+
+    /**
+     * Private constructor, the class only has static methods
+     */
+    private GeoHash() {}
+
+    /**
+     * Encodes a position
+     * @param latitude The latitude of the position, in degrees
+     * @param longitude The longitude of the position, in degrees
+     * @param precision The number of characters of the geohash, between 1 and {@link #MAX_PRECISION}
+     * @return The geohash of the cell containing the position
+     */
+    @NonNull
+    public static String encode(double latitude, double longitude, int precision) {
+        int latitudeBits = latitudeBits(precision);
+        int longitudeBits = longitudeBits(precision);
+        return encode(cellIndex(latitude + 90, 180, latitudeBits),
+                cellIndex(longitude + 180, 360, longitudeBits), precision);
+    }
+
+    /**
+     * Computes the geohash prefixes of the cells covering a bounding box, with the longest
+     * prefixes for which no more than the given number of cells is needed. A box crossing the
+     * antimeridian has a west longitude greater than its east longitude
+     * @param south The southern latitude of the box, in degrees
+     * @param west The western longitude of the box, in degrees
+     * @param north The northern latitude of the box, in degrees
+     * @param east The eastern longitude of the box, in degrees
+     * @param maxPrefixes The maximum number of prefixes; the 32 cells of a single character are
+     *                    returned for boxes too large to be covered with fewer
+     * @return The prefixes of the cells intersecting the box
+     */
+    @NonNull
+    public static List<String> coveringPrefixes(double south, double west, double north, double east,
+                                                int maxPrefixes) {
+        int precision = MAX_PRECISION;
+        while (precision > 1 && countCells(south, west, north, east, precision) > maxPrefixes)
+            precision--;
+
+        List<String> prefixes = new ArrayList<>();
+        if (west <= east) {
+            addCells(south, west, north, east, precision, prefixes);
+        } else {
+            addCells(south, west, north, 180, precision, prefixes);
+            addCells(south, -180, north, east, precision, prefixes);
+        }
+        return prefixes;
+    }
+
+    /**
+     * Counts the cells of the given precision intersecting a bounding box
+     * @return The number of cells
+     */
+    private static long countCells(double south, double west, double north, double east, int precision) {
+        if (west > east)
+            return countCells(south, west, north, 180, precision) + countCells(south, -180, north, east, precision);
+        int latitudeBits = latitudeBits(precision);
+        int longitudeBits = longitudeBits(precision);
+        long rows = cellIndex(north + 90, 180, latitudeBits) - cellIndex(south + 90, 180, latitudeBits) + 1L;
+        long columns = cellIndex(east + 180, 360, longitudeBits) - cellIndex(west + 180, 360, longitudeBits) + 1L;
+        return rows * columns;
+    }
+
+    /**
+     * Adds the geohashes of the cells of the given precision intersecting a bounding box which
+     * does not cross the antimeridian
+     * @param prefixes The list the geohashes are added to
+     */
+    private static void addCells(double south, double west, double north, double east, int precision,
+                                 List<String> prefixes) {
+        int latitudeBits = latitudeBits(precision);
+        int longitudeBits = longitudeBits(precision);
+        long firstRow = cellIndex(south + 90, 180, latitudeBits);
+        long lastRow = cellIndex(north + 90, 180, latitudeBits);
+        long firstColumn = cellIndex(west + 180, 360, longitudeBits);
+        long lastColumn = cellIndex(east + 180, 360, longitudeBits);
+        for (long row = firstRow; row <= lastRow; row++)
+            for (long column = firstColumn; column <= lastColumn; column++)
+                prefixes.add(encode(row, column, precision));
+    }
+
+    /**
+     * Interleaves the indexes of a cell into its geohash, starting with a longitude bit
+     * @param row The index of the cell along the latitude
+     * @param column The index of the cell along the longitude
+     * @param precision The number of characters of the geohash
+     * @return The geohash of the cell
+     */
+    private static String encode(long row, long column, int precision) {
+        int latitudeBit = latitudeBits(precision);
+        int longitudeBit = longitudeBits(precision);
+        char[] geohash = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int bit = 0; bit < BITS_PER_CHAR; bit++) {
+                // The bits of the whole geohash alternate, the first one being a longitude bit
+                boolean isLongitudeBit = (i * BITS_PER_CHAR + bit) % 2 == 0;
+                long index = isLongitudeBit ? column >>> --longitudeBit : row >>> --latitudeBit;
+                value = (value << 1) | (int) (index & 1);
+            }
+            geohash[i] = BASE32[value];
+        }
+        return new String(geohash);
+    }
+
+    /**
+     * Computes the index of the cell containing a coordinate, clamped to the valid cells
+     * @param offset The coordinate, shifted to start from 0
+     * @param range The range of the coordinate
+     * @param bits The number of bits of the index
+     * @return The index of the cell
+     */
+    private static long cellIndex(double offset, double range, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor(offset / range * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    /**
+     * @return The number of latitude bits of a geohash with the given number of characters
+     */
+    private static int latitudeBits(int precision) {
+        return precision * BITS_PER_CHAR / 2;
+    }
+
+    /**
+     * @return The number of longitude bits of a geohash with the given number of characters
+     */
+    private static int longitudeBits(int precision) {
+        return (precision * BITS_PER_CHAR + 1) / 2;
+    }
+}
@@ -0,0 +1,299 @@
+package com.unimib.workingspot.util.spatial;
+
+import androidx.annotation.NonNull;
+
+import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceStore;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only columnar snapshot of the stored workplaces, built from the list posted by Room and
+ * used by the Map screen. Every field is kept in its own primitive array, indexed by row, so the
+ * bulk passes over the catalogue read contiguous memory and allocate nothing: the callers pass
+ * the {@link BitSet}s and arrays the results are written to, and reuse them across passes.
+ * Names and addresses are interned, the rows only hold their index in a table of distinct strings.
+ * <p>
+ * {@link WorkPlace} objects are only created for the rows that are displayed, with
+ * {@link #getWorkPlace(int)}. They are shared with the other screens through the
+ * {@link WorkPlaceStore}.
+ * <p>
+ * The snapshot holds the {@link WorkPlaceKdTree} of its rows, for the nearest neighbour and
+ * radius queries. Building it takes O(n log n), and should be done on a background thread.
+ */
+public final class WorkPlaceColumns {
+
+    private final int size;
+    private final String[] keys;
+    private final Map<String, Integer> rowsByKey;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    // Unit vectors of the positions, three values per row
+    private final double[] unitVectors;
+    private final BitSet outside;
+    private final BitSet saved;
+    private final int[] nameIds;
+    private final int[] addressIds;
+    private final String[] strings;
+    private final String[] blurHashes;
+    private final long[] contentHashes;
+    private final WorkPlaceStore workPlaceStore;
+    private final WorkPlaceKdTree tree;
+
+    /**
+     * Builds the snapshot of the given workplaces
+     * @param workPlaceList The workplaces posted by the local database
+     * @param workPlaceStore The store of the canonical workplaces, shared with the other screens
+     */
+    public WorkPlaceColumns(@NonNull List<WorkPlace> workPlaceList, @NonNull WorkPlaceStore workPlaceStore) {
+        this.workPlaceStore = workPlaceStore;
+        size = workPlaceList.size();
+        keys = new String[size];
+        rowsByKey = new HashMap<>(size * 4 / 3 + 1);
+        latitudes = new double[size];
+        longitudes = new double[size];
+        unitVectors = new double[size * 3];
+        outside = new BitSet(size);
+        saved = new BitSet(size);
+        nameIds = new int[size];
+        addressIds = new int[size];
+        blurHashes = new String[size];
+        contentHashes = new long[size];
+
+        Map<String, Integer> stringIds = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            WorkPlace workPlace = workPlaceList.get(row);
+            keys[row] = workPlace.getFirebaseKey();
+            rowsByKey.put(keys[row], row);
+            latitudes[row] = workPlace.getLatitude();
+            longitudes[row] = workPlace.getLongitude();
+            double x = workPlace.getUnitX(), y = workPlace.getUnitY(), z = workPlace.getUnitZ();
+            if (x == 0 && y == 0 && z == 0) {
+                // The unit vector was not stored with the workplace
+                double[] unitVector = WorkPlace.unitVector(latitudes[row], longitudes[row]);
+                x = unitVector[0];
+                y = unitVector[1];
+                z = unitVector[2];
+            }
+            unitVectors[row * 3] = x;
+            unitVectors[row * 3 + 1] = y;
+            unitVectors[row * 3 + 2] = z;
+            outside.set(row, workPlace.isOutside());
+            saved.set(row, workPlace.isSaved());
+            nameIds[row] = intern(stringIds, workPlace.getName());
+            addressIds[row] = intern(stringIds, workPlace.getAddress());
+            blurHashes[row] = workPlace.getBlurHash();
+            contentHashes[row] = workPlace.getContentHash();
+        }
+        strings = new String[stringIds.size()];
+        for (Map.Entry<String, Integer> entry : stringIds.entrySet())
+            strings[entry.getValue()] = entry.getKey();
+
+        tree = new WorkPlaceKdTree(this);
+    }
+
+    /**
+     * Checks whether the snapshot holds the given workplaces, in the same order and with the same
+     * content and saved state, so that it is not built again when the local database posts the
+     * same workplaces, for example after the ranking scores were written
+     * @param workPlaceList The workplaces posted by the local database
+     * @return true if the snapshot would be the same
+     */
+    public boolean hasSameRows(@NonNull List<WorkPlace> workPlaceList) {
+        if (workPlaceList.size() != size)
+            return false;
+        for (int row = 0; row < size; row++) {
+            WorkPlace workPlace = workPlaceList.get(row);
+            if (!keys[row].equals(workPlace.getFirebaseKey()) || contentHashes[row] != workPlace.getContentHash()
+                    || saved.get(row) != workPlace.isSaved())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the index of a string in the table, adding it if it is not there yet
+     */
+    private static int intern(Map<String, Integer> stringIds, String value) {
+        if (value == null)
+            return -1;
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = stringIds.size();
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return The number of rows of the snapshot
+     */
+    public int size() { return size; }
+
+    /**
+     * @return The k-d tree of the rows of the snapshot
+     */
+    @NonNull
+    public WorkPlaceKdTree getTree() { return tree; }
+
+    /**
+     * @param row The row of the workplace
+     * @return The Firebase key of the workplace
+     */
+    public String getKey(int row) { return keys[row]; }
+
+    /**
+     * Finds the row of a workplace, in constant time
+     * @param firebaseKey The Firebase key of the workplace
+     * @return The row of the workplace, or -1 if it is not in the snapshot
+     */
+    public int rowOf(String firebaseKey) {
+        Integer row = rowsByKey.get(firebaseKey);
+        return row != null ? row : -1;
+    }
+
+    /**
+     * @param row The row of the workplace
+     * @return The latitude of the workplace
+     */
+    public double getLatitude(int row) { return latitudes[row]; }
+
+    /**
+     * @param row The row of the workplace
+     * @return The longitude of the workplace
+     */
+    public double getLongitude(int row) { return longitudes[row]; }
+
+    /**
+     * @param row The row of the workplace
+     * @param axis The component of the vector, from 0 to 2
+     * @return A component of the unit vector of the workplace position
+     */
+    double getUnitVector(int row, int axis) { return unitVectors[row * 3 + axis]; }
+
+    /**
+     * @param row The row of the workplace
+     * @return true if the workplace is outside
+     */
+    public boolean isOutside(int row) { return outside.get(row); }
+
+    /**
+     * @param row The row of the workplace
+     * @return true if the workplace is saved by the user
+     */
+    public boolean isSaved(int row) { return saved.get(row); }
+
+    /**
+     * @param row The row of the workplace
+     * @return The name of the workplace
+     */
+    public String getName(int row) { return nameIds[row] < 0 ? null : strings[nameIds[row]]; }
+
+    /**
+     * @param row The row of the workplace
+     * @return The address of the workplace
+     */
+    public String getAddress(int row) { return addressIds[row] < 0 ? null : strings[addressIds[row]]; }
+
+    /**
+     * Gets the workplace of a row, with the same fields as the summaries read from the local
+     * database; the photo is read separately when it is shown
+     * @param row The row of the workplace
+     * @return The canonical instance of the workplace, which must not be modified
+     */
+    @NonNull
+    public WorkPlace getWorkPlace(int row) {
+        WorkPlace workPlace = new WorkPlace(getName(row), getAddress(row), latitudes[row], longitudes[row],
+                outside.get(row));
+        workPlace.setFirebaseKey(keys[row]);
+        workPlace.setSaved(saved.get(row));
+        workPlace.setBlurHash(blurHashes[row]);
+        workPlace.setContentHash(contentHashes[row]);
+        workPlace.setUnitX(unitVectors[row * 3]);
+        workPlace.setUnitY(unitVectors[row * 3 + 1]);
+        workPlace.setUnitZ(unitVectors[row * 3 + 2]);
+        return workPlaceStore.canonicalize(workPlace);
+    }
+
+    /**
+     * Finds the rows within a latitude and longitude box. A box whose west edge is east of its
+     * east edge crosses the antimeridian
+     * @param south The southern latitude of the box
+     * @param west The western longitude of the box
+     * @param north The northern latitude of the box
+     * @param east The eastern longitude of the box
+     * @param result The set in which the rows within the box are set, and the other ones cleared
+     */
+    public void withinBounds(double south, double west, double north, double east, @NonNull BitSet result) {
+        result.clear();
+        boolean crossesAntimeridian = west > east;
+        for (int row = 0; row < size; row++) {
+            double latitude = latitudes[row];
+            if (latitude < south || latitude > north)
+                continue;
+            double longitude = longitudes[row];
+            boolean inside = crossesAntimeridian
+                    ? longitude >= west || longitude <= east
+                    : longitude >= west && longitude <= east;
+            if (inside)
+                result.set(row);
+        }
+    }
+
+    /**
+     * Orders some rows by their distance from a position, nearest first
+     * @param latitude The latitude of the position
+     * @param longitude The longitude of the position
+     * @param rows The rows to order
+     * @param order The array the ordered rows are written to, at least as long as the number of rows
+     * @param distances Scratch array of the same length, in which the squared chord distances of
+     *                  the ordered rows are left
+     * @return The number of ordered rows
+     */
+    public int orderByDistance(double latitude, double longitude, @NonNull BitSet rows,
+                               @NonNull int[] order, @NonNull double[] distances) {
+        double[] origin = WorkPlace.unitVector(latitude, longitude);
+        int count = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            double dx = unitVectors[row * 3] - origin[0];
+            double dy = unitVectors[row * 3 + 1] - origin[1];
+            double dz = unitVectors[row * 3 + 2] - origin[2];
+            order[count] = row;
+            distances[count] = dx * dx + dy * dy + dz * dz;
+            count++;
+        }
+        sort(order, distances, 0, count - 1);
+        return count;
+    }
+
+    /**
+     * Sorts a range of rows by their distances, moving both arrays together (quicksort)
+     */
+    private static void sort(int[] order, double[] distances, int left, int right) {
+        while (left < right) {
+            double pivot = distances[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) {
+                while (distances[i] < pivot) i++;
+                while (distances[j] > pivot) j--;
+                if (i <= j) {
+                    int row = order[i]; order[i] = order[j]; order[j] = row;
+                    double distance = distances[i]; distances[i] = distances[j]; distances[j] = distance;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurses into the smaller side, so the stack stays logarithmic
+            if (j - left < right - i) {
+                sort(order, distances, left, j);
+                left = i;
+            } else {
+                sort(order, distances, i, right);
+                right = j;
+            }
+        }
+    }
+}
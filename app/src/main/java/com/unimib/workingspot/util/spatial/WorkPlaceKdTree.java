@@ -0,0 +1,236 @@
+package com.unimib.workingspot.util.spatial;
+
+import androidx.annotation.NonNull;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable k-d tree of the rows of a {@link WorkPlaceColumns} snapshot, answering nearest
+ * neighbour and radius queries in logarithmic time instead of scanning every workplace.
+ * The workplaces are indexed by the unit vectors of their positions (see
+ * {@link WorkPlace#unitVector(double, double)}): the straight distance between two unit vectors,
+ * the chord, grows with the great-circle distance, so the tree works in three plain euclidean
+ * dimensions and is correct at any latitude.
+ * The tree is implicit: the points are reordered so that the median of every range is the node
+ * splitting it, and no node objects are allocated. It is built with its snapshot, on a
+ * background thread.
+ */
+public final class WorkPlaceKdTree {
+
+    // Number of dimensions of the indexed points
+    private static final int DIMENSIONS = 3;
+    // Mean radius (in meters) of the Earth
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    private final WorkPlaceColumns columns;
+    // Rows of the snapshot, in the order of the tree
+    private final int[] rows;
+    // Coordinates of the points, DIMENSIONS values per point, in the order of the tree
+    private final double[] points;
+
+    /**
+     * Builds the tree of the rows of a snapshot
+     * @param columns The snapshot to index
+     */
+    WorkPlaceKdTree(@NonNull WorkPlaceColumns columns) {
+        this.columns = columns;
+        int size = columns.size();
+        rows = new int[size];
+        points = new double[size * DIMENSIONS];
+        for (int row = 0; row < size; row++) {
+            rows[row] = row;
+            for (int d = 0; d < DIMENSIONS; d++)
+                points[row * DIMENSIONS + d] = columns.getUnitVector(row, d);
+        }
+        build(0, size, 0);
+    }
+
+    /**
+     * Gets the number of indexed workplaces
+     * @return The size of the tree
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Finds the workplaces nearest to a position
+     * @param latitude The latitude of the position
+     * @param longitude The longitude of the position
+     * @param k The maximum number of workplaces to find
+     * @return The k nearest workplaces, or all of them if there are fewer, nearest first
+     */
+    @NonNull
+    public List<WorkPlace> nearest(double latitude, double longitude, int k) {
+        if (k <= 0 || rows.length == 0)
+            return Collections.emptyList();
+        double[] target = WorkPlace.unitVector(latitude, longitude);
+        Neighbours neighbours = new Neighbours(Math.min(k, rows.length));
+        searchNearest(0, rows.length, 0, target, neighbours);
+
+        List<WorkPlace> result = new ArrayList<>(neighbours.count);
+        for (int i = 0; i < neighbours.count; i++)
+            result.add(columns.getWorkPlace(rows[neighbours.indexes[i]]));
+        return result;
+    }
+
+    /**
+     * Finds the workplaces within a distance from a position
+     * @param latitude The latitude of the position
+     * @param longitude The longitude of the position
+     * @param radiusMeters The great-circle distance, in meters
+     * @return The workplaces within the distance, in no particular order
+     */
+    @NonNull
+    public List<WorkPlace> withinRadius(double latitude, double longitude, double radiusMeters) {
+        List<WorkPlace> result = new ArrayList<>();
+        if (rows.length == 0 || radiusMeters < 0)
+            return result;
+        double[] target = WorkPlace.unitVector(latitude, longitude);
+        // Chord of the unit sphere spanning the great-circle distance
+        double angle = Math.min(Math.PI, radiusMeters / EARTH_RADIUS_METERS);
+        double chord = 2 * Math.sin(angle / 2);
+        searchRadius(0, rows.length, 0, target, chord * chord, result);
+        return result;
+    }
+
+    /**
+     * Builds the subtree of a range by moving its median along the axis of the depth to the
+     * middle of the range, and the smaller and larger points to its two sides
+     */
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1)
+            return;
+        int axis = depth % DIMENSIONS;
+        int median = (from + to) >>> 1;
+        select(from, to - 1, median, axis);
+        build(from, median, depth + 1);
+        build(median + 1, to, depth + 1);
+    }
+
+    /**
+     * Moves the point of the given rank along an axis to its sorted position within a range,
+     * with the smaller points before it and the larger ones after it (quickselect)
+     */
+    private void select(int left, int right, int rank, int axis) {
+        while (right > left) {
+            double pivot = coordinate((left + right) >>> 1, axis);
+            int i = left, j = right;
+            while (i <= j) {
+                while (coordinate(i, axis) < pivot) i++;
+                while (coordinate(j, axis) > pivot) j--;
+                if (i <= j)
+                    swap(i++, j--);
+            }
+            if (rank <= j)
+                right = j;
+            else if (rank >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Visits the subtree of a range, nearest side first, skipping the sides that cannot contain
+     * a point nearer than the farthest neighbour found so far
+     */
+    private void searchNearest(int from, int to, int depth, double[] target, Neighbours neighbours) {
+        if (from >= to)
+            return;
+        int median = (from + to) >>> 1;
+        neighbours.offer(median, squaredDistance(median, target));
+
+        int axis = depth % DIMENSIONS;
+        double delta = target[axis] - coordinate(median, axis);
+        if (delta < 0) {
+            searchNearest(from, median, depth + 1, target, neighbours);
+            if (delta * delta < neighbours.worstDistance())
+                searchNearest(median + 1, to, depth + 1, target, neighbours);
+        } else {
+            searchNearest(median + 1, to, depth + 1, target, neighbours);
+            if (delta * delta < neighbours.worstDistance())
+                searchNearest(from, median, depth + 1, target, neighbours);
+        }
+    }
+
+    /**
+     * Collects the points of the subtree of a range within a squared distance from the target,
+     * skipping the sides entirely outside of it
+     */
+    private void searchRadius(int from, int to, int depth, double[] target, double squaredRadius,
+                              List<WorkPlace> result) {
+        if (from >= to)
+            return;
+        int median = (from + to) >>> 1;
+        if (squaredDistance(median, target) <= squaredRadius)
+            result.add(columns.getWorkPlace(rows[median]));
+
+        double delta = target[depth % DIMENSIONS] - coordinate(median, depth % DIMENSIONS);
+        if (delta <= 0 || delta * delta <= squaredRadius)
+            searchRadius(from, median, depth + 1, target, squaredRadius, result);
+        if (delta >= 0 || delta * delta <= squaredRadius)
+            searchRadius(median + 1, to, depth + 1, target, squaredRadius, result);
+    }
+
+    private double coordinate(int index, int axis) {
+        return points[index * DIMENSIONS + axis];
+    }
+
+    private double squaredDistance(int index, double[] target) {
+        double dx = points[index * DIMENSIONS] - target[0];
+        double dy = points[index * DIMENSIONS + 1] - target[1];
+        double dz = points[index * DIMENSIONS + 2] - target[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void swap(int i, int j) {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double coordinate = points[i * DIMENSIONS + d];
+            points[i * DIMENSIONS + d] = points[j * DIMENSIONS + d];
+            points[j * DIMENSIONS + d] = coordinate;
+        }
+    }
+
+    /**
+     * The k nearest points found so far, kept sorted by distance. k is small, so an insertion
+     * into a sorted array is cheaper than a heap
+     */
+    private static final class Neighbours {
+        private final int[] indexes;
+        private final double[] distances;
+        private int count;
+
+        private Neighbours(int k) {
+            indexes = new int[k];
+            distances = new double[k];
+        }
+
+        /**
+         * @return The squared distance a point has to be within to be a neighbour
+         */
+        private double worstDistance() {
+            return count < indexes.length ? Double.POSITIVE_INFINITY : distances[count - 1];
+        }
+
+        private void offer(int index, double distance) {
+            if (distance >= worstDistance())
+                return;
+            int position = count < indexes.length ? count++ : count - 1;
+            while (position > 0 && distances[position - 1] > distance) {
+                indexes[position] = indexes[position - 1];
+                distances[position] = distances[position - 1];
+                position--;
+            }
+            indexes[position] = index;
+            distances[position] = distance;
+        }
+    }
+}
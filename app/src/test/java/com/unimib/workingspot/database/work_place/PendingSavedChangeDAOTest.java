@@ -0,0 +1,202 @@
+package com.unimib.workingspot.database.work_place;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.unimib.workingspot.model.PendingSavedChange;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of the collapse of the {@link PendingSavedChange changes of the saved workplaces} by
+ * {@link PendingSavedChangeDAO#queue(PendingSavedChange)} and
+ * {@link PendingSavedChangeDAO#complete(List)}, on an in-memory outbox standing for the table.
+ */
+public class PendingSavedChangeDAOTest {
+
+    private static final String USER = "user";
+    private static final String OTHER_USER = "other";
+    private static final String KEY = "key";
+
+    private InMemoryPendingSavedChangeDAO dao;
+    private long time;
+
+    /**
+     * Outbox keeping copies of the changes, like the rows read back from the table
+     */
+    private static class InMemoryPendingSavedChangeDAO implements PendingSavedChangeDAO {
+
+        private final Map<String, PendingSavedChange> rows = new HashMap<>();
+
+        private static String id(String uid, String firebaseKey) {
+            return uid + "/" + firebaseKey;
+        }
+
+        private static PendingSavedChange copy(PendingSavedChange change) {
+            return new PendingSavedChange(change.getFirebaseKey(), change.getUid(), change.isSaved(),
+                    change.isSyncedSaved(), change.getChangedAt());
+        }
+
+        @Override
+        public List<PendingSavedChange> getAll(String uid) {
+            List<PendingSavedChange> changes = new ArrayList<>();
+            for (PendingSavedChange change : rows.values())
+                if (change.getUid().equals(uid))
+                    changes.add(copy(change));
+            changes.sort(Comparator.comparingLong(PendingSavedChange::getChangedAt));
+            return changes;
+        }
+
+        @Override
+        public PendingSavedChange get(String uid, String firebaseKey) {
+            PendingSavedChange change = rows.get(id(uid, firebaseKey));
+            return change != null ? copy(change) : null;
+        }
+
+        @Override
+        public void insert(PendingSavedChange change) {
+            rows.put(id(change.getUid(), change.getFirebaseKey()), copy(change));
+        }
+
+        @Override
+        public void delete(PendingSavedChange change) {
+            rows.remove(id(change.getUid(), change.getFirebaseKey()));
+        }
+
+        @Override
+        public void deleteAll(String uid) {
+            rows.values().removeIf(change -> change.getUid().equals(uid));
+        }
+
+        @Override
+        public void applyPendingChanges(String uid) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dao = new InMemoryPendingSavedChangeDAO();
+        time = 0;
+    }
+
+    /**
+     * Queues a change of the saved state made by the user, as the local data source does
+     */
+    private void toggle(String uid, boolean saved) {
+        dao.queue(new PendingSavedChange(KEY, uid, saved, !saved, ++time));
+    }
+
+    @Test
+    public void queue_recordsTheFirstChange() {
+        toggle(USER, true);
+
+        PendingSavedChange pending = dao.get(USER, KEY);
+        assertTrue(pending.isSaved());
+        assertFalse(pending.isSyncedSaved());
+    }
+
+    @Test
+    public void queue_dropsAChangeToggledBack() {
+        toggle(USER, true);
+        toggle(USER, false);
+
+        assertNull(dao.get(USER, KEY));
+        assertTrue(dao.getAll(USER).isEmpty());
+    }
+
+    @Test
+    public void queue_keepsTheRemoteStateOfTheFirstChange() {
+        toggle(USER, false);
+        toggle(USER, true);
+        toggle(USER, false);
+
+        PendingSavedChange pending = dao.get(USER, KEY);
+        assertFalse(pending.isSaved());
+        assertTrue(pending.isSyncedSaved());
+        assertEquals(3, pending.getChangedAt());
+    }
+
+    @Test
+    public void queue_keepsTheUsersApart() {
+        toggle(USER, true);
+        toggle(OTHER_USER, false);
+        toggle(USER, false);
+
+        assertTrue(dao.getAll(USER).isEmpty());
+        assertEquals(1, dao.getAll(OTHER_USER).size());
+        assertFalse(dao.get(OTHER_USER, KEY).isSaved());
+    }
+
+    @Test
+    public void complete_removesTheWrittenChanges() {
+        toggle(USER, true);
+        List<PendingSavedChange> written = dao.getAll(USER);
+
+        dao.complete(written);
+
+        assertTrue(dao.getAll(USER).isEmpty());
+    }
+
+    @Test
+    public void complete_dropsAChangeRepeatedDuringTheWrite() {
+        toggle(USER, true);
+        List<PendingSavedChange> written = dao.getAll(USER);
+        toggle(USER, false);
+        toggle(USER, true);
+
+        dao.complete(written);
+
+        assertNull(dao.get(USER, KEY));
+    }
+
+    @Test
+    public void complete_keepsAChangeToTheOtherState() {
+        toggle(USER, true);
+        List<PendingSavedChange> written = dao.getAll(USER);
+        dao.insert(new PendingSavedChange(KEY, USER, false, false, ++time));
+
+        dao.complete(written);
+
+        // The written state is now the remote state the change has to overwrite
+        PendingSavedChange pending = dao.get(USER, KEY);
+        assertFalse(pending.isSaved());
+        assertTrue(pending.isSyncedSaved());
+    }
+
+    @Test
+    public void complete_recordsAChangeToggledBackDuringTheWrite() {
+        toggle(USER, true);
+        List<PendingSavedChange> written = dao.getAll(USER);
+        toggle(USER, false);
+        assertNull(dao.get(USER, KEY));
+
+        dao.complete(written);
+
+        // The write saved the workplace remotely, which the user does not want anymore
+        PendingSavedChange pending = dao.get(USER, KEY);
+        assertFalse(pending.isSaved());
+        assertTrue(pending.isSyncedSaved());
+    }
+
+    @Test
+    public void complete_leavesTheOtherUsersChanges() {
+        toggle(USER, true);
+        toggle(OTHER_USER, true);
+
+        dao.complete(dao.getAll(USER));
+
+        assertTrue(dao.getAll(USER).isEmpty());
+        assertEquals(1, dao.getAll(OTHER_USER).size());
+        assertTrue(dao.get(OTHER_USER, KEY).isSaved());
+    }
+}
@@ -0,0 +1,221 @@
+package com.unimib.workingspot.database.work_place;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.unimib.workingspot.model.WorkPlace;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+/**
+ * Tests of the {@link WorkPlaceMigrations}, run against the exported schemas of the
+ * {@link WorkPlaceRoomDatabase}: the workplaces stored before an update must keep their
+ * content and saved state, and get the columns added by each version filled in.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorkPlaceMigrationsTest {
+
+    private static final String TEST_DB = "workplace-migration-test";
+
+    private static final double DELTA = 1e-12;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), WorkPlaceRoomDatabase.class);
+
+    /**
+     * Creates a database at version 12 with two workplaces, one of them saved
+     */
+    private void createVersion12() throws IOException {
+        try (SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 12)) {
+            db.execSQL("INSERT INTO WorkPlace (firebaseKey, name, address, latitude, longitude, " +
+                    "outside, saved, b64PhotoEncoding, blurHash, contentHash) VALUES " +
+                    "('key1', 'Caffè Centrale', 'Piazza della Scienza 1, Milano', 45.5138, 9.2112, 0, 1, NULL, NULL, 11)");
+            db.execSQL("INSERT INTO WorkPlace (firebaseKey, name, address, latitude, longitude, " +
+                    "outside, saved, b64PhotoEncoding, blurHash, contentHash) VALUES " +
+                    "('key2', 'Biblioteca', 'Viale Sarca 336, Milano', 45.5230, 9.2190, 1, 0, NULL, NULL, 22)");
+        }
+    }
+
+    @Test
+    public void migrate10To16_keepsTheBaselineWorkplacesAndSavedState() throws IOException {
+        try (SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 10)) {
+            db.execSQL("INSERT INTO WorkPlace (firebaseKey, name, address, latitude, longitude, " +
+                    "outside, saved, b64PhotoEncoding) VALUES " +
+                    "('key1', 'Caffè Centrale', 'Piazza della Scienza 1, Milano', 45.5138, 9.2112, 0, 1, 'cGhvdG8=')");
+            db.execSQL("INSERT INTO WorkPlace (firebaseKey, name, address, latitude, longitude, " +
+                    "outside, saved, b64PhotoEncoding) VALUES " +
+                    "('key2', 'Biblioteca', 'Viale Sarca 336, Milano', 45.5230, 9.2190, 1, 0, NULL)");
+        }
+
+        try (SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 16, true,
+                WorkPlaceMigrations.ALL)) {
+            try (Cursor cursor = db.query("SELECT firebaseKey, name, address, latitude, longitude, " +
+                    "outside, saved, b64PhotoEncoding, blurHash, contentHash, unitX, unitY, unitZ " +
+                    "FROM WorkPlace ORDER BY firebaseKey")) {
+                assertTrue(cursor.moveToNext());
+                assertEquals("key1", cursor.getString(0));
+                assertEquals("Caffè Centrale", cursor.getString(1));
+                assertEquals("Piazza della Scienza 1, Milano", cursor.getString(2));
+                assertEquals(0, cursor.getInt(5));
+                assertEquals(1, cursor.getInt(6));
+                assertEquals("cGhvdG8=", cursor.getString(7));
+                assertNull(cursor.getString(8));
+                // The sync recognizes the hash of 0 as changed, and writes the workplace again
+                assertEquals(0, cursor.getLong(9));
+                assertUnitVector(cursor);
+                assertTrue(cursor.moveToNext());
+                assertEquals("key2", cursor.getString(0));
+                assertEquals(1, cursor.getInt(5));
+                assertEquals(0, cursor.getInt(6));
+                assertNull(cursor.getString(7));
+                assertUnitVector(cursor);
+                assertFalse(cursor.moveToNext());
+            }
+            assertEquals("key1", matchKey(db, "centrale"));
+            assertEquals("key2", matchKey(db, "sarca"));
+        }
+    }
+
+    @Test
+    public void migrate12To13_indexesTheStoredWorkplaces() throws IOException {
+        createVersion12();
+
+        try (SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 13, true,
+                WorkPlaceMigrations.MIGRATION_12_13)) {
+            assertEquals("key1", matchKey(db, "caffe*"));
+            assertEquals("key2", matchKey(db, "sarca"));
+
+            // The triggers keep the index in sync with the rows changed after the migration
+            db.execSQL("UPDATE WorkPlace SET name = 'Aula Studio' WHERE firebaseKey = 'key2'");
+            assertEquals("key2", matchKey(db, "aula"));
+            assertNull(matchKey(db, "biblioteca"));
+        }
+    }
+
+    @Test
+    public void migrate13To14_computesTheUnitVectors() throws IOException {
+        createVersion12();
+        helper.runMigrationsAndValidate(TEST_DB, 13, true, WorkPlaceMigrations.MIGRATION_12_13).close();
+
+        try (SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 14, true,
+                WorkPlaceMigrations.MIGRATION_13_14);
+             Cursor cursor = db.query("SELECT latitude, longitude, unitX, unitY, unitZ FROM WorkPlace")) {
+            assertEquals(2, cursor.getCount());
+            while (cursor.moveToNext()) {
+                double[] expected = WorkPlace.unitVector(cursor.getDouble(0), cursor.getDouble(1));
+                assertEquals(expected[0], cursor.getDouble(2), DELTA);
+                assertEquals(expected[1], cursor.getDouble(3), DELTA);
+                assertEquals(expected[2], cursor.getDouble(4), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void migrate12To16_keepsTheContentAndSavedState() throws IOException {
+        createVersion12();
+
+        try (SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 16, true,
+                WorkPlaceMigrations.ALL)) {
+            try (Cursor cursor = db.query("SELECT firebaseKey, name, outside, saved, contentHash " +
+                    "FROM WorkPlace ORDER BY firebaseKey")) {
+                assertTrue(cursor.moveToNext());
+                assertEquals("key1", cursor.getString(0));
+                assertEquals("Caffè Centrale", cursor.getString(1));
+                assertEquals(0, cursor.getInt(2));
+                assertEquals(1, cursor.getInt(3));
+                assertEquals(11, cursor.getLong(4));
+                assertTrue(cursor.moveToNext());
+                assertEquals("key2", cursor.getString(0));
+                assertEquals(1, cursor.getInt(2));
+                assertEquals(0, cursor.getInt(3));
+                assertEquals(22, cursor.getLong(4));
+                assertFalse(cursor.moveToNext());
+            }
+            assertEquals("key1", matchKey(db, "centrale"));
+            try (Cursor cursor = db.query("SELECT COUNT(*) FROM PendingSavedChange")) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(0, cursor.getInt(0));
+            }
+            // The migrated workplaces have no version, so the first fetch reads all of them
+            try (Cursor cursor = db.query("SELECT COUNT(*) FROM CatalogueVersion")) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(0, cursor.getInt(0));
+            }
+        }
+    }
+
+    @Test
+    public void migrate12To17_pagesTheRankedListAlongTheScoreIndex() throws IOException {
+        createVersion12();
+
+        try (SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 17, true,
+                WorkPlaceMigrations.ALL)) {
+            // The scores are computed by the local data source, for the current ranking
+            try (Cursor cursor = db.query("SELECT COUNT(*) FROM WorkPlace WHERE score IS NULL")) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(2, cursor.getInt(0));
+            }
+            db.execSQL("UPDATE WorkPlace SET score = 0.3 * saved");
+
+            String nextPage = "SELECT firebaseKey FROM WorkPlace WHERE (score, firebaseKey) < (?, ?) " +
+                    "ORDER BY score DESC, firebaseKey DESC LIMIT 1";
+            Object[] afterFirst = {0.3, "key1"};
+            try (Cursor cursor = db.query(nextPage, afterFirst)) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("key2", cursor.getString(0));
+            }
+            // The page is read from the index, without sorting the table
+            StringBuilder plan = new StringBuilder();
+            try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + nextPage, afterFirst)) {
+                while (cursor.moveToNext())
+                    plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+            assertTrue(plan.toString(), plan.toString().contains("index_WorkPlace_score_firebaseKey"));
+            assertFalse(plan.toString(), plan.toString().contains("TEMP B-TREE"));
+        }
+    }
+
+    /**
+     * Checks the unit vector of the workplace at the position of the cursor against its
+     * coordinates, read from the columns 3 and 4, with the vector in the columns 10 to 12
+     * @param cursor - the cursor over the migrated workplaces
+     */
+    private static void assertUnitVector(Cursor cursor) {
+        double[] expected = WorkPlace.unitVector(cursor.getDouble(3), cursor.getDouble(4));
+        assertEquals(expected[0], cursor.getDouble(10), DELTA);
+        assertEquals(expected[1], cursor.getDouble(11), DELTA);
+        assertEquals(expected[2], cursor.getDouble(12), DELTA);
+    }
+
+    /**
+     * Returns the key of the only workplace matching a full-text query
+     * @param db - the migrated database
+     * @param match - the full-text query
+     * @return the key of the matching workplace, or null if none matches
+     */
+    private static String matchKey(SupportSQLiteDatabase db, String match) {
+        try (Cursor cursor = db.query("SELECT WorkPlace.firebaseKey FROM WorkPlace " +
+                "JOIN WorkPlaceFts ON WorkPlace.rowid = WorkPlaceFts.docid " +
+                "WHERE WorkPlaceFts MATCH ?", new Object[] {match})) {
+            if (!cursor.moveToFirst())
+                return null;
+            String key = cursor.getString(0);
+            assertFalse(cursor.moveToNext());
+            return key;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.unimib.workingspot.util.spatial;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests of the {@link GeoArea} circles and viewports, near the poles and across the antimeridian,
+ * where the latitude and longitude bounds are the hardest to get right.
+ */
+public class GeoAreaTest {
+
+    private static final int MAX_PREFIXES = 16;
+
+    /**
+     * Checks that a position is inside an area and that the prefixes of the area cover it
+     */
+    private static void assertInside(GeoArea area, double latitude, double longitude) {
+        assertTrue(area.contains(latitude, longitude));
+        String geohash = GeoHash.encode(latitude, longitude, GeoHash.MAX_PRECISION);
+        List<String> prefixes = area.getCoveringGeohashPrefixes(MAX_PREFIXES);
+        boolean covered = false;
+        for (String prefix : prefixes)
+            covered |= geohash.startsWith(prefix);
+        assertTrue("Position not covered by " + prefixes, covered);
+    }
+
+    @Test
+    public void around_containingThePole() {
+        GeoArea area = GeoArea.around(89.9, 0, 50000);
+
+        // On the other side of the pole, about 22 km away
+        assertInside(area, 89.9, 180);
+        assertInside(area, 89.95, -90);
+        assertInside(area, 89.5, 0);
+        assertFalse(area.contains(89.4, 0));
+    }
+
+    @Test
+    public void around_atHighLatitude() {
+        GeoArea area = GeoArea.around(80, 20, 100000);
+
+        // A degree of longitude is about 19 km at this latitude
+        assertInside(area, 80, 25);
+        assertFalse(area.contains(80, 26));
+        assertInside(area, 80.85, 20);
+        assertFalse(area.contains(81, 20));
+    }
+
+    @Test
+    public void around_crossingTheAntimeridian() {
+        GeoArea area = GeoArea.around(0, 179.99, 10000);
+
+        assertInside(area, 0, -179.99);
+        assertInside(area, 0.05, 179.95);
+        assertFalse(area.contains(0, 179.8));
+        assertFalse(area.contains(0, 0));
+    }
+
+    @Test
+    public void ofBounds_crossingTheAntimeridian() {
+        GeoArea area = GeoArea.ofBounds(-17, 179.5, -16, -179.5);
+
+        assertInside(area, -16.5, 180);
+        assertInside(area, -16.5, -179.9);
+        assertFalse(area.contains(-16.5, 0));
+        assertFalse(area.contains(-18, 179.9));
+    }
+}
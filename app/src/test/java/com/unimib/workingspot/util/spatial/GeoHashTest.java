@@ -0,0 +1,84 @@
+package com.unimib.workingspot.util.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests of the {@link GeoHash} encoding against published geohashes, and of the prefixes
+ * covering a bounding box, including a box crossing the antimeridian.
+ */
+public class GeoHashTest {
+
+    /**
+     * Checks whether a position is inside one of the cells of some prefixes
+     */
+    private static boolean isCovered(List<String> prefixes, double latitude, double longitude) {
+        String geohash = GeoHash.encode(latitude, longitude, GeoHash.MAX_PRECISION);
+        for (String prefix : prefixes)
+            if (geohash.startsWith(prefix))
+                return true;
+        return false;
+    }
+
+    @Test
+    public void encode_matchesKnownGeohashes() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.6, -5.6, 5));
+        assertEquals("6gkzwgjzn820", GeoHash.encode(-25.382708, -49.265506, 12));
+        assertEquals("r3gx2f7", GeoHash.encode(-33.8688, 151.2093, 7));
+        assertEquals("s", GeoHash.encode(0, 0, 1));
+        assertEquals("000", GeoHash.encode(-90, -180, 3));
+        assertEquals("zzz", GeoHash.encode(90, 180, 3));
+    }
+
+    @Test
+    public void encode_shorterGeohashIsPrefix() {
+        String geohash = GeoHash.encode(45.4642, 9.19, GeoHash.MAX_PRECISION);
+        for (int precision = 1; precision < GeoHash.MAX_PRECISION; precision++)
+            assertEquals(geohash.substring(0, precision), GeoHash.encode(45.4642, 9.19, precision));
+    }
+
+    @Test
+    public void coveringPrefixes_coverTheBox() {
+        List<String> prefixes = GeoHash.coveringPrefixes(45.4, 9.1, 45.5, 9.3, 16);
+
+        assertTrue(prefixes.size() <= 16);
+        for (String prefix : prefixes)
+            assertEquals(prefixes.get(0).length(), prefix.length());
+        for (double latitude = 45.4; latitude <= 45.5; latitude += 0.01)
+            for (double longitude = 9.1; longitude <= 9.3; longitude += 0.01)
+                assertTrue(isCovered(prefixes, latitude, longitude));
+        assertFalse(isCovered(prefixes, 41.9, 12.5));
+    }
+
+    @Test
+    public void coveringPrefixes_crossingTheAntimeridian() {
+        List<String> prefixes = GeoHash.coveringPrefixes(-17, 179.5, -16, -179.5, 16);
+
+        assertTrue(prefixes.size() <= 16);
+        for (double latitude = -17; latitude <= -16; latitude += 0.05) {
+            for (double longitude = 179.5; longitude <= 180; longitude += 0.05)
+                assertTrue(isCovered(prefixes, latitude, longitude));
+            for (double longitude = -180; longitude <= -179.5; longitude += 0.05)
+                assertTrue(isCovered(prefixes, latitude, longitude));
+        }
+        // The box does not span the longitudes between its two edges
+        assertFalse(isCovered(prefixes, -16.5, 0));
+        assertFalse(isCovered(prefixes, -16.5, 170));
+        assertFalse(isCovered(prefixes, -16.5, -170));
+    }
+
+    @Test
+    public void coveringPrefixes_fallBackToSingleCharacters() {
+        List<String> prefixes = GeoHash.coveringPrefixes(-90, -180, 90, 180, 4);
+
+        assertEquals(32, prefixes.size());
+        for (String prefix : prefixes)
+            assertEquals(1, prefix.length());
+    }
+}
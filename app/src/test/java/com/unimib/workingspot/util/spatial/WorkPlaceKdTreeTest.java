@@ -0,0 +1,137 @@
+package com.unimib.workingspot.util.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.unimib.workingspot.model.WorkPlace;
+import com.unimib.workingspot.model.WorkPlaceStore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests of the {@link WorkPlaceKdTree} queries against a scan of every workplace, with
+ * workplaces spread over the whole globe and packed around the poles and the antimeridian.
+ */
+public class WorkPlaceKdTreeTest {
+
+    private static final double EARTH_RADIUS_METERS = 6371000.0;
+
+    // Relative margin around the radius within which rounding may put a workplace on either side
+    private static final double RADIUS_TOLERANCE = 1e-9;
+
+    /**
+     * Builds workplaces at random positions: a quarter anywhere, the others clustered around
+     * Milan, the North Pole and the antimeridian
+     */
+    private static List<WorkPlace> randomWorkPlaces(Random random, int count) {
+        double[][] centers = {{45.46, 9.19}, {89.9, 0}, {-16.5, 179.99}};
+        List<WorkPlace> workPlaces = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double latitude, longitude;
+            if (i % 4 == 0) {
+                latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                longitude = random.nextDouble() * 360 - 180;
+            } else {
+                double[] center = centers[i % 3];
+                latitude = center[0] + random.nextGaussian() * 0.05;
+                // Past the pole, on the other side of it
+                if (latitude > 90)
+                    latitude = 180 - latitude;
+                longitude = center[1] + random.nextGaussian() * 0.05;
+                if (longitude > 180)
+                    longitude -= 360;
+            }
+            WorkPlace workPlace = new WorkPlace("name" + i, "address" + i, latitude, longitude, false);
+            workPlace.setFirebaseKey("key" + i);
+            workPlaces.add(workPlace);
+        }
+        return workPlaces;
+    }
+
+    /**
+     * Computes the great-circle distance between two positions
+     */
+    private static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double[] a = WorkPlace.unitVector(latitude1, longitude1);
+        double[] b = WorkPlace.unitVector(latitude2, longitude2);
+        // The angle from the chord is accurate at short distances, unlike the one from the dot product
+        double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+        double chord = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return 2 * Math.asin(Math.min(1, chord / 2)) * EARTH_RADIUS_METERS;
+    }
+
+    private static Set<String> keys(List<WorkPlace> workPlaces) {
+        Set<String> keys = new HashSet<>();
+        for (WorkPlace workPlace : workPlaces)
+            keys.add(workPlace.getFirebaseKey());
+        return keys;
+    }
+
+    @Test
+    public void nearest_matchesScan() {
+        Random random = new Random(42);
+        List<WorkPlace> workPlaces = randomWorkPlaces(random, 2000);
+        WorkPlaceKdTree tree = new WorkPlaceColumns(workPlaces, new WorkPlaceStore()).getTree();
+        assertEquals(workPlaces.size(), tree.size());
+
+        double[][] origins = {{45.47, 9.20}, {89.95, -120}, {-16.5, -179.99}, {0, 0}, {-89.9, 45}};
+        for (double[] origin : origins) {
+            for (int k : new int[] {1, 5, 50}) {
+                List<WorkPlace> expected = new ArrayList<>(workPlaces);
+                expected.sort(Comparator.comparingDouble(w ->
+                        distanceMeters(origin[0], origin[1], w.getLatitude(), w.getLongitude())));
+                List<WorkPlace> nearest = tree.nearest(origin[0], origin[1], k);
+
+                assertEquals(k, nearest.size());
+                for (int i = 0; i < k; i++)
+                    assertEquals(expected.get(i).getFirebaseKey(), nearest.get(i).getFirebaseKey());
+            }
+        }
+    }
+
+    @Test
+    public void nearest_returnsEveryWorkPlaceWhenThereAreFewer() {
+        List<WorkPlace> workPlaces = randomWorkPlaces(new Random(1), 3);
+        WorkPlaceKdTree tree = new WorkPlaceColumns(workPlaces, new WorkPlaceStore()).getTree();
+
+        assertEquals(keys(workPlaces), keys(tree.nearest(10, 10, 10)));
+        assertTrue(tree.nearest(10, 10, 0).isEmpty());
+    }
+
+    @Test
+    public void withinRadius_matchesScan() {
+        Random random = new Random(7);
+        List<WorkPlace> workPlaces = randomWorkPlaces(random, 2000);
+        WorkPlaceKdTree tree = new WorkPlaceColumns(workPlaces, new WorkPlaceStore()).getTree();
+
+        double[][] origins = {{45.46, 9.19}, {90, 0}, {-16.5, 179.999}, {-16.5, -179.999}, {10, 100}};
+        for (double[] origin : origins) {
+            for (double radius : new double[] {30, 2000, 10000, 500000}) {
+                Set<String> found = keys(tree.withinRadius(origin[0], origin[1], radius));
+                for (WorkPlace workPlace : workPlaces) {
+                    double distance = distanceMeters(origin[0], origin[1],
+                            workPlace.getLatitude(), workPlace.getLongitude());
+                    if (Math.abs(distance - radius) <= radius * RADIUS_TOLERANCE)
+                        continue;
+                    assertEquals("Workplace at " + distance + " m, radius " + radius + " m",
+                            distance < radius, found.contains(workPlace.getFirebaseKey()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyTree_findsNothing() {
+        WorkPlaceKdTree tree = new WorkPlaceColumns(new ArrayList<>(), new WorkPlaceStore()).getTree();
+
+        assertTrue(tree.nearest(0, 0, 3).isEmpty());
+        assertTrue(tree.withinRadius(0, 0, 1000).isEmpty());
+    }
+}
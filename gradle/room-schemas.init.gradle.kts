@@ -0,0 +1,10 @@
+// Exports the Room schemas of a checkout of the app to the directory given by the
+// roomSchemaLocation property, also for the commits that did not export them yet.
+// Used by the exportRoomSchema tasks of the app.
+val roomSchemaLocation = gradle.startParameter.projectProperties["roomSchemaLocation"]
+
+allprojects {
+    tasks.withType<JavaCompile>().configureEach {
+        options.compilerArgs.add("-Aroom.schemaLocation=$roomSchemaLocation")
+    }
+}
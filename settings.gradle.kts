@@ -22,4 +22,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "WorkingSpot"
 include(":app")
+include(":admin")
  
\ No newline at end of file